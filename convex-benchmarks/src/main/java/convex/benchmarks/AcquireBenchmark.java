@@ -0,0 +1,121 @@
+package convex.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+
+import convex.api.Acquirer;
+import convex.api.Convex;
+import convex.api.ConvexRemote;
+import convex.core.data.ACell;
+import convex.core.data.AVector;
+import convex.core.data.Blob;
+import convex.core.data.Hash;
+import convex.core.data.Vectors;
+import convex.core.store.AStore;
+import convex.core.store.MemoryStore;
+import convex.core.store.Stores;
+import convex.peer.API;
+import convex.peer.Server;
+
+/**
+ * Benchmark for acquiring data structures from remote Peers into a fresh store, as done by
+ * a new Peer syncing with the network.
+ */
+public class AcquireBenchmark {
+
+	static final int NUM_BLOBS = 20000;
+
+	static final List<Server> servers;
+	static final Hash stateHash;
+	static final Hash vectorHash;
+
+	static {
+		servers=API.launchLocalPeers(Benchmarks.PEER_KEYPAIRS, Benchmarks.STATE, null, null);
+		stateHash=servers.get(0).getPeer().getConsensusState().getHash();
+
+		// same data on every Peer, built separately for each store
+		Hash h=null;
+		AStore temp=Stores.current();
+		for (Server s: servers) {
+			Stores.setCurrent(s.getStore());
+			try {
+				h=ACell.createPersisted(createVector()).getHash();
+			} finally {
+				Stores.setCurrent(temp);
+			}
+		}
+		vectorHash=h;
+	}
+
+	private static AVector<ACell> createVector() {
+		Random r=new Random(1234);
+		AVector<ACell> v=Vectors.empty();
+		for (int i=0; i<NUM_BLOBS; i++) {
+			v=v.conj(Blob.createRandom(r, 200));
+		}
+		return v;
+	}
+
+	/**
+	 * Acquires a value into a fresh store from the given number of Peers
+	 * @return Acquirer used, for statistics
+	 */
+	private static Acquirer acquire(Hash hash, int numSources) throws Exception {
+		MemoryStore store=new MemoryStore();
+		ArrayList<ConvexRemote> sources=new ArrayList<>();
+		try {
+			Acquirer acquirer=Acquirer.create(store);
+			for (int i=0; i<numSources; i++) {
+				ConvexRemote c=Convex.connect(servers.get(i).getHostAddress(), null, null, store);
+				sources.add(c);
+				acquirer.addSource(c);
+			}
+			acquirer.acquire(hash).get(60000,TimeUnit.MILLISECONDS);
+			return acquirer;
+		} finally {
+			for (ConvexRemote c: sources) {
+				c.close();
+			}
+		}
+	}
+
+	@Benchmark
+	public void acquireState() throws Exception {
+		acquire(stateHash,1);
+	}
+
+	@Benchmark
+	public void acquireVector() throws Exception {
+		acquire(vectorHash,1);
+	}
+
+	@Benchmark
+	public void acquireVectorTwoPeers() throws Exception {
+		acquire(vectorHash,2);
+	}
+
+	private static void report(String name, Hash hash, int numSources) throws Exception {
+		long start=System.nanoTime();
+		Acquirer a=acquire(hash,numSources);
+		double secs=(System.nanoTime()-start)*1e-9;
+		System.out.printf("%s: %d cells, %d bytes in %.2fs = %.0f cells/s, %.2f MB/s%n",
+				name, a.getCellCount(), a.getByteCount(), secs, a.getCellCount()/secs, a.getByteCount()/secs/1e6);
+	}
+
+	public static void main(String[] args) throws Exception {
+		for (int i=0; i<3; i++) {
+			report("State", stateHash, 1);
+			report("Vector", vectorHash, 1);
+			report("Vector from 2 Peers", vectorHash, 2);
+		}
+
+		Options opt = Benchmarks.createOptions(AcquireBenchmark.class);
+		new Runner(opt).run();
+	}
+}
@@ -0,0 +1,70 @@
+package convex.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import convex.core.data.ACell;
+import convex.core.data.prim.CVMLong;
+import convex.core.lang.AOp;
+import convex.core.lang.Context;
+import convex.core.lang.RT;
+import convex.core.lang.Reader;
+
+/**
+ * Benchmarks for CVM long arithmetic and comparisons.
+ *
+ * Run with the JMH GC profiler to show allocation rate per operation (gc.alloc.rate.norm)
+ */
+public class ArithmeticBenchmark {
+
+	static final Context<?> CTX=Benchmarks.context();
+
+	static final ACell[] SMALL_ARGS=new ACell[] {CVMLong.create(17),CVMLong.create(300)};
+	static final ACell[] LARGE_ARGS=new ACell[] {CVMLong.create(1000000),CVMLong.create(2345678)};
+
+	@Benchmark
+	public ACell plusSmall() {
+		return RT.plus(SMALL_ARGS);
+	}
+
+	@Benchmark
+	public ACell plusLarge() {
+		return RT.plus(LARGE_ARGS);
+	}
+
+	@Benchmark
+	public ACell minusSmall() {
+		return RT.minus(SMALL_ARGS);
+	}
+
+	@Benchmark
+	public ACell timesSmall() {
+		return RT.times(SMALL_ARGS);
+	}
+
+	@Benchmark
+	public Boolean lessThan() {
+		return RT.lt(LARGE_ARGS);
+	}
+
+	@Benchmark
+	public ACell incSmall() {
+		return RT.inc(SMALL_ARGS[1]);
+	}
+
+	// CVM loop with a counter, accumulator and comparison on each iteration
+	static final AOp<ACell> sumLoop=CTX.expandCompile(Reader.read("(loop [i 0 acc 0] (if (< i 1000) (recur (inc i) (+ acc i)) acc))")).getResult();
+	@Benchmark
+	public ACell sumLoop() {
+		return CTX.fork().execute(sumLoop).getResult();
+	}
+
+	public static void main(String[] args) throws Exception {
+		Options opt = new OptionsBuilder().parent(Benchmarks.createOptions(ArithmeticBenchmark.class))
+				.addProfiler(GCProfiler.class).build();
+		new Runner(opt).run();
+	}
+}
@@ -0,0 +1,108 @@
+package convex.benchmarks;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+
+import convex.core.Block;
+import convex.core.Peer;
+import convex.core.crypto.AKeyPair;
+import convex.core.data.ACell;
+import convex.core.data.Address;
+import convex.core.data.SignedData;
+import convex.core.store.Stores;
+import convex.core.transactions.ATransaction;
+import convex.core.transactions.Transfer;
+import convex.net.Connection;
+import convex.net.MemoryByteChannel;
+
+/**
+ * Benchmark for sending the novelty of a new Belief over a Connection, comparing
+ * one DATA message per cell with DATA_BATCH messages.
+ */
+public class BeliefBroadcastBenchmark {
+
+	static final int NUM_TRANSACTIONS = 100;
+
+	/**
+	 * Novelty produced by proposing a Block, in the order it would be broadcast
+	 */
+	static final ArrayList<ACell> novelty = new ArrayList<>();
+
+	static {
+		AKeyPair kp = Benchmarks.HERO_KEYPAIR;
+		Peer peer = Peer.createGenesisPeer(Benchmarks.FIRST_PEER_KEYPAIR, Benchmarks.STATE);
+		peer = peer.persistState(null);
+
+		ArrayList<SignedData<ATransaction>> transactions = new ArrayList<>();
+		for (int i = 0; i < NUM_TRANSACTIONS; i++) {
+			Transfer t = Transfer.create(Benchmarks.HERO, i + 1, Address.create(i % 10), 1);
+			transactions.add(kp.signData(t));
+		}
+		Block block = Block.create(System.currentTimeMillis(), transactions, Benchmarks.FIRST_PEER_KEY);
+		peer = peer.proposeBlock(block);
+		ACell belief = peer.getBelief();
+		peer.persistState(r -> {
+			ACell o = r.getValue();
+			if (o != belief) novelty.add(o);
+		});
+	}
+
+	static final ByteBuffer drain = ByteBuffer.allocate(100000);
+
+	static final MemoryByteChannel cellChannel = MemoryByteChannel.create(200000);
+	static final MemoryByteChannel batchChannel = MemoryByteChannel.create(200000);
+	static final Connection cellConnection = createConnection(cellChannel);
+	static final Connection batchConnection = createConnection(batchChannel);
+
+	private static Connection createConnection(MemoryByteChannel chan) {
+		try {
+			return Connection.create(chan, null, Stores.current(), null);
+		} catch (IOException e) {
+			throw new Error(e);
+		}
+	}
+
+	@Benchmark
+	public void sendCells() throws IOException {
+		send(cellConnection, cellChannel, false);
+	}
+
+	@Benchmark
+	public void sendBatch() throws IOException {
+		send(batchConnection, batchChannel, true);
+	}
+
+	private static void send(Connection pc, MemoryByteChannel chan, boolean batch) throws IOException {
+		if (batch) {
+			pc.setRemoteCapabilities(Connection.CAPABILITIES);
+			pc.sendDataBatch(novelty);
+		} else {
+			for (ACell cell : novelty) {
+				pc.sendData(cell);
+			}
+		}
+		pc.flushBytes();
+		while (chan.read(drain) > 0) {
+			drain.clear();
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		System.out.println("Novelty cells per Belief: " + novelty.size());
+		for (boolean batch : new boolean[] {false, true}) {
+			MemoryByteChannel chan = MemoryByteChannel.create(200000);
+			Connection pc = createConnection(chan);
+			send(pc, chan, batch);
+			System.out.println((batch ? "DATA_BATCH" : "DATA") + ": frames=" + pc.getSentFrameCount()
+					+ " bytes=" + pc.getSentByteCount());
+		}
+
+		Options opt = Benchmarks.createOptions(BeliefBroadcastBenchmark.class);
+		new Runner(opt).run();
+	}
+}
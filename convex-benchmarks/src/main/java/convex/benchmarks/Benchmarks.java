@@ -12,6 +12,7 @@ import convex.core.State;
 import convex.core.crypto.AKeyPair;
 import convex.core.data.AccountKey;
 import convex.core.data.Address;
+import convex.core.init.GenesisCache;
 import convex.core.init.Init;
 import convex.core.lang.Context;
 
@@ -42,7 +43,7 @@ public class Benchmarks {
 	
 	public static final AccountKey HERO_KEY = HERO_KEYPAIR.getAccountKey();
 
-	public static final State STATE = Init.createState(PEER_KEYS);
+	public static final State STATE = GenesisCache.getState(PEER_KEYS);
 
 	static Options createOptions(Class<?> c) {
 		return new OptionsBuilder().include(c.getSimpleName()).warmupIterations(1).measurementIterations(5)
@@ -54,7 +54,13 @@ public class BigBlockBenchmark {
 
 	@Benchmark
 	public void benchmark() throws BadSignatureException {
-		BlockResult br=state.applyBlock(block);
+		BlockResult br=state.applyBlock(block,false);
+		ACell.createPersisted(br.getState());
+	}
+
+	@Benchmark
+	public void benchmarkParallel() throws BadSignatureException {
+		BlockResult br=state.applyBlock(block,true);
 		ACell.createPersisted(br.getState());
 	}
 
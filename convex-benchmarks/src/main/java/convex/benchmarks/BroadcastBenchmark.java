@@ -0,0 +1,135 @@
+package convex.benchmarks;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeoutException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+
+import convex.core.data.ACell;
+import convex.core.data.Blob;
+import convex.core.store.Stores;
+import convex.net.Connection;
+
+/**
+ * Benchmark for broadcasting messages over many socket connections from several threads at
+ * once, as done when a Server broadcasts Beliefs while also sending results to clients.
+ * Messages are sent by the client selector thread and discarded by the remote end.
+ */
+public class BroadcastBenchmark {
+
+	static final int NUM_CONNECTIONS = 64;
+	static final int NUM_THREADS = 4;
+
+	static final ArrayList<Connection> connections = new ArrayList<>();
+
+	static final ACell message = Blob.createRandom(new Random(1234), 500);
+
+	static {
+		try {
+			// remote ends just read and discard everything sent
+			ServerSocketChannel ssc = ServerSocketChannel.open();
+			ssc.bind(new InetSocketAddress("localhost", 0));
+			InetSocketAddress address = (InetSocketAddress) ssc.getLocalAddress();
+			for (int i = 0; i < NUM_CONNECTIONS; i++) {
+				connections.add(Connection.connect(address, null, Stores.current()));
+				SocketChannel remote = ssc.accept();
+				Thread t = new Thread(() -> discard(remote), "Broadcast benchmark reader " + i);
+				t.setDaemon(true);
+				t.start();
+			}
+		} catch (IOException | TimeoutException e) {
+			throw new Error(e);
+		}
+	}
+
+	private static void discard(SocketChannel chan) {
+		ByteBuffer bb = ByteBuffer.allocate(100000);
+		try {
+			while (chan.read(bb) >= 0) {
+				bb.clear();
+			}
+		} catch (IOException e) {
+			// connection closed
+		}
+	}
+
+	/**
+	 * Sends the message to every connection, waiting if a send buffer is full
+	 */
+	private static void broadcast() throws IOException {
+		for (Connection pc : connections) {
+			while (!pc.sendData(message)) {
+				Thread.yield();
+			}
+		}
+	}
+
+	@Benchmark
+	@Threads(NUM_THREADS)
+	public void broadcastConcurrent() throws IOException {
+		broadcast();
+	}
+
+	@Benchmark
+	public void broadcastSingle() throws IOException {
+		broadcast();
+	}
+
+	/**
+	 * Reports throughput, and CPU time used by sending threads for each message. The
+	 * latter excludes the work done by the selector thread writing to sockets.
+	 */
+	private static void report(int numThreads) throws Exception {
+		int runs = 2000;
+		ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+		long[] cpu = new long[numThreads];
+		ArrayList<Thread> threads = new ArrayList<>();
+		long start = System.nanoTime();
+		for (int t = 0; t < numThreads; t++) {
+			final int ti = t;
+			Thread thread = new Thread(() -> {
+				try {
+					long cpuStart = mx.getCurrentThreadCpuTime();
+					for (int i = 0; i < runs; i++) {
+						broadcast();
+					}
+					cpu[ti] = mx.getCurrentThreadCpuTime() - cpuStart;
+				} catch (IOException e) {
+					throw new Error(e);
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		long totalCpu = 0;
+		for (int t = 0; t < numThreads; t++) {
+			threads.get(t).join();
+			totalCpu += cpu[t];
+		}
+		long total = (long) runs * numThreads * NUM_CONNECTIONS;
+		double secs = (System.nanoTime() - start) * 1e-9;
+		System.out.printf("%d threads to %d connections: %.0f messages/s, sender CPU %.0f ns/message%n",
+				numThreads, NUM_CONNECTIONS, total / secs, (double) totalCpu / total);
+	}
+
+	public static void main(String[] args) throws Exception {
+		for (int i = 0; i < 3; i++) {
+			report(1);
+			report(NUM_THREADS);
+		}
+
+		Options opt = Benchmarks.createOptions(BroadcastBenchmark.class);
+		new Runner(opt).run();
+	}
+}
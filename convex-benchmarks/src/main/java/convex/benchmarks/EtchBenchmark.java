@@ -1,10 +1,17 @@
 package convex.benchmarks;
 
 import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
 import org.openjdk.jmh.runner.Runner;
 import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
 
 import convex.core.data.ACell;
 import convex.core.data.AVector;
@@ -46,8 +53,52 @@ public class EtchBenchmark {
 		store.refForHash(refs[ix].getHash());
 	}
 	
+	/**
+	 * State that runs a single background writer for the duration of a benchmark
+	 * iteration, so that reads are measured under concurrent writes.
+	 */
+	@State(Scope.Benchmark)
+	public static class ConcurrentWriter {
+		private volatile boolean running;
+		private Thread writer;
+		
+		@Setup(Level.Iteration)
+		public void start() {
+			running=true;
+			writer=new Thread(()->{
+				long n=0;
+				while (running) {
+					AVector<CVMLong> v=Vectors.of(2L,n++);
+					store.storeTopRef(v.getRef(), Ref.STORED, null);
+				}
+			},"Etch benchmark writer");
+			writer.setDaemon(true);
+			writer.start();
+		}
+		
+		@TearDown(Level.Iteration)
+		public void stop() throws InterruptedException {
+			running=false;
+			writer.join();
+		}
+	}
+	
+	@Benchmark
+	public void readDataConcurrent(ConcurrentWriter writer) {
+		int ix=ThreadLocalRandom.current().nextInt(1000);
+		store.refForHash(refs[ix].getHash());
+	}
+	
 	public static void main(String[] args) throws Exception {
 		Options opt = Benchmarks.createOptions(EtchBenchmark.class);
 		new Runner(opt).run();
+		
+		// concurrent reads with 1, 4 and 16 reader threads against a single writer
+		for (int threads: new int[] {1,4,16}) {
+			Options copt = new OptionsBuilder().parent(opt)
+					.include(EtchBenchmark.class.getSimpleName()+".readDataConcurrent")
+					.threads(threads).build();
+			new Runner(copt).run();
+		}
 	}
 }
@@ -42,6 +42,13 @@ public class EvalBenchmark {
 		eval(simpleSum2);
 	}
 
+	// loop building literal data, folded to constants by the compiler
+	static final ACell literalLoop=Reader.read("(dotimes [i 100] [1 2 [3 4] `(5 6)])");
+	@Benchmark
+	public void literalLoop() {
+		eval(literalLoop);
+	}
+
 	public static void main(String[] args) throws Exception {
 		Options opt = Benchmarks.createOptions(EvalBenchmark.class);
 		new Runner(opt).run();
@@ -0,0 +1,110 @@
+package convex.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+
+import convex.api.Convex;
+import convex.core.Result;
+import convex.core.data.ACell;
+import convex.core.data.Keyword;
+import convex.core.data.Keywords;
+import convex.core.lang.Reader;
+import convex.core.store.MemoryStore;
+import convex.peer.API;
+import convex.peer.Server;
+
+/**
+ * Benchmark for query throughput of a Peer with many concurrent clients, comparing
+ * a Server with a single selector thread against one with a group of selector threads.
+ */
+public class ManyClientsBenchmark {
+
+	static final int NUM_CLIENTS = 32;
+	static final int QUERIES_PER_CLIENT = 10;
+
+	static final ACell QUERY = Reader.read("(+ 1 2)");
+
+	static final ArrayList<Convex> singleClients = new ArrayList<>();
+	static final ArrayList<Convex> groupClients = new ArrayList<>();
+
+	static {
+		try {
+			connectClients(launchServer(1), singleClients);
+			connectClients(launchServer(4), groupClients);
+		} catch (IOException | TimeoutException e) {
+			throw new Error(e);
+		}
+	}
+
+	private static Server launchServer(int selectorThreads) {
+		HashMap<Keyword, Object> config = new HashMap<>();
+		config.put(Keywords.KEYPAIR, Benchmarks.FIRST_PEER_KEYPAIR);
+		config.put(Keywords.STATE, Benchmarks.STATE);
+		config.put(Keywords.STORE, new MemoryStore());
+		config.put(Keywords.SELECTOR_THREADS, selectorThreads);
+		return API.launchPeer(config);
+	}
+
+	private static void connectClients(Server server, ArrayList<Convex> clients) throws IOException, TimeoutException {
+		for (int i = 0; i < NUM_CLIENTS; i++) {
+			clients.add(Convex.connect(server.getHostAddress(), Benchmarks.HERO, Benchmarks.HERO_KEYPAIR));
+		}
+	}
+
+	/**
+	 * Sends queries from all clients at once, then waits for all results
+	 * @return Number of queries completed
+	 */
+	private static int queryAll(ArrayList<Convex> clients) throws Exception {
+		ArrayList<Future<Result>> results = new ArrayList<>();
+		for (int i = 0; i < QUERIES_PER_CLIENT; i++) {
+			for (Convex c : clients) {
+				results.add(c.query(QUERY));
+			}
+		}
+		for (Future<Result> f : results) {
+			Result r = f.get(10000, TimeUnit.MILLISECONDS);
+			if (r.isError()) throw new Error("Query failed: " + r);
+		}
+		return results.size();
+	}
+
+	@Benchmark
+	public void singleSelector() throws Exception {
+		queryAll(singleClients);
+	}
+
+	@Benchmark
+	public void selectorGroup() throws Exception {
+		queryAll(groupClients);
+	}
+
+	private static void report(String name, ArrayList<Convex> clients) throws Exception {
+		int runs = 50;
+		long start = System.nanoTime();
+		long count = 0;
+		for (int i = 0; i < runs; i++) {
+			count += queryAll(clients);
+		}
+		double secs = (System.nanoTime() - start) * 1e-9;
+		System.out.printf("%s: %d clients, %.0f queries/s%n", name, NUM_CLIENTS, count / secs);
+	}
+
+	public static void main(String[] args) throws Exception {
+		for (int i = 0; i < 3; i++) {
+			report("1 selector thread", singleClients);
+			report("4 selector threads", groupClients);
+		}
+
+		Options opt = Benchmarks.createOptions(ManyClientsBenchmark.class);
+		new Runner(opt).run();
+	}
+}
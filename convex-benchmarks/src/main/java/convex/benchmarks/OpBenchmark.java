@@ -26,6 +26,13 @@ public class OpBenchmark {
 		runOp(loopOp);
 	}
 	
+	// loop with repeated dynamic lookups of core functions
+	static final AOp<ACell> lookupLoop=CTX.expandCompile(Reader.read("(dotimes [i 1000] (+ (inc i) (dec i)))")).getResult();
+	@Benchmark
+	public void lookupLoop() {
+		runOp(lookupLoop);
+	}
+	
 	static final AOp<ACell> constantOp=CTX.expandCompile(Reader.read("1")).getResult();
 	@Benchmark
 	public void constant() {
@@ -0,0 +1,92 @@
+package convex.benchmarks;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+
+import convex.core.data.ACell;
+import convex.core.data.AList;
+import convex.core.lang.reader.AntlrReader;
+import convex.core.lang.reader.ConvexReader;
+import convex.core.util.Utils;
+
+/**
+ * Benchmarks comparing the ANTLR reader with the hand-written ConvexReader, reading all
+ * the bundled Convex Lisp library sources.
+ */
+public class ReaderBenchmark {
+
+	static final String[] PATHS=new String[] {
+		"convex/core.cvx",
+		"convex/core/metadata.cvx",
+		"convex/registry.cvx",
+		"convex/trust.cvx",
+		"convex/fungible.cvx",
+		"convex/asset.cvx",
+		"convex/play.cvx",
+		"convex/trusted-oracle.cvx",
+		"convex/trusted-oracle/actor.cvx",
+		"torus/exchange.cvx",
+		"torus/currencies.cvx",
+		"asset/nft/simple.cvx",
+		"asset/nft/tokens.cvx",
+		"asset/box.cvx",
+		"asset/box/actor.cvx",
+		"lab/messenger.cvx",
+		"lab/prediction-market.cvx",
+		"lab/convex/xform.cvx"
+	};
+
+	static final String[] SOURCES=new String[PATHS.length];
+
+	static {
+		try {
+			for (int i=0; i<PATHS.length; i++) {
+				SOURCES[i]=Utils.readResourceAsString(PATHS[i]);
+			}
+		} catch (IOException e) {
+			throw Utils.sneakyThrow(e);
+		}
+	}
+
+	@Benchmark
+	public long antlrReader() {
+		long n=0;
+		for (String s: SOURCES) {
+			AList<ACell> forms=AntlrReader.readAll(s);
+			n+=forms.count();
+		}
+		return n;
+	}
+
+	@Benchmark
+	public long convexReader() {
+		long n=0;
+		for (String s: SOURCES) {
+			AList<ACell> forms=ConvexReader.readAll(s);
+			n+=forms.count();
+		}
+		return n;
+	}
+
+	@Benchmark
+	public long convexReaderStreaming() throws IOException {
+		long n=0;
+		for (String s: SOURCES) {
+			ConvexReader r=ConvexReader.create(new StringReader(s));
+			while (r.hasNext()) {
+				r.next();
+				n++;
+			}
+		}
+		return n;
+	}
+
+	public static void main(String[] args) throws Exception {
+		Options opt = Benchmarks.createOptions(ReaderBenchmark.class);
+		new Runner(opt).run();
+	}
+}
@@ -0,0 +1,102 @@
+package convex.benchmarks;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+
+import convex.core.data.ACell;
+import convex.core.data.Blob;
+import convex.core.data.prim.CVMLong;
+import convex.core.exceptions.BadFormatException;
+import convex.core.store.Stores;
+import convex.net.Connection;
+import convex.net.MemoryByteChannel;
+import convex.net.MessageReceiver;
+
+/**
+ * Benchmark for receiving messages on a single Connection, measuring how fast a
+ * MessageReceiver can parse and decode frames from a channel.
+ */
+public class ReceiveBenchmark {
+
+	static final int NUM_MESSAGES = 1000;
+
+	static final byte[] smallBytes = createBytes(false);
+	static final byte[] largeBytes = createBytes(true);
+
+	/**
+	 * Creates the bytes sent for a sequence of DATA messages, either small values or
+	 * non-embedded Blobs
+	 */
+	private static byte[] createBytes(boolean large) {
+		try {
+			MemoryByteChannel chan = MemoryByteChannel.create(1000000);
+			Connection pc = Connection.create(chan, null, Stores.current(), null);
+			Random r = new Random(1234);
+			for (int i = 0; i < NUM_MESSAGES; i++) {
+				ACell cell = large ? Blob.createRandom(r, 500) : CVMLong.create(i);
+				if (!pc.sendData(cell)) throw new Error("Send buffer full");
+				pc.flushBytes();
+			}
+			ByteBuffer bb = ByteBuffer.allocate(1000000);
+			chan.read(bb);
+			bb.flip();
+			byte[] bs = new byte[bb.remaining()];
+			bb.get(bs);
+			return bs;
+		} catch (IOException e) {
+			throw new Error(e);
+		}
+	}
+
+	/**
+	 * Receives all messages in the given bytes on a new Connection
+	 * @return Number of messages received
+	 */
+	private static long receive(byte[] bytes) throws IOException, BadFormatException {
+		MemoryByteChannel chan = MemoryByteChannel.create(bytes.length);
+		chan.write(ByteBuffer.wrap(bytes));
+		Connection pc = Connection.create(chan, null, Stores.current(), null);
+		MessageReceiver mr = new MessageReceiver(m -> {}, pc);
+		while (mr.receiveFromChannel(chan) > 0) {
+			// keep reading until channel is empty
+		}
+		if (mr.getReceivedCount() != NUM_MESSAGES) throw new Error("Messages lost: " + mr.getReceivedCount());
+		return mr.getReceivedCount();
+	}
+
+	@Benchmark
+	public void receiveSmall() throws IOException, BadFormatException {
+		receive(smallBytes);
+	}
+
+	@Benchmark
+	public void receiveLarge() throws IOException, BadFormatException {
+		receive(largeBytes);
+	}
+
+	private static void report(String name, byte[] bytes) throws Exception {
+		int runs = 1000;
+		long start = System.nanoTime();
+		long count = 0;
+		for (int i = 0; i < runs; i++) {
+			count += receive(bytes);
+		}
+		double secs = (System.nanoTime() - start) * 1e-9;
+		System.out.printf("%s: %.0f messages/s, %.2f MB/s%n", name, count / secs, (double) bytes.length * runs / secs / 1e6);
+	}
+
+	public static void main(String[] args) throws Exception {
+		for (int i = 0; i < 3; i++) {
+			report("Small messages", smallBytes);
+			report("Large messages", largeBytes);
+		}
+
+		Options opt = Benchmarks.createOptions(ReceiveBenchmark.class);
+		new Runner(opt).run();
+	}
+}
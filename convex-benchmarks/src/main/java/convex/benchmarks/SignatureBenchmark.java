@@ -1,6 +1,10 @@
 package convex.benchmarks;
 
 import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
 import org.openjdk.jmh.runner.Runner;
 import org.openjdk.jmh.runner.options.Options;
 
@@ -8,6 +12,7 @@ import convex.core.crypto.AKeyPair;
 import convex.core.crypto.ASignature;
 import convex.core.data.ABlob;
 import convex.core.data.ACell;
+import convex.core.data.AccountKey;
 import convex.core.data.Blobs;
 import convex.core.data.Ref;
 import convex.core.data.SignedData;
@@ -53,6 +58,45 @@ public class SignatureBenchmark {
 		signed.checkSignature();
 	}
 
+	
+	/**
+	 * Batch of signed messages to verify, for comparing batch and individual verification
+	 */
+	@State(Scope.Benchmark)
+	public static class Batch {
+		@Param({"1", "4", "16", "64", "256", "1024"})
+		public int size;
+		
+		ABlob[] messages;
+		AccountKey[] keys;
+		ASignature[] signatures;
+		
+		@Setup
+		public void setup() {
+			messages=new ABlob[size];
+			keys=new AccountKey[size];
+			signatures=new ASignature[size];
+			for (int i=0; i<size; i++) {
+				AKeyPair kp=Benchmarks.KEYPAIRS[i%Benchmarks.KEYPAIRS.length];
+				ABlob b=Blobs.createRandom(16);
+				messages[i]=b.getHash();
+				keys[i]=kp.getAccountKey();
+				signatures[i]=kp.sign(b.getHash());
+			}
+		}
+	}
+	
+	@Benchmark
+	public void verifyBatch(Batch batch) {
+		ASignature.verifyBatch(batch.messages, batch.keys, batch.signatures);
+	}
+	
+	@Benchmark
+	public void verifyIndividual(Batch batch) {
+		for (int i=0; i<batch.size; i++) {
+			batch.signatures[i].verify(batch.messages[i], batch.keys[i]);
+		}
+	}
 
 	public static void main(String[] args) throws Exception {
 		Options opt = Benchmarks.createOptions(SignatureBenchmark.class);
@@ -18,6 +18,8 @@ public class Constants {
 
 	public static final String SESSION_FILENAME = "~/.convex/session.conf";
 
+	public static final String GENESIS_CACHE_DIRECTORY = "~/.convex/genesis";
+
 	public static final int ACCOUNT_FUND_AMOUNT = 100000000;
 
 	public static final int LOCAL_START_PEER_COUNT = 4;
@@ -53,6 +53,13 @@ public class LocalStart implements Runnable {
 			+ "or a single --ports=8081,8082,8083 or --ports=8080-8090")
 	private String[] ports;
 
+	@Option(names={"--genesis-cache"},
+		arity="0..1",
+		fallbackValue=Constants.GENESIS_CACHE_DIRECTORY,
+		description="Cache genesis states as snapshot files in a directory, to speed up later starts.%n"
+			+ "Default directory if none given: ${FALLBACK-VALUE}. Disabled if not specified.")
+	private String genesisCache;
+
 	@Override
 	public void run() {
 		Main mainParent = localParent.mainParent;
@@ -122,7 +129,7 @@ public class LocalStart implements Runnable {
 			}
 		}
 		log.info("Starting local network with "+count+" peer(s)");
-		peerManager.launchLocalPeers(keyPairList, peerPorts);
+		peerManager.launchLocalPeers(keyPairList, peerPorts, genesisCache);
 		log.info("Local Peers launched");
 		peerManager.showPeerEvents();
 	}
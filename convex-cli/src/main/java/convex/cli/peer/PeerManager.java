@@ -33,7 +33,7 @@ import convex.core.data.Hash;
 import convex.core.data.Keyword;
 import convex.core.data.Keywords;
 import convex.core.data.SignedData;
-import convex.core.init.Init;
+import convex.core.init.GenesisCache;
 import convex.core.lang.RT;
 import convex.core.store.AStore;
 import convex.core.util.Utils;
@@ -88,10 +88,21 @@ public class PeerManager implements IServerEvent {
         return new PeerManager(sessionFilename, keyPair, address, store);
 	}
 
-	public void launchLocalPeers(List<AKeyPair> keyPairList, int peerPorts[]) {
+	/**
+	 * Launches local peers with a shared genesis State.
+	 *
+	 * @param keyPairList Key pairs for peers
+	 * @param peerPorts Ports for peers, or null for random ports
+	 * @param genesisCacheDirectory Directory for genesis snapshots, or null to only use snapshots if
+	 *        configured with the "convex.genesis.cache" system property
+	 */
+	public void launchLocalPeers(List<AKeyPair> keyPairList, int peerPorts[], String genesisCacheDirectory) {
 		List<AccountKey> keyList=keyPairList.stream().map(kp->kp.getAccountKey()).collect(Collectors.toList());
 
-		State genesisState=Init.createState(keyList);
+		if (genesisCacheDirectory!=null) {
+			GenesisCache.setDirectory(new File(Helpers.expandTilde(genesisCacheDirectory)));
+		}
+		State genesisState=GenesisCache.getState(keyList);
 		peerServerList = API.launchLocalPeers(keyPairList,genesisState, peerPorts, this);
 	}
 
@@ -182,6 +182,22 @@ public class Belief extends ARecord {
 		// Initialise result with existing Orders from this Belief
 		BlobMap<AccountKey, SignedData<Order>> result = this.orders;
 		
+		// verify signatures of all incoming Orders as a batch, results are cached
+		ArrayList<SignedData<Order>> incoming=new ArrayList<>();
+		for (Belief belief : beliefs) {
+			if (belief == null) continue;
+			if (belief.equals(this)) continue;
+			BlobMap<AccountKey, SignedData<Order>> bOrders = belief.orders;
+			long bcount=bOrders.count();
+			for (long i=0; i<bcount; i++) {
+				MapEntry<AccountKey,SignedData<Order>> be=bOrders.entryAt(i);
+				ABlob key=be.getKey();
+				if(key.equalsBytes(mc.getAccountKey())) continue;
+				incoming.add(be.getValue());
+			}
+		}
+		SignedData.checkSignatures(incoming);
+		
 		// assemble the latest list of orders from all peers
 		for (Belief belief : beliefs) {
 			if (belief == null) continue; // ignore null beliefs, might happen if invalidated
@@ -196,17 +212,18 @@ public class Belief extends ARecord {
 				// Skip merging own Key. We should always have our own latest Order
 				if(key.equalsBytes(mc.getAccountKey())) continue; 
 				
-				SignedData<Order> a=result.get(key);
-				if (a == null) {result=result.assocEntry(be); continue;}
 				SignedData<Order> b=be.getValue();
 				if (b == null) continue;
 				
-				// Check signature
+				// Check signature, already cached by batch verification above
 				if (!b.checkSignature()) {
 					// TODO: Better handling than just ignoring, e.g. slashing?
 					continue;
 				};
 				
+				SignedData<Order> a=result.get(key);
+				if (a == null) {result=result.assocEntry(be); continue;}
+				
 				if (a.equals(b)) continue; // PERF: fast path for no changes
 
 				Order ac = a.getValue();
@@ -0,0 +1,167 @@
+package convex.core;
+
+import java.util.stream.IntStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import convex.core.data.ACell;
+import convex.core.data.AVector;
+import convex.core.data.Address;
+import convex.core.data.SignedData;
+import convex.core.data.Strings;
+import convex.core.data.prim.CVMLong;
+import convex.core.init.Init;
+import convex.core.lang.Context;
+import convex.core.store.AStore;
+import convex.core.store.Stores;
+import convex.core.transactions.ATransaction;
+
+/**
+ * Executes the transactions in a Block in parallel, giving exactly the same BlockResult
+ * as sequential execution.
+ *
+ * Transactions are processed in windows. Each transaction in a window is first executed
+ * speculatively against the State at the start of the window, on a thread from the common
+ * fork-join pool, tracking the parts of the State it reads and writes. Transactions are then
+ * committed strictly in Block order. If nothing a transaction accessed has been written by an
+ * earlier transaction in the same window, its writes are replayed onto the latest State and
+ * juice and memory accounting is completed as usual. Otherwise the transaction is executed
+ * again against the latest State.
+ */
+final class BlockExecutor {
+
+	private static final Logger log = LoggerFactory.getLogger(BlockExecutor.class.getName());
+
+	/**
+	 * Outcome of speculative execution of a transaction, before completion of accounting
+	 */
+	private static final class Speculation {
+		private final StateAccess access;
+		private final Context<?> context;
+
+		private Speculation(StateAccess access, Context<?> context) {
+			this.access=access;
+			this.context=context;
+		}
+	}
+
+	private BlockExecutor() {
+	}
+
+	/**
+	 * Applies the transactions in a Block to a prepared State
+	 * @param state State after block preparation (timestamp update and scheduled transactions)
+	 * @param block Block to apply
+	 * @return BlockResult, identical to sequential execution
+	 */
+	static BlockResult applyTransactions(State state, Block block) {
+		int blockLength = block.length();
+		Result[] results = new Result[blockLength];
+
+		AVector<SignedData<ATransaction>> transactions = block.getTransactions();
+
+		// verify all transaction signatures in the block as a batch, results are cached
+		SignedData.checkSignatures(transactions);
+
+		// worker threads need to see the same store as this thread
+		AStore store=Stores.current();
+
+		int window=Constants.PARALLEL_EXECUTION_WINDOW;
+		for (int start=0; start<blockLength; start+=window) {
+			final int base=start;
+			final int end=Math.min(blockLength, start+window);
+			final State snapshot=state;
+			final Speculation[] specs=new Speculation[end-start];
+			IntStream.range(start, end).parallel().forEach(i->{
+				AStore saved=Stores.current();
+				Stores.setCurrent(store);
+				try {
+					specs[i-base]=speculate(snapshot, transactions.get(i).getValue());
+				} finally {
+					Stores.setCurrent(saved);
+				}
+			});
+
+			// Everything written since the snapshot
+			StateAccess written=new StateAccess();
+			for (int i=start; i<end; i++) {
+				// SECURITY: catch-all exception handler, as in sequential execution
+				try {
+					SignedData<ATransaction> signed = transactions.get(i);
+					Context<?> ctx = commit(state, signed, specs[i-start], written);
+					results[i] = Result.fromContext(CVMLong.create(i),ctx);
+					state = ctx.getState();
+				} catch (Throwable t) {
+					String msg= "Unexpected fatal exception applying transaction: "+t.toString();
+					results[i] = Result.create(CVMLong.create(i), Strings.create(msg),ErrorCodes.UNEXPECTED);
+					t.printStackTrace();
+					log.error(msg);
+				}
+			}
+		}
+
+		return BlockResult.create(state, results);
+	}
+
+	/**
+	 * Executes a transaction against a snapshot State, up to the point of completing accounting.
+	 * @return Speculation, or null if the transaction needs to be executed sequentially
+	 */
+	private static Speculation speculate(State snapshot, ATransaction t) {
+		try {
+			Address origin=t.getOrigin();
+			Context<ACell> ctx=snapshot.prepareTransaction(origin,t);
+			if (ctx.isExceptional()) return null;
+
+			// preparation depends on the origin account and juice price
+			StateAccess access=new StateAccess();
+			access.read(origin.longValue());
+			access.read(StateAccess.GLOBALS);
+
+			ctx=ctx.withState(ctx.getState().withAccess(access));
+			ctx=t.apply(ctx);
+			return new Speculation(access,ctx);
+		} catch (Throwable e) {
+			// failure will be reproduced in sequential execution
+			return null;
+		}
+	}
+
+	/**
+	 * Commits a transaction to the latest State, using the speculative execution if still valid
+	 * @return Context containing the updated State (may be exceptional)
+	 */
+	private static Context<?> commit(State state, SignedData<ATransaction> signed, Speculation spec, StateAccess written) {
+		if ((spec!=null)&&!spec.access.conflictsWith(written)) {
+			try {
+				Context<?> ctx=state.checkTransaction(signed);
+				if (ctx!=null) return ctx;
+
+				ATransaction t=signed.getValue();
+				Address origin=t.getOrigin();
+				Context<ACell> prepared=state.prepareTransaction(origin,t);
+				if (!prepared.isExceptional()) {
+					long totalJuice=prepared.getJuice();
+					State preparedState=prepared.getState();
+					State applied=preparedState.applyWrites(spec.context.getState(), spec.access);
+					ctx=spec.context.withState(applied).completeTransaction(preparedState, totalJuice);
+
+					written.addWrites(spec.access);
+					written.write(origin.longValue());
+					written.write(Init.MEMORY_EXCHANGE_ADDRESS.longValue());
+					written.write(StateAccess.FEES);
+					return ctx;
+				}
+			} catch (Throwable e) {
+				// fall back to sequential execution, which handles any failure
+			}
+		}
+
+		// Sequential execution against the latest State, tracking writes
+		StateAccess access=new StateAccess();
+		Context<?> ctx=state.withAccess(access).applyTransaction(signed);
+		written.addWrites(access);
+		return ctx.withState(ctx.getState().withAccess(null));
+	}
+}
@@ -54,11 +54,52 @@ public class Constants {
 	 */
 	public static final long MAX_TRANSACTION_JUICE = 1000000;
 
+	/**
+	 * Max juice allowable for execution of a query submitted to a Peer.
+	 */
+	public static final long MAX_QUERY_JUICE = 1000000;
+
+	/**
+	 * Max time in milliseconds that a query submitted to a Peer may wait before execution.
+	 */
+	public static final long QUERY_TIMEOUT = 5000;
+
 	/**
 	 * Constant to set deletion of Etch temporary files on exit. Probably should be true, unless you want to dubug temp files.
 	 */
 	public static final boolean ETCH_DELETE_TEMP_ON_EXIT = true;
 
+	/**
+	 * Default maximum number of decoded Cells cached per store
+	 */
+	public static final int DEFAULT_CELL_CACHE_SIZE = 100000;
+
+	/**
+	 * Number of entries in the process-wide cache of verified signatures. Must be a power of two.
+	 */
+	public static final int SIGNATURE_CACHE_SIZE = 65536;
+
+	/**
+	 * Maximum total memory size of compiled ops held in the process-wide compile cache
+	 */
+	public static final long COMPILE_CACHE_MEMORY = 16*1024*1024;
+
+	/**
+	 * Default number of recent States a Peer Server keeps in memory. Older States are
+	 * left in the store and loaded on demand.
+	 */
+	public static final int STATE_RETENTION = 1000;
+
+	/**
+	 * Minimum number of transactions in a Block for parallel execution to be used
+	 */
+	public static final int PARALLEL_EXECUTION_THRESHOLD = 32;
+
+	/**
+	 * Number of transactions speculatively executed together in each round of parallel execution
+	 */
+	public static final int PARALLEL_EXECUTION_WINDOW = 64;
+
 	/**
 	 * Sequence number used for any new account
 	 */
@@ -148,6 +189,18 @@ public class Constants {
 	public static final int SEND_BUFFER_SIZE = Format.LIMIT_ENCODING_LENGTH*10+20;
 
 
+	/**
+	 * Default number of selector threads handling IO for a Server's incoming connections,
+	 * and for client connections in each JVM. At least 2, so that a slow connection does
+	 * not stall all others even on a single core.
+	 */
+	public static final int DEFAULT_SELECTOR_THREADS = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+	/**
+	 * Default interval in milliseconds between group commits of a Peer's Etch store
+	 */
+	public static final long DEFAULT_COMMIT_INTERVAL = 100;
+
 	/**
 	 * Size of default server socket receive buffer
 	 */
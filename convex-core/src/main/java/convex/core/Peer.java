@@ -1,6 +1,7 @@
 package convex.core;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.function.Consumer;
 
 import convex.core.crypto.AKeyPair;
@@ -21,8 +22,10 @@ import convex.core.data.Vectors;
 import convex.core.data.prim.CVMLong;
 import convex.core.exceptions.BadSignatureException;
 import convex.core.exceptions.InvalidDataException;
+import convex.core.init.GenesisCache;
 import convex.core.init.Init;
 import convex.core.lang.AOp;
+import convex.core.lang.CompileCache;
 import convex.core.lang.Context;
 import convex.core.store.AStore;
 import convex.core.store.Stores;
@@ -71,25 +74,72 @@ public class Peer {
 	private final long timestamp;
 
 	/**
-	 * Vector of states
+	 * Vector of states. States before historyCount may only be held as soft references
+	 * to the store.
 	 */
 	private final AVector<State> states;
 
 	/**
-	 * Vector of results
+	 * Vector of results. Results before historyCount-1 may only be held as soft references
+	 * to the store.
 	 */
 	private final AVector<BlockResult> blockResults;
 
+	/**
+	 * Most recent States held in memory, always the tail of states. Empty if retention is 0.
+	 */
+	private final AVector<State> recentStates;
+
+	/**
+	 * Most recent BlockResults held in memory, always the tail of blockResults. Empty if retention is 0.
+	 */
+	private final AVector<BlockResult> recentResults;
+
+	/**
+	 * Number of States at the point states was last reloaded from the store
+	 */
+	private final long historyCount;
+
+	/**
+	 * Number of recent States to keep in memory, or 0 to keep all States
+	 */
+	private final int retention;
+
+	/**
+	 * Index of State timestamps for asOf queries
+	 */
+	private final StateIndex index;
+
 	private Peer(AKeyPair kp, SignedData<Belief> belief, AVector<State> states, AVector<BlockResult> results,
 			long timeStamp) {
+		this(kp,belief,states,results,Vectors.empty(),Vectors.empty(),0,0,new StateIndex(),timeStamp);
+	}
+
+	private Peer(AKeyPair kp, SignedData<Belief> belief, AVector<State> states, AVector<BlockResult> results,
+			AVector<State> recentStates, AVector<BlockResult> recentResults, long historyCount, int retention,
+			StateIndex index, long timeStamp) {
 		this.keyPair = kp;
 		this.peerKey = kp.getAccountKey();
 		this.belief = belief;
 		this.states = states;
 		this.blockResults = results;
+		this.recentStates = recentStates;
+		this.recentResults = recentResults;
+		this.historyCount = historyCount;
+		this.retention = retention;
+		this.index = index;
 		this.timestamp = timeStamp;
 	}
 
+	private Peer withBelief(SignedData<Belief> newBelief, long newTimestamp) {
+		return new Peer(keyPair, newBelief, states, blockResults, recentStates, recentResults, historyCount, retention, index, newTimestamp);
+	}
+
+	private Peer withHistory(AVector<State> newStates, AVector<BlockResult> newResults, AVector<State> newRecentStates,
+			AVector<BlockResult> newRecentResults, long newHistoryCount) {
+		return new Peer(keyPair, belief, newStates, newResults, newRecentStates, newRecentResults, newHistoryCount, retention, index, timestamp);
+	}
+
 	/**
 	 * Constructs a Peer instance from persisted PEer Data
 	 * @param keyPair Key Pair for Peer
@@ -203,7 +253,7 @@ public class Peer {
 		if (keyPair == null) throw new IllegalArgumentException("Peer initialisation requires a keypair");
 
 		if (genesisState == null) {
-			genesisState=Init.createState(Utils.listOf(keyPair.getAccountKey()));
+			genesisState=GenesisCache.getState(Utils.listOf(keyPair.getAccountKey()));
 			genesisState=genesisState.withTimestamp(Utils.getCurrentTimestamp());
 		}
 
@@ -226,7 +276,7 @@ public class Peer {
 	 */
 	public Peer updateTimestamp(long newTimestamp) {
 		if (newTimestamp < timestamp) return this;
-		return new Peer(keyPair, belief, states, blockResults, timestamp);
+		return withBelief(belief, timestamp);
 	}
 
 	/**
@@ -237,8 +287,20 @@ public class Peer {
 	 * @param address Address to use for query execution. If null, core address will be used
 	 * @return The Context containing the query results. Will be NOBODY error if address / account does not exist
 	 */
-	@SuppressWarnings("unchecked")
 	public <T extends ACell> Context<T> executeQuery(ACell form, Address address) {
+		return executeQuery(form,address,Constants.MAX_TRANSACTION_JUICE);
+	}
+
+	/**
+	 * Executes a query in this Peer's current Consensus State, using a given Address and juice limit.
+	 *
+	 * @param form Form to execute as a Query
+	 * @param address Address to use for query execution. If null, core address will be used
+	 * @param juiceLimit Maximum juice to use for the query
+	 * @return The Context containing the query results. Will be NOBODY error if address / account does not exist
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends ACell> Context<T> executeQuery(ACell form, Address address, long juiceLimit) {
 		State state=getConsensusState();
 
 		if (address==null) {
@@ -246,13 +308,13 @@ public class Peer {
 			//return  Context.createFake(state).withError(ErrorCodes.NOBODY,"Null Address provided for query");
 		}
 
-		Context<?> ctx= Context.createFake(state, address);
+		Context<?> ctx= Context.createFake(state, address).withJuice(juiceLimit);
 
 		if (state.getAccount(address)==null) {
 			return ctx.withError(ErrorCodes.NOBODY,"Account does not exist for query: "+address);
 		}
 
-		Context<AOp<T>> ectx = ctx.expandCompile(form);
+		Context<AOp<T>> ectx = CompileCache.expandCompile(ctx,form);
 		if (ectx.isExceptional()) {
 			return (Context<T>) ectx;
 		}
@@ -365,7 +427,7 @@ public class Peer {
 	 * @return Consensus state for this chain (initial state if no block consensus)
 	 */
 	public State getConsensusState() {
-		return states.get(states.count() - 1);
+		return getState(states.count() - 1);
 	}
 
 	/**
@@ -379,6 +441,20 @@ public class Peer {
 	 *
 	 */
 	public Peer mergeBeliefs(Belief... beliefs) throws BadSignatureException, InvalidDataException {
+		return mergeBeliefsDeferred(beliefs).updateState();
+	}
+
+	/**
+	 * Merges a set of new Beliefs into this Peer's belief, without applying any newly agreed
+	 * Blocks. The consensus point may therefore advance beyond the last State of this Peer. 
+	 * Use updateState() or withStates(...) to bring the States up to date.
+	 *
+	 * @param beliefs An array of Beliefs. May contain nulls, which will be ignored.
+	 * @return Updated Peer after Belief Merge
+	 * @throws InvalidDataException if 
+	 * @throws BadSignatureException IF a Signature validation fails
+	 */
+	public Peer mergeBeliefsDeferred(Belief... beliefs) throws BadSignatureException, InvalidDataException {
 		Belief belief = getBelief();
 		MergeContext mc = MergeContext.create(keyPair, timestamp, getConsensusState());
 		Belief newBelief = belief.merge(mc, beliefs);
@@ -393,36 +469,114 @@ public class Peer {
 
 		}
 
-		return updateConsensus(newBelief);
+		return updateBelief(newBelief);
 	}
 
 	/**
-	 * Update this Peer with Consensus State for an updated Belief
+	 * Update this Peer with a new Belief. Does not apply any Blocks.
 	 *
 	 * @param newBelief
-	 * @return
-	 * @throws BadSignatureException 
+	 * @return Updated Peer
 	 */
-	private Peer updateConsensus(Belief newBelief) {
+	private Peer updateBelief(Belief newBelief) {
 		if (belief.getValue() == newBelief) return this;
-		Order myOrder = newBelief.getOrder(peerKey); // this peer's chain from new belief
+		SignedData<Belief> sb = keyPair.signData(newBelief);
+		return withBelief(sb, timestamp);
+	}
+
+	/**
+	 * Update this Peer with Consensus State, applying all Blocks up to the current consensus point.
+	 *
+	 * @return Updated Peer, or this Peer if States are already up to date
+	 */
+	public Peer updateState() {
+		Order myOrder = getPeerOrder(); // this peer's chain from current belief
+		if (myOrder==null) return this;
 		long consensusPoint = myOrder.getConsensusPoint();
 		long stateIndex = states.count() - 1; // index of last state
+		if (stateIndex >= consensusPoint) return this;
 		AVector<Block> blocks = myOrder.getBlocks();
 
 		// need to advance states
 		AVector<State> newStates = this.states;
 		AVector<BlockResult> newResults = this.blockResults;
+		AVector<State> newRecentStates = this.recentStates;
+		AVector<BlockResult> newRecentResults = this.recentResults;
+		State s = getConsensusState();
 		while (stateIndex < consensusPoint) { // add states until last state is at consensus point
-			State s = newStates.get(stateIndex);
 			Block block = blocks.get(stateIndex);
 			BlockResult br = s.applyBlock(block);
-			newStates = newStates.append(br.getState());
+			s = br.getState();
+			newStates = newStates.append(s);
 			newResults = newResults.append(br);
+			if (retention>0) {
+				newRecentStates = newRecentStates.append(s);
+				newRecentResults = newRecentResults.append(br);
+			}
 			stateIndex++;
 		}
-		SignedData<Belief> sb = keyPair.signData(newBelief);
-		return new Peer(keyPair, sb, newStates, newResults, timestamp);
+		return withHistory(newStates, newResults, newRecentStates, newRecentResults, historyCount);
+	}
+
+	/**
+	 * Updates this Peer with the States and BlockResults of another Peer, e.g. one updated by a 
+	 * separate execution thread. The other Peer must have been produced from this Peer or one 
+	 * of its predecessors by applying the agreed Blocks of the same Order. Ignored if not ahead 
+	 * of the current States.
+	 *
+	 * @param source Peer with updated States
+	 * @return Updated Peer
+	 */
+	public Peer withStates(Peer source) {
+		if (source.states.count()<=states.count()) return this;
+		return new Peer(keyPair, belief, source.states, source.blockResults, source.recentStates, source.recentResults, 
+				source.historyCount, source.retention, source.index, timestamp);
+	}
+
+	/**
+	 * Sets the number of recent States this Peer keeps in memory. When States are persisted,
+	 * older States and BlockResults are released from memory and left in the store, to be 
+	 * loaded again on demand. Between releases, up to twice this number of States are held.
+	 * 
+	 * @param newRetention Number of States to retain, or 0 to keep all States in memory
+	 * @return Updated Peer
+	 */
+	public Peer withRetention(int newRetention) {
+		if (newRetention<0) throw new IllegalArgumentException("Negative retention: "+newRetention);
+		if (newRetention==retention) return this;
+		AVector<State> newRecentStates=Vectors.empty();
+		AVector<BlockResult> newRecentResults=Vectors.empty();
+		if (newRetention>0) {
+			newRecentStates=tail(states,newRetention);
+			newRecentResults=tail(blockResults,newRetention);
+		}
+		return new Peer(keyPair, belief, states, blockResults, newRecentStates, newRecentResults, historyCount, newRetention, index, timestamp);
+	}
+
+	/**
+	 * Gets the number of recent States this Peer keeps in memory
+	 * @return Number of States retained, or 0 if all States are kept
+	 */
+	public int getRetention() {
+		return retention;
+	}
+
+	/**
+	 * Gets the last n elements of a vector, at most
+	 */
+	private static <T extends ACell> AVector<T> tail(AVector<T> v, long n) {
+		long c=v.count();
+		if (c<=n) return v;
+		return v.subVector(c-n, n);
+	}
+
+	/**
+	 * Gets the number of agreed Blocks that have not yet been applied to the States of 
+	 * this Peer, i.e. how far the consensus State lags behind the consensus point.
+	 * @return Number of Blocks awaiting execution
+	 */
+	public long getExecutionLag() {
+		return Math.max(0, getConsensusPoint()-(states.count()-1));
 	}
 
 	/**
@@ -435,15 +589,32 @@ public class Peer {
 		SignedData<Belief> sb=this.belief;
 		sb.announce(noveltyHandler);
 
-		// Persist states
-		AVector<State> newStates = this.states;
-		newStates=ACell.createPersisted(newStates).getValue();
+		return persistStates();
+	}
 
-		// Persist results
-		AVector<BlockResult> newResults = this.blockResults;
-		newResults=ACell.createPersisted(newResults).getValue();
+	/**
+	 * Persist the states and results of the Peer to the current store. Does not persist the Belief.
+	 * @return Updates Peer
+	 */
+	@SuppressWarnings("unchecked")
+	public Peer persistStates() {
+		// Persist states and results together in a single store batch
+		AStore store=Stores.current();
+		List<Ref<ACell>> persisted=store.storeTopRefs(List.of(states.getRef(),blockResults.getRef()), Ref.PERSISTED, null);
+		AVector<State> newStates = (AVector<State>) persisted.get(0).getValue();
+		AVector<BlockResult> newResults = (AVector<BlockResult>) persisted.get(1).getValue();
+
+		long count=newStates.count();
+		if ((retention==0)||(count-historyCount<retention)) {
+			return withHistory(newStates, newResults, recentStates, recentResults, historyCount);
+		}
 
-		return new Peer(this.keyPair, sb, newStates, newResults, this.timestamp);
+		// Release older States from memory. Index them first while they are still in memory,
+		// then reload the vectors from the store so that their elements are soft references.
+		updateIndex();
+		newStates=(AVector<State>) store.refForHash(newStates.getHash()).getValue();
+		newResults=(AVector<BlockResult>) store.refForHash(newResults.getHash()).getValue();
+		return withHistory(newStates, newResults, tail(recentStates,retention), tail(recentResults,retention), count);
 	}
 
 	/**
@@ -456,6 +627,17 @@ public class Peer {
 		return states;
 	}
 
+	/**
+	 * Gets the State at a specific position, preferring States held in memory
+	 * @param i Position of State, where 0 is the genesis State
+	 * @return State
+	 */
+	public State getState(long i) {
+		long base=states.count()-recentStates.count();
+		if (i>=base) return recentStates.get(i-base);
+		return states.get(i);
+	}
+
 	/**
 	 * Gets the result of a specific transaction
 	 * @param blockIndex Index of Block in Order
@@ -463,7 +645,7 @@ public class Peer {
 	 * @return Result from transaction
 	 */
 	public Result getResult(long blockIndex, long txIndex) {
-		return blockResults.get(blockIndex).getResult(txIndex);
+		return getBlockResult(blockIndex).getResult(txIndex);
 	}
 
 	/**
@@ -472,9 +654,20 @@ public class Peer {
 	 * @return BlockResult
 	 */
 	public BlockResult getBlockResult(long i) {
+		long base=blockResults.count()-recentResults.count();
+		if (i>=base) return recentResults.get(i-base);
 		return blockResults.get(i);
 	}
 
+	/**
+	 * Gets the vector of BlockResults maintained by this Peer, one for each applied Block.
+	 * 
+	 * @return Vector of BlockResults
+	 */
+	public AVector<BlockResult> getBlockResults() {
+		return blockResults;
+	}
+
 	/**
 	 * Propose a new Block. Adds the block to the current proposed chain for this
 	 * Peer.
@@ -493,7 +686,7 @@ public class Peer {
 		SignedData<Order> newSignedOrder = sign(newChain);
 		BlobMap<AccountKey, SignedData<Order>> newChains = orders.assoc(peerKey, newSignedOrder);
 		Belief newBelief=b.withOrders(newChains);
-		return updateConsensus(newBelief);
+		return updateBelief(newBelief);
 	}
 
 	/**
@@ -535,7 +728,26 @@ public class Peer {
 	 * @return State or null.
 	 */
 	public State asOf(CVMLong timestamp) {
-		return Utils.stateAsOf(states, timestamp);
+		long count=updateIndex();
+		long i=index.find(timestamp.longValue(), count);
+		if (i<0) return null;
+
+		// older States are soft references in the States vector, reloaded from the Peer's store if released
+		return getState(i);
+	}
+
+	/**
+	 * Ensures all States of this Peer are in the timestamp index
+	 * @return Number of States
+	 */
+	private long updateIndex() {
+		long count=states.count();
+		synchronized (index) {
+			for (long i=index.count(); i<count; i++) {
+				index.add(getState(i));
+			}
+		}
+		return count;
 	}
 
 	/**
@@ -547,7 +759,12 @@ public class Peer {
 	 * @return Vector of States.
 	 */
 	public AVector<State> asOfRange(CVMLong timestamp, long interval, int count) {
-		return Utils.statesAsOfRange(states, timestamp, interval, count);
+		AVector<State> v = Vectors.empty();
+		for (int i = 0; i < count; i++) {
+			v = v.conj(asOf(timestamp));
+			timestamp = CVMLong.create(timestamp.longValue() + interval);
+		}
+		return v;
 	}
 
 	/**
@@ -4,7 +4,9 @@ import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,7 +36,6 @@ import convex.core.data.Tag;
 import convex.core.data.Vectors;
 import convex.core.data.prim.CVMLong;
 import convex.core.exceptions.BadFormatException;
-import convex.core.exceptions.BadSignatureException;
 import convex.core.exceptions.InvalidDataException;
 import convex.core.lang.AOp;
 import convex.core.lang.Context;
@@ -90,17 +91,25 @@ public class State extends ARecord {
 	private final AVector<ACell> globals;
 	private final BlobMap<ABlob, AVector<ACell>> schedule;
 
+	/**
+	 * Access tracker for parallel execution. Not part of the State value, but carried over
+	 * to derived States. Usually null.
+	 */
+	private final StateAccess access;
+
 	private State(AVector<AccountStatus> accounts, BlobMap<AccountKey, PeerStatus> peers,
-			AVector<ACell> globals, BlobMap<ABlob, AVector<ACell>> schedule) {
+			AVector<ACell> globals, BlobMap<ABlob, AVector<ACell>> schedule, StateAccess access) {
 		super(FORMAT);
 		this.accounts = accounts;
 		this.peers = peers;
 		this.globals = globals;
 		this.schedule = schedule;
+		this.access = access;
 	}
 
 	@Override
 	public ACell get(ACell k) {
+		if (access!=null) access.readAll=true;
 		if (Keywords.ACCOUNTS.equals(k)) return accounts;
 		if (Keywords.PEERS.equals(k)) return peers;
 		if (Keywords.GLOBALS.equals(k)) return globals;
@@ -158,7 +167,8 @@ public class State extends ARecord {
 				&& (this.schedule == schedule)) {
 			return this;
 		}
-		return new State(accounts, peers, globals, schedule);
+		if (access!=null) access.writeAll=true;
+		return new State(accounts, peers, globals, schedule, access);
 	}
 
 	/**
@@ -171,7 +181,7 @@ public class State extends ARecord {
 	 */
 	public static State create(AVector<AccountStatus> accounts, BlobMap<AccountKey, PeerStatus> peers,
 			AVector<ACell> globals, BlobMap<ABlob, AVector<ACell>> schedule) {
-		return new State(accounts, peers, globals, schedule);
+		return new State(accounts, peers, globals, schedule, null);
 	}
 
 	@Override
@@ -233,6 +243,7 @@ public class State extends ARecord {
 	 * @return Vector of Accounts
 	 */
 	public AVector<AccountStatus> getAccounts() {
+		if (access!=null) access.readAll=true;
 		return accounts;
 	}
 
@@ -242,6 +253,7 @@ public class State extends ARecord {
 	 * @return A map of addresses to PeerStatus records
 	 */
 	public BlobMap<AccountKey, PeerStatus> getPeers() {
+		if (access!=null) access.read(StateAccess.PEERS);
 		return peers;
 	}
 
@@ -275,8 +287,24 @@ public class State extends ARecord {
 	 * @return The BlockResult from applying the given Block to this State
 	 */
 	public BlockResult applyBlock(Block block) {
+		boolean parallel=(block.length()>=Constants.PARALLEL_EXECUTION_THRESHOLD)&&(ForkJoinPool.getCommonPoolParallelism()>1);
+		return applyBlock(block,parallel);
+	}
+
+	/**
+	 * Block level state transition function, with a choice of execution strategy.
+	 *
+	 * Parallel execution speculatively executes transactions on multiple threads, but gives
+	 * exactly the same BlockResult as sequential execution.
+	 *
+	 * @param block Block to Apply
+	 * @param parallel If true, execute transactions in parallel where possible
+	 * @return The BlockResult from applying the given Block to this State
+	 */
+	public BlockResult applyBlock(Block block, boolean parallel) {
 		Counters.applyBlock++;
 		State state = prepareBlock(block);
+		if (parallel) return BlockExecutor.applyTransactions(state, block);
 		return state.applyTransactions(block);
 	}
 
@@ -368,12 +396,17 @@ public class State extends ARecord {
 
 	private State withSchedule(BlobMap<ABlob, AVector<ACell>> newSchedule) {
 		if (schedule == newSchedule) return this;
-		return new State(accounts, peers, globals, newSchedule);
+		if (access!=null) access.write(StateAccess.SCHEDULE);
+		return new State(accounts, peers, globals, newSchedule, access);
 	}
 
 	private State withGlobals(AVector<ACell> newGlobals) {
 		if (newGlobals == globals) return this;
-		return new State(accounts, peers, newGlobals, schedule);
+		if (access!=null) {
+			access.write(StateAccess.GLOBALS);
+			access.write(StateAccess.FEES);
+		}
+		return new State(accounts, peers, newGlobals, schedule, access);
 	}
 
 	private BlockResult applyTransactions(Block block) {
@@ -382,6 +415,10 @@ public class State extends ARecord {
 		Result[] results = new Result[blockLength];
 
 		AVector<SignedData<ATransaction>> transactions = block.getTransactions();
+		
+		// verify all transaction signatures in the block as a batch, results are cached
+		SignedData.checkSignatures(transactions);
+		
 		for (int i = 0; i < blockLength; i++) {
 			// SECURITY: catch-all exception handler.
 			try {
@@ -414,7 +451,20 @@ public class State extends ARecord {
 	 *
 	 * @return Context containing the updated chain State (may be exceptional)
 	 */
-	private <T extends ACell> Context<T> applyTransaction(SignedData<? extends ATransaction> signedTransaction) throws BadSignatureException {
+	<T extends ACell> Context<T> applyTransaction(SignedData<? extends ATransaction> signedTransaction) {
+		Context<T> ctx=checkTransaction(signedTransaction);
+		if (ctx!=null) return ctx;
+		return applyTransaction(signedTransaction.getValue());
+	}
+
+	/**
+	 * Checks that a signed transaction may be applied to the State.
+	 *
+	 * SECURITY: Checks digital signature and correctness of account key
+	 *
+	 * @return Context containing an error, or null if the transaction can be applied
+	 */
+	<T extends ACell> Context<T> checkTransaction(SignedData<? extends ATransaction> signedTransaction) {
 		// Extract transaction, performs signature check
 		ATransaction t=signedTransaction.getValue();
 		Address addr=t.getOrigin();
@@ -427,10 +477,11 @@ public class State extends ARecord {
 			if (!Utils.equals(key, signedTransaction.getAccountKey())) {
 				return Context.createFake(this).withError(ErrorCodes.SIGNATURE,"Signature not valid for Account: "+addr+" expected public key: "+key);
 			}
+			if (!signedTransaction.checkSignature()) {
+				return Context.createFake(this).withError(ErrorCodes.SIGNATURE,"Invalid signature for transaction on Account: "+addr);
+			}
 		}
-
-		Context<T> ctx=applyTransaction(t);
-		return ctx;
+		return null;
 	}
 
 	/**
@@ -487,7 +538,7 @@ public class State extends ARecord {
 	}
 
 	@SuppressWarnings("unchecked")
-	private <T extends ACell> Context<T> prepareTransaction(Address origin,ATransaction t) {
+	<T extends ACell> Context<T> prepareTransaction(Address origin,ATransaction t) {
 		// Pre-transaction state updates (persisted even if transaction fails)
 		AccountStatus account = getAccount(origin);
 		if (account == null) {
@@ -521,6 +572,7 @@ public class State extends ARecord {
 	 * @return Map of Stakes
 	 */
 	public HashMap<AccountKey, Double> computeStakes() {
+		if (access!=null) access.read(StateAccess.PEERS);
 		HashMap<AccountKey, Double> hm = new HashMap<>(peers.size());
 		Double totalStake = peers.reduceEntries((acc, e) -> {
 			double stake = (double) (e.getValue().getTotalStake());
@@ -540,7 +592,8 @@ public class State extends ARecord {
 	 */
 	public State withAccounts(AVector<AccountStatus> newAccounts) {
 		if (newAccounts == accounts) return this;
-		return create(newAccounts, peers,globals, schedule);
+		if (access!=null) access.writeAll=true;
+		return new State(newAccounts, peers, globals, schedule, access);
 	}
 
 	/**
@@ -564,8 +617,15 @@ public class State extends ARecord {
 		} else {
 			newAccounts = accounts.assoc(ix, accountStatus);
 		}
-
-		return withAccounts(newAccounts);
+		if (access!=null) {
+			if (ix==n) {
+				access.read(StateAccess.COUNT);
+				access.write(StateAccess.COUNT);
+			}
+			access.write(ix);
+		}
+		if (newAccounts == accounts) return this;
+		return new State(newAccounts, peers, globals, schedule, access);
 	}
 
 	/**
@@ -576,6 +636,7 @@ public class State extends ARecord {
 	 */
 	public AccountStatus getAccount(Address target) {
 		long ix=target.longValue();
+		if (access!=null) access.readAccount(ix, accounts.count());
 		if ((ix<0)||(ix>=accounts.count())) return null;
 		return accounts.get(ix);
 	}
@@ -599,7 +660,8 @@ public class State extends ARecord {
 	 */
 	public State withPeers(BlobMap<AccountKey, PeerStatus> newPeers) {
 		if (peers == newPeers) return this;
-		return create(accounts, newPeers, globals, schedule);
+		if (access!=null) access.write(StateAccess.PEERS);
+		return new State(accounts, newPeers, globals, schedule, access);
 	}
 
 	@Override
@@ -616,8 +678,7 @@ public class State extends ARecord {
 	 */
 	public State tryAddActor() {
 		AccountStatus as = AccountStatus.createActor();
-		AVector<AccountStatus> newAccounts = accounts.conj(as);
-		return withAccounts(newAccounts);
+		return putAccount(nextAddress(), as);
 	}
 
 	/**
@@ -628,6 +689,7 @@ public class State extends ARecord {
 	 * @return The total value of all funds
 	 */
 	public long computeTotalFunds() {
+		if (access!=null) access.readAll=true;
 		long total = accounts.reduce((Long acc,AccountStatus as) -> acc + as.getBalance(), (Long)0L);
 		total += peers.reduceValues((Long acc, PeerStatus ps) -> acc + ps.getTotalStake(), 0L);
 		total += getGlobalFees().longValue();
@@ -653,6 +715,7 @@ public class State extends ARecord {
 	 * @return The timestamp from this state.
 	 */
 	public CVMLong getTimeStamp() {
+		if (access!=null) access.read(StateAccess.GLOBALS);
 		return (CVMLong) globals.get(GLOBAL_TIMESTAMP);
 	}
 
@@ -662,6 +725,7 @@ public class State extends ARecord {
 	 * @return Juice Price
 	 */
 	public CVMLong getJuicePrice() {
+		if (access!=null) access.read(StateAccess.GLOBALS);
 		return (CVMLong) globals.get(GLOBAL_JUICE_PRICE);
 	}
 
@@ -678,6 +742,7 @@ public class State extends ARecord {
 		AVector<ACell> v = Vectors.of(address, op);
 
 		LongBlob key = LongBlob.create(time);
+		if (access!=null) access.read(StateAccess.SCHEDULE);
 		AVector<ACell> list = schedule.get(key);
 		if (list == null) {
 			list = Vectors.of(v);
@@ -695,6 +760,7 @@ public class State extends ARecord {
 	 * @return The schedule data structure.
 	 */
 	public BlobMap<ABlob, AVector<ACell>> getSchedule() {
+		if (access!=null) access.read(StateAccess.SCHEDULE);
 		return schedule;
 	}
 
@@ -703,6 +769,7 @@ public class State extends ARecord {
 	 * @return Global Fees
 	 */
 	public CVMLong getGlobalFees() {
+		if (access!=null) access.read(StateAccess.FEES);
 		return (CVMLong) globals.get(GLOBAL_FEES);
 	}
 
@@ -712,7 +779,10 @@ public class State extends ARecord {
 	 * @return Updated State
 	 */
 	public State withGlobalFees(CVMLong newFees) {
-		return withGlobals(globals.assoc(GLOBAL_FEES,newFees));
+		AVector<ACell> newGlobals=globals.assoc(GLOBAL_FEES,newFees);
+		if (newGlobals == globals) return this;
+		if (access!=null) access.write(StateAccess.FEES);
+		return new State(accounts, peers, newGlobals, schedule, access);
 	}
 
 
@@ -735,6 +805,7 @@ public class State extends ARecord {
 	 * @return Updated state
 	 */
 	public State withPeer(AccountKey peerKey, PeerStatus updatedPeer) {
+		if (access!=null) access.read(StateAccess.PEERS);
 		return withPeers(peers.assoc(peerKey, updatedPeer));
 	}
 
@@ -745,6 +816,7 @@ public class State extends ARecord {
 	 * @return Next address available
 	 */
 	public Address nextAddress() {
+		if (access!=null) access.read(StateAccess.COUNT);
 		return Address.create(accounts.count());
 	}
 
@@ -764,6 +836,10 @@ public class State extends ARecord {
 	 * @return Vector of global values
 	 */
 	public AVector<ACell> getGlobals() {
+		if (access!=null) {
+			access.read(StateAccess.GLOBALS);
+			access.read(StateAccess.FEES);
+		}
 		return globals;
 	}
 
@@ -775,6 +851,75 @@ public class State extends ARecord {
 	public State withTimestamp(long timestamp) {
 		return withGlobals(globals.assoc(GLOBAL_TIMESTAMP, CVMLong.create(timestamp)));
 	}
+
+	/**
+	 * Gets this State for use as a CVM value. Any access tracking in progress treats
+	 * the whole State as read, since CVM code may inspect any part of it.
+	 *
+	 * @return This State
+	 */
+	public State asValue() {
+		if (access!=null) access.readAll=true;
+		return this;
+	}
+
+	/**
+	 * Gets a copy of this State which records accesses in the given tracker
+	 * @param newAccess Tracker for accesses, or null to stop tracking
+	 * @return State with the given tracker
+	 */
+	State withAccess(StateAccess newAccess) {
+		if (access==newAccess) return this;
+		return new State(accounts, peers, globals, schedule, newAccess);
+	}
+
+	/**
+	 * Applies the writes recorded for a speculative execution to this State. Values
+	 * written are taken from the final State of the speculative execution.
+	 *
+	 * @param source Final State of the speculative execution
+	 * @param written Tracker containing the writes
+	 * @return Updated State
+	 */
+	State applyWrites(State source, StateAccess written) {
+		AVector<AccountStatus> newAccounts=accounts;
+		AVector<ACell> newGlobals=globals;
+		BlobMap<AccountKey, PeerStatus> newPeers=peers;
+		BlobMap<ABlob, AVector<ACell>> newSchedule=schedule;
+
+		long[] ixs=new long[written.writes.size()];
+		int n=0;
+		for (Long k: written.writes) {
+			long key=k;
+			if (key>=0) {
+				ixs[n++]=key;
+			} else if (key==StateAccess.PEERS) {
+				newPeers=source.peers;
+			} else if (key==StateAccess.SCHEDULE) {
+				newSchedule=source.schedule;
+			} else if (key==StateAccess.GLOBALS) {
+				newGlobals=newGlobals.assoc(GLOBAL_TIMESTAMP, source.globals.get(GLOBAL_TIMESTAMP));
+				newGlobals=newGlobals.assoc(GLOBAL_JUICE_PRICE, source.globals.get(GLOBAL_JUICE_PRICE));
+			} else if (key==StateAccess.FEES) {
+				newGlobals=newGlobals.assoc(GLOBAL_FEES, source.globals.get(GLOBAL_FEES));
+			}
+		}
+
+		// ascending order, so that any new accounts are appended in sequence
+		Arrays.sort(ixs,0,n);
+		long sourceCount=source.accounts.count();
+		for (int i=0; i<n; i++) {
+			long ix=ixs[i];
+			if (ix>=sourceCount) break; // rolled back, never created
+			AccountStatus as=source.accounts.get(ix);
+			if (ix==newAccounts.count()) {
+				newAccounts=newAccounts.conj(as);
+			} else {
+				newAccounts=newAccounts.assoc(ix, as);
+			}
+		}
+		return new State(newAccounts, newPeers, newGlobals, newSchedule, access);
+	}
 	
 	@Override 
 	public boolean equals(AMap<Keyword,ACell> a) {
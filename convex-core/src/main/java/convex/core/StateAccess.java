@@ -0,0 +1,96 @@
+package convex.core;
+
+import java.util.HashSet;
+
+/**
+ * Records the parts of a State read and written while executing a transaction.
+ *
+ * Accounts are identified by their index. Other parts of the State are identified by
+ * the negative keys defined below. A tracker is attached to a State with State.withAccess(...)
+ * and carried over to every State derived from it, so it sees all accesses made by the CVM.
+ *
+ * Not thread safe: a tracker should only be used by one executing transaction.
+ */
+final class StateAccess {
+	/**
+	 * Number of accounts, i.e. the next Address to be allocated
+	 */
+	static final long COUNT=-1;
+
+	/**
+	 * Peer map
+	 */
+	static final long PEERS=-2;
+
+	/**
+	 * Timestamp and juice price globals
+	 */
+	static final long GLOBALS=-3;
+
+	/**
+	 * Accumulated fees global
+	 */
+	static final long FEES=-4;
+
+	/**
+	 * Schedule map
+	 */
+	static final long SCHEDULE=-5;
+
+	final HashSet<Long> reads=new HashSet<>();
+	final HashSet<Long> writes=new HashSet<>();
+
+	/**
+	 * Set if the whole State may have been read, e.g. when exposed as a CVM value
+	 */
+	boolean readAll=false;
+
+	/**
+	 * Set if the State was changed in a way that can't be described by individual keys
+	 */
+	boolean writeAll=false;
+
+	void read(long key) {
+		reads.add(key);
+	}
+
+	void write(long key) {
+		writes.add(key);
+	}
+
+	void readAccount(long ix, long count) {
+		if ((ix<0)||(ix>=count)) {
+			// existence of the account depends on the account count
+			reads.add(COUNT);
+		} else {
+			reads.add(ix);
+		}
+	}
+
+	/**
+	 * Adds all writes recorded in another tracker to this one
+	 * @param other Tracker to merge writes from
+	 */
+	void addWrites(StateAccess other) {
+		writes.addAll(other.writes);
+		writeAll|=other.writeAll;
+	}
+
+	/**
+	 * Checks if anything read or written by this tracker was written in another tracker
+	 * @param written Tracker containing writes
+	 * @return true if there is a conflict, false if the accesses are independent
+	 */
+	boolean conflictsWith(StateAccess written) {
+		if (readAll||writeAll||written.writeAll) return true;
+		HashSet<Long> ws=written.writes;
+		if (ws.isEmpty()) return false;
+		for (Long k: reads) {
+			if (ws.contains(k)) return true;
+		}
+		for (Long k: writes) {
+			if (ws.contains(k)) return true;
+		}
+		return false;
+	}
+}
@@ -0,0 +1,63 @@
+package convex.core;
+
+import java.util.Arrays;
+
+/**
+ * Append-only index of State timestamps, in State order.
+ *
+ * Allows a Peer to find historical States by timestamp without loading them from the store.
+ * Uses a primitive array, so the memory cost is 8 bytes per State.
+ *
+ * An index is shared by all Peers derived from the same initial Peer, which agree on their
+ * consensus history. Each Peer only searches the entries up to its own State count.
+ */
+final class StateIndex {
+
+	private long[] timestamps=new long[16];
+	private int count=0;
+
+	/**
+	 * Gets the number of States in this index
+	 * @return Number of indexed States
+	 */
+	synchronized long count() {
+		return count;
+	}
+
+	/**
+	 * Adds the next State to this index
+	 * @param state State to add
+	 */
+	synchronized void add(State state) {
+		if (count==timestamps.length) {
+			int newLength=count*2;
+			timestamps=Arrays.copyOf(timestamps, newLength);
+		}
+		timestamps[count]=state.getTimeStamp().longValue();
+		count++;
+	}
+
+	/**
+	 * Finds the position of the State as of a given timestamp, with the same semantics as
+	 * Utils.stateAsOf: the leftmost State with exactly the given timestamp if there is one,
+	 * otherwise the last State before the timestamp.
+	 *
+	 * @param timestamp Timestamp to search for
+	 * @param limit Number of leading entries to search
+	 * @return Position of State, or -1 if all States are later than the timestamp
+	 */
+	synchronized long find(long timestamp, long limit) {
+		int min=0;
+		int max=(int)Math.min(limit, count);
+		while (min<max) {
+			int mid=(min+max)>>>1;
+			if (timestamps[mid]<timestamp) {
+				min=mid+1;
+			} else {
+				max=mid;
+			}
+		}
+		if ((min<limit)&&(min<count)&&(timestamps[min]==timestamp)) return min;
+		return min-1;
+	}
+}
@@ -1,6 +1,7 @@
 package convex.core.crypto;
 
 import java.nio.ByteBuffer;
+import java.util.stream.IntStream;
 
 import convex.core.data.ABlob;
 import convex.core.data.ACell;
@@ -22,6 +23,34 @@ public abstract class ASignature extends ACell {
 	 * @return True if signature is valid, false otherwise
 	 */
 	public abstract boolean verify(ABlob message, AccountKey publicKey);
+
+	/**
+	 * Minimum batch size for which verification is split across multiple threads
+	 */
+	private static final int PARALLEL_BATCH_THRESHOLD=16;
+
+	/**
+	 * Verifies a batch of signatures. Each index in the arrays specifies one
+	 * (message, public key, signature) triple to check.
+	 *
+	 * Large batches are verified in parallel, so the cost of checking e.g. all the
+	 * Orders in a Belief is spread across available processors. Each entry is
+	 * verified individually, so a bad signature never causes good entries to fail.
+	 *
+	 * @param messages Messages (usually hashes of signed values)
+	 * @param publicKeys Public keys of signers
+	 * @param signatures Signatures to verify
+	 * @return Array of results, true where the corresponding signature is valid
+	 */
+	public static boolean[] verifyBatch(ABlob[] messages, AccountKey[] publicKeys, ASignature[] signatures) {
+		int n=messages.length;
+		if ((publicKeys.length!=n)||(signatures.length!=n)) throw new IllegalArgumentException("Mismatched batch lengths");
+		boolean[] results=new boolean[n];
+		IntStream indexes=IntStream.range(0, n);
+		if (n>=PARALLEL_BATCH_THRESHOLD) indexes=indexes.parallel();
+		indexes.forEach(i->results[i]=signatures[i].verify(messages[i], publicKeys[i]));
+		return results;
+	}
 	
 	/**
 	 * Reads a Signature from the given ByteBuffer. Assumes tag byte already read.
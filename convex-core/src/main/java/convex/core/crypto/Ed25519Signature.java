@@ -2,6 +2,7 @@ package convex.core.crypto;
 
 import java.nio.ByteBuffer;
 
+import convex.core.data.AArrayBlob;
 import convex.core.data.ABlob;
 import convex.core.data.ACell;
 import convex.core.data.AccountKey;
@@ -93,9 +94,21 @@ public class Ed25519Signature extends ASignature {
 	
 	@Override
 	public boolean verify(ABlob message, AccountKey publicKey) {
-	    boolean verified = Providers.SODIUM_SIGN.cryptoSignVerifyDetached(signatureBytes, message.getBytes(), (int)message.count(), publicKey.getBytes());
+	    boolean verified = Providers.SODIUM_SIGN.cryptoSignVerifyDetached(signatureBytes, directBytes(message), (int)message.count(), directBytes(publicKey));
 	    return verified;
 	}
+
+	/**
+	 * Gets a byte array starting with the content of a Blob, avoiding a copy
+	 * where the Blob is backed by an array at offset zero (e.g. Hashes and keys)
+	 */
+	private static byte[] directBytes(ABlob b) {
+		if (b instanceof AArrayBlob) {
+			AArrayBlob ab=(AArrayBlob)b;
+			if (ab.getInternalOffset()==0) return ab.getInternalArray();
+		}
+		return b.getBytes();
+	}
 	
 //	private boolean verify(Hash hash, PublicKey publicKey) {
 //		try {
@@ -0,0 +1,95 @@
+package convex.core.crypto;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import convex.core.Constants;
+import convex.core.data.Hash;
+
+/**
+ * Process-wide cache of signatures that have already been successfully verified.
+ *
+ * Entries are keyed by the hash of the SignedData encoding, which covers the public key,
+ * the signature and the hash of the signed value. A hit is therefore exactly as good as
+ * repeating the verification, regardless of which SignedData instance or Ref is being checked.
+ *
+ * The cache is a fixed size, direct-mapped table: a new entry simply replaces any entry in
+ * the same slot. Lookups and updates are lock-free, so the cache can be shared by all threads.
+ */
+public final class SignatureCache {
+
+	private static final int SIZE=Constants.SIGNATURE_CACHE_SIZE;
+	private static final int MASK=SIZE-1;
+
+	private static final AtomicReferenceArray<Hash> entries=new AtomicReferenceArray<>(SIZE);
+
+	private static final LongAdder hits=new LongAdder();
+	private static final LongAdder misses=new LongAdder();
+
+	private SignatureCache() {
+	}
+
+	/**
+	 * Checks if a signature has already been verified
+	 * @param signedHash Hash of the SignedData encoding
+	 * @return true if known to be valid, false if not in cache
+	 */
+	public static boolean isVerified(Hash signedHash) {
+		Hash h=entries.get(slot(signedHash));
+		if ((h!=null)&&h.equals(signedHash)) {
+			hits.increment();
+			return true;
+		}
+		misses.increment();
+		return false;
+	}
+
+	/**
+	 * Records a successfully verified signature. SECURITY: must only be called after
+	 * the signature has been verified.
+	 * @param signedHash Hash of the SignedData encoding
+	 */
+	public static void markVerified(Hash signedHash) {
+		entries.lazySet(slot(signedHash), signedHash);
+	}
+
+	private static int slot(Hash signedHash) {
+		// hashes are uniformly random, so any bits will do
+		return signedHash.firstInt()&MASK;
+	}
+
+	/**
+	 * Removes all entries from the cache. Counters are retained.
+	 */
+	public static void clear() {
+		for (int i=0; i<SIZE; i++) {
+			entries.set(i, null);
+		}
+	}
+
+	/**
+	 * Gets the number of lookups which found a verified signature
+	 * @return Hit count
+	 */
+	public static long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Gets the number of lookups which did not find a verified signature
+	 * @return Miss count
+	 */
+	public static long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Gets the proportion of lookups which found a verified signature
+	 * @return Hit rate between 0.0 and 1.0, or 0.0 if there have been no lookups
+	 */
+	public static double getHitRate() {
+		long h=getHits();
+		long total=h+getMisses();
+		return (total==0)?0.0:((double)h)/total;
+	}
+}
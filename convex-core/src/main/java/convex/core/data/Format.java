@@ -232,7 +232,23 @@ public class Format {
 	 *                            message length
 	 */
 	public static int peekMessageLength(ByteBuffer bb) throws BadFormatException {
-		int len = bb.get(0);
+		return peekMessageLength(bb, 0);
+	}
+
+	/**
+	 * Peeks for a VLC encoded message length at the given index of a ByteBuffer. The
+	 * second byte is only read if the first byte indicates a 2 byte length.
+	 * 
+	 * Does not move the buffer position.
+	 * 
+	 * @param bb ByteBuffer containing a message length
+	 * @param pos Index of message length in buffer
+	 * @return The message length
+	 * @throws BadFormatException If the ByteBuffer does not contain a valid
+	 *                            message length at the given index
+	 */
+	public static int peekMessageLength(ByteBuffer bb, int pos) throws BadFormatException {
+		int len = bb.get(pos);
 
 		// Zero message length not allowed
 		if (len == 0) {
@@ -252,7 +268,7 @@ public class Format {
 			return len & 0x3F;
 		}
 
-		int lsb = bb.get(1);
+		int lsb = bb.get(pos + 1);
 		if ((lsb & 0x80) != 0) {
 			String hex = Utils.toHexString((byte) len) + Utils.toHexString((byte) lsb);
 			throw new BadFormatException(
@@ -22,6 +22,12 @@ public class Keywords {
 
 	public static final Keyword STORE = Keyword.create("store");
 	public static final Keyword RESTORE = Keyword.create("restore");
+	public static final Keyword CACHE_SIZE = Keyword.create("cache-size");
+	public static final Keyword STATE_RETENTION = Keyword.create("state-retention");
+	public static final Keyword SELECTOR_THREADS = Keyword.create("selector-threads");
+	public static final Keyword DURABILITY = Keyword.create("durability");
+	public static final Keyword COMMIT_INTERVAL = Keyword.create("commit-interval");
+	public static final Keyword GC_INTERVAL = Keyword.create("gc-interval");
 
 	// for testing and suchlike
 	public static final Keyword FOO = Keyword.create("foo");
@@ -88,4 +94,9 @@ public class Keywords {
 	public static final Keyword TIMEOUT = Keyword.create("timeout");
 	public static final Keyword EVENT_HOOK = Keyword.create("event-hook");
 	public static final Keyword STATIC = Keyword.create("static");
+
+	// connection capabilities
+	public static final Keyword CAPABILITIES = Keyword.create("capabilities");
+	public static final Keyword DATA_BATCH = Keyword.create("data-batch");
+	public static final Keyword MISSING_DATA_BATCH = Keyword.create("missing-data-batch");
 }
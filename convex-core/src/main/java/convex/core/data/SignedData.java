@@ -1,10 +1,14 @@
 package convex.core.data;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 
 import convex.core.crypto.AKeyPair;
 import convex.core.crypto.ASignature;
 import convex.core.crypto.Ed25519Signature;
+import convex.core.crypto.SignatureCache;
 import convex.core.exceptions.BadFormatException;
 import convex.core.exceptions.BadSignatureException;
 import convex.core.exceptions.InvalidDataException;
@@ -185,7 +189,8 @@ public class SignedData<T extends ACell> extends ACell {
 	}
 
 	/**
-	 * Validates the signature in this SignedData instance. Caches result
+	 * Validates the signature in this SignedData instance. Caches result, and also
+	 * records successful verification in the process-wide SignatureCache
 	 *
 	 * @return true if valid, false otherwise
 	 */
@@ -195,10 +200,18 @@ public class SignedData<T extends ACell> extends ACell {
 		if ((flags&Ref.BAD_MASK)!=0) return false;
 		if ((flags&Ref.VERIFIED_MASK)!=0) return true;
 
+		// check process-wide cache, may have been verified via a different instance
+		Hash signedHash=getHash();
+		if (SignatureCache.isVerified(signedHash)) {
+			markValidated();
+			return true;
+		}
+
 		Hash hash=valueRef.getHash();
 		boolean check = signature.verify(hash, publicKey);
 
 		if (check) {
+			SignatureCache.markVerified(signedHash);
 			markValidated();
 		} else {
 			markBadSignature();
@@ -207,7 +220,67 @@ public class SignedData<T extends ACell> extends ACell {
 	}
 	
 	/**
-	 * Checks if the signature has already gone through verification. MAy or may 
+	 * Validates the signatures of a collection of SignedData instances as a batch. Caches
+	 * results in each instance, so subsequent calls to checkSignature() are cheap. Instances
+	 * already checked or present in the SignatureCache are skipped, and duplicates are only
+	 * verified once.
+	 *
+	 * @param items SignedData instances to check. May contain nulls, which are ignored
+	 * @return true if all signatures are valid, false otherwise
+	 */
+	public static boolean checkSignatures(Collection<? extends SignedData<?>> items) {
+		ArrayList<SignedData<?>> unchecked=new ArrayList<>();
+		HashMap<Hash,Integer> index=new HashMap<>();
+		ArrayList<SignedData<?>> batch=new ArrayList<>();
+		boolean allValid=true;
+		for (SignedData<?> sd: items) {
+			if (sd==null) continue;
+			if (sd.isSignatureChecked()) {
+				allValid&=sd.checkSignature();
+				continue;
+			}
+			Hash h=sd.getHash();
+			if (SignatureCache.isVerified(h)) {
+				sd.markValidated();
+				continue;
+			}
+			unchecked.add(sd);
+			if (!index.containsKey(h)) {
+				index.put(h, batch.size());
+				batch.add(sd);
+			}
+		}
+		if (unchecked.isEmpty()) return allValid;
+
+		int n=batch.size();
+		ABlob[] messages=new ABlob[n];
+		AccountKey[] keys=new AccountKey[n];
+		ASignature[] sigs=new ASignature[n];
+		for (int i=0; i<n; i++) {
+			SignedData<?> sd=batch.get(i);
+			messages[i]=sd.valueRef.getHash();
+			keys[i]=sd.publicKey;
+			sigs[i]=sd.signature;
+		}
+		boolean[] results=ASignature.verifyBatch(messages, keys, sigs);
+		for (int i=0; i<n; i++) {
+			if (results[i]) SignatureCache.markVerified(batch.get(i).getHash());
+		}
+
+		for (SignedData<?> sd: unchecked) {
+			boolean check=results[index.get(sd.getHash())];
+			if (check) {
+				sd.markValidated();
+			} else {
+				sd.markBadSignature();
+				allValid=false;
+			}
+		}
+		return allValid;
+	}
+
+	/**
+	 * Checks if the signature has already gone through verification. MAy or may
 	 * not be a valid signature.
 	 *
 	 * @return true if valid, false otherwise
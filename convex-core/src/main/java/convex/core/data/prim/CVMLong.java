@@ -14,15 +14,19 @@ import convex.core.exceptions.InvalidDataException;
  */
 public final class CVMLong extends APrimitive implements INumeric {
 
-	private static final int CACHE_SIZE = 256;
-	private static final CVMLong[] CACHE= new CVMLong[CACHE_SIZE];
+	/**
+	 * Range of cached values. Covers common small counts, indexes and loop counters.
+	 */
+	private static final int CACHE_MIN = -128;
+	private static final int CACHE_MAX = 1024;
+	private static final CVMLong[] CACHE= new CVMLong[CACHE_MAX-CACHE_MIN];
 
 	static {
-		for (int i=0; i<256; i++) {
-			CACHE[i]=new CVMLong(i);
+		for (int i=CACHE_MIN; i<CACHE_MAX; i++) {
+			CACHE[i-CACHE_MIN]=new CVMLong(i);
 		}
-		ZERO=CACHE[0];
-		ONE=CACHE[1];
+		ZERO=CACHE[-CACHE_MIN];
+		ONE=CACHE[1-CACHE_MIN];
 	}
 	
 	public static final CVMLong ZERO;
@@ -38,8 +42,8 @@ public final class CVMLong extends APrimitive implements INumeric {
 	}
 
 	public static CVMLong create(long value) {
-		if ((value<CACHE_SIZE)&&(value>=0)) {
-			return CACHE[(int)value];
+		if ((value<CACHE_MAX)&&(value>=CACHE_MIN)) {
+			return CACHE[(int)value-CACHE_MIN];
 		}
 		return new CVMLong(value);
 	}
@@ -0,0 +1,353 @@
+package convex.core.init;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import convex.core.Constants;
+import convex.core.State;
+import convex.core.data.ACell;
+import convex.core.data.AVector;
+import convex.core.data.AccountKey;
+import convex.core.data.Blob;
+import convex.core.data.Format;
+import convex.core.data.Hash;
+import convex.core.data.Ref;
+import convex.core.data.Strings;
+import convex.core.data.Vectors;
+import convex.core.exceptions.BadFormatException;
+import convex.core.exceptions.MissingDataException;
+import convex.core.lang.Compiler;
+import convex.core.lang.Context;
+import convex.core.lang.Core;
+import convex.core.store.AStore;
+import convex.core.store.Stores;
+import convex.core.util.Utils;
+
+/**
+ * Cache of genesis States, to avoid deploying all the standard libraries each time a
+ * Peer, local network or test starts.
+ *
+ * States are cached by a key computed from the genesis keys, the code version, the bytecode
+ * of the classes that evaluate genesis code, the library sources and the core environment,
+ * so any change to these gives a different key. Recently
+ * used States are kept in memory. If a cache directory is set, States are also written there
+ * as snapshot files containing the encodings of all their cells, so that later processes can
+ * reload them without evaluating any code.
+ *
+ * When a snapshot is loaded its cells are written to the current store and the State is read
+ * back lazily through RefSoft. Loaded States are checked for the same invariants as
+ * Init.createState(...) guarantees: total funds equal to the maximum supply, and a peer for
+ * every genesis key.
+ *
+ * The directory defaults to the value of the system property "convex.genesis.cache", and
+ * snapshots are disabled if this is not set.
+ */
+public class GenesisCache {
+
+	private static final Logger log = LoggerFactory.getLogger(GenesisCache.class.getName());
+
+	/**
+	 * Maximum number of States kept in memory
+	 */
+	private static final int MAX_STATES=8;
+
+	private static final String SNAPSHOT_EXTENSION=".genesis";
+
+	/**
+	 * Classes whose code determines the result of evaluating genesis code, included in the
+	 * cache key by bytecode hash so that development builds without a version still get a
+	 * new key when these change
+	 */
+	private static final Class<?>[] CODE_CLASSES={Init.class, Compiler.class, Context.class};
+
+	/**
+	 * Recently used States by cache key, in access order. Guarded by the class lock.
+	 */
+	private static final LinkedHashMap<Hash,State> states=new LinkedHashMap<>(16,0.75f,true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Hash,State> eldest) {
+			return size()>MAX_STATES;
+		}
+	};
+
+	private static volatile File directory=initialDirectory();
+
+	private static File initialDirectory() {
+		String dir=System.getProperty("convex.genesis.cache");
+		if ((dir==null)||dir.isBlank()) return null;
+		return new File(dir);
+	}
+
+	private GenesisCache() {
+	}
+
+	/**
+	 * Gets the genesis State for the given keys, as created by Init.createState(...). Uses
+	 * a cached State or snapshot if available, otherwise creates and caches a new State.
+	 *
+	 * @param genesisKeys Keys for genesis users and peers
+	 * @return Genesis State
+	 */
+	public static State getState(List<AccountKey> genesisKeys) {
+		Hash key=computeKey(genesisKeys);
+		synchronized (GenesisCache.class) {
+			State s=states.get(key);
+			if (s!=null) return s;
+		}
+
+		State s=null;
+		File file=getSnapshotFile(key);
+		if ((file!=null)&&file.exists()) {
+			try {
+				s=readSnapshot(file,key);
+				if (s!=null) checkState(s,genesisKeys);
+			} catch (IOException|BadFormatException|MissingDataException e) {
+				s=null;
+				log.warn("Unable to load genesis snapshot {}: {}",file,e.getMessage());
+			}
+		}
+
+		if (s==null) {
+			s=Init.createState(genesisKeys);
+			if (file!=null) {
+				try {
+					writeSnapshot(file,key,s);
+				} catch (IOException e) {
+					log.warn("Unable to save genesis snapshot {}: {}",file,e.getMessage());
+				}
+			}
+		}
+
+		synchronized (GenesisCache.class) {
+			states.put(key, s);
+		}
+		return s;
+	}
+
+	/**
+	 * Computes the cache key for a genesis State. The key depends on the genesis keys, the
+	 * code version and bytecode, the sources of all deployed libraries and the core environment.
+	 *
+	 * @param genesisKeys Keys for genesis users and peers
+	 * @return Cache key
+	 */
+	public static Hash computeKey(List<AccountKey> genesisKeys) {
+		String version=codeVersion();
+		AVector<ACell> sources=Vectors.empty();
+		sources=sources.conj(resourceHash(Init.REGISTRY_LIBRARY));
+		sources=sources.conj(resourceHash(Init.TRUST_LIBRARY));
+		for (String resource: Init.STANDARD_LIBRARIES) {
+			sources=sources.conj(resourceHash(resource));
+		}
+		sources=sources.conj(resourceHash(Init.CURRENCIES));
+
+		AVector<ACell> key=Vectors.of(
+				Strings.create(version),
+				codeHashes(),
+				Vectors.create(genesisKeys),
+				sources,
+				Core.ENVIRONMENT.getHash(),
+				Core.METADATA.getHash(),
+				Constants.INITIAL_GLOBALS.getHash());
+		return key.getHash();
+	}
+
+	/**
+	 * Gets a string identifying the version of the code. Uses the implementation version if
+	 * available, otherwise the size and modification time of the jar file containing the code.
+	 */
+	private static String codeVersion() {
+		String version=Init.class.getPackage().getImplementationVersion();
+		if (version!=null) return version;
+		try {
+			File f=new File(Init.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+			if (f.isFile()) return f.getName()+":"+f.length()+":"+f.lastModified();
+		} catch (Exception e) {
+			// fall through
+		}
+		return "dev";
+	}
+
+	/**
+	 * Gets hashes of the bytecode of all classes in CODE_CLASSES
+	 */
+	private static AVector<ACell> codeHashes() {
+		AVector<ACell> hashes=Vectors.empty();
+		for (Class<?> c: CODE_CLASSES) {
+			try (InputStream in=c.getResourceAsStream(c.getSimpleName()+".class")) {
+				if (in==null) throw new IOException("Class file not found for "+c.getName());
+				hashes=hashes.conj(Blob.wrap(in.readAllBytes()).getContentHash());
+			} catch (IOException e) {
+				throw Utils.sneakyThrow(e);
+			}
+		}
+		return hashes;
+	}
+
+	/**
+	 * Checks that a State loaded from a snapshot has the invariants of a genesis State
+	 * for the given keys.
+	 *
+	 * @param s State to check
+	 * @param genesisKeys Keys for genesis users and peers
+	 * @throws BadFormatException If the State is not a valid genesis State
+	 */
+	static void checkState(State s, List<AccountKey> genesisKeys) throws BadFormatException {
+		long total=s.computeTotalFunds();
+		if (total!=Constants.MAX_SUPPLY) throw new BadFormatException("Genesis snapshot has bad total funds: "+total);
+		for (AccountKey key: genesisKeys) {
+			if (s.getPeer(key)==null) throw new BadFormatException("Genesis snapshot missing peer: "+key);
+		}
+	}
+
+	private static Hash resourceHash(String path) {
+		try {
+			return Strings.create(Utils.readResourceAsString(path)).getHash();
+		} catch (IOException e) {
+			throw Utils.sneakyThrow(e);
+		}
+	}
+
+	/**
+	 * Gets the directory used for genesis snapshots
+	 * @return Snapshot directory, or null if snapshots are disabled
+	 */
+	public static File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Sets the directory used for genesis snapshots. The directory is created if necessary
+	 * when the first snapshot is written.
+	 * @param dir Snapshot directory, or null to disable snapshots
+	 */
+	public static void setDirectory(File dir) {
+		directory=dir;
+	}
+
+	private static File getSnapshotFile(Hash key) {
+		File dir=directory;
+		if (dir==null) return null;
+		return new File(dir,key.toHexString()+SNAPSHOT_EXTENSION);
+	}
+
+	/**
+	 * Removes all States cached in memory. Snapshot files are retained.
+	 */
+	public static synchronized void clear() {
+		states.clear();
+	}
+
+	/**
+	 * Writes a snapshot of a State. The snapshot contains the cache key, the State hash and
+	 * the encodings of all branch cells in the State, with children before parents.
+	 *
+	 * @param file File to write. Replaced atomically if it already exists.
+	 * @param key Cache key for State
+	 * @param state State to write
+	 * @throws IOException If an IO error occurs
+	 */
+	public static void writeSnapshot(File file, Hash key, State state) throws IOException {
+		ArrayList<ACell> cells=new ArrayList<>();
+		collectCells(state,new HashSet<>(),cells);
+		cells.add(state);
+
+		File dir=file.getAbsoluteFile().getParentFile();
+		dir.mkdirs();
+		File temp=File.createTempFile("genesis", ".tmp", dir);
+		try {
+			try (DataOutputStream out=new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+				out.write(key.getBytes());
+				out.write(state.getHash().getBytes());
+				out.writeInt(cells.size());
+				for (ACell cell: cells) {
+					Blob enc=cell.getEncoding().toBlob();
+					out.writeInt((int)enc.count());
+					out.write(enc.getBytes());
+				}
+			}
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			temp.delete();
+		}
+		log.debug("Saved genesis snapshot {} with {} cells",file,cells.size());
+	}
+
+	/**
+	 * Collects all non-embedded cells reachable from a cell, with children before parents
+	 */
+	private static void collectCells(ACell cell, HashSet<Hash> seen, ArrayList<ACell> cells) {
+		int n=cell.getRefCount();
+		for (int i=0; i<n; i++) {
+			Ref<ACell> ref=cell.getRef(i);
+			ACell child=ref.getValue();
+			if (child==null) continue;
+			boolean embedded=child.isEmbedded();
+			if (!embedded&&!seen.add(ref.getHash())) continue;
+			collectCells(child,seen,cells);
+			if (!embedded) cells.add(child);
+		}
+	}
+
+	/**
+	 * Reads a State from a snapshot file. Cells are written to the current store if not
+	 * already present, and the State is loaded lazily from the store.
+	 *
+	 * @param file Snapshot file
+	 * @param key Expected cache key
+	 * @return State from snapshot, or null if the snapshot is for a different key
+	 * @throws IOException If an IO error occurs
+	 * @throws BadFormatException If the snapshot is corrupt
+	 */
+	public static State readSnapshot(File file, Hash key) throws IOException, BadFormatException {
+		try (DataInputStream in=new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			Hash fileKey=readHash(in);
+			if (!fileKey.equals(key)) return null;
+			Hash hash=readHash(in);
+
+			AStore store=Stores.current();
+			Ref<ACell> existing=store.refForHash(hash);
+			if ((existing==null)||(existing.getStatus()<Ref.PERSISTED)) {
+				int n=in.readInt();
+				ArrayList<Ref<ACell>> refs=new ArrayList<>(n);
+				for (int i=0; i<n; i++) {
+					byte[] bs=new byte[in.readInt()];
+					in.readFully(bs);
+					ACell cell=Format.read(Blob.wrap(bs));
+					refs.add(cell.getRef());
+				}
+				store.storeTopRefs(refs, Ref.STORED, null);
+			}
+
+			Ref<ACell> rootRef=store.refForHash(hash);
+			ACell root=(rootRef==null)?null:rootRef.getValue();
+			if (!(root instanceof State)) throw new BadFormatException("Genesis snapshot does not contain a State");
+			return (State)root;
+		}
+	}
+
+	private static Hash readHash(DataInputStream in) throws IOException {
+		byte[] bs=new byte[Hash.LENGTH];
+		in.readFully(bs);
+		return Hash.wrap(bs);
+	}
+}
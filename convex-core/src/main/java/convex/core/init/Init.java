@@ -50,6 +50,23 @@ public class Init {
 	// Base for user-specified addresses
 	public static final Address GENESIS_ADDRESS = Address.create(11);
 
+	// Library sources deployed in the genesis State
+	static final String REGISTRY_LIBRARY = "convex/registry.cvx";
+	static final String TRUST_LIBRARY = "convex/trust.cvx";
+	static final String CURRENCIES = "torus/currencies.cvx";
+	static final String[] STANDARD_LIBRARIES = new String[] {
+			"convex/fungible.cvx",
+			"convex/trusted-oracle/actor.cvx",
+			"convex/trusted-oracle.cvx",
+			"convex/asset.cvx",
+			"torus/exchange.cvx",
+			"asset/nft/simple.cvx",
+			"asset/nft/tokens.cvx",
+			"asset/box/actor.cvx",
+			"asset/box.cvx",
+			"convex/play.cvx"
+	};
+
 
 	public static State createBaseState(List<AccountKey> genesisKeys) {
 		// accumulators for initial state maps
@@ -175,8 +192,8 @@ public class Init {
 
 		// At this point we have a raw initial state with no user or peer accounts
 
-		s = doActorDeploy(s, "convex/registry.cvx");
-		s = doActorDeploy(s, "convex/trust.cvx");
+		s = doActorDeploy(s, REGISTRY_LIBRARY);
+		s = doActorDeploy(s, TRUST_LIBRARY);
 
 		{ // Register core libraries now that registry exists
 			Context<?> ctx = Context.createFake(s, INIT_ADDRESS);
@@ -206,21 +223,14 @@ public class Init {
 
 			// ============================================================
 			// Standard library deployment
-			s = doActorDeploy(s, "convex/fungible.cvx");
-			s = doActorDeploy(s, "convex/trusted-oracle/actor.cvx");
-			s = doActorDeploy(s, "convex/trusted-oracle.cvx");
-			s = doActorDeploy(s, "convex/asset.cvx");
-			s = doActorDeploy(s, "torus/exchange.cvx");
-			s = doActorDeploy(s, "asset/nft/simple.cvx");
-			s = doActorDeploy(s, "asset/nft/tokens.cvx");
-			s = doActorDeploy(s, "asset/box/actor.cvx");
-			s = doActorDeploy(s, "asset/box.cvx");
-			s = doActorDeploy(s, "convex/play.cvx");
+			for (String resource: STANDARD_LIBRARIES) {
+				s = doActorDeploy(s, resource);
+			}
 
 			{ // Deploy Currencies
 				@SuppressWarnings("unchecked")
 				AVector<AVector<ACell>> table = (AVector<AVector<ACell>>) Reader
-						.readResourceAsData("torus/currencies.cvx");
+						.readResourceAsData(CURRENCIES);
 				for (AVector<ACell> row : table) {
 					s = doCurrencyDeploy(s, row);
 				}
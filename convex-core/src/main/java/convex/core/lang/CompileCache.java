@@ -0,0 +1,224 @@
+package convex.core.lang;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+import convex.core.Constants;
+import convex.core.State;
+import convex.core.data.ACell;
+import convex.core.data.AccountStatus;
+import convex.core.data.Address;
+import convex.core.data.Hash;
+import convex.core.init.Init;
+
+/**
+ * Process-wide cache of expanded and compiled forms.
+ *
+ * Entries are keyed by the hash of the form together with everything the expansion and
+ * compilation depend on: the Address, the hashes of the environment and metadata of that
+ * account and of the core account, and the starting depth. Any change to those environments
+ * gives a different key, so stale entries are never used and simply age out.
+ *
+ * Only expansions that use no expanders other than those defined in the core account are
+ * cached, since user defined macros may run arbitrary code. The juice consumed by the original
+ * expansion and compilation is recorded and charged again on each hit, so juice accounting is
+ * exactly the same as without the cache.
+ *
+ * The cache is bounded by total memory size of compiled ops, with least recently used entries
+ * evicted first.
+ */
+public final class CompileCache {
+
+	private static final long MAX_SIZE=Constants.COMPILE_CACHE_MEMORY;
+
+	private static final class Key {
+		private final Hash form;
+		private final Address address;
+		private final Hash env;
+		private final Hash meta;
+		private final Hash coreEnv;
+		private final Hash coreMeta;
+		private final int depth;
+
+		private Key(Hash form, Address address, AccountStatus as, AccountStatus core, int depth) {
+			this.form=form;
+			this.address=address;
+			this.env=hashOf(as.getEnvironment());
+			this.meta=hashOf(as.getMetadata());
+			this.coreEnv=hashOf(core.getEnvironment());
+			this.coreMeta=hashOf(core.getMetadata());
+			this.depth=depth;
+		}
+
+		private static Hash hashOf(ACell a) {
+			return (a==null)?null:a.getHash();
+		}
+
+		@Override
+		public int hashCode() {
+			return form.hashCode()+depth;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) return false;
+			Key k=(Key)o;
+			return (depth==k.depth)
+					&& form.equals(k.form)
+					&& address.equals(k.address)
+					&& Objects.equals(env,k.env)
+					&& Objects.equals(meta,k.meta)
+					&& Objects.equals(coreEnv,k.coreEnv)
+					&& Objects.equals(coreMeta,k.coreMeta);
+		}
+	}
+
+	private static final class Entry {
+		private final AOp<?> op;
+		private final long juice;
+		private final long size;
+
+		private Entry(AOp<?> op, long juice) {
+			this.op=op;
+			this.juice=juice;
+			this.size=op.getMemorySize();
+		}
+	}
+
+	/**
+	 * Entries in access order. Guarded by the class lock.
+	 */
+	private static final LinkedHashMap<Key,Entry> entries=new LinkedHashMap<>(16,0.75f,true);
+	private static long totalSize=0;
+
+	/**
+	 * Flag set if the expansion in progress on this thread can't be cached
+	 */
+	private static final ThreadLocal<boolean[]> uncacheable=ThreadLocal.withInitial(()->new boolean[1]);
+
+	private static final LongAdder hits=new LongAdder();
+	private static final LongAdder misses=new LongAdder();
+
+	private CompileCache() {
+	}
+
+	/**
+	 * Expands and compiles a form, using a cached result if available. Gives exactly the same
+	 * result and juice consumption as Context.expandCompile(...)
+	 *
+	 * @param <R> Return type of compiled op
+	 * @param ctx Context in which to expand and compile
+	 * @param form Form to expand and compile
+	 * @return Updated Context with compiled Op as result
+	 */
+	@SuppressWarnings("unchecked")
+	public static <R extends ACell> Context<AOp<R>> expandCompile(Context<?> ctx, ACell form) {
+		Key key=createKey(ctx,form);
+		if (key==null) return ctx.expandCompile(form);
+
+		Entry e;
+		synchronized (CompileCache.class) {
+			e=entries.get(key);
+		}
+		long juice=ctx.getJuice();
+		if ((e!=null)&&(e.juice<=juice)) {
+			hits.increment();
+			Context<AOp<R>> rctx=ctx.withJuice(juice-e.juice);
+			return rctx.withResult((AOp<R>)e.op);
+		}
+		misses.increment();
+
+		boolean[] flag=uncacheable.get();
+		boolean saved=flag[0];
+		flag[0]=false;
+		Context<AOp<R>> rctx;
+		try {
+			State state=ctx.getState();
+			Object log=ctx.getLog();
+			rctx=ctx.expandCompile(form);
+			if (!flag[0]&&!rctx.isExceptional()&&(rctx.getState()==state)&&(rctx.getLog()==log)) {
+				put(key,new Entry(rctx.getResult(),juice-rctx.getJuice()));
+			}
+		} finally {
+			flag[0]|=saved;
+		}
+		return rctx;
+	}
+
+	private static Key createKey(Context<?> ctx, ACell form) {
+		if (form==null) return null;
+		if (ctx.getCompilerState()!=null) return null;
+		Address address=ctx.getAddress();
+		if (address==null) return null;
+		State state=ctx.getState();
+		AccountStatus as=state.getAccount(address);
+		AccountStatus core=state.getAccount(Init.CORE_ADDRESS);
+		if ((as==null)||(core==null)) return null;
+		return new Key(form.getHash(),address,as,core,ctx.getDepth());
+	}
+
+	private static synchronized void put(Key key, Entry e) {
+		if (e.size>MAX_SIZE) return;
+		Entry old=entries.put(key, e);
+		if (old!=null) totalSize-=old.size;
+		totalSize+=e.size;
+		Iterator<Map.Entry<Key,Entry>> it=entries.entrySet().iterator();
+		while ((totalSize>MAX_SIZE)&&it.hasNext()) {
+			totalSize-=it.next().getValue().size;
+			it.remove();
+		}
+	}
+
+	/**
+	 * Marks the expansion in progress on the current thread as not cacheable, e.g. because
+	 * it has invoked a user defined expander
+	 */
+	static void markUncacheable() {
+		uncacheable.get()[0]=true;
+	}
+
+	/**
+	 * Removes all entries from the cache. Counters are retained.
+	 */
+	public static synchronized void clear() {
+		entries.clear();
+		totalSize=0;
+	}
+
+	/**
+	 * Gets the number of entries in the cache
+	 * @return Number of entries
+	 */
+	public static synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Gets the number of lookups which found a compiled op
+	 * @return Hit count
+	 */
+	public static long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Gets the number of lookups which did not find a compiled op
+	 * @return Miss count
+	 */
+	public static long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Gets the proportion of lookups which found a compiled op
+	 * @return Hit rate between 0.0 and 1.0, or 0.0 if there have been no lookups
+	 */
+	public static double getHitRate() {
+		long h=getHits();
+		long total=h+getMisses();
+		return (total==0)?0.0:((double)h)/total;
+	}
+}
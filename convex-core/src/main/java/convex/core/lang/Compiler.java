@@ -1,5 +1,6 @@
 package convex.core.lang;
 
+import java.util.HashSet;
 import java.util.Map;
 
 import convex.core.Constants;
@@ -280,7 +281,7 @@ public class Compiler {
 		// return a 'vector' call - note function arg is a constant, we don't want to
 		// lookup on the 'vector' symbol
 		Constant<ACell> fn = Constant.create(Core.VECTOR);
-		return (Context<T>) context.withResult(Juice.COMPILE_NODE, Invoke.create(fn, obs));
+		return (Context<T>) context.withResult(Juice.COMPILE_NODE, createInvoke(obs.cons(fn), context));
 	}
 
 	@SuppressWarnings("unchecked")
@@ -337,7 +338,7 @@ public class Compiler {
 			ASequence<AOp<ACell>> rSeq = (ASequence<AOp<ACell>>) context.getResult();
 
 			ACell fn = (seq instanceof AList) ? Core.LIST : Core.VECTOR;
-			AOp<T> inv = Invoke.create( Constant.create(fn), rSeq);
+			AOp<T> inv = createInvoke(rSeq.cons(Constant.create(fn)), context);
 			if (isSyntax) {
 				inv=wrapSyntaxBuilder(inv,(Syntax)aForm);
 			}
@@ -355,7 +356,7 @@ public class Compiler {
 			ASequence<AOp<ACell>> cSeq = (ASequence<AOp<ACell>>) context.getResult();
 
 			ACell fn = Core.HASHMAP;
-			AOp<T> inv = Invoke.create(Constant.create(fn), cSeq);
+			AOp<T> inv = createInvoke(cSeq.cons(Constant.create(fn)), context);
 			if (isSyntax) {
 				inv=wrapSyntaxBuilder(inv,(Syntax)aForm);
 			}
@@ -370,7 +371,7 @@ public class Compiler {
 			ASequence<AOp<ACell>> cSeq = (ASequence<AOp<ACell>>) context.getResult();
 
 			ACell fn = Core.HASHSET;
-			AOp<T> inv = Invoke.create(Constant.create(fn), cSeq);
+			AOp<T> inv = createInvoke(cSeq.cons(Constant.create(fn)), context);
 			if (isSyntax) {
 				inv=wrapSyntaxBuilder(inv,(Syntax)aForm);
 			}
@@ -506,11 +507,62 @@ public class Compiler {
 		// must be a regular function call
 		context = context.compileAll(list);
 		if (context.isExceptional()) return (Context<T>) context;
-		Invoke<R> op = Invoke.create((AVector<AOp<ACell>>) context.getResult());
+		AOp<R> op = createInvoke((AVector<AOp<ACell>>) context.getResult(),context);
 
 		return (Context<T>) context.withResult(Juice.COMPILE_NODE, op);
 	}
 
+	/**
+	 * Core functions used by the compiler to build data literals, which may be evaluated at
+	 * compile time if all arguments are constant.
+	 */
+	private static final HashSet<Symbol> LITERAL_FUNCTIONS=new HashSet<>(java.util.List.of(
+			Symbols.VECTOR, Symbols.LIST, Symbols.HASH_MAP, Symbols.HASH_SET));
+
+	/**
+	 * Creates an op to invoke a function. If the function is a Constant data literal builder
+	 * and all arguments are Constants, the result is computed at compile time and returned
+	 * as a Constant op, e.g. for the vector literal [1 2] or the quasiquoted form `(1 2).
+	 * 
+	 * Calls through core symbols such as (+ 1 2) are not folded, since core symbols compile to
+	 * dynamic Lookups that may be redefined before the code runs, even within the same form.
+	 * 
+	 * Folding changes the juice cost of constant literals to that of a single constant.
+	 * 
+	 * @param ops Ops for invocation, starting with the function op
+	 * @param context Compilation context
+	 * @return Op for invocation
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T extends ACell> AOp<T> createInvoke(ASequence<AOp<ACell>> ops, Context<?> context) {
+		AVector<AOp<ACell>> vops=ops.toVector();
+		AOp<T> folded=foldConstant(vops,context);
+		if (folded!=null) return folded;
+		return (AOp<T>) Invoke.create(vops);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T extends ACell> AOp<T> foldConstant(AVector<AOp<ACell>> ops, Context<?> context) {
+		AOp<ACell> fnOp=ops.get(0);
+		if (!(fnOp instanceof Constant)) return null;
+		ACell fn=((Constant<ACell>)fnOp).getValue();
+		if (!(fn instanceof CoreFn)) return null;
+		if (!LITERAL_FUNCTIONS.contains(((CoreFn<?>)fn).getSymbol())) return null;
+
+		int n=ops.size()-1;
+		ACell[] args=new ACell[n];
+		for (int i=0; i<n; i++) {
+			AOp<ACell> op=ops.get(i+1);
+			if (!(op instanceof Constant)) return null;
+			args[i]=((Constant<ACell>)op).getValue();
+		}
+		
+		// Computed in a fork, so no juice is consumed in the compilation context. Errors are
+		// left to happen at runtime.
+		Context<T> fctx=context.fork().invoke((CoreFn<T>)fn, args);
+		if (fctx.isExceptional()) return null;
+		return Constant.create(fctx.getResult());
+	}
 
 	@SuppressWarnings("unchecked")
 	private static <R extends ACell, T extends AOp<R>> Context<T> compileLet(ASequence<ACell> list, Context<?> context,
@@ -1,5 +1,7 @@
 package convex.core.lang;
 
+import java.util.Arrays;
+
 import convex.core.Constants;
 import convex.core.ErrorCodes;
 import convex.core.State;
@@ -80,6 +82,7 @@ public class Context<T extends ACell> extends AObject {
 	private static final AExceptional DEFAULT_EXCEPTION = null;
 	private static final long DEFAULT_OFFER = 0L;
 	public static final AVector<ACell> EMPTY_BINDINGS=Vectors.empty();
+	private static final ACell[] EMPTY_LOCALS=new ACell[0];
 	// private static final Logger log=Logger.getLogger(Context.class.getName());
 
 	/*
@@ -93,15 +96,36 @@ public class Context<T extends ACell> extends AObject {
 	private T result;
 	private AExceptional exception;
 	private int depth;
-	private AVector<ACell> localBindings;
 	private ChainState chainState;
 
+	/**
+	 * Stack of local binding values, mutated in place during execution. The current frame
+	 * is locals[localBase..localTop). A persistent snapshot is only created when required,
+	 * e.g. when a closure captures the lexical environment.
+	 */
+	private ACell[] locals=EMPTY_LOCALS;
+	private int localBase=0;
+	private int localTop=0;
+	private AVector<ACell> localSnapshot=EMPTY_BINDINGS;
+
+	/**
+	 * Journal of local values overwritten by set!, so that they can be restored on leaving a scope
+	 */
+	private int[] undoPositions;
+	private ACell[] undoValues;
+	private int undoCount=0;
+
 	/**
 	 * Local log is a [vector of [address values] entries]
 	 */
 	private AVector<AVector<ACell>> log;
 	private CompilerState compilerState;
 
+	/**
+	 * Profiler recording execution, or null if not profiling
+	 */
+	private Profiler profiler;
+
 
 	/**
 	 * Inner class compiler state.
@@ -216,10 +240,6 @@ public class Context<T extends ACell> extends AObject {
 			return withState(newState);
 		}
 
-		private ChainState withAccounts(AVector<AccountStatus> newAccounts) {
-			return withState(state.withAccounts(newAccounts));
-		}
-
 		public AHashMap<Symbol, AHashMap<ACell, ACell>> getMetadata() {
 			if (metadata==null) return Maps.empty();
 			return metadata;
@@ -228,10 +248,9 @@ public class Context<T extends ACell> extends AObject {
 
 	}
 
-	private Context(ChainState chainState, long juice, AVector<ACell> localBindings2, T result,int depth, AExceptional exception, AVector<AVector<ACell>> log, CompilerState comp) {
+	private Context(ChainState chainState, long juice, T result,int depth, AExceptional exception, AVector<AVector<ACell>> log, CompilerState comp) {
 		this.chainState=chainState;
 		this.juice=juice;
-		this.localBindings=localBindings2;
 		this.result=result;
 		this.depth=depth;
 		this.exception=exception;
@@ -242,7 +261,10 @@ public class Context<T extends ACell> extends AObject {
 	@SuppressWarnings("unchecked")
 	private static <T extends ACell> Context<T> create(ChainState cs, long juice, AVector<ACell> localBindings, ACell result, int depth,AVector<AVector<ACell>> log, CompilerState comp) {
 		if (juice<0) throw new IllegalArgumentException("Negative juice! "+juice);
-		return new Context<T>(cs,juice,localBindings,(T)result,depth,DEFAULT_EXCEPTION,log,comp);
+		Context<T> ctx=new Context<T>(cs,juice,(T)result,depth,DEFAULT_EXCEPTION,log,comp);
+		ctx.profiler=Profiler.getActive();
+		if (localBindings!=EMPTY_BINDINGS) ctx.withLocalBindings(localBindings);
+		return ctx;
 	}
 
 	private static <T extends ACell> Context<T> create(State state, long juice,AVector<ACell> localBindings, T result, int depth, Address origin,Address caller, Address address, long offer, AVector<AVector<ACell>> log, CompilerState comp) {
@@ -649,6 +671,34 @@ public class Context<T extends ACell> extends AObject {
 
 
 
+	/**
+	 * Gets the environment of the given Account. Uses the cached environment if the Address is
+	 * the current Address.
+	 * @param address Address of Account
+	 * @return Environment map, or null if the Account does not exist
+	 */
+	public AHashMap<Symbol,ACell> getEnvironment(Address address) {
+		if (address.equals(chainState.address)) {
+			// ChainState falls back to the core environment for a missing Account
+			AHashMap<Symbol,ACell> env=chainState.environment;
+			if ((env!=null)&&(env!=Core.ENVIRONMENT)) return env;
+		}
+		AccountStatus as=getAccountStatus(address);
+		if (as==null) return null;
+		return as.getEnvironment();
+	}
+
+	/**
+	 * Gets the environment used to resolve symbols not defined in the given environment.
+	 * @param env Environment map
+	 * @return Aliased environment map, or null if not available
+	 */
+	public AHashMap<Symbol,ACell> getAliasedEnvironment(AHashMap<Symbol,ACell> env) {
+		AccountStatus as=getAliasedAccount(env);
+		if (as==null) return null;
+		return as.getEnvironment();
+	}
+
 	private MapEntry<Symbol,ACell> lookupDynamicEntry(AccountStatus as,Symbol sym) {
 		// Get environment for Address, or default to initial environment
 		AHashMap<Symbol, ACell> env = (as==null)?Core.ENVIRONMENT:as.getEnvironment();
@@ -881,6 +931,22 @@ public class Context<T extends ACell> extends AObject {
 	 */
 	@SuppressWarnings("unchecked")
 	public <R extends ACell> Context<R> execute(AOp<R> op) {
+		if (profiler!=null) {
+			Profiler p=profiler;
+			Profiler.Frame f=p.enter(Profiler.OP, op.getClass().getSimpleName(), getAddress(), juice);
+			Context<R> rctx=null;
+			try {
+				rctx=executeOp(op);
+			} finally {
+				p.exit(f, (rctx==null)?juice:rctx.juice);
+			}
+			return rctx;
+		}
+		return executeOp(op);
+	}
+
+	@SuppressWarnings("unchecked")
+	private <R extends ACell> Context<R> executeOp(AOp<R> op) {
 		// execute op with adjusted depth
 		int savedDepth=getDepth();
 		Context<AOp<R>> ctx =this.withDepth(savedDepth+1);
@@ -941,6 +1007,22 @@ public class Context<T extends ACell> extends AObject {
 	 */
 	@SuppressWarnings("unchecked")
 	public <R extends ACell> Context<R> invoke(AFn<R> fn, ACell... args) {
+		if (profiler!=null) {
+			Profiler p=profiler;
+			Profiler.Frame f=p.enter(Profiler.FN, Profiler.fnName(fn), getAddress(), juice);
+			Context<R> rctx=null;
+			try {
+				rctx=invokeFn(fn,args);
+			} finally {
+				p.exit(f, (rctx==null)?juice:rctx.juice);
+			}
+			return rctx;
+		}
+		return invokeFn(fn,args);
+	}
+
+	@SuppressWarnings("unchecked")
+	private <R extends ACell> Context<R> invokeFn(AFn<R> fn, ACell... args) {
 		// Note: we don't adjust depth here because execute(...) does it for us in the function body
 		Context<R> ctx = fn.invoke((Context<ACell>) this,args);
 
@@ -1020,7 +1102,7 @@ public class Context<T extends ACell> extends AObject {
 			Symbol sym=(Symbol)bindingForm;
 			if (sym.equals(Symbols.UNDERSCORE)) return ctx;
 			// TODO: confirm must be an ACell at this point?
-			return withLocalBindings(localBindings.conj((ACell)args));
+			return pushLocal((ACell)args);
 		} else if (bindingForm instanceof AVector) {
 			AVector<ACell> v=(AVector<ACell>)bindingForm;
 			long vcount=v.count(); // count of binding form symbols (may include & etc.)
@@ -1085,8 +1167,18 @@ public class Context<T extends ACell> extends AObject {
 		sb.append("}");
 	}
 
+	/**
+	 * Gets the local bindings of the current frame as a persistent vector. The snapshot is
+	 * cached until the local bindings are next changed.
+	 * @return Vector of local binding values
+	 */
 	public AVector<ACell> getLocalBindings() {
-		return localBindings;
+		AVector<ACell> snapshot=localSnapshot;
+		if (snapshot==null) {
+			snapshot=Vectors.create(locals, localBase, localTop-localBase);
+			localSnapshot=snapshot;
+		}
+		return snapshot;
 	}
 
 	/**
@@ -1097,12 +1189,143 @@ public class Context<T extends ACell> extends AObject {
 	 */
 	@SuppressWarnings("unchecked")
 	public <R extends ACell> Context<R> withLocalBindings(AVector<ACell> newBindings) {
-		//if (localBindings==newBindings) return (Context<R>) this;
-		//return create(chainState,juice,newBindings,(R)result,depth);
-		localBindings=newBindings;
+		int n=Utils.checkedInt(newBindings.count());
+		ensureLocalCapacity(localBase+n);
+		for (int i=0; i<n; i++) {
+			locals[localBase+i]=newBindings.get(i);
+		}
+		if (localBase+n<localTop) Arrays.fill(locals, localBase+n, localTop, null);
+		localTop=localBase+n;
+		localSnapshot=newBindings;
 		return (Context<R>) this;
 	}
 
+	/**
+	 * Gets the number of local bindings in the current frame
+	 * @return Number of local bindings
+	 */
+	public int getLocalCount() {
+		return localTop-localBase;
+	}
+
+	/**
+	 * Gets a local binding value from the current frame. Position must be valid.
+	 * @param position Position of local binding
+	 * @return Local binding value
+	 */
+	public ACell getLocal(long position) {
+		return locals[localBase+(int)position];
+	}
+
+	/**
+	 * Sets a local binding value in the current frame. Position must be valid. The previous
+	 * value is restored when leaving the enclosing scope.
+	 * @param <R> Return type of Context
+	 * @param position Position of local binding
+	 * @param value New value
+	 * @return Updated context
+	 */
+	@SuppressWarnings("unchecked")
+	public <R extends ACell> Context<R> setLocal(long position, ACell value) {
+		int ix=localBase+(int)position;
+		if (undoPositions==null) {
+			undoPositions=new int[8];
+			undoValues=new ACell[8];
+		} else if (undoCount==undoPositions.length) {
+			undoPositions=Arrays.copyOf(undoPositions, undoCount*2);
+			undoValues=Arrays.copyOf(undoValues, undoCount*2);
+		}
+		undoPositions[undoCount]=ix;
+		undoValues[undoCount]=locals[ix];
+		undoCount++;
+		locals[ix]=value;
+		localSnapshot=null;
+		return (Context<R>) this;
+	}
+
+	@SuppressWarnings("unchecked")
+	private <R extends ACell> Context<R> pushLocal(ACell value) {
+		ensureLocalCapacity(localTop+1);
+		locals[localTop++]=value;
+		localSnapshot=null;
+		return (Context<R>) this;
+	}
+
+	private void ensureLocalCapacity(int n) {
+		if (n<=locals.length) return;
+		locals=Arrays.copyOf(locals, Math.max(n, Math.max(8, locals.length*2)));
+	}
+
+	/**
+	 * Gets a mark for the current state of the local bindings, which can later be passed to
+	 * restoreLocals(...) to leave a lexical scope.
+	 * @return Mark value
+	 */
+	public long getLocalMark() {
+		return (((long)localTop)<<32)|(undoCount&0xFFFFFFFFL);
+	}
+
+	/**
+	 * Restores local bindings to a previous mark, discarding any bindings added and undoing any
+	 * set! operations since the mark was taken. Doesn't affect result state (exceptional or otherwise)
+	 * @param <R> Return type of Context
+	 * @param mark Mark obtained from getLocalMark()
+	 * @return Updated context
+	 */
+	@SuppressWarnings("unchecked")
+	public <R extends ACell> Context<R> restoreLocals(long mark) {
+		int savedTop=(int)(mark>>>32);
+		int savedUndo=(int)mark;
+		if (undoCount>savedUndo) {
+			while (undoCount>savedUndo) {
+				undoCount--;
+				locals[undoPositions[undoCount]]=undoValues[undoCount];
+				undoValues[undoCount]=null;
+			}
+			localSnapshot=null;
+		}
+		if (savedTop!=localTop) {
+			if (savedTop<localTop) Arrays.fill(locals, savedTop, localTop, null);
+			localTop=savedTop;
+			localSnapshot=null;
+		}
+		return (Context<R>) this;
+	}
+
+	/**
+	 * Enters a new frame for local bindings, e.g. for a function call, starting with the
+	 * given lexical environment.
+	 * @param env Lexical environment for new frame
+	 * @return Base of previous frame, to be passed to exitLocalFrame(...)
+	 */
+	public int enterLocalFrame(AVector<ACell> env) {
+		int savedBase=localBase;
+		int n=Utils.checkedInt(env.count());
+		ensureLocalCapacity(localTop+n);
+		for (int i=0; i<n; i++) {
+			locals[localTop+i]=env.get(i);
+		}
+		localBase=localTop;
+		localTop+=n;
+		localSnapshot=env;
+		return savedBase;
+	}
+
+	/**
+	 * Exits a frame for local bindings, restoring the previous frame. Doesn't affect result state
+	 * (exceptional or otherwise)
+	 * @param <R> Return type of Context
+	 * @param savedBase Base of previous frame, as returned by enterLocalFrame(...)
+	 * @param mark Mark obtained from getLocalMark() before entering frame
+	 * @return Updated context
+	 */
+	public <R extends ACell> Context<R> exitLocalFrame(int savedBase, long mark) {
+		Context<R> ctx=restoreLocals(mark);
+		localBase=savedBase;
+		localSnapshot=null;
+		return ctx;
+	}
+
 	/**
 	 * Gets the account status record, or null if not found
 	 *
@@ -1251,7 +1474,7 @@ public class Context<T extends ACell> extends AObject {
 				Context<R> rctx = ctx.invoke(lang,form);
 				return rctx.withDepth(saveDepth);
 			} else {
-				ctx=expandCompile(form);
+				ctx=CompileCache.expandCompile(this,form);
 				if (ctx.isExceptional()) return (Context<R>) ctx;
 				op=ctx.getResult();
 				ctx=ctx.withResult(null); // clear result for execution
@@ -1392,6 +1615,26 @@ public class Context<T extends ACell> extends AObject {
 		return (Context<R>) this;
 	}
 
+	/**
+	 * Sets the Profiler to record execution in this Context and Contexts forked from it
+	 * @param <R> Result type
+	 * @param newProfiler Profiler to use, or null to disable profiling
+	 * @return Updated Context
+	 */
+	@SuppressWarnings("unchecked")
+	public <R extends ACell> Context<R> withProfiler(Profiler newProfiler) {
+		profiler=newProfiler;
+		return (Context<R>) this;
+	}
+
+	/**
+	 * Gets the Profiler recording execution in this Context
+	 * @return Profiler, or null if not profiling
+	 */
+	public Profiler getProfiler() {
+		return profiler;
+	}
+
 	@SuppressWarnings("unchecked")
 	public <R extends ACell> Context<R> withCompilerState(CompilerState comp) {
 		compilerState=comp;
@@ -1441,11 +1684,10 @@ public class Context<T extends ACell> extends AObject {
 		if (amount<0) return withError(ErrorCodes.ARGUMENT,"Can't transfer a negative amount");
 		if (amount>Constants.MAX_SUPPLY) return withError(ErrorCodes.ARGUMENT,"Can't transfer an amount beyond maximum limit");
 
-		AVector<AccountStatus> accounts=getState().getAccounts();
+		State state=getState();
 
 		Address source=getAddress();
-		long sourceIndex=source.longValue();
-		AccountStatus sourceAccount=accounts.get(sourceIndex);
+		AccountStatus sourceAccount=state.getAccount(source);
 
 		long currentBalance=sourceAccount.getBalance();
 		if (currentBalance<amount) {
@@ -1454,14 +1696,13 @@ public class Context<T extends ACell> extends AObject {
 
 		long newSourceBalance=currentBalance-amount;
 		AccountStatus newSourceAccount=sourceAccount.withBalance(newSourceBalance);
-		accounts=accounts.assoc(sourceIndex, newSourceAccount);
+		state=state.putAccount(source, newSourceAccount);
 
-		// new target account (note: could be source account, so we get from latest accounts)
-		long targetIndex=target.longValue();
-		if (targetIndex>=accounts.count()) {
+		// new target account (note: could be source account, so we get from latest state)
+		AccountStatus targetAccount=state.getAccount(target);
+		if (targetAccount==null) {
 			return this.withError(ErrorCodes.NOBODY,"Target account for transfer "+target+" does not exist");
 		}
-		AccountStatus targetAccount=accounts.get(targetIndex);
 
 		if (targetAccount.isActor()) {
 			// (call target amount (receive-coin source amount nil))
@@ -1478,10 +1719,10 @@ public class Context<T extends ACell> extends AObject {
 			long oldTargetBalance=targetAccount.getBalance();
 			long newTargetBalance=oldTargetBalance+amount;
 			AccountStatus newTargetAccount=targetAccount.withBalance(newTargetBalance);
-			accounts=accounts.assoc(targetIndex, newTargetAccount);
+			state=state.putAccount(target, newTargetAccount);
 
 			// SECURITY: new context with updated accounts
-			Context<CVMLong> result=withChainState(chainState.withAccounts(accounts)).withResult(CVMLong.create(amount));
+			Context<CVMLong> result=withChainState(chainState.withState(state)).withResult(CVMLong.create(amount));
 
 			return result;
 		}
@@ -1502,11 +1743,10 @@ public class Context<T extends ACell> extends AObject {
 		if (amount<0) return withError(ErrorCodes.ARGUMENT,"Can't transfer a negative aloowance amount");
 		if (amount>Constants.MAX_SUPPLY) return withError(ErrorCodes.ARGUMENT,"Can't transfer an allowance amount beyond maximum limit");
 
-		AVector<AccountStatus> accounts=getState().getAccounts();
+		State state=getState();
 
 		Address source=getAddress();
-		long sourceIndex=source.longValue();
-		AccountStatus sourceAccount=accounts.get(sourceIndex);
+		AccountStatus sourceAccount=state.getAccount(source);
 
 		long currentBalance=sourceAccount.getMemory();
 		if (currentBalance<amount) {
@@ -1515,21 +1755,20 @@ public class Context<T extends ACell> extends AObject {
 
 		long newSourceBalance=currentBalance-amount;
 		AccountStatus newSourceAccount=sourceAccount.withMemory(newSourceBalance);
-		accounts=accounts.assoc(sourceIndex, newSourceAccount);
+		state=state.putAccount(source, newSourceAccount);
 
-		// new target account (note: could be source account, so we get from latest accounts)
-		long targetIndex=target.longValue();
-		if (targetIndex>=accounts.count()) {
+		// new target account (note: could be source account, so we get from latest state)
+		AccountStatus targetAccount=state.getAccount(target);
+		if (targetAccount==null) {
 			return withError(ErrorCodes.NOBODY,"Cannot transfer memory allowance to non-existent account: "+target);
 		}
-		AccountStatus targetAccount=accounts.get(targetIndex);
 
 		long newTargetBalance=targetAccount.getMemory()+amount;
 		AccountStatus newTargetAccount=targetAccount.withMemory(newTargetBalance);
-		accounts=accounts.assoc(targetIndex, newTargetAccount);
+		state=state.putAccount(target, newTargetAccount);
 
 		// SECURITY: new context with updated accounts
-		Context<CVMLong> result=withChainState(chainState.withAccounts(accounts)).withResult(amountToSend);
+		Context<CVMLong> result=withChainState(chainState.withState(state)).withResult(amountToSend);
 		return result;
 	}
 
@@ -1540,20 +1779,19 @@ public class Context<T extends ACell> extends AObject {
 	 * @return Context indicating the price paid for the allowance change (may be zero or negative for refund)
 	 */
 	public Context<CVMLong> setMemory(long allowance) {
-		AVector<AccountStatus> accounts=getState().getAccounts();
+		State state=getState();
 		if (allowance<0) return withError(ErrorCodes.ARGUMENT,"Can't transfer a negative aloowance amount");
 		if (allowance>Constants.MAX_SUPPLY) return withError(ErrorCodes.ARGUMENT,"Can't transfer an allowance amount beyond maximum limit");
 
 		Address source=getAddress();
-		long sourceIndex=source.longValue();
-		AccountStatus sourceAccount=accounts.get(sourceIndex);
+		AccountStatus sourceAccount=state.getAccount(source);
 
 		long current=sourceAccount.getMemory();
 		long balance=sourceAccount.getBalance();
 		long delta=allowance-current;
 		if (delta==0L) return this.withResult(CVMLong.ZERO);
 
-		AccountStatus pool=getState().getAccount(Init.MEMORY_EXCHANGE_ADDRESS);
+		AccountStatus pool=state.getAccount(Init.MEMORY_EXCHANGE_ADDRESS);
 
 		try {
 			long poolAllowance=pool.getMemory();
@@ -1566,10 +1804,10 @@ public class Context<T extends ACell> extends AObject {
 			pool=pool.withBalances(poolBalance+price, poolAllowance-delta);
 
 			// Update accounts
-			AVector<AccountStatus> newAccounts=accounts.assoc(sourceIndex, sourceAccount);
-			newAccounts=newAccounts.assoc(Init.MEMORY_EXCHANGE_ADDRESS.longValue(),pool);
+			state=state.putAccount(source, sourceAccount);
+			state=state.putAccount(Init.MEMORY_EXCHANGE_ADDRESS,pool);
 
-			return withChainState(chainState.withAccounts(newAccounts)).withResult(null);
+			return withChainState(chainState.withState(state)).withResult(null);
 		} catch (IllegalArgumentException e) {
 			return withError(ErrorCodes.FUNDS,"Cannot trade allowance: "+e.getMessage());
 		}
@@ -1660,7 +1898,18 @@ public class Context<T extends ACell> extends AObject {
 		final Context<R> exContext=forkActorCall(state, target, offer);
 
 		// INVOKE ACTOR FUNCTION
-		final Context<R> rctx=exContext.invoke(fn,args);
+		Context<R> rctx=null;
+		if (profiler!=null) {
+			Profiler p=profiler;
+			Profiler.Frame f=p.enter(Profiler.CALL, sym.toString(), target, exContext.juice);
+			try {
+				rctx=exContext.invoke(fn,args);
+			} finally {
+				p.exit(f, (rctx==null)?exContext.juice:rctx.juice);
+			}
+		} else {
+			rctx=exContext.invoke(fn,args);
+		}
 
 		ErrorValue ev=rctx.getError();
 		if (ev!=null) {
@@ -1684,7 +1933,9 @@ public class Context<T extends ACell> extends AObject {
 	 * @return
 	 */
 	private <R extends ACell> Context<R> forkActorCall(State state, Address target, long offer) {
-		return Context.create(state, juice, EMPTY_BINDINGS, (R)null, depth+1, getOrigin(),getAddress(), target,offer, log,null);
+		Context<R> ctx=Context.create(state, juice, EMPTY_BINDINGS, (R)null, depth+1, getOrigin(),getAddress(), target,offer, log,null);
+		ctx.profiler=profiler;
+		return ctx;
 	}
 
 	/**
@@ -1800,10 +2051,8 @@ public class Context<T extends ACell> extends AObject {
 	public Context<Address> createAccount(AccountKey key) {
 		final State initialState=getState();
 		Address address=initialState.nextAddress();
-		AVector<AccountStatus> accounts=initialState.getAccounts();
 		AccountStatus as=AccountStatus.create(0L, key);
-		accounts=accounts.conj(as);
-		final State newState=initialState.withAccounts(accounts);
+		final State newState=initialState.putAccount(address,as);
 		Context<Address> rctx=this.withState(newState);
 		return rctx.withResult(address);
 	}
@@ -2129,7 +2378,18 @@ public class Context<T extends ACell> extends AObject {
 	 * @return A new forked Context
 	 */
 	public <R extends ACell> Context<R> fork() {
-		return new Context<R>(chainState, juice, localBindings, null,depth, null,log,compilerState);
+		Context<R> ctx=new Context<R>(chainState, juice, null,depth, null,log,compilerState);
+		ctx.profiler=profiler;
+		ctx.locals=(localTop==0)?EMPTY_LOCALS:locals.clone();
+		ctx.localBase=localBase;
+		ctx.localTop=localTop;
+		ctx.localSnapshot=localSnapshot;
+		if (undoCount>0) {
+			ctx.undoPositions=undoPositions.clone();
+			ctx.undoValues=undoValues.clone();
+			ctx.undoCount=undoCount;
+		}
+		return ctx;
 	}
 
 	@Override
@@ -2252,7 +2512,11 @@ public class Context<T extends ACell> extends AObject {
 			// expand form using specified expander and continuation expander
 			ACell v = lookupValue(addr,sym);
 			AFn<ACell> expander = RT.castFunction(v);
-			if (expander != null) return expander;
+			if (expander != null) {
+				// only expansions using core expanders are safe to cache
+				if (lookupDefiningAccount(addr,sym)!=getCoreAccount()) CompileCache.markUncacheable();
+				return expander;
+			}
 		}
 		return null;
 	}
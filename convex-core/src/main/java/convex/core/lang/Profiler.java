@@ -0,0 +1,467 @@
+package convex.core.lang;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+
+import convex.core.data.Address;
+import convex.core.lang.impl.CoreFn;
+
+/**
+ * Opt-in profiler for CVM execution.
+ *
+ * When attached to a Context, every Op execution, function invocation and Actor call is recorded
+ * with its call count, juice consumed, total and self wall time and an estimate of bytes allocated.
+ * Statistics are aggregated by kind, name and the Address of the executing account. Function
+ * invocations and Actor calls also form call stacks, which can be exported in the collapsed stack
+ * format used by flame graph tools.
+ *
+ * A Profiler may be made active for the whole process with {@link #start()} or
+ * {@link #setActive(Profiler)}, in which case it is attached to all newly created Contexts, including
+ * those of every Server running in the process. Contexts without a Profiler only pay a null
+ * check on execute and invoke.
+ *
+ * A Profiler may be shared between threads. Call stacks are tracked separately for each thread.
+ */
+public final class Profiler {
+
+	/**
+	 * Kind for Op executions, named by Op type
+	 */
+	public static final int OP=0;
+
+	/**
+	 * Kind for function invocations, named by core function symbol or "fn"
+	 */
+	public static final int FN=1;
+
+	/**
+	 * Kind for Actor calls, named by the called function symbol
+	 */
+	public static final int CALL=2;
+
+	private static final String[] KIND_NAMES=new String[] {"op","fn","call"};
+
+	/**
+	 * Maximum number of distinct call stacks recorded. Further stacks are counted as dropped.
+	 */
+	private static final int MAX_STACKS=100000;
+
+	private static final AtomicReference<Profiler> active=new AtomicReference<>();
+
+	private static final com.sun.management.ThreadMXBean THREADS=getThreadBean();
+
+	private static com.sun.management.ThreadMXBean getThreadBean() {
+		try {
+			java.lang.management.ThreadMXBean bean=ManagementFactory.getThreadMXBean();
+			if (!(bean instanceof com.sun.management.ThreadMXBean)) return null;
+			com.sun.management.ThreadMXBean tb=(com.sun.management.ThreadMXBean)bean;
+			if (!tb.isThreadAllocatedMemorySupported()) return null;
+			tb.setThreadAllocatedMemoryEnabled(true);
+			return tb;
+		} catch (Throwable t) {
+			return null;
+		}
+	}
+
+	/**
+	 * Statistics for a single kind, name and Address
+	 */
+	public static final class Stats {
+		private final int kind;
+		private final String name;
+		private final Address address;
+		private long count;
+		private long juice;
+		private long selfJuice;
+		private long nanos;
+		private long selfNanos;
+		private long bytes;
+
+		private Stats(int kind, String name, Address address) {
+			this.kind=kind;
+			this.name=name;
+			this.address=address;
+		}
+
+		/**
+		 * Gets the kind of execution, one of OP, FN or CALL
+		 * @return Kind
+		 */
+		public int getKind() {
+			return kind;
+		}
+
+		/**
+		 * Gets the name of the Op type or function
+		 * @return Name
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * Gets the Address of the account in which execution took place. For Actor calls this is the target Actor.
+		 * @return Address, may be null
+		 */
+		public Address getAddress() {
+			return address;
+		}
+
+		/**
+		 * Gets the number of executions
+		 * @return Call count
+		 */
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 * Gets the total juice consumed, including nested executions
+		 * @return Juice consumed
+		 */
+		public long getJuice() {
+			return juice;
+		}
+
+		/**
+		 * Gets the juice consumed excluding nested executions
+		 * @return Self juice consumed
+		 */
+		public long getSelfJuice() {
+			return selfJuice;
+		}
+
+		/**
+		 * Gets the total wall time, including nested executions
+		 * @return Time in nanoseconds
+		 */
+		public long getNanos() {
+			return nanos;
+		}
+
+		/**
+		 * Gets the wall time excluding nested executions
+		 * @return Self time in nanoseconds
+		 */
+		public long getSelfNanos() {
+			return selfNanos;
+		}
+
+		/**
+		 * Gets an estimate of the bytes allocated, including nested executions. Zero if the JVM
+		 * does not support measurement of thread allocation.
+		 * @return Allocated bytes
+		 */
+		public long getAllocatedBytes() {
+			return bytes;
+		}
+
+		private void add(Frame f, long total, long totalJuice, long totalBytes) {
+			count++;
+			juice+=totalJuice;
+			selfJuice+=totalJuice-f.childJuice;
+			nanos+=total;
+			selfNanos+=total-f.childNanos;
+			bytes+=totalBytes;
+		}
+
+		@Override
+		public String toString() {
+			return KIND_NAMES[kind]+" "+name+" "+address+" count="+count+" juice="+juice+" selfJuice="+selfJuice
+					+" nanos="+nanos+" selfNanos="+selfNanos+" bytes="+bytes;
+		}
+	}
+
+	private static final class Key {
+		private final int kind;
+		private final String name;
+		private final Address address;
+
+		private Key(int kind, String name, Address address) {
+			this.kind=kind;
+			this.name=name;
+			this.address=address;
+		}
+
+		@Override
+		public int hashCode() {
+			return name.hashCode()+31*kind+Objects.hashCode(address);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) return false;
+			Key k=(Key)o;
+			return (kind==k.kind)&&name.equals(k.name)&&Objects.equals(address, k.address);
+		}
+	}
+
+	/**
+	 * An execution in progress on the current thread
+	 */
+	static final class Frame {
+		private final Frame parent;
+		private final int kind;
+		private final String name;
+		private final Address address;
+
+		/**
+		 * Nearest enclosing Frame that is part of the call stack, or null if none
+		 */
+		private final Frame stackParent;
+
+		/**
+		 * Collapsed call stack if this Frame is part of the call stack, null otherwise
+		 */
+		private final String path;
+
+		private final long startNanos;
+		private final long startJuice;
+		private final long startBytes;
+
+		private long childNanos;
+		private long childJuice;
+		private long stackChildNanos;
+		private long stackChildJuice;
+
+		private Frame(Frame parent, int kind, String name, Address address, long juice) {
+			this.parent=parent;
+			this.kind=kind;
+			this.name=name;
+			this.address=address;
+			Frame sp=(parent==null)?null:(parent.path!=null)?parent:parent.stackParent;
+			this.stackParent=sp;
+			if ((kind==OP)&&(parent!=null)) {
+				this.path=null;
+			} else {
+				String label=label(kind,name,address);
+				this.path=(sp==null)?label:sp.path+";"+label;
+			}
+			this.startJuice=juice;
+			this.startBytes=allocatedBytes();
+			this.startNanos=System.nanoTime();
+		}
+	}
+
+	private final ThreadLocal<Frame[]> current=ThreadLocal.withInitial(()->new Frame[1]);
+
+	/**
+	 * Statistics by kind, name and Address. Guarded by this.
+	 */
+	private final HashMap<Key,Stats> stats=new HashMap<>();
+
+	/**
+	 * Self time and juice for each collapsed call stack. Guarded by this.
+	 */
+	private final HashMap<String,long[]> stacks=new HashMap<>();
+	private long droppedStacks=0;
+
+	private final long startTime=System.nanoTime();
+
+	private Profiler() {
+	}
+
+	/**
+	 * Creates a new Profiler with no recorded data
+	 * @return New Profiler
+	 */
+	public static Profiler create() {
+		return new Profiler();
+	}
+
+	/**
+	 * Gets the Profiler that is attached to newly created Contexts
+	 * @return Active Profiler, or null if profiling is disabled
+	 */
+	public static Profiler getActive() {
+		return active.get();
+	}
+
+	/**
+	 * Sets the Profiler to attach to newly created Contexts. Contexts which already exist are
+	 * unaffected.
+	 * @param profiler Profiler to use, or null to disable profiling
+	 */
+	public static void setActive(Profiler profiler) {
+		active.set(profiler);
+	}
+
+	/**
+	 * Starts profiling all CVM execution in this process with a new Profiler, replacing any
+	 * active Profiler
+	 * @return New active Profiler
+	 */
+	public static Profiler start() {
+		Profiler p=create();
+		active.set(p);
+		return p;
+	}
+
+	/**
+	 * Stops profiling CVM execution in this process. Data recorded so far remains available from
+	 * the returned Profiler.
+	 * @return Profiler that was active, or null if profiling was not active
+	 */
+	public static Profiler stop() {
+		return active.getAndSet(null);
+	}
+
+	private static long allocatedBytes() {
+		if (THREADS==null) return 0;
+		return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	private static String label(int kind, String name, Address address) {
+		if (kind==OP) return String.valueOf(address);
+		if ((kind==FN)&&!name.equals("fn")) return name;
+		return address+"/"+name;
+	}
+
+	/**
+	 * Gets the profiler name of a function
+	 * @param fn Function
+	 * @return Core function symbol name, or "fn" for other functions
+	 */
+	static String fnName(AFn<?> fn) {
+		if (fn instanceof CoreFn) return ((CoreFn<?>)fn).getSymbol().toString();
+		return "fn";
+	}
+
+	/**
+	 * Starts recording an execution on the current thread
+	 * @param kind Kind of execution
+	 * @param name Name of Op type or function
+	 * @param address Address of executing account
+	 * @param juice Juice available at start
+	 * @return Frame to pass to exit
+	 */
+	Frame enter(int kind, String name, Address address, long juice) {
+		Frame[] cur=current.get();
+		Frame f=new Frame(cur[0],kind,name,address,juice);
+		cur[0]=f;
+		return f;
+	}
+
+	/**
+	 * Finishes recording an execution on the current thread
+	 * @param f Frame returned by enter
+	 * @param juice Juice available at end
+	 */
+	void exit(Frame f, long juice) {
+		long total=System.nanoTime()-f.startNanos;
+		long totalBytes=allocatedBytes()-f.startBytes;
+		long totalJuice=f.startJuice-juice;
+		current.get()[0]=f.parent;
+
+		Frame parent=f.parent;
+		if (parent!=null) {
+			parent.childNanos+=total;
+			parent.childJuice+=totalJuice;
+		}
+		if ((f.path!=null)&&(f.stackParent!=null)) {
+			f.stackParent.stackChildNanos+=total;
+			f.stackParent.stackChildJuice+=totalJuice;
+		}
+
+		synchronized (this) {
+			Key key=new Key(f.kind,f.name,f.address);
+			Stats s=stats.get(key);
+			if (s==null) {
+				s=new Stats(f.kind,f.name,f.address);
+				stats.put(key, s);
+			}
+			s.add(f,total,totalJuice,totalBytes);
+
+			if (f.path!=null) {
+				long[] st=stacks.get(f.path);
+				if (st==null) {
+					if (stacks.size()>=MAX_STACKS) {
+						droppedStacks++;
+						return;
+					}
+					st=new long[2];
+					stacks.put(f.path, st);
+				}
+				st[0]+=total-f.stackChildNanos;
+				st[1]+=totalJuice-f.stackChildJuice;
+			}
+		}
+	}
+
+	/**
+	 * Gets recorded statistics, ordered by self time with the most expensive first
+	 * @return List of statistics
+	 */
+	public synchronized List<Stats> getStats() {
+		ArrayList<Stats> result=new ArrayList<>(stats.values());
+		result.sort(Comparator.comparingLong(Stats::getSelfNanos).reversed());
+		return result;
+	}
+
+	/**
+	 * Gets recorded statistics for a specific kind and name, aggregated over all Addresses
+	 * @param kind Kind of execution
+	 * @param name Name of Op type or function
+	 * @return Total call count, or 0 if never recorded
+	 */
+	public synchronized long getCount(int kind, String name) {
+		long count=0;
+		for (Stats s: stats.values()) {
+			if ((s.kind==kind)&&s.name.equals(name)) count+=s.count;
+		}
+		return count;
+	}
+
+	/**
+	 * Gets the call stacks in collapsed stack format, one line per stack with frames separated by
+	 * semicolons, followed by the self time in nanoseconds or the self juice. The outermost frame
+	 * is the Address in which execution started, function frames are core function names, and
+	 * other functions and Actor calls are shown as address/name.
+	 *
+	 * @param juice If true, weight stacks by juice consumed, otherwise by wall time
+	 * @return Collapsed stacks suitable for flame graph tools
+	 */
+	public synchronized String getCollapsedStacks(boolean juice) {
+		StringBuilder sb=new StringBuilder();
+		for (Map.Entry<String,long[]> me: stacks.entrySet()) {
+			long v=me.getValue()[juice?1:0];
+			if (v<=0) continue;
+			sb.append(me.getKey());
+			sb.append(' ');
+			sb.append(v);
+			sb.append('\n');
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Gets the number of call stacks not recorded because the limit on distinct stacks was reached
+	 * @return Number of dropped stack samples
+	 */
+	public synchronized long getDroppedStacks() {
+		return droppedStacks;
+	}
+
+	/**
+	 * Gets the time since this Profiler was created
+	 * @return Elapsed time in nanoseconds
+	 */
+	public long getElapsedTime() {
+		return System.nanoTime()-startTime;
+	}
+
+	/**
+	 * Removes all recorded data
+	 */
+	public synchronized void clear() {
+		stats.clear();
+		stacks.clear();
+		droppedStacks=0;
+	}
+}
@@ -93,6 +93,13 @@ public class RT {
 	}
 
 	public static Boolean eq(ACell[] values) {
+		if (values.length == 2) {
+			ACell a = values[0];
+			ACell b = values[1];
+			if ((a instanceof CVMLong) && (b instanceof CVMLong)) {
+				return ((CVMLong) a).longValue() == ((CVMLong) b).longValue();
+			}
+		}
 		Boolean check = checkShortCompare(values);
 		if (check == null)
 			return null;
@@ -109,6 +116,13 @@ public class RT {
 	}
 
 	public static Boolean ge(ACell[] values) {
+		if (values.length == 2) {
+			ACell a = values[0];
+			ACell b = values[1];
+			if ((a instanceof CVMLong) && (b instanceof CVMLong)) {
+				return ((CVMLong) a).longValue() >= ((CVMLong) b).longValue();
+			}
+		}
 		Boolean check = checkShortCompare(values);
 		if (check == null)
 			return null;
@@ -125,6 +139,13 @@ public class RT {
 	}
 
 	public static Boolean gt(ACell[] values) {
+		if (values.length == 2) {
+			ACell a = values[0];
+			ACell b = values[1];
+			if ((a instanceof CVMLong) && (b instanceof CVMLong)) {
+				return ((CVMLong) a).longValue() > ((CVMLong) b).longValue();
+			}
+		}
 		Boolean check = checkShortCompare(values);
 		if (check == null)
 			return null;
@@ -141,6 +162,13 @@ public class RT {
 	}
 
 	public static Boolean le(ACell[] values) {
+		if (values.length == 2) {
+			ACell a = values[0];
+			ACell b = values[1];
+			if ((a instanceof CVMLong) && (b instanceof CVMLong)) {
+				return ((CVMLong) a).longValue() <= ((CVMLong) b).longValue();
+			}
+		}
 		Boolean check = checkShortCompare(values);
 		if (check == null)
 			return null;
@@ -157,6 +185,13 @@ public class RT {
 	}
 
 	public static Boolean lt(ACell[] values) {
+		if (values.length == 2) {
+			ACell a = values[0];
+			ACell b = values[1];
+			if ((a instanceof CVMLong) && (b instanceof CVMLong)) {
+				return ((CVMLong) a).longValue() < ((CVMLong) b).longValue();
+			}
+		}
 		Boolean check = checkShortCompare(values);
 		if (check == null)
 			return null;
@@ -223,6 +258,13 @@ public class RT {
 	}
 
 	public static APrimitive plus(ACell[] args) {
+		if (args.length == 2) {
+			ACell a = args[0];
+			ACell b = args[1];
+			if ((a instanceof CVMLong) && (b instanceof CVMLong)) {
+				return CVMLong.create(((CVMLong) a).longValue() + ((CVMLong) b).longValue());
+			}
+		}
 		Class<?> type = commonNumericType(args);
 		if (type == null)
 			return null;
@@ -244,6 +286,13 @@ public class RT {
 	}
 
 	public static APrimitive minus(ACell[] args) {
+		if (args.length == 2) {
+			ACell a = args[0];
+			ACell b = args[1];
+			if ((a instanceof CVMLong) && (b instanceof CVMLong)) {
+				return CVMLong.create(((CVMLong) a).longValue() - ((CVMLong) b).longValue());
+			}
+		}
 		Class<?> type = commonNumericType(args);
 		if (type == null)
 			return null;
@@ -271,6 +320,13 @@ public class RT {
 	}
 
 	public static APrimitive times(ACell[] args) {
+		if (args.length == 2) {
+			ACell a = args[0];
+			ACell b = args[1];
+			if ((a instanceof CVMLong) && (b instanceof CVMLong)) {
+				return CVMLong.create(((CVMLong) a).longValue() * ((CVMLong) b).longValue());
+			}
+		}
 		Class<?> type = commonNumericType(args);
 		if (type == null)
 			return null;
@@ -537,6 +593,7 @@ public class RT {
 	 * @return Long Value, or null if conversion fails
 	 */
 	public static CVMLong inc(ACell x) {
+		if (x instanceof CVMLong) return CVMLong.create(((CVMLong) x).longValue() + 1L);
 		CVMLong n = ensureLong(x);
 		if (n == null)
 			return null;
@@ -550,6 +607,7 @@ public class RT {
 	 * @return Long Value, or null if conversion fails
 	 */
 	public static CVMLong dec(ACell x) {
+		if (x instanceof CVMLong) return CVMLong.create(((CVMLong) x).longValue() - 1L);
 		CVMLong n = ensureLong(x);
 		if (n == null)
 			return null;
@@ -5,12 +5,11 @@ import java.io.IOException;
 import convex.core.data.ACell;
 import convex.core.data.AList;
 import convex.core.data.Syntax;
-import convex.core.lang.reader.AntlrReader;
+import convex.core.lang.reader.ConvexReader;
 import convex.core.util.Utils;
 
 /**
- * Parboiled Parser implementation which reads source code and produces a tree
- * of parsed objects.
+ * Reader which reads source code and produces a tree of parsed objects.
  * 
  * Supports reading in either raw form (ACell) mode or wrapping with Syntax Objects. The
  * latter is required for source references etc.
@@ -51,7 +50,7 @@ public class Reader {
 	 * @return List of Syntax Objects
 	 */
 	public static AList<ACell> readAll(String source) {
-		return AntlrReader.readAll(source);
+		return ConvexReader.readAll(source);
 	}
 
 	/**
@@ -61,7 +60,7 @@ public class Reader {
 	 * @return Parsed form
 	 */
 	public static ACell read(java.io.Reader source) throws IOException {
-		return AntlrReader.read(source);
+		return ConvexReader.read(source);
 	}
 	
 	/**
@@ -72,7 +71,7 @@ public class Reader {
 	 */
 	@SuppressWarnings("unchecked")
 	public static <R extends ACell> R read(String source) {
-		return (R) AntlrReader.read(source);
+		return (R) ConvexReader.read(source);
 	}
 
 }
@@ -86,18 +86,18 @@ public class Fn<T extends ACell> extends AClosure<T> {
 	@Override
 	public Context<T> invoke(Context context, ACell[] args) {
 		// update local bindings for the duration of this function call
-		final AVector<ACell> savedBindings = context.getLocalBindings();
+		final long savedBindings = context.getLocalMark();
 
-		// update to correct lexical environment, then bind function parameters
-		context = context.withLocalBindings(lexicalEnv);
+		// enter frame with correct lexical environment, then bind function parameters
+		final int savedBase = context.enterLocalFrame(lexicalEnv);
 
 		Context<T> boundContext = context.updateBindings(params, args);
-		if (boundContext.isExceptional()) return boundContext.withLocalBindings(savedBindings);
+		if (boundContext.isExceptional()) return boundContext.exitLocalFrame(savedBase,savedBindings);
 
 		Context<T> ctx = boundContext.execute(body);
 
 		// return with restored bindings
-		return ctx.withLocalBindings(savedBindings);
+		return ctx.exitLocalFrame(savedBase,savedBindings);
 	}
 
 	@Override
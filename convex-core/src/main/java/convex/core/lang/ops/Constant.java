@@ -117,6 +117,14 @@ public class Constant<T extends ACell> extends AOp<T> {
 		return createFromRef(newRef);
 	}
 
+	/**
+	 * Gets the value of this Constant
+	 * @return Constant value
+	 */
+	public T getValue() {
+		return valueRef.getValue();
+	}
+
 	@SuppressWarnings("unchecked")
 	public static <T extends ACell> AOp<T> nil() {
 		return (AOp<T>) Constant.NULL;
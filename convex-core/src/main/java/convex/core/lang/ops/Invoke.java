@@ -2,6 +2,7 @@ package convex.core.lang.ops;
 
 import java.nio.ByteBuffer;
 
+import convex.core.Constants;
 import convex.core.data.ACell;
 import convex.core.data.ASequence;
 import convex.core.data.AVector;
@@ -12,6 +13,7 @@ import convex.core.exceptions.BadFormatException;
 import convex.core.lang.AFn;
 import convex.core.lang.AOp;
 import convex.core.lang.Context;
+import convex.core.lang.Juice;
 import convex.core.lang.Ops;
 import convex.core.lang.RT;
 
@@ -59,12 +61,21 @@ public class Invoke<T extends ACell> extends AMultiOp<T> {
 	@SuppressWarnings("unchecked")
 	@Override
 	public <I extends ACell> Context<T> execute(Context<I> context) {
-		// execute first op to obtain function value
 		AOp<?> fnOp=ops.get(0);
-		Context<T> ctx = (Context<T>) context.execute(fnOp);
-		if (ctx.isExceptional()) return ctx;
+		Context<T> ctx;
+		ACell rf;
+		if ((fnOp instanceof Constant) && (context.getDepth() < Constants.MAX_DEPTH)) {
+			// function known in advance, e.g. a statically bound core function. Juice as for executing the Constant
+			ctx = (Context<T>) context.consumeJuice(Juice.CONSTANT);
+			if (ctx.isExceptional()) return ctx;
+			rf = ((Constant<?>)fnOp).getValue();
+		} else {
+			// execute first op to obtain function value
+			ctx = (Context<T>) context.execute(fnOp);
+			if (ctx.isExceptional()) return ctx;
+			rf = ctx.getResult();
+		}
 
-		ACell rf = ctx.getResult();
 		AFn<T> fn = RT.castFunction(rf);
 		if (fn == null) return context.withCastError(0, Types.FUNCTION);
 
@@ -5,8 +5,10 @@ import java.nio.ByteBuffer;
 import convex.core.ErrorCodes;
 import convex.core.data.ACell;
 import convex.core.data.Address;
+import convex.core.data.AHashMap;
 import convex.core.data.Format;
 import convex.core.data.IRefFunction;
+import convex.core.data.MapEntry;
 import convex.core.data.Ref;
 import convex.core.data.Symbol;
 import convex.core.exceptions.BadFormatException;
@@ -24,6 +26,11 @@ import convex.core.lang.RT;
  * the current environment.
  * 
  * Consumes juice for lookup when executed.
+ * 
+ * Keeps an inline cache of the last resolved environment entry, together with the environment
+ * maps it was resolved from. Since environments are immutable, the cached entry is valid for as 
+ * long as the same environment maps are in use, which can be checked by identity. The cache is
+ * not part of the encoding.
  *
  * @param <T> Result type of Op
  */
@@ -31,6 +38,24 @@ public class Lookup<T extends ACell> extends AOp<T> {
 	private final AOp<Address> address;
 	private final Symbol symbol;
 
+	/**
+	 * Inline cache of last resolved entry. May be shared between threads, so always 
+	 * replaced as a whole.
+	 */
+	private CachedEntry cache=null;
+
+	private static final class CachedEntry {
+		private final AHashMap<Symbol,ACell> env;
+		private final AHashMap<Symbol,ACell> aliasEnv; // null if found in env
+		private final MapEntry<Symbol,ACell> entry;
+		
+		private CachedEntry(AHashMap<Symbol,ACell> env, AHashMap<Symbol,ACell> aliasEnv, MapEntry<Symbol,ACell> entry) {
+			this.env=env;
+			this.aliasEnv=aliasEnv;
+			this.entry=entry;
+		}
+	}
+
 	private Lookup(AOp<Address> address,Symbol symbol) {
 		this.address=address;
 		this.symbol = symbol;
@@ -71,7 +96,39 @@ public class Lookup<T extends ACell> extends AOp<T> {
 		
 		// Do a dynamic lookup, with address if specified or address from current context otherwise
 		namespaceAddress=(address==null)?context.getAddress():namespaceAddress;
-		return rctx.lookupDynamic(namespaceAddress,symbol).consumeJuice(Juice.LOOKUP_DYNAMIC);
+		MapEntry<Symbol,ACell> entry=lookupEntry(rctx,namespaceAddress);
+		if (entry==null) {
+			// slow path produces appropriate error
+			return rctx.lookupDynamic(namespaceAddress,symbol).consumeJuice(Juice.LOOKUP_DYNAMIC);
+		}
+		return rctx.withResult((T)entry.getValue()).consumeJuice(Juice.LOOKUP_DYNAMIC);
+	}
+	
+	/**
+	 * Resolves the environment entry for this Lookup, using the inline cache if still valid.
+	 * @return Entry, or null if not resolved
+	 */
+	private MapEntry<Symbol,ACell> lookupEntry(Context<?> ctx, Address namespaceAddress) {
+		if (namespaceAddress==null) return null;
+		AHashMap<Symbol,ACell> env=ctx.getEnvironment(namespaceAddress);
+		if (env==null) return null;
+		
+		CachedEntry c=cache;
+		if ((c!=null)&&(c.env==env)) {
+			if (c.aliasEnv==null) return c.entry;
+			if (c.aliasEnv==ctx.getAliasedEnvironment(env)) return c.entry;
+		}
+		
+		MapEntry<Symbol,ACell> entry=env.getEntry(symbol);
+		AHashMap<Symbol,ACell> aliasEnv=null;
+		if (entry==null) {
+			aliasEnv=ctx.getAliasedEnvironment(env);
+			if (aliasEnv==null) return null;
+			entry=aliasEnv.getEntry(symbol);
+			if (entry==null) return null;
+		}
+		cache=new CachedEntry(env,aliasEnv,entry);
+		return entry;
 	}
 
 	@Override
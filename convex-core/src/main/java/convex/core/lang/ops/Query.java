@@ -54,7 +54,7 @@ public class Query<T extends ACell> extends AMultiOp<T> {
 		Context<T> ctx = (Context<T>) context.consumeJuice(Juice.QUERY);
 		if (ctx.isExceptional()) return ctx;
 		
-		AVector<ACell> savedBindings=context.getLocalBindings();
+		long savedBindings=context.getLocalMark();
 
 		// execute each operation in turn
 		// TODO: early return
@@ -67,7 +67,7 @@ public class Query<T extends ACell> extends AMultiOp<T> {
 		}
 		// restore state unconditionally.
 		ctx=ctx.withState(savedState);
-		ctx=ctx.withLocalBindings(savedBindings);
+		ctx=ctx.restoreLocals(savedBindings);
 		return ctx;
 	}
 
@@ -4,7 +4,6 @@ import java.nio.ByteBuffer;
 
 import convex.core.ErrorCodes;
 import convex.core.data.ACell;
-import convex.core.data.AVector;
 import convex.core.data.Format;
 import convex.core.data.IRefFunction;
 import convex.core.data.Ref;
@@ -54,17 +53,18 @@ public class Set<T extends ACell> extends AOp<T> {
 	@Override
 	public <R extends ACell> Context<T> execute(Context<R> context) {
 		Context<T> ctx = (Context<T>) context;
-		AVector<ACell> env = ctx.getLocalBindings();
-		long ec = env.count();
+		long ec = ctx.getLocalCount();
 		if ((position < 0) || (position >= ec))
 			return context.withError(ErrorCodes.BOUNDS, "Bad position for set!: " + position);
 
+		long mark = ctx.getLocalMark();
 		ctx = ctx.execute(op.getValue());
 		if (ctx.isExceptional()) return ctx;
 		ACell value = ctx.getResult();
 
-		AVector<ACell> newEnv = env.assoc(position, value);
-		ctx = ctx.withLocalBindings(newEnv);
+		// discard any local changes made by the op, as if updating the original bindings
+		ctx = ctx.restoreLocals(mark);
+		ctx = ctx.setLocal(position, value);
 		return ctx.consumeJuice(Juice.SET_BANG);
 	}
 
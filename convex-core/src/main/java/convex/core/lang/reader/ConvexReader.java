@@ -0,0 +1,549 @@
+package convex.core.lang.reader;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import convex.core.data.ACell;
+import convex.core.data.AList;
+import convex.core.data.Address;
+import convex.core.data.Blob;
+import convex.core.data.Keyword;
+import convex.core.data.Lists;
+import convex.core.data.Maps;
+import convex.core.data.Sets;
+import convex.core.data.Strings;
+import convex.core.data.Symbol;
+import convex.core.data.Syntax;
+import convex.core.data.Vectors;
+import convex.core.data.prim.CVMBool;
+import convex.core.data.prim.CVMChar;
+import convex.core.data.prim.CVMDouble;
+import convex.core.data.prim.CVMLong;
+import convex.core.exceptions.ParseException;
+import convex.core.lang.Symbols;
+import convex.core.util.Utils;
+
+/**
+ * Hand-written recursive descent reader for Convex Lisp.
+ *
+ * Accepts the same syntax as the ANTLR grammar (Convex.g4) and produces identical forms, but reads
+ * directly from a character buffer without building a token stream or parse tree. Tokens are
+ * matched with the same longest match rules as the ANTLR lexer.
+ *
+ * Input may be a String or a java.io.Reader, in which case characters are read incrementally
+ * and top level forms can be consumed one at a time with {@link #hasNext()} and {@link #next()}.
+ */
+public class ConvexReader {
+
+	private static final int BUFFER_SIZE=4096;
+
+	private static final String[] SPECIAL_CHARACTERS=new String[] {"newline","return","space","tab","formfeed","backspace"};
+
+	// Token types for atoms, in ANTLR lexer priority order
+	private static final int PATH=0;
+	private static final int NIL=1;
+	private static final int BOOL=2;
+	private static final int DOUBLE=3;
+	private static final int DIGITS=4;
+	private static final int SIGNED_DIGITS=5;
+	private static final int BLOB=6;
+	private static final int KEYWORD=7;
+	private static final int SYMBOL=8;
+
+	private final java.io.Reader source;
+	private char[] buf;
+	private int pos=0;
+	private int limit;
+	private boolean eof;
+
+	/**
+	 * Number of characters discarded from the start of the buffer, for error positions
+	 */
+	private long offset=0;
+
+	// Type and length of the last atom token matched
+	private int tokenType;
+	private int tokenLength;
+
+	private ConvexReader(String s) {
+		this.source=null;
+		this.buf=s.toCharArray();
+		this.limit=buf.length;
+		this.eof=true;
+	}
+
+	private ConvexReader(java.io.Reader source) {
+		this.source=source;
+		this.buf=new char[BUFFER_SIZE];
+		this.limit=0;
+		this.eof=false;
+	}
+
+	/**
+	 * Creates a reader for forms in a String
+	 * @param source Source text
+	 * @return New ConvexReader
+	 */
+	public static ConvexReader create(String source) {
+		return new ConvexReader(source);
+	}
+
+	/**
+	 * Creates a reader for forms from a character stream. Characters are only read from the
+	 * stream as needed.
+	 * @param source Source of characters
+	 * @return New ConvexReader
+	 */
+	public static ConvexReader create(java.io.Reader source) {
+		return new ConvexReader(source);
+	}
+
+	/**
+	 * Reads a single form from a String. The String must contain exactly one form.
+	 * @param source Source text
+	 * @return Form read
+	 */
+	public static ACell read(String source) {
+		return create(source).readSingle();
+	}
+
+	/**
+	 * Reads a single form from a character stream. The stream must contain exactly one form.
+	 * @param source Source of characters
+	 * @return Form read
+	 * @throws IOException If the stream cannot be read
+	 */
+	public static ACell read(java.io.Reader source) throws IOException {
+		return create(source).readSingle();
+	}
+
+	/**
+	 * Reads all forms from a String
+	 * @param source Source text
+	 * @return List of forms
+	 */
+	public static AList<ACell> readAll(String source) {
+		return create(source).readRemaining();
+	}
+
+	/**
+	 * Reads all forms from a character stream
+	 * @param source Source of characters
+	 * @return List of forms
+	 * @throws IOException If the stream cannot be read
+	 */
+	public static AList<ACell> readAll(java.io.Reader source) throws IOException {
+		return create(source).readRemaining();
+	}
+
+	/**
+	 * Checks if there is another top level form to read. Skips whitespace, comments and
+	 * commented out forms.
+	 * @return true if another form is available, false at end of input
+	 */
+	public boolean hasNext() {
+		while (true) {
+			skipTrash();
+			if ((peek(0)=='#')&&(peek(1)=='_')) {
+				pos+=2;
+				readForm();
+				continue;
+			}
+			return peek(0)>=0;
+		}
+	}
+
+	/**
+	 * Reads the next top level form
+	 * @return Form read
+	 */
+	public ACell next() {
+		if (!hasNext()) throw new ParseException("Unexpected end of input at "+position());
+		return readForm();
+	}
+
+	private ACell readSingle() {
+		ACell form=readForm();
+		skipTrash();
+		if (peek(0)>=0) throw error("Unexpected input after form");
+		return form;
+	}
+
+	private AList<ACell> readRemaining() {
+		ArrayList<ACell> forms=new ArrayList<>();
+		while (hasNext()) {
+			forms.add(readForm());
+		}
+		return Lists.create(forms);
+	}
+
+	/**
+	 * Ensures at least n characters are available in the buffer after pos, if possible
+	 * @return Number of characters available
+	 */
+	private int fill(int n) {
+		int avail=limit-pos;
+		if ((avail>=n)||eof) return avail;
+		if (pos>0) {
+			System.arraycopy(buf, pos, buf, 0, avail);
+			offset+=pos;
+			limit=avail;
+			pos=0;
+		}
+		if (n>buf.length) buf=Arrays.copyOf(buf, Math.max(n, buf.length*2));
+		try {
+			while (limit<n) {
+				int r=source.read(buf, limit, buf.length-limit);
+				if (r<0) {
+					eof=true;
+					break;
+				}
+				limit+=r;
+			}
+		} catch (IOException e) {
+			throw Utils.sneakyThrow(e);
+		}
+		return limit-pos;
+	}
+
+	/**
+	 * Gets a character ahead of the current position
+	 * @param k Offset from current position
+	 * @return Character, or -1 if at end of input
+	 */
+	private int peek(int k) {
+		int i=pos+k;
+		if (i<limit) return buf[i];
+		if (fill(k+1)<=k) return -1;
+		return buf[pos+k];
+	}
+
+	private String take(int n) {
+		String s=new String(buf,pos,n);
+		pos+=n;
+		return s;
+	}
+
+	private long position() {
+		return offset+pos;
+	}
+
+	private ParseException error(String message) {
+		return new ParseException(message+" at position "+position());
+	}
+
+	private void skipTrash() {
+		while (true) {
+			int c=peek(0);
+			switch (c) {
+				case ' ': case '\n': case '\r': case '\t': case ',':
+					pos++;
+					break;
+				case ';':
+					pos++;
+					while (true) {
+						c=peek(0);
+						if ((c<0)||(c=='\n')||(c=='\r')) break;
+						pos++;
+					}
+					break;
+				default:
+					return;
+			}
+		}
+	}
+
+	private ACell readForm() {
+		skipTrash();
+		int c=peek(0);
+		switch (c) {
+			case -1: throw error("Unexpected end of input");
+			case '(': pos++; return Lists.create(readForms(')'));
+			case '[': pos++; return Vectors.create(readForms(']'));
+			case '{': pos++; return readMap();
+			case ')': case ']': case '}': throw error("Unexpected '"+(char)c+"'");
+			case '"': return readString();
+			case '\\': return readCharacter();
+			case '^': {
+				pos++;
+				ACell meta=readForm();
+				ACell value=readForm();
+				return Syntax.create(value, ReaderUtils.interpretMetadata(meta));
+			}
+			case '\'': pos++; return Lists.of(Symbols.QUOTE,readForm());
+			case '`': pos++; return Lists.of(Symbols.QUASIQUOTE,readForm());
+			case '~': {
+				if (peek(1)=='@') {
+					pos+=2;
+					return Lists.of(Symbols.UNQUOTE_SPLICING,readForm());
+				}
+				pos++;
+				return Lists.of(Symbols.UNQUOTE,readForm());
+			}
+			case '#': return readHash();
+			default: return readAtom();
+		}
+	}
+
+	private ArrayList<ACell> readForms(char close) {
+		ArrayList<ACell> elements=new ArrayList<>();
+		while (true) {
+			skipTrash();
+			int c=peek(0);
+			if (c==close) {
+				pos++;
+				return elements;
+			}
+			if (c<0) throw error("Expected '"+close+"' but got end of input");
+			if ((c=='#')&&(peek(1)=='_')) {
+				pos+=2;
+				readForm();
+				continue;
+			}
+			elements.add(readForm());
+		}
+	}
+
+	private ACell readMap() {
+		ArrayList<ACell> elements=readForms('}');
+		if (Utils.isOdd(elements.size())) {
+			throw new ParseException("Map requires an even number form forms.");
+		}
+		return Maps.create(elements.toArray(new ACell[elements.size()]));
+	}
+
+	private ACell readHash() {
+		if (peek(1)=='_') throw error("Unexpected commented form");
+		int n=digitsLength(1);
+		if (n>0) {
+			int pn=pathTail(n+1);
+			if (pn>0) return ReaderUtils.pathLookup(take(pn));
+		}
+
+		pos++;
+		skipTrash();
+		int c=peek(0);
+		if (c=='{') {
+			pos++;
+			return Sets.fromCollection(readForms('}'));
+		}
+		if (c=='#') {
+			pos++;
+			skipTrash();
+			if (!matchAtom()||(tokenType!=SYMBOL)) throw error("Expected symbol for special literal");
+			String s="##"+take(tokenLength);
+			ACell special=ReaderUtils.specialLiteral(s);
+			if (special==null) throw error("Invalid special literal: "+s);
+			return special;
+		}
+		if (!matchAtom()||(tokenType!=DIGITS)) throw error("Expected Address or set after '#'");
+		return Address.parse("#"+take(tokenLength));
+	}
+
+	private ACell readString() {
+		int end=-1;
+		int i=1;
+		while (true) {
+			int c=peek(i);
+			if (c<0) {
+				if (end<0) throw error("Unterminated string");
+				break;
+			}
+			if (c=='"') {
+				if (peek(i-1)!='\\') {
+					end=i;
+					break;
+				}
+				// escaped quote, but could also end the string if no later quote
+				end=i;
+			}
+			i++;
+		}
+		pos++;
+		String s=take(end-1);
+		pos++;
+		return Strings.create(ReaderUtils.unescapeString(s));
+	}
+
+	private ACell readCharacter() {
+		int n=0;
+		int c=peek(1);
+		if (c<0) throw error("Bad character literal format");
+		if ((c=='u')&&isHex(peek(2))&&isHex(peek(3))&&isHex(peek(4))&&isHex(peek(5))) n=6;
+		for (String name: SPECIAL_CHARACTERS) {
+			int len=name.length();
+			if (len+1<=n) continue;
+			if (matches(1,name)) n=len+1;
+		}
+		if (n==0) {
+			n=(Character.isHighSurrogate((char)c)&&Character.isLowSurrogate((char)peek(2)))?3:2;
+		}
+		String s=take(n);
+		CVMChar ch=CVMChar.parse(s);
+		if (ch==null) throw new ParseException("Bad character literal format: "+s);
+		return ch;
+	}
+
+	private ACell readAtom() {
+		if (!matchAtom()) {
+			int c=peek(0);
+			throw error("Unexpected character '"+(char)c+"'");
+		}
+		String s=take(tokenLength);
+		switch (tokenType) {
+			case PATH: return ReaderUtils.pathLookup(s);
+			case NIL: return null;
+			case BOOL: return CVMBool.parse(s);
+			case DOUBLE: return CVMDouble.parse(s);
+			case DIGITS:
+			case SIGNED_DIGITS: return CVMLong.parse(s);
+			case BLOB: {
+				Blob b=Blob.fromHex(s.substring(2));
+				if (b==null) throw new ParseException("Invalid Blob syntax: "+s);
+				return b;
+			}
+			case KEYWORD: {
+				Keyword k=Keyword.create(s.substring(1));
+				if (k==null) throw new ParseException("Bad keyword format: "+s);
+				return k;
+			}
+			default: {
+				Symbol sym=Symbol.create(s);
+				if (sym==null) throw new ParseException("Bad symbol format: "+s);
+				return sym;
+			}
+		}
+	}
+
+	/**
+	 * Matches the longest atom token at the current position, setting tokenType and tokenLength.
+	 * Ties are resolved in the same order as the ANTLR lexer rules.
+	 * @return true if a token was matched
+	 */
+	private boolean matchAtom() {
+		int c=peek(0);
+		tokenLength=0;
+		if (isDigit(c)) {
+			accept(DOUBLE,doubleLength());
+			accept(DIGITS,digitsLength(0));
+			if ((c=='0')&&(peek(1)=='x')) {
+				int n=2;
+				while (isHex(peek(n))) n++;
+				accept(BLOB,n);
+			}
+		} else if (c==':') {
+			int n=nameLength(1);
+			if (n>0) accept(KEYWORD,n+1);
+		} else {
+			int n=nameLength(0);
+			if (n==0) return false;
+			accept(PATH,pathTail(n));
+			if ((n==3)&&matches(0,"nil")) accept(NIL,n);
+			if (((n==4)&&matches(0,"true"))||((n==5)&&matches(0,"false"))) accept(BOOL,n);
+			if (c=='-') {
+				accept(DOUBLE,doubleLength());
+				int d=digitsLength(1);
+				if (d>0) accept(SIGNED_DIGITS,d+1);
+			}
+			accept(SYMBOL,n);
+		}
+		return tokenLength>0;
+	}
+
+	private void accept(int type, int length) {
+		if ((length>tokenLength)||((length==tokenLength)&&(length>0)&&(type<tokenType))) {
+			tokenType=type;
+			tokenLength=length;
+		}
+	}
+
+	/**
+	 * Gets the length of a path, given the length of its first element
+	 * @param n Length of first element
+	 * @return Length of path, or 0 if there is no path
+	 */
+	private int pathTail(int n) {
+		int i=n;
+		while (peek(i)=='/') {
+			int e=nameLength(i+1);
+			if (e==0) break;
+			i+=e+1;
+		}
+		return (i>n)?i:0;
+	}
+
+	private int nameLength(int k) {
+		int c=peek(k);
+		if (c=='/') return 1;
+		if (!isSymbolFirst(c)) return 0;
+		int i=k+1;
+		while (isSymbolFollowing(peek(i))) i++;
+		return i-k;
+	}
+
+	private int digitsLength(int k) {
+		int i=k;
+		while (isDigit(peek(i))) i++;
+		return i-k;
+	}
+
+	private int doubleLength() {
+		int i=(peek(0)=='-')?1:0;
+		int d=digitsLength(i);
+		if (d==0) return 0;
+		i+=d;
+		boolean decimal=false;
+		if (peek(i)=='.') {
+			int f=digitsLength(i+1);
+			if (f>0) {
+				i+=f+1;
+				decimal=true;
+			}
+		}
+		int e=exponentLength(i);
+		if (e>0) return i+e;
+		return decimal?i:0;
+	}
+
+	private int exponentLength(int k) {
+		int c=peek(k);
+		if ((c!='e')&&(c!='E')) return 0;
+		int i=k+1;
+		if (peek(i)=='-') i++;
+		int d=digitsLength(i);
+		if (d==0) return 0;
+		return i+d-k;
+	}
+
+	private boolean matches(int k, String s) {
+		int n=s.length();
+		for (int i=0; i<n; i++) {
+			if (peek(k+i)!=s.charAt(i)) return false;
+		}
+		return true;
+	}
+
+	private static boolean isDigit(int c) {
+		return (c>='0')&&(c<='9');
+	}
+
+	private static boolean isHex(int c) {
+		return isDigit(c)||((c>='a')&&(c<='f'))||((c>='A')&&(c<='F'));
+	}
+
+	private static boolean isSymbolFirst(int c) {
+		if (((c>='a')&&(c<='z'))||((c>='A')&&(c<='Z'))) return true;
+		switch (c) {
+			case '.': case '*': case '+': case '!': case '-': case '_': case '?':
+			case '$': case '%': case '&': case '=': case '<': case '>':
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	private static boolean isSymbolFollowing(int c) {
+		return isSymbolFirst(c)||isDigit(c)||(c==':')||(c=='#');
+	}
+}
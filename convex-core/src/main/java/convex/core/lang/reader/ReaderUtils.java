@@ -7,13 +7,17 @@ import org.apache.commons.text.StringEscapeUtils;
 import convex.core.data.ACell;
 import convex.core.data.AHashMap;
 import convex.core.data.AMap;
+import convex.core.data.Address;
 import convex.core.data.Keyword;
 import convex.core.data.Keywords;
+import convex.core.data.Lists;
 import convex.core.data.Maps;
 import convex.core.data.Symbol;
 import convex.core.data.Syntax;
 import convex.core.data.prim.CVMChar;
 import convex.core.data.prim.CVMDouble;
+import convex.core.exceptions.ParseException;
+import convex.core.lang.RT;
 import convex.core.lang.Symbols;
 
 public class ReaderUtils {
@@ -75,5 +79,34 @@ public class ReaderUtils {
 	public static ACell specialLiteral(String s) {
 		return specialLiterals.get(s);
 	}
+
+	/**
+	 * Converts a path symbol such as <code>foo/bar</code> or <code>#8/baz</code> to nested lookup forms
+	 * 
+	 * @param matchString Source text of path symbol
+	 * @return Lookup form
+	 */
+	public static ACell pathLookup(String matchString) {
+		String[] ss=matchString.split("/",-1); // negative limit keeps empty values in cases like `#0//`
+		int n=ss.length;
+		if (n<2) {
+			throw new ParseException("Expected followed by symbol but got: ["+ matchString+"]");
+		}
+		
+		ACell lookup=(ss[0].startsWith("#"))?Address.parse(ss[0]):Symbol.create(ss[0]);;
+		if (lookup==null) throw new ParseException("Path must start with Addres or Symbol");
+		
+		for (int i=1; i<n; i++) {
+			String s=ss[i];
+			if ((s.length()==0)&&(i<(n-1))) {
+				// Must be a `/` starting symbol
+				s="/"+ss[++i]; // append and advance
+			}
+			Symbol sym=Symbol.create(s);
+			if (sym==null) throw new ParseException("Expected path element to be a symbol but got: "+ RT.getType(sym));
+			lookup=Lists.of(Symbols.LOOKUP,lookup,sym);
+		}
+		return lookup;
+	}
 	
 }
@@ -1,8 +1,11 @@
 package convex.core.store;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.Consumer;
 
+import convex.core.Constants;
 import convex.core.data.ABlob;
 import convex.core.data.ACell;
 import convex.core.data.Format;
@@ -41,7 +44,8 @@ public abstract class AStore {
 	/**
 	 * Stores a top level @Ref in long term storage as defined by this store implementation.
 	 * 
-	 * Will store nested Refs if required. 
+	 * Will store nested Refs if required. With status STORED, only the top level
+	 * cell is stored, so it may be stored before its children are available.
 	 * 
 	 * Will only store an embedded Ref if it is the top level item.
 	 * 
@@ -56,6 +60,22 @@ public abstract class AStore {
 	 */
 	public abstract <T extends ACell> Ref<T> storeTopRef(Ref<T> ref, int status,Consumer<Ref<ACell>> noveltyHandler);
 
+	/**
+	 * Stores a list of top level Refs in long term storage. Stores may override this to
+	 * write all novelty in a single batch.
+	 * 
+	 * @param refs Refs to store
+	 * @param status Status to store at
+	 * @param noveltyHandler Novelty Handler function for Novelty detected. May be null.
+	 * @return List of persisted Refs, in the same order as the given Refs
+	 */
+	public List<Ref<ACell>> storeTopRefs(List<Ref<ACell>> refs, int status,Consumer<Ref<ACell>> noveltyHandler) {
+		ArrayList<Ref<ACell>> results=new ArrayList<>(refs.size());
+		for (Ref<ACell> ref: refs) {
+			results.add(storeTopRef(ref,status,noveltyHandler));
+		}
+		return results;
+	}
 	
 	/**
 	 * Gets the stored Ref for a given hash value, or null if not found.
@@ -89,7 +109,7 @@ public abstract class AStore {
 	 */
 	public abstract void close();
 	
-	protected final BlobCache blobCache=BlobCache.create(100000);
+	private volatile CellCache cellCache=CellCache.create(Constants.DEFAULT_CELL_CACHE_SIZE);
 	
 	/**
 	 * Decodes a Cell from an Encoding. Looks up Cell in cache if available. Otherwise
@@ -100,7 +120,9 @@ public abstract class AStore {
 	 * @throws BadFormatException If cell encoding is invalid
 	 */
 	public final ACell decode(ABlob encoding) throws BadFormatException {
-		ACell cached=blobCache.getCell(encoding);
+		Hash hash=encoding.getContentHash();
+		CellCache cache=cellCache;
+		ACell cached=cache.get(hash);
 		if (cached!=null) return cached;
 		
 		ACell decoded=Format.read(encoding.toBlob());
@@ -108,8 +130,26 @@ public abstract class AStore {
 		
 		// TODO: can remove this check once happy with all tests
 		assert(decoded.cachedEncoding()!=null);
-		blobCache.putCell(decoded);
+		decoded.getEncoding().attachContentHash(hash);
+		cache.put(hash,decoded);
 		
 		return decoded;
 	}
+	
+	/**
+	 * Gets the cache of decoded Cells for this store
+	 * @return CellCache instance
+	 */
+	public CellCache getCellCache() {
+		return cellCache;
+	}
+	
+	/**
+	 * Sets the maximum number of decoded Cells cached by this store. Replaces the
+	 * current cache, so cached Cells and counters are discarded.
+	 * @param size Maximum number of Cells to cache
+	 */
+	public void setCellCacheSize(int size) {
+		cellCache=CellCache.create(size);
+	}
 }
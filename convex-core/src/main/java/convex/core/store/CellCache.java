@@ -0,0 +1,304 @@
+package convex.core.store;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import convex.core.data.ACell;
+import convex.core.data.Hash;
+import convex.core.util.Utils;
+
+/**
+ * Bounded, thread-safe in-memory cache for decoded Cells, keyed by encoding hash. Should be
+ * used in the context of a specific Store.
+ *
+ * The cache is split into independently locked segments. Each segment uses CLOCK eviction with
+ * small per-entry frequency counters, and a TinyLFU admission filter: a new Cell only replaces
+ * the eviction victim if it has been requested at least as often recently, according to a
+ * count-min sketch of request frequencies. Hot Cells therefore stay resident when many one-off
+ * Cells are decoded.
+ */
+public final class CellCache {
+
+	/**
+	 * Maximum value of per-entry CLOCK frequency counters
+	 */
+	private static final int MAX_FREQUENCY=3;
+
+	/**
+	 * Target number of entries per segment, used to choose the number of segments
+	 */
+	private static final int SEGMENT_TARGET_SIZE=1024;
+
+	private static final int MAX_SEGMENTS=64;
+
+	private final Segment[] segments;
+	private final int capacity;
+
+	private CellCache(int capacity) {
+		if (capacity<=0) throw new IllegalArgumentException("Cell cache capacity must be positive: "+capacity);
+		int n=1;
+		while ((n<MAX_SEGMENTS)&&(n*SEGMENT_TARGET_SIZE<capacity)) n*=2;
+		this.segments=new Segment[n];
+		for (int i=0; i<n; i++) {
+			// spread remainder over first segments so that total capacity is exact
+			segments[i]=new Segment(capacity/n+((i<capacity%n)?1:0));
+		}
+		this.capacity=capacity;
+	}
+
+	/**
+	 * Creates a CellCache with the given maximum number of entries
+	 * @param capacity Maximum number of Cells to cache
+	 * @return New CellCache instance
+	 */
+	public static CellCache create(int capacity) {
+		return new CellCache(capacity);
+	}
+
+	/**
+	 * Gets the cached Cell for a given encoding hash, or null if not cached.
+	 * @param hash Hash of Cell encoding
+	 * @return Cached Cell, or null if not found
+	 */
+	public ACell get(Hash hash) {
+		Segment s=segmentFor(hash);
+		synchronized (s) {
+			return s.get(hash);
+		}
+	}
+
+	/**
+	 * Stores a Cell in the cache. The Cell may not be retained if other cached Cells
+	 * are requested more frequently.
+	 * @param hash Hash of Cell encoding
+	 * @param cell Cell to store
+	 */
+	public void put(Hash hash, ACell cell) {
+		Segment s=segmentFor(hash);
+		synchronized (s) {
+			s.put(hash,cell);
+		}
+	}
+
+	/**
+	 * Removes all Cells from the cache. Counters are retained.
+	 */
+	public void clear() {
+		for (Segment s: segments) {
+			synchronized (s) {
+				s.clear();
+			}
+		}
+	}
+
+	private Segment segmentFor(Hash hash) {
+		return segments[hash.firstInt()&(segments.length-1)];
+	}
+
+	/**
+	 * Gets the maximum number of Cells held by this cache
+	 * @return Capacity in number of Cells
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Gets the number of Cells currently held by this cache
+	 * @return Number of cached Cells
+	 */
+	public int size() {
+		int result=0;
+		for (Segment s: segments) {
+			synchronized (s) {
+				result+=s.count;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Gets the number of lookups which found a cached Cell
+	 * @return Hit count
+	 */
+	public long getHits() {
+		long result=0;
+		for (Segment s: segments) {
+			synchronized (s) {
+				result+=s.hits;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Gets the number of lookups which did not find a cached Cell
+	 * @return Miss count
+	 */
+	public long getMisses() {
+		long result=0;
+		for (Segment s: segments) {
+			synchronized (s) {
+				result+=s.misses;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Gets the number of Cells evicted to make space for new Cells
+	 * @return Eviction count
+	 */
+	public long getEvictions() {
+		long result=0;
+		for (Segment s: segments) {
+			synchronized (s) {
+				result+=s.evictions;
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return "CellCache size="+size()+"/"+capacity+" hits="+getHits()+" misses="+getMisses()+" evictions="+getEvictions();
+	}
+
+	/**
+	 * Cache segment. All access must be synchronized on the segment.
+	 */
+	private static final class Segment {
+		private final HashMap<Hash,Integer> index;
+		private final Hash[] keys;
+		private final ACell[] values;
+		private final byte[] frequency;
+		private final FrequencySketch sketch;
+
+		private int count=0;
+		private int hand=0;
+
+		private long hits=0;
+		private long misses=0;
+		private long evictions=0;
+
+		private Segment(int capacity) {
+			capacity=Math.max(1, capacity);
+			index=new HashMap<>(capacity*4/3+1);
+			keys=new Hash[capacity];
+			values=new ACell[capacity];
+			frequency=new byte[capacity];
+			sketch=new FrequencySketch(capacity);
+		}
+
+		private ACell get(Hash hash) {
+			sketch.increment(hash);
+			Integer ix=index.get(hash);
+			if (ix==null) {
+				misses++;
+				return null;
+			}
+			int i=ix;
+			if (frequency[i]<MAX_FREQUENCY) frequency[i]++;
+			hits++;
+			return values[i];
+		}
+
+		private void put(Hash hash, ACell cell) {
+			Integer ix=index.get(hash);
+			if (ix!=null) {
+				values[ix]=cell;
+				return;
+			}
+
+			int i;
+			if (count<keys.length) {
+				i=count++;
+			} else {
+				i=findVictim();
+				// TinyLFU admission, keep the victim if it is more popular
+				if (sketch.frequency(hash)<sketch.frequency(keys[i])) return;
+				index.remove(keys[i]);
+				evictions++;
+			}
+			keys[i]=hash;
+			values[i]=cell;
+			frequency[i]=0;
+			index.put(hash, i);
+		}
+
+		/**
+		 * Finds an entry to evict using the CLOCK algorithm. Entries with a non-zero
+		 * frequency get another chance, with their frequency decremented.
+		 * @return Index of entry to evict
+		 */
+		private int findVictim() {
+			int n=keys.length;
+			while (true) {
+				int i=hand;
+				hand=(i+1==n)?0:i+1;
+				if (frequency[i]==0) return i;
+				frequency[i]--;
+			}
+		}
+
+		private void clear() {
+			index.clear();
+			Arrays.fill(keys, null);
+			Arrays.fill(values, null);
+			Arrays.fill(frequency, (byte)0);
+			count=0;
+			hand=0;
+		}
+	}
+
+	/**
+	 * Count-min sketch of request frequencies, with 4 rows of small saturating counters.
+	 * All counters are halved periodically so that old popularity decays.
+	 */
+	private static final class FrequencySketch {
+		private static final int ROWS=4;
+		private static final int MAX_COUNT=15;
+
+		private final byte[] counters;
+		private final int mask;
+		private final int sampleSize;
+		private int additions=0;
+
+		private FrequencySketch(int capacity) {
+			int width=16;
+			while (width<capacity) width*=2;
+			counters=new byte[width*ROWS];
+			mask=width-1;
+			sampleSize=10*Math.max(16, capacity);
+		}
+
+		private int slot(Hash hash, int row) {
+			// hash values are uniformly random, so take independent bits for each row
+			long bits=Utils.readLong(hash.getInternalArray(), hash.getInternalOffset()+row*8);
+			return row*(mask+1)+((int)(bits^(bits>>>32))&mask);
+		}
+
+		private void increment(Hash hash) {
+			for (int row=0; row<ROWS; row++) {
+				int i=slot(hash,row);
+				if (counters[i]<MAX_COUNT) counters[i]++;
+			}
+			if (++additions>=sampleSize) reset();
+		}
+
+		private int frequency(Hash hash) {
+			int result=MAX_COUNT;
+			for (int row=0; row<ROWS; row++) {
+				result=Math.min(result, counters[slot(hash,row)]);
+			}
+			return result;
+		}
+
+		private void reset() {
+			for (int i=0; i<counters.length; i++) {
+				counters[i]=(byte)(counters[i]>>1);
+			}
+			additions/=2;
+		}
+	}
+}
@@ -69,12 +69,14 @@ public class MemoryStore extends AStore {
 			}
 		}
 		
-		// need to do recursive persistence
-		cell  = cell.updateRefs(r -> {
-			return r.persist(noveltyHandler);
-		});
-		
-		ref=ref.withValue((T)cell);
+		// need to do recursive persistence, unless only storing this cell
+		if (requiredStatus>Ref.STORED) {
+			cell  = cell.updateRefs(r -> {
+				return r.persist(noveltyHandler);
+			});
+			ref=ref.withValue((T)cell);
+		}
+
 		final ACell oTemp=cell;
 
 		if (topLevel||!embedded) {
@@ -84,6 +86,7 @@ public class MemoryStore extends AStore {
 				log.trace("Persisting ref 0x"+fHash.toHexString()+" of class "+Utils.getClassName(oTemp)+" with store "+this);
 			}
 			
+			ref=ref.withMinimumStatus(requiredStatus);
 			hashRefs.put(fHash, (Ref<ACell>) ref);
 			if (noveltyHandler != null) noveltyHandler.accept((Ref<ACell>) ref);
 		}
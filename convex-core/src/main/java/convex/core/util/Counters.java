@@ -1,5 +1,8 @@
 package convex.core.util;
 
+import convex.core.crypto.SignatureCache;
+import convex.core.lang.CompileCache;
+
 /**
  * Some event counters, for debugging and general metrics
  */
@@ -12,6 +15,7 @@ public class Counters {
 	public static volatile long etchRead = 0;
 	public static volatile long etchWrite = 0;
 	public static volatile long etchMiss =0;
+	public static volatile long etchCommit = 0;
 	
 	public String getStats() {
 		StringBuffer sb=new StringBuffer();
@@ -19,6 +23,8 @@ public class Counters {
 		sb.append("Etch writes:  "+etchWrite);
 		sb.append("Etch reads:   "+etchRead);
 		sb.append("Etch hit(%):  "+Text.toPercentString(100.0*(etchRead-etchMiss)/etchRead));
+		sb.append("Sig cache hit(%):  "+Text.toPercentString(100.0*SignatureCache.getHitRate()));
+		sb.append("Compile cache hit(%):  "+Text.toPercentString(100.0*CompileCache.getHitRate()));
 		
 		return sb.toString();
 	}
@@ -5,12 +5,23 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
 import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -54,8 +65,46 @@ import convex.core.util.Utils;
  *    - 8 bytes Memory Size (TODO: might be negative for unknown?)
  * - 2 bytes data length N (a short)
  * - N byes actual data
+ *
+ * CONCURRENCY: Etch supports a single writer and any number of concurrent readers. Writes
+ * are serialised by the monitor of the Etch instance. Readers take no locks: data blocks are
+ * always fully written before the index slot pointing to them is published with release
+ * semantics, and readers read slots with acquire semantics. The data length is a volatile
+ * high-water mark. New index blocks are 8-byte aligned so slot updates cannot be torn.
+ *
+ * A lock-free read may transiently miss a key while a concurrent write restructures the
+ * index (e.g. collapsing a chain). Readers detect this using a write sequence counter, and
+ * retry under the writer lock if a miss overlaps with a write.
+ *
+ * DURABILITY: By default, Etch makes no guarantees after a crash, and the data length in the
+ * header is only written on close. In a durable mode, writes are group committed. A commit forces
+ * all data to disk, then writes a small redo record with the data length, root hash and any
+ * deferred index slot updates to a write-ahead log alongside the Etch file. Index slots below the
+ * committed data length are never modified in the mapped file between commits, so the committed
+ * state on disk is never damaged by a crash. On open, the last valid commit record is replayed
+ * and any torn tail past the committed data length is truncated.
  */
 public class Etch {
+	/**
+	 * Durability modes for an Etch file
+	 */
+	public enum Durability {
+		/**
+		 * No guarantees after a crash. Data length is only written on close.
+		 */
+		NONE,
+
+		/**
+		 * Group commit, at most once every commit interval or when commit() is called
+		 */
+		GROUP,
+
+		/**
+		 * Commit after every write, batch of writes or root hash update
+		 */
+		SYNC
+	}
+
 	// structural constants for data block
 	private static final int KEY_SIZE=32;
 	private static final int LABEL_SIZE=1+8; // Flags (byte) plus Memory Size (long)
@@ -106,6 +155,20 @@ public class Etch {
 	private static final long PTR_START=0x8000000000000000L; // start of chained entries
 	private static final long PTR_CHAIN=0xC000000000000000L; // chained entries after start
 
+	/**
+	 * Magic number for commit records in the write-ahead log
+	 */
+	private static final int COMMIT_MAGIC=0xe7c6c0de;
+
+	/**
+	 * Size of a commit record excluding slot updates and checksum:
+	 * - Magic number (4 bytes)
+	 * - Data length (8 bytes)
+	 * - Root hash (32 bytes)
+	 * - Number of slot updates (4 bytes)
+	 */
+	private static final int SIZE_COMMIT_HEADER=4+8+Hash.LENGTH+4;
+
 	private static final Logger log=LoggerFactory.getLogger(Etch.class.getName());
 
 	/**
@@ -123,15 +186,76 @@ public class Etch {
 	 */
 	private static long tempIndex=0;
 
-	private final File file;
+	private File file;
 	private final RandomAccessFile data;
 
 	/**
-	 * List of MappedByteBuffers for each region of the database file.
+	 * Array of MappedByteBuffers for each region of the database file. Replaced
+	 * (copy on write) when regions are added or grown, so readers can access without locking.
+	 */
+	private volatile MappedByteBuffer[] regionMap=new MappedByteBuffer[0];
+
+	/**
+	 * Lock for creating mapped regions. Separate from the writer lock so that readers
+	 * needing a new region mapping do not wait for writes.
+	 */
+	private final Object regionLock=new Object();
+
+	/**
+	 * High-water mark of written data. Published after data is written, so any pointer
+	 * a reader sees must be below this.
 	 */
-	private final ArrayList<MappedByteBuffer> regionMap=new ArrayList<>();
+	private volatile long dataLength=0;
 
-	private long dataLength=0;
+	/**
+	 * Append position for the writer. Only modified with the writer lock held, and
+	 * published to readers via dataLength at the end of each write or batch of writes.
+	 */
+	private long writeLength=0;
+
+	/**
+	 * Write sequence counter. Odd while a write is in progress.
+	 */
+	private volatile long writeSequence=0;
+
+	/**
+	 * Cached root hash, so that readers don't need to access the file header
+	 */
+	private volatile Hash rootHash;
+
+	private volatile Durability durability=Durability.NONE;
+	private long commitInterval=0;
+
+	/**
+	 * Data length covered by the last commit. While a durable mode is active, index slots below
+	 * this position are never modified in the mapped file between commits. Zero if no durable
+	 * mode is active.
+	 */
+	private volatile long committedLength=0;
+
+	/**
+	 * Index slot updates below the committed length, deferred until the next commit. Checked
+	 * by readers ahead of the mapped file.
+	 */
+	private final ConcurrentHashMap<Long,Long> pendingSlots=new ConcurrentHashMap<>();
+
+	/**
+	 * Regions modified by the last commit when applying deferred updates, which must be
+	 * forced by the next commit
+	 */
+	private BitSet appliedRegions=new BitSet();
+
+	/**
+	 * True if anything has been written since the last commit
+	 */
+	private boolean uncommitted=false;
+
+	/**
+	 * Write-ahead log channel, only opened in a durable mode
+	 */
+	private FileChannel wal;
+
+	private Thread commitThread;
 
 	private boolean BUILD_CHAINS=true;
 	private EtchStore store;
@@ -161,16 +285,19 @@ public class Etch {
 			int headerZeros=SIZE_HEADER_FILESIZE+SIZE_HEADER_ROOT;
 			byte[] temp=new byte[headerZeros];
 			mbb.put(temp,0,headerZeros);
-			dataLength=SIZE_HEADER; // advance past initial long
+			writeLength=SIZE_HEADER; // advance past initial long
 
-			// add an index block
-			long indexStart=appendNewIndexBlock();
+			// add the root index block, which is always at a fixed position
+			long indexStart=appendNewIndexBlock(INDEX_START);
 			assert(indexStart==INDEX_START);
 
 			// ensure data length is initially correct
 			mbb=seekMap(SIZE_HEADER_MAGIC);
-			mbb.putLong(dataLength);
+			mbb.putLong(writeLength);
 		} else {
+			// replay any commit record left by a crash, before mapping the file
+			recover();
+
 			// existing file, so need to read the length pointer
 			MappedByteBuffer mbb=seekMap(0);
 			byte[] check=new byte[2];
@@ -180,8 +307,15 @@ public class Etch {
 			}
 
 			long length = mbb.getLong();
-			dataLength=length;
+			writeLength=length;
 		}
+		dataLength=writeLength;
+
+		// cache current root hash
+		MappedByteBuffer rmbb=seekMap(OFFSET_ROOT_HASH);
+		byte[] bs=new byte[Hash.LENGTH];
+		rmbb.get(bs);
+		rootHash=Hash.wrap(bs);
 
 		// shutdown hook to close file / release lock
 		convex.core.util.Shutdown.addHook(Shutdown.ETCH,new Runnable() {
@@ -210,7 +344,10 @@ public class Etch {
 	 */
 	public static Etch createTempEtch(String prefix) throws IOException {
 		File data = File.createTempFile(prefix+"-", null);
-		if (Constants.ETCH_DELETE_TEMP_ON_EXIT) data.deleteOnExit();
+		if (Constants.ETCH_DELETE_TEMP_ON_EXIT) {
+			data.deleteOnExit();
+			walFile(data).deleteOnExit();
+		}
 		return new Etch(data);
 	}
 
@@ -237,8 +374,8 @@ public class Etch {
 	private MappedByteBuffer seekMap(long position) throws IOException {
 		position=slotPointer(position); // ensure we don't have any pesky type bits
 
-		if ((position<0)||(position>dataLength)) {
-			throw new Error("Seek out of range in Etch file: position="+Utils.toHexString(position)+ " dataLength="+Utils.toHexString(dataLength)+" file="+file.getName());
+		if ((position<0)||(position>writeLength)) {
+			throw new Error("Seek out of range in Etch file: position="+Utils.toHexString(position)+ " dataLength="+Utils.toHexString(writeLength)+" file="+file.getName());
 		}
 		int mapIndex=Utils.checkedInt(position/MAX_REGION_SIZE); // 1GB chunks
 
@@ -249,15 +386,25 @@ public class Etch {
 
 	private MappedByteBuffer getBuffer(int regionIndex) throws IOException {
 		// Get current mapped region, or null if out of range
-		int regionMapSize=regionMap.size();
-		MappedByteBuffer mbb=(regionIndex<regionMapSize)?regionMap.get(regionIndex):null;
+		MappedByteBuffer[] regions=regionMap;
+		MappedByteBuffer mbb=(regionIndex<regions.length)?regions[regionIndex]:null;
 
 		// Call createBuffer if mapped region does not exist, or is too small
-		if ((mbb==null)||(mbb.capacity()<dataLength+REGION_MARGIN)) mbb=createBuffer(regionIndex);
+		if ((mbb==null)||(mbb.capacity()<requiredRegionCapacity(regionIndex))) mbb=createBuffer(regionIndex);
 
 		return mbb;
 	}
 
+	/**
+	 * Gets the capacity a mapped region needs to cover the current data length plus margin
+	 * @param regionIndex Index of database file region
+	 * @return Required capacity in bytes
+	 */
+	private long requiredRegionCapacity(int regionIndex) {
+		long pos=regionIndex*(long)MAX_REGION_SIZE;
+		return Math.min(writeLength-pos, MAX_REGION_SIZE)+REGION_MARGIN;
+	}
+
 	/**
 	 * Create a MappedByteBuffer at the specified region index position.
 	 *
@@ -267,21 +414,31 @@ public class Etch {
 	 * @return
 	 * @throws IOException
 	 */
-	private synchronized MappedByteBuffer createBuffer(int regionIndex) throws IOException {
-		while(regionMap.size()<=regionIndex) regionMap.add(null);
+	private MappedByteBuffer createBuffer(int regionIndex) throws IOException {
+		synchronized (regionLock) {
+			// another thread may have already created a big enough region
+			MappedByteBuffer[] regions=regionMap;
+			if (regionIndex<regions.length) {
+				MappedByteBuffer existing=regions[regionIndex];
+				if ((existing!=null)&&(existing.capacity()>=requiredRegionCapacity(regionIndex))) return existing;
+			}
 
-		long pos=regionIndex*(long)MAX_REGION_SIZE;
+			long pos=regionIndex*(long)MAX_REGION_SIZE;
 
-		// Expand region size until big enough for current database plus appropriate margin
-		int length=1<<16;
-		while((length<MAX_REGION_SIZE)&&((pos+length)<(dataLength+REGION_MARGIN))) {
-			length*=2;
-		}
+			// Expand region size until big enough for current database plus appropriate margin
+			int length=1<<16;
+			while((length<MAX_REGION_SIZE)&&((pos+length)<(writeLength+REGION_MARGIN))) {
+				length*=2;
+			}
 
-		length+=REGION_MARGIN; // include margin in buffer length
-		MappedByteBuffer mbb= data.getChannel().map(MapMode.READ_WRITE, pos, length);
-		regionMap.set(regionIndex, mbb);
-		return mbb;
+			length+=REGION_MARGIN; // include margin in buffer length
+			MappedByteBuffer mbb= data.getChannel().map(MapMode.READ_WRITE, pos, length);
+
+			MappedByteBuffer[] newRegions=Arrays.copyOf(regions, Math.max(regions.length, regionIndex+1));
+			newRegions[regionIndex]=mbb;
+			regionMap=newRegions;
+			return mbb;
+		}
 	}
 
 	/**
@@ -296,7 +453,55 @@ public class Etch {
 	 */
 	public synchronized Ref<ACell> write(AArrayBlob key, Ref<ACell> value) throws IOException {
 		Counters.etchWrite++;
-		return write(key,0,value,INDEX_START);
+		uncommitted=true;
+		Ref<ACell> result;
+		writeSequence++; // odd, write in progress
+		try {
+			result=write(key,0,value,INDEX_START);
+		} finally {
+			dataLength=writeLength; // publish new data to readers
+			writeSequence++; // even, write complete
+		}
+		if (durability==Durability.SYNC) commit();
+		return result;
+	}
+
+	/**
+	 * Writes a batch of Refs to the immutable store, keyed by their hashes. Writes are sorted
+	 * by key so that writes touching the same index blocks are adjacent, and are performed in a
+	 * single locked pass with one update of the published data length.
+	 *
+	 * CONCURRENCY: Hold a lock for a single writer
+	 *
+	 * @param refs Refs to write. Values must be available.
+	 * @return List of Refs after writing to store, in the same order as the given Refs
+	 * @throws IOException If an IO error occurs
+	 */
+	public synchronized List<Ref<ACell>> writeAll(List<Ref<ACell>> refs) throws IOException {
+		int n=refs.size();
+		Counters.etchWrite+=n;
+
+		Integer[] order=new Integer[n];
+		Hash[] keys=new Hash[n];
+		for (int i=0; i<n; i++) {
+			order[i]=i;
+			keys[i]=refs.get(i).getHash();
+		}
+		Arrays.sort(order, (a,b)->keys[a].compareTo(keys[b]));
+
+		ArrayList<Ref<ACell>> results=new ArrayList<>(Collections.nCopies(n, null));
+		uncommitted=true;
+		writeSequence++; // odd, write in progress
+		try {
+			for (int i: order) {
+				results.set(i, write(keys[i],0,refs.get(i),INDEX_START));
+			}
+		} finally {
+			dataLength=writeLength; // publish new data to readers
+			writeSequence++; // even, write complete
+		}
+		if (durability==Durability.SYNC) commit();
+		return results;
 	}
 
 	private Ref<ACell> write(AArrayBlob key, int keyOffset, Ref<ACell> value, long indexPosition) throws IOException {
@@ -322,7 +527,7 @@ public class Etch {
 			// check if we have the same value first, otherwise need to resolve conflict
 			// This should have the current (potential collision) key in tempArray
 			if (checkMatchingKey(key,slotValue)) {
-				return updateInPlace(slotValue,value);
+				return updateInPlace(indexPosition,digit,slotValue,key,value);
 			}
 			byte[] temp=tempArray.get();
 
@@ -358,7 +563,7 @@ public class Etch {
 		} else if (type==PTR_START) {
 			// first check if the start pointer is the right value. if so, bail out with nothing to do
 			if (checkMatchingKey(key, slotValue)) {
-				return updateInPlace(slotValue,value);
+				return updateInPlace(indexPosition,digit,slotValue,key,value);
 			}
 
 			// now scan slots, looking for either the right value or an empty space
@@ -376,7 +581,7 @@ public class Etch {
 
 				// if we found the key itself, return since already stored.
 				if (checkMatchingKey(key, slotValue)) {
-					return updateInPlace(slotValue,value);
+					return updateInPlace(indexPosition,digit+i,slotValue,key,value);
 				}
 
 				i++;
@@ -395,11 +600,14 @@ public class Etch {
 				long movingSlotValue=readSlot(indexPosition,movingDigit);
 				long dp=slotPointer(movingSlotValue); // just the raw pointer
 				writeExistingData(newIndexPos,keyOffset+1,dp);
-				if (j!=0) writeSlot(indexPosition,movingDigit,0L); // clear the old chain
 			}
 
-			// finally update this index with the new index pointer
+			// update this index with the new index pointer, then clear the old chain.
+			// Order matters for concurrent readers, new index must be published first
 			writeSlot(indexPosition,digit,newIndexPos|PTR_INDEX);
+			for (int j=1; j<i; j++) {
+				writeSlot(indexPosition,digit+j,0L);
+			}
 			return value;
 		} else if (type==PTR_CHAIN) {
 			// need to collapse existing chain
@@ -414,10 +622,13 @@ public class Etch {
 				long movingSlotValue=readSlot(indexPosition,movingDigit);
 				long dp=slotPointer(movingSlotValue); // just the raw pointer
 				writeExistingData(newIndexPos,keyOffset+1,dp);
-				if (j!=0) writeSlot(indexPosition,movingDigit,0L); // clear the old chain
 			}
 
+			// publish new index before clearing the old chain, see above
 			writeSlot(indexPosition,chainStartDigit,newIndexPos|PTR_INDEX);
+			for (int j=1; j<n; j++) {
+				writeSlot(indexPosition,chainStartDigit+j,0L);
+			}
 
 			// write to the current slot
 			return writeNewData(indexPosition,digit,key,value,PTR_PLAIN);
@@ -537,7 +748,7 @@ public class Etch {
 	protected void truncateFile() throws FileNotFoundException, IOException {
 		try (FileOutputStream fos=new FileOutputStream(file, true)) {
 			FileChannel outChan = fos.getChannel() ;
-			outChan.truncate(dataLength);
+			outChan.truncate(writeLength);
 		}
 	}
 
@@ -548,21 +759,17 @@ public class Etch {
 	synchronized void close() {
 		if (!(data.getChannel().isOpen())) return; // already closed
 		try {
-			// write final data length
-			MappedByteBuffer mbb=seekMap(OFFSET_FILE_SIZE);
-			mbb.putLong(dataLength);
-			mbb=null;
-
-			// Force writes to disk. Probably useful.
-			for (MappedByteBuffer m: regionMap) {
-				m.force();
-			}
-			regionMap.clear();
+			if (commitThread!=null) commitThread.interrupt();
+
+			// write final data length and force writes to disk
+			checkpoint();
+			if (wal!=null) wal.close();
+			regionMap=new MappedByteBuffer[0];
 			System.gc();
 
 			data.close();
 
-			log.debug("Etch closed on file: "+data+" with data length: "+dataLength);
+			log.debug("Etch closed on file: "+data+" with data length: "+writeLength);
 		} catch (IOException e) {
 			log.error("Error closing Etch file: "+file);
 			e.printStackTrace();
@@ -605,7 +812,7 @@ public class Etch {
 	 * @throws IOException
 	 */
 	private long appendLeafIndex(int digit, long dataPointer) throws IOException {
-		long position=dataLength;
+		long position=alignIndexPosition();
 		byte[] temp=tempArray.get();
 		Arrays.fill(temp, (byte)0x00);
 		int ix=POINTER_SIZE*(digit&0xFF);
@@ -627,6 +834,12 @@ public class Etch {
 		Counters.etchRead++;
 
 		long pointer=seekPosition(key);
+		if (pointer==-2) {
+			// Possible false miss due to a concurrent write, so retry with writer lock
+			synchronized(this) {
+				pointer=seekPosition(key,0,INDEX_START);
+			}
+		}
 		if (pointer<0) {
 			Counters.etchMiss++;
 			return null; // not found
@@ -648,6 +861,7 @@ public class Etch {
 		Blob encoding= Blob.wrap(bs);
 		try {
 			Hash hash=Hash.wrap(key);
+			encoding.attachContentHash(hash); // avoid hashing for cache lookup
 			ACell cell=store.decode(encoding);
 			cell.getEncoding().attachContentHash(hash);
 
@@ -669,7 +883,7 @@ public class Etch {
 	 * Flushes any changes to persistent storage.
 	 * @throws IOException If an IO error occurs
 	 */
-	public synchronized void flush() throws IOException {
+	public void flush() throws IOException {
 		for (MappedByteBuffer mbb: regionMap) {
 			if (mbb!=null) mbb.force();
 		}
@@ -677,13 +891,19 @@ public class Etch {
 	}
 
 	/**
-	 * Gets the position of a value in the data file from the index
+	 * Gets the position of a value in the data file from the index, without locking.
+	 *
 	 * @param key Key value
-	 * @return data file offset or -1 if not found
+	 * @return data file offset, -1 if not found, or -2 if the lookup overlapped with
+	 *         a concurrent write and should be retried with the writer lock held.
 	 * @throws IOException
 	 */
 	private long seekPosition(AArrayBlob key) throws IOException {
-		return seekPosition(key,0,INDEX_START);
+		long seq=writeSequence;
+		long result=seekPosition(key,0,INDEX_START);
+		if (result>=0) return result;
+		if (((seq&1L)!=0L)||(seq!=writeSequence)) return -2;
+		return -1;
 	}
 
 	/**
@@ -695,8 +915,13 @@ public class Etch {
 	 */
 	private long readSlot(long indexPosition, int digit) throws IOException {
 		long pointerIndex=indexPosition+POINTER_SIZE*(digit&0xFF);
+		if ((pointerIndex<committedLength)&&!pendingSlots.isEmpty()) {
+			Long pending=pendingSlots.get(pointerIndex);
+			if (pending!=null) return pending;
+		}
 		MappedByteBuffer mbb=seekMap(pointerIndex);
 		long pointer=mbb.getLong();
+		VarHandle.acquireFence(); // see data written before slot was published
 		return pointer;
 	}
 
@@ -718,12 +943,21 @@ public class Etch {
 
     /**
      * Updates a Ref in place at the specified position. Assumes data not changed.
-     * @param position Data position in storage file
+     *
+     * Committed data is not modified while a durable mode is active. Instead, an updated
+     * copy of the data is appended and the slot is updated to point to it.
+     *
+     * @param indexPosition Position of index block containing the slot for the data
+     * @param digit Digit of the slot in the index block
+     * @param slotValue Current slot value, including type bits
+     * @param key Key for the data
      * @param ref
      * @return
      * @throws IOException
      */
-	private Ref<ACell> updateInPlace(long position, Ref<ACell> ref) throws IOException {
+	private Ref<ACell> updateInPlace(long indexPosition, int digit, long slotValue, AArrayBlob key, Ref<ACell> ref) throws IOException {
+		long position=slotPointer(slotValue);
+
 		// Seek to status location
 		MappedByteBuffer mbb=seekMap(position+KEY_SIZE);
 
@@ -735,6 +969,13 @@ public class Etch {
 
 		if (currentFlags==newFlags) return ref;
 
+		if (position<committedLength) {
+			Ref<ACell> updated=ref.withFlags(newFlags);
+			long newDataPointer=appendData(key,updated);
+			writeSlot(indexPosition,digit,newDataPointer|slotType(slotValue));
+			return updated;
+		}
+
 		// We have a status change, need to increase status of store
 		mbb=seekMap(position+KEY_SIZE);
 		mbb.put((byte)newFlags);
@@ -757,7 +998,13 @@ public class Etch {
 	 */
 	private void writeSlot(long indexPosition, int digit, long slotValue) throws IOException {
 		long position=indexPosition+(digit&0xFF)*POINTER_SIZE;
+		if (position<committedLength) {
+			// defer update of committed index until next commit
+			pendingSlots.put(position, slotValue);
+			return;
+		}
 		MappedByteBuffer mbb=seekMap(position);
+		VarHandle.releaseFence(); // publish previously written data before slot
 		mbb.putLong(slotValue);
 	}
 
@@ -777,7 +1024,10 @@ public class Etch {
 		int digit=key.byteAt(offset)&0xFF;
 		long slotValue=readSlot(indexPosition,digit);
 		long type=(slotValue&TYPE_MASK);
-		if (slotValue==0) {
+		if (slotPointer(slotValue)>dataLength) {
+			// can only happen with a torn read during a concurrent write
+			return -2;
+		} else if (slotValue==0) {
 			// Empty slot i.e. not found
 			return -1;
 		} else if (type==PTR_INDEX) {
@@ -791,18 +1041,17 @@ public class Etch {
 			// continuation of chain from some previous index, therefore key can't be present
 			return -1;
 		} else if (type==PTR_START) {
-			synchronized (this) {
-				// start of chain, so scan chain of entries
-				int i=0;
-				while (i<256) {
-					long ptr=slotValue&(~TYPE_MASK);
-					if (checkMatchingKey(key,ptr)) return ptr;
-
-					i++; // advance to next position
-					slotValue=readSlot(indexPosition,digit+i);
-					type=(slotValue&TYPE_MASK);
-					if (!(type==PTR_CHAIN)) return -1; // reached end of chain
-				}
+			// start of chain, so scan chain of entries
+			int i=0;
+			while (i<256) {
+				long ptr=slotValue&(~TYPE_MASK);
+				if (checkMatchingKey(key,ptr)) return ptr;
+
+				i++; // advance to next position
+				slotValue=readSlot(indexPosition,digit+i);
+				type=(slotValue&TYPE_MASK);
+				if (!(type==PTR_CHAIN)) return -1; // reached end of chain
+				if (slotPointer(slotValue)>dataLength) return -2;
 			}
 			return -1;
 		} else {
@@ -817,7 +1066,16 @@ public class Etch {
 	 * @throws IOException
 	 */
 	private long appendNewIndexBlock() throws IOException {
-		long position=dataLength;
+		return appendNewIndexBlock(alignIndexPosition());
+	}
+
+	/**
+	 * Append a new empty index block to the store file at the given position.
+	 * @param position Position for the new index block, must be the current data length
+	 * @return The location of the newly added index block.
+	 * @throws IOException
+	 */
+	private long appendNewIndexBlock(long position) throws IOException {
 		byte[] temp=tempArray.get();
 		MappedByteBuffer mbb=seekMap(position);
 		Arrays.fill(temp,(byte)0);
@@ -850,7 +1108,7 @@ public class Etch {
 		}
 
 		// position ready for append
-		final long position=dataLength;
+		final long position=writeLength;
 		MappedByteBuffer mbb=seekMap(position);
 
 		// append key
@@ -882,38 +1140,304 @@ public class Etch {
 	}
 
 	/**
-	 * Sets the total db dataLength. This is the last position in the database
-	 * that new data can be writtern too.
+	 * Advances the data length to the next 8-byte aligned position, so that a new index
+	 * block can be appended with aligned slots.
+	 *
+	 * @return Aligned position for new index block
+	 */
+	private long alignIndexPosition() {
+		long position=(writeLength+(POINTER_SIZE-1))&~(long)(POINTER_SIZE-1);
+		setDataLength(position);
+		return position;
+	}
+
+	/**
+	 * Sets the total db dataLength for the writer. This is the last position in the database
+	 * that new data can be writtern too. Not visible to readers until published.
 	 *
 	 * @param value The new data length to be set
 	 *
 	 */
 	private void setDataLength(long value) {
 		// we can never go back! If we do then we will be corrupting the database
-		if (value < dataLength) {
+		if (value < writeLength) {
 			throw new Error("PANIC! New data length is less than the old data length");
 		}
-		dataLength = value;
+		writeLength = value;
 	}
 
 	public File getFile() {
 		return file;
 	}
 
-	public synchronized Hash getRootHash() throws IOException {
-		MappedByteBuffer mbb=seekMap(OFFSET_ROOT_HASH);
-		byte[] bs=new byte[Hash.LENGTH];
-		mbb.get(bs);
-		return Hash.wrap(bs);
+	/**
+	 * Gets the current data length of this Etch file, i.e. the position at which
+	 * the next write will be appended.
+	 * @return Data length in bytes
+	 */
+	public long getDataLength() {
+		return dataLength;
+	}
+
+	/**
+	 * Atomically moves the underlying file of this Etch instance to the given destination,
+	 * replacing any existing file. The open channel and mapped regions remain valid, so
+	 * this Etch instance can continue to be used for reads and writes.
+	 *
+	 * Used to swap in a compacted file after garbage collection. Requires a file system
+	 * that supports atomic renames of open files (e.g. POSIX).
+	 *
+	 * @param dest Destination file
+	 * @throws IOException If the move fails
+	 */
+	synchronized void moveTo(File dest) throws IOException {
+		checkpoint();
+		Files.move(file.toPath(), dest.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+		// move the write-ahead log too, so later commits are recovered with the file
+		File walFile=walFile(file);
+		if (walFile.exists()) {
+			Files.move(walFile.toPath(), walFile(dest).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		file=dest;
+	}
+
+	public Hash getRootHash() throws IOException {
+		return rootHash;
 	}
 
 	public synchronized void setRootHash(Hash h) throws IOException {
+		rootHash=h;
+		if (durability!=Durability.NONE) {
+			// header is written on commit
+			uncommitted=true;
+			if (durability==Durability.SYNC) commit();
+			return;
+		}
 		MappedByteBuffer mbb=seekMap(OFFSET_ROOT_HASH);
 		byte[] bs=h.getBytes();
 		assert(bs.length==Hash.LENGTH);
 		mbb.put(bs);
 	}
 
+	/**
+	 * Sets the durability mode for this Etch file. Switching to a durable mode performs an
+	 * initial commit. In GROUP mode, a background thread commits any new writes at most once
+	 * every commit interval.
+	 *
+	 * @param mode Durability mode
+	 * @param commitInterval Interval between group commits in milliseconds, used in GROUP mode only
+	 * @throws IOException If an IO error occurs
+	 */
+	public synchronized void setDurability(Durability mode, long commitInterval) throws IOException {
+		if (mode==null) throw new IllegalArgumentException("Null durability mode");
+		if ((mode==Durability.GROUP)&&(commitInterval<=0)) throw new IllegalArgumentException("Group commit interval must be positive");
+		this.commitInterval=commitInterval;
+		if (mode==durability) return;
+
+		if (mode==Durability.NONE) {
+			checkpoint();
+			durability=mode;
+			committedLength=0;
+		} else {
+			if (wal==null) {
+				wal=FileChannel.open(walFile(file).toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			}
+			durability=mode;
+			uncommitted=true;
+			commit();
+		}
+
+		if ((mode==Durability.GROUP)&&((commitThread==null)||!commitThread.isAlive())) {
+			commitThread=new Thread(groupCommitLoop,"Etch group commit on "+file.getName());
+			commitThread.setDaemon(true);
+			commitThread.start();
+		}
+	}
+
+	/**
+	 * Gets the durability mode of this Etch file
+	 * @return Durability mode
+	 */
+	public Durability getDurability() {
+		return durability;
+	}
+
+	/**
+	 * Gets the group commit interval of this Etch file
+	 * @return Commit interval in milliseconds
+	 */
+	public long getCommitInterval() {
+		return commitInterval;
+	}
+
+	private final Runnable groupCommitLoop=new Runnable() {
+		@Override
+		public void run() {
+			try {
+				while (durability==Durability.GROUP) {
+					Thread.sleep(commitInterval);
+					if (!data.getChannel().isOpen()) return;
+					try {
+						commit();
+					} catch (IOException e) {
+						log.warn("Etch group commit failed on file: "+file,e);
+					}
+				}
+			} catch (InterruptedException e) {
+				// closed, nothing to do
+			}
+		}
+	};
+
+	/**
+	 * Commits all writes since the last commit, if a durable mode is active. On return, all
+	 * data written and the current root hash will survive a crash.
+	 *
+	 * CONCURRENCY: Holds the writer lock, so writes wait for the commit. Reads are unaffected.
+	 *
+	 * @throws IOException If an IO error occurs
+	 */
+	public synchronized void commit() throws IOException {
+		if ((durability==Durability.NONE)||!uncommitted) return;
+		if (!data.getChannel().isOpen()) return;
+		long length=writeLength;
+		Hash root=rootHash;
+
+		// force all new data, and deferred updates applied by the previous commit
+		BitSet dirty=appliedRegions;
+		dirty.set(regionIndex(committedLength), regionIndex(length)+1);
+		MappedByteBuffer[] regions=regionMap;
+		for (int i=dirty.nextSetBit(0); (i>=0)&&(i<regions.length); i=dirty.nextSetBit(i+1)) {
+			if (regions[i]!=null) regions[i].force();
+		}
+
+		// write redo record. From here on the commit survives a crash
+		writeCommitRecord(length,root);
+
+		// apply deferred slot updates. Readers see the same values before and after removal
+		BitSet applied=new BitSet();
+		applied.set(0); // header
+		for (Map.Entry<Long,Long> me: pendingSlots.entrySet()) {
+			long position=me.getKey();
+			MappedByteBuffer mbb=seekMap(position);
+			mbb.putLong(me.getValue());
+			pendingSlots.remove(position);
+			applied.set(regionIndex(position));
+		}
+		writeHeader(length,root);
+
+		appliedRegions=applied;
+		committedLength=length;
+		uncommitted=false;
+		Counters.etchCommit++;
+	}
+
+	/**
+	 * Commits and forces all data to disk, so that the Etch file is complete without the write-ahead log.
+	 * @throws IOException If an IO error occurs
+	 */
+	synchronized void checkpoint() throws IOException {
+		commit();
+		writeHeader(writeLength,rootHash);
+		flush();
+		if (wal!=null) {
+			wal.truncate(0);
+			wal.force(false);
+		}
+	}
+
+	private void writeHeader(long length, Hash root) throws IOException {
+		MappedByteBuffer mbb=seekMap(OFFSET_FILE_SIZE);
+		mbb.putLong(length);
+		mbb.put(root.getBytes());
+	}
+
+	private void writeCommitRecord(long length, Hash root) throws IOException {
+		int n=pendingSlots.size();
+		ByteBuffer bb=ByteBuffer.allocate(SIZE_COMMIT_HEADER+n*16+8);
+		bb.putInt(COMMIT_MAGIC);
+		bb.putLong(length);
+		bb.put(root.getBytes());
+		bb.putInt(n);
+		for (Map.Entry<Long,Long> me: pendingSlots.entrySet()) {
+			bb.putLong(me.getKey());
+			bb.putLong(me.getValue());
+		}
+		CRC32 crc=new CRC32();
+		crc.update(bb.array(),0,bb.position());
+		bb.putLong(crc.getValue());
+		bb.flip();
+
+		long pos=0;
+		while (bb.hasRemaining()) {
+			pos+=wal.write(bb,pos);
+		}
+		wal.truncate(pos);
+		wal.force(false);
+	}
+
+	/**
+	 * Recovers the Etch file after a crash in a durable mode, by replaying the last valid commit
+	 * record and truncating any torn tail past the committed data length. Does nothing if the file
+	 * was closed cleanly. Must be called before any regions are mapped.
+	 *
+	 * @throws IOException If an IO error occurs
+	 */
+	private void recover() throws IOException {
+		File walFile=walFile(file);
+		if (!walFile.exists()||(walFile.length()==0)) return;
+
+		ByteBuffer bb=ByteBuffer.wrap(Files.readAllBytes(walFile.toPath()));
+		boolean replayed=false;
+		if ((bb.remaining()>=SIZE_COMMIT_HEADER+8)&&(bb.getInt(0)==COMMIT_MAGIC)) {
+			int n=bb.getInt(SIZE_COMMIT_HEADER-4);
+			int size=SIZE_COMMIT_HEADER+n*16;
+			if ((n>=0)&&(bb.remaining()>=size+8)) {
+				CRC32 crc=new CRC32();
+				crc.update(bb.array(),0,size);
+				if (crc.getValue()==bb.getLong(size)) {
+					// valid commit record, so redo it. Previous commits are already on disk.
+					for (int i=0; i<n; i++) {
+						data.seek(bb.getLong(SIZE_COMMIT_HEADER+i*16));
+						data.writeLong(bb.getLong(SIZE_COMMIT_HEADER+i*16+8));
+					}
+					data.seek(OFFSET_FILE_SIZE);
+					data.writeLong(bb.getLong(4));
+					data.write(bb.array(),12,Hash.LENGTH);
+					replayed=true;
+				}
+			}
+		}
+
+		// anything past the committed data length is a torn tail
+		data.seek(OFFSET_FILE_SIZE);
+		long length=data.readLong();
+		long fileLength=data.length();
+		if (length<INDEX_START+INDEX_BLOCK_SIZE) throw new IOException("Bad data length in Etch file: "+file);
+		if (fileLength>length) data.setLength(length);
+		data.getChannel().force(true);
+
+		try (FileChannel fc=FileChannel.open(walFile.toPath(), StandardOpenOption.WRITE)) {
+			fc.truncate(0);
+			fc.force(false);
+		}
+		log.warn("Etch recovered file: {} with data length: {} (replayed commit: {}, truncated {} bytes)",file,length,replayed,Math.max(0, fileLength-length));
+	}
+
+	private static int regionIndex(long position) {
+		return Utils.checkedInt(position/MAX_REGION_SIZE);
+	}
+
+	/**
+	 * Gets the write-ahead log file for an Etch file
+	 * @param file Etch file
+	 * @return Write-ahead log file
+	 */
+	static File walFile(File file) {
+		return new File(file.getPath()+".wal");
+	}
+
 	public void setStore(EtchStore etchStore) {
 		this.store=etchStore;
 	}
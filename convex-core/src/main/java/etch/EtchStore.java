@@ -2,7 +2,11 @@ package etch;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.function.Consumer;
 
 import org.slf4j.Logger;
@@ -12,7 +16,9 @@ import convex.core.data.ACell;
 import convex.core.data.Hash;
 import convex.core.data.IRefFunction;
 import convex.core.data.Ref;
+import convex.core.exceptions.MissingDataException;
 import convex.core.store.AStore;
+import convex.core.store.Stores;
 import convex.core.util.Utils;
 
 /**
@@ -25,7 +31,10 @@ import convex.core.util.Utils;
  * Objects are keyed by cryptographic hash. That solves naming. Objects are
  * immutable. That solves cache invalidation.
  *
- * Garbage collection is left as an exercise for the reader.
+ * Garbage collection is performed online by copying all cells reachable from a set
+ * of roots into a fresh Etch file, then atomically swapping the new file into place.
+ * During a GC cycle, all new writes go to the new file and reads check the new file
+ * first, so the store remains fully usable while collection is in progress.
  */
 public class EtchStore extends AStore {
 	private static final Logger log = LoggerFactory.getLogger(EtchStore.class.getName());
@@ -33,12 +42,28 @@ public class EtchStore extends AStore {
 	/**
 	 * Etch file instance for the current store
 	 */
-	private Etch etch;
+	private volatile Etch etch;
 	
 	/**
 	 * Etch file instance for GC destination
 	 */
-	private Etch target;
+	private volatile Etch target;
+	
+	/**
+	 * Number of write batches in progress against the current Etch file rather than a GC
+	 * target. A GC cycle cannot complete until these are finished. Guarded by lock on this store.
+	 */
+	private int sourceWriters=0;
+	
+	/**
+	 * Bytes reclaimed by the last completed GC cycle
+	 */
+	private long lastGCReclaimed=0L;
+	
+	/**
+	 * Time in nanoseconds that writes were paused for the file swap in the last completed GC cycle
+	 */
+	private long lastGCPause=0L;
 
 	public EtchStore(Etch etch) {
 		this.etch = etch;
@@ -54,18 +79,130 @@ public class EtchStore extends AStore {
 	public synchronized void startGC() throws IOException {
 		if (target!=null) throw new Error("Already collecting!");
 		File temp=new File(etch.getFile().getCanonicalPath()+"~");
-		target=Etch.create(temp);
+		if (temp.exists()) temp.delete(); // left over from an interrupted GC
+		File tempWAL=Etch.walFile(temp);
+		if (tempWAL.exists()) tempWAL.delete();
+		Etch newTarget=Etch.create(temp);
+		newTarget.setStore(this);
+		newTarget.setDurability(etch.getDurability(), etch.getCommitInterval());
 		
 		// copy across current root hash
-		target.setRootHash(etch.getRootHash());
+		newTarget.setRootHash(etch.getRootHash());
+		target=newTarget;
 	}
 	
-	private Etch getWriteEtch() {
-		if (target!=null) synchronized(this) {
-			if (target!=null) return target;
+	/**
+	 * Completes a GC cycle. The GC target file atomically replaces the current Etch file,
+	 * and the old file is closed. All cells that should be retained must have been
+	 * marked before calling this method.
+	 * 
+	 * Waits for any write batches started before the GC cycle to finish. Writes are then
+	 * briefly paused while the files are swapped. Reads continue to be served.
+	 * 
+	 * @return Number of bytes reclaimed
+	 * @throws IOException If an IO exception occurs
+	 */
+	public long completeGC() throws IOException {
+		Etch source;
+		Etch dest;
+		synchronized(this) {
+			if (target==null) throw new IllegalStateException("No GC in progress");
+			while (sourceWriters>0) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("Interrupted waiting for writes to complete before GC");
+				}
+			}
+			long start=System.nanoTime();
+			source=etch;
+			dest=target;
+			source.checkpoint(); // no further writes, so source needs no recovery
+			dest.moveTo(source.getFile());
+			
+			// readers pick up new Etch from here on, writers are already using it
+			etch=dest;
+			target=null;
+			lastGCPause=System.nanoTime()-start;
 		}
+		
+		// old file is already unlinked, so closing reclaims the space
+		long reclaimed=source.getDataLength()-dest.getDataLength();
+		source.close();
+		lastGCReclaimed=reclaimed;
+		return reclaimed;
+	}
+	
+	/**
+	 * Runs a full GC cycle, retaining all cells reachable from the current root hash 
+	 * and the given roots. May be called from a background thread while the store
+	 * is in use.
+	 * 
+	 * Any cells persisted before the start of the GC cycle that are still required
+	 * must be reachable from the given roots, otherwise they will be discarded.
+	 * 
+	 * @param roots Cell roots to retain, in addition to the root hash. May be null.
+	 * @return Number of bytes reclaimed
+	 * @throws IOException If an IO exception occurs
+	 */
+	public long collectGarbage(Collection<ACell> roots) throws IOException {
+		AStore savedStore=Stores.current();
+		try {
+			Stores.setCurrent(this);
+			long start=System.currentTimeMillis();
+			startGC();
+			
+			// root hash is the main GC root, typically the Peer data
+			Hash rootHash=etch.getRootHash();
+			Ref<ACell> rootRef=readRef(etch,rootHash);
+			if (rootRef!=null) copyRef(rootRef,null,true);
+			if (roots!=null) mark(roots,null);
+			
+			long reclaimed=completeGC();
+			log.info("Etch GC completed on {} in {}ms, reclaimed {} bytes with write pause of {}us",
+					getFileName(),System.currentTimeMillis()-start,reclaimed,lastGCPause/1000);
+			return reclaimed;
+		} finally {
+			Stores.setCurrent(savedStore);
+		}
+	}
+	
+	/**
+	 * Gets the number of bytes reclaimed by the last completed GC cycle
+	 * @return Number of bytes reclaimed
+	 */
+	public long getLastGCReclaimed() {
+		return lastGCReclaimed;
+	}
+	
+	/**
+	 * Gets the time that writes were paused during the file swap of the last completed GC cycle
+	 * @return Pause time in nanoseconds
+	 */
+	public long getLastGCPause() {
+		return lastGCPause;
+	}
+	
+	private synchronized Etch getWriteEtch() {
+		if (target!=null) return target;
 		return etch;
 	}
+	
+	/**
+	 * Creates a new write batch. A batch writing to the current Etch file rather than a GC
+	 * target is counted, so that a GC cycle cannot swap out the file until it is released.
+	 */
+	synchronized WriteBatch createBatch() {
+		if (target!=null) return new WriteBatch(target,false);
+		sourceWriters++;
+		return new WriteBatch(etch,true);
+	}
+	
+	private synchronized void releaseBatch() {
+		sourceWriters--;
+		if (sourceWriters==0) notifyAll();
+	}
 
 	/**
 	 * Creates an EtchStore using a specified file.
@@ -96,14 +233,63 @@ public class EtchStore extends AStore {
 	}
 	
 	/**
-	 * Mark GC roots for retention during garbage collection
+	 * Mark GC roots for retention during garbage collection. All cells reachable from 
+	 * the roots that are present in this store are copied to the GC target.
+	 * 
 	 * @param roots Cell roots to maintain
-	 * @param handler Handler to call for each Cell marked
+	 * @param handler Handler to call for each Cell marked. May be null.
 	 */
 	public void mark(Collection<ACell>  roots, Consumer<Ref<ACell>> handler) {
-		for (ACell cell: roots) {
-			if (cell==null) continue;
-			cell.mark(handler);
+		if (target==null) throw new IllegalStateException("No GC in progress");
+		try {
+			for (ACell cell: roots) {
+				if (cell==null) continue;
+				copyRef(cell.getRef(),handler,true);
+			}
+		} catch (IOException e) {
+			throw Utils.sneakyThrow(e);
+		}
+	}
+	
+	/**
+	 * Copies a Ref and all its reachable children to the GC target, depth first.
+	 * Cells already present in the target at PERSISTED level or above are skipped,
+	 * since their children must already have been written.
+	 * 
+	 * Children that are missing from the store are ignored, since they were never 
+	 * retained (e.g. children of cells only STORED shallowly).
+	 */
+	private void copyRef(Ref<ACell> ref, Consumer<Ref<ACell>> handler, boolean topLevel) throws IOException {
+		Etch dest=target;
+		ACell cell;
+		try {
+			cell=ref.getValue();
+		} catch (MissingDataException e) {
+			return;
+		}
+		if (cell==null) return;
+		
+		boolean embedded=cell.isEmbedded();
+		Hash hash=null;
+		if (!embedded) {
+			hash=ref.getHash();
+			Ref<ACell> existing=dest.read(hash);
+			if ((existing!=null)&&(existing.getStatus()>=Ref.PERSISTED)) return;
+			
+			// use the source Ref if available, so that we retain existing flags
+			Ref<ACell> sourceRef=readRef(etch,hash);
+			if (sourceRef!=null) ref=sourceRef;
+		}
+		
+		int n=cell.getRefCount();
+		for (int i=0; i<n; i++) {
+			copyRef(cell.getRef(i),handler,false);
+		}
+		
+		if (topLevel||!embedded) {
+			if (hash==null) hash=ref.getHash();
+			Ref<ACell> result=dest.write(hash, ref.withMinimumStatus(Ref.STORED));
+			if (handler!=null) handler.accept(result);
 		}
 	}
 
@@ -124,11 +310,28 @@ public class EtchStore extends AStore {
 	@SuppressWarnings("unchecked")
 	@Override
 	public <T extends ACell> Ref<T> refForHash(Hash hash) {
-		try {
-			Ref<ACell> existing = etch.read(hash);
-			return (Ref<T>) existing;
-		} catch (IOException e) {
-			throw Utils.sneakyThrow(e);
+		// during GC, check target first since it has all new writes
+		Etch target=this.target;
+		if (target!=null) {
+			Ref<ACell> existing = readRef(target,hash);
+			if (existing!=null) return (Ref<T>) existing;
+		}
+		return (Ref<T>) readRef(etch,hash);
+	}
+	
+	/**
+	 * Reads a Ref from the given Etch instance. If the Etch instance is swapped out by
+	 * a completed GC cycle while reading, retries on the current Etch instance.
+	 */
+	private Ref<ACell> readRef(Etch source, Hash hash) {
+		while (true) {
+			try {
+				return source.read(hash);
+			} catch (IOException e) {
+				Etch current=etch;
+				if (current==source) throw Utils.sneakyThrow(e);
+				source=current;
+			}
 		}
 	}
 
@@ -142,11 +345,51 @@ public class EtchStore extends AStore {
 		return storeRef(ref, noveltyHandler, status, true);
 	}
 
-	@SuppressWarnings("unchecked")
+	/**
+	 * Stores a Ref and any required children. All novelty is collected into a single batch
+	 * which is written to the Etch file in one pass.
+	 * 
+	 * @param <T> Type of value
+	 * @param ref Ref to store
+	 * @param noveltyHandler Novelty handler called for each newly written Ref (may be null)
+	 * @param requiredStatus Required status for stored Ref
+	 * @param topLevel True if this is a top level Ref, which will be stored even if embedded
+	 * @return The stored Ref
+	 */
 	public <T extends ACell> Ref<T> storeRef(Ref<T> ref, Consumer<Ref<ACell>> noveltyHandler, int requiredStatus,
 			boolean topLevel) {
 		// first check if the Ref is already persisted to required level
 		if (ref.getStatus() >= requiredStatus) return ref;
+		
+		WriteBatch batch=createBatch();
+		try {
+			Ref<T> result=storeRef(ref,requiredStatus,topLevel,batch);
+			batch.write(noveltyHandler);
+			return result;
+		} finally {
+			batch.release();
+		}
+	}
+	
+	@Override
+	public List<Ref<ACell>> storeTopRefs(List<Ref<ACell>> refs, int status, Consumer<Ref<ACell>> noveltyHandler) {
+		WriteBatch batch=createBatch();
+		try {
+			ArrayList<Ref<ACell>> results=new ArrayList<>(refs.size());
+			for (Ref<ACell> ref: refs) {
+				results.add((ref.getStatus()>=status)?ref:storeRef(ref,status,true,batch));
+			}
+			batch.write(noveltyHandler);
+			return results;
+		} finally {
+			batch.release();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T extends ACell> Ref<T> storeRef(Ref<T> ref, int requiredStatus, boolean topLevel, WriteBatch batch) {
+		// first check if the Ref is already persisted to required level
+		if (ref.getStatus() >= requiredStatus) return ref;
 
 		final ACell cell = ref.getValue();
 		// Quick handling for null
@@ -158,7 +401,13 @@ public class EtchStore extends AStore {
 		// if not embedded, worth checking store first for existing value
 		if (!embedded) {
 			hash = ref.getHash();
-			Ref<T> existing = refForHash(hash);
+			
+			// may already be pending in this batch, e.g. shared subtrees
+			Ref<T> pending=(Ref<T>) batch.get(hash);
+			if ((pending!=null)&&(pending.getStatus()>=requiredStatus)) return pending;
+			
+			// only check the Etch we are writing to, so that GC retains complete trees
+			Ref<T> existing = (Ref<T>) readRef(batch.etch,hash);
 			if (existing != null) {
 				// Return existing ref if status is sufficient
 				if (existing.getStatus() >= requiredStatus) {
@@ -171,7 +420,7 @@ public class EtchStore extends AStore {
 		// beyond STORED level, need to recursively persist child refs if they exist
 		if ((requiredStatus > Ref.STORED)&&(cell.getRefCount()>0)) {
 			IRefFunction func = r -> {
-				return storeRef((Ref<ACell>) r, noveltyHandler, requiredStatus, false);
+				return storeRef((Ref<ACell>) r, requiredStatus, false, batch);
 			};
 
 			// need to do recursive persistence
@@ -183,28 +432,90 @@ public class EtchStore extends AStore {
 		}
 
 		if (topLevel || !embedded) {
-			// Do actual write to store
+			// Queue write to store
 			final Hash fHash = (hash != null) ? hash : ref.getHash();
 			if (log.isTraceEnabled()) {
 				log.trace( "Etch persisting at status=" + requiredStatus + " hash = 0x"
 						+ fHash.toHexString() + " ref of class " + Utils.getClassName(cell) + " with store " + this);
 			}
 
-			Ref<ACell> result;
+			// ensure status is set when we write to store
+			ref = ref.withMinimumStatus(requiredStatus);
+			batch.add(fHash,(Ref<ACell>) ref);
+			return ref;
+		} else {
+			// no need to write, just tag updated status
+			return ref.withMinimumStatus(requiredStatus);
+		}
+	}
+	
+	/**
+	 * Batch of novel Refs collected during a single store operation, in depth first order
+	 */
+	final class WriteBatch {
+		private final Etch etch;
+		private boolean counted;
+		
+		/**
+		 * Refs to write by hash, in the order they were added
+		 */
+		private final LinkedHashMap<Hash,Ref<ACell>> pending=new LinkedHashMap<>();
+		
+		private WriteBatch(Etch etch, boolean counted) {
+			this.etch=etch;
+			this.counted=counted;
+		}
+		
+		Ref<ACell> get(Hash hash) {
+			return pending.get(hash);
+		}
+		
+		/**
+		 * Adds a Ref to this batch. If the hash is already pending with a lower status, the
+		 * pending Ref is replaced and moved to the end, i.e. after any children added since.
+		 */
+		void add(Hash hash, Ref<ACell> ref) {
+			Ref<ACell> existing=pending.get(hash);
+			if (existing!=null) {
+				if (existing.getStatus()>=ref.getStatus()) return;
+				pending.remove(hash);
+			}
+			pending.put(hash, ref);
+		}
+		
+		/**
+		 * Writes all Refs in this batch, calling the novelty handler for each in the 
+		 * order they were added, i.e. children before parents.
+		 * 
+		 * If a GC cycle started after this batch was created, the written Refs are also 
+		 * copied to the GC target so that they survive the file swap.
+		 */
+		void write(Consumer<Ref<ACell>> noveltyHandler) {
+			if (pending.isEmpty()) return;
+			List<Ref<ACell>> results;
 			try {
-				// ensure status is set when we write to store
-				ref = ref.withMinimumStatus(requiredStatus);
-				result = etch.write(fHash, (Ref<ACell>) ref);
+				results=etch.writeAll(new ArrayList<>(pending.values()));
+				if (counted&&(getWriteEtch()!=etch)) {
+					for (Ref<ACell> result: results) {
+						copyRef(result,null,true);
+					}
+				}
 			} catch (IOException e) {
 				throw Utils.sneakyThrow(e);
 			}
-
-			// call novelty handler if newly persisted
-			if (noveltyHandler != null) noveltyHandler.accept(result);
-			return (Ref<T>) result;
-		} else {
-			// no need to write, just tag updated status
-			return ref.withMinimumStatus(requiredStatus);
+			if (noveltyHandler==null) return;
+			for (Ref<ACell> result: results) {
+				noveltyHandler.accept(result);
+			}
+		}
+		
+		/**
+		 * Releases this batch, allowing a pending GC cycle to complete. Safe to call more than once.
+		 */
+		void release() {
+			if (!counted) return;
+			counted=false;
+			releaseBatch();
 		}
 	}
 
@@ -224,6 +535,30 @@ public class EtchStore extends AStore {
 
 	public void close() {
 		etch.close();
+		Etch target=this.target;
+		if (target!=null) target.close();
+	}
+
+	/**
+	 * Sets the durability mode for this store. Applies to any GC target as well.
+	 * @param mode Durability mode
+	 * @param commitInterval Interval between group commits in milliseconds, used in GROUP mode only
+	 * @throws IOException If an IO error occurs
+	 */
+	public synchronized void setDurability(Etch.Durability mode, long commitInterval) throws IOException {
+		etch.setDurability(mode, commitInterval);
+		if (target!=null) target.setDurability(mode, commitInterval);
+	}
+
+	/**
+	 * Commits all writes to this store, if a durable mode is set. Cheap if nothing has been
+	 * written since the last commit.
+	 * @throws IOException If an IO error occurs
+	 */
+	public void commit() throws IOException {
+		Etch target=this.target;
+		if (target!=null) target.commit();
+		etch.commit();
 	}
 
 	/**
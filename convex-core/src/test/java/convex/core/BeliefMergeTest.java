@@ -166,6 +166,43 @@ public class BeliefMergeTest {
 		assertEquals(b1a.getPeerOrder().getBlocks(), bm2.getPeerOrder().getBlocks());
 	}
 
+	@Test
+	public void testDeferredExecution() throws BadSignatureException, InvalidDataException {
+		int PROPOSER = 0;
+		ATransaction trans = Transfer.create(ADDRESSES[PROPOSER], 1, ADDRESSES[NUM_PEERS - 1], 100);
+		Peer[] bs = shareBeliefs(shareBeliefs(initialBeliefs()));
+		bs = proposeTransactions(bs, PROPOSER, trans);
+		for (int i=0; i<3; i++) {
+			bs = shareBeliefs(bs); // should just reach consensus for proposer
+		}
+		assertEquals(1, bs[PROPOSER].getConsensusPoint());
+
+		// merge the same beliefs with and without Block execution
+		Belief[] shared = new Belief[NUM_PEERS];
+		for (int j = 0; j < NUM_PEERS; j++) shared[j] = bs[j].getBelief();
+		Peer executed = bs[PROPOSER].mergeBeliefs(shared);
+		Peer deferred = bs[PROPOSER].mergeBeliefsDeferred(shared);
+		assertEquals(executed.getBelief(), deferred.getBelief());
+		assertEquals(0, executed.getExecutionLag());
+
+		// deferred merge from a Peer with no executed Blocks leaves States behind consensus point
+		Peer lagging = Peer.create(KEY_PAIRS[PROPOSER], INITIAL_STATE).mergeBeliefsDeferred(shared);
+		long cp = lagging.getConsensusPoint();
+		assertTrue(cp >= 1);
+		assertEquals(cp, lagging.getExecutionLag());
+		assertEquals(INITIAL_STATE, lagging.getConsensusState());
+
+		// States applied separately must match sequential execution
+		Peer updated = lagging.updateState();
+		assertEquals(0, updated.getExecutionLag());
+		assertEquals(executed.getStates().get(cp), updated.getConsensusState());
+
+		// States can be transferred from another Peer
+		Peer transferred = lagging.withStates(updated);
+		assertEquals(updated.getConsensusState(), transferred.getConsensusState());
+		assertTrue(transferred.withStates(lagging) == transferred);
+	}
+
 	/**
 	 * This test creates a set of peers, and a single transaction sending tokens
 	 * from the first peers to the last peer Each round of peers updates is
@@ -2,20 +2,30 @@ package convex.core;
 
 import static convex.test.Assertions.assertNobodyError;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 
+import java.util.List;
+
 import org.junit.jupiter.api.Test;
 
+import convex.core.crypto.AKeyPair;
 import convex.core.data.AccountKey;
 import convex.core.data.PeerStatus;
 import convex.core.data.RecordTest;
 import convex.core.data.prim.CVMLong;
 import convex.core.exceptions.BadSignatureException;
+import convex.core.exceptions.InvalidDataException;
+import convex.core.init.Init;
 import convex.core.init.InitTest;
 import convex.core.lang.RT;
 import convex.core.lang.Reader;
+import convex.core.store.AStore;
+import convex.core.store.MemoryStore;
+import convex.core.store.Stores;
 import convex.test.Samples;
+import etch.EtchStore;
 
 public class PeerTest {
 	static State STATE=InitTest.STATE;
@@ -115,4 +125,53 @@ public class PeerTest {
 		assertEquals(5, p.asOfRange(initialTimestamp, 1000 * 60, 5).count());
 	}
 
+	@Test
+	public void testRetention() throws BadSignatureException, InvalidDataException {
+		AKeyPair kp=AKeyPair.createSeeded(5678);
+		AStore saved=Stores.current();
+		EtchStore store=EtchStore.createTemp();
+		try {
+			Stores.setCurrent(store);
+			State genesis=Init.createState(List.of(kp.getAccountKey()));
+			Peer p=Peer.create(kp, genesis).withRetention(3);
+			assertEquals(3,p.getRetention());
+
+			long ts=genesis.getTimeStamp().longValue();
+			int n=10;
+			for (int i=1; i<=n; i++) {
+				p=p.proposeBlock(Block.of(ts+i*1000,kp.getAccountKey()));
+				p=p.mergeBeliefs().persistStates();
+			}
+			assertEquals(n+1,p.getStates().count());
+			assertEquals(n,p.getBlockResults().count());
+
+			// older States have been released to the store
+			assertFalse(p.getStates().getElementRef(1).isDirect());
+
+			// recent and released States must be equal to the States produced
+			for (int i=0; i<=n; i++) {
+				State s=p.getState(i);
+				assertEquals(ts+i*1000,s.getTimeStamp().longValue());
+				assertEquals(s,p.getStates().get(i));
+				assertEquals(s,p.asOf(CVMLong.create(ts+i*1000)));
+				assertEquals(s,p.asOf(CVMLong.create(ts+i*1000+1)));
+			}
+			assertNull(p.asOf(CVMLong.create(ts-1)));
+
+			// released States are resolved through the Peer's own store, not the current store
+			Stores.setCurrent(new MemoryStore());
+			assertEquals(p.getStates().get(1),p.asOf(CVMLong.create(ts+1000)));
+			Stores.setCurrent(store);
+			assertEquals(p.getStates().get(n),p.getConsensusState());
+			assertEquals(p.getBlockResults().get(n-1),p.getBlockResult(n-1));
+
+			// Peer data still includes the full history
+			Peer restored=Peer.fromData(kp, p.toData());
+			assertEquals(p.getStates(),restored.getStates());
+			assertEquals(p.getConsensusState(),restored.getConsensusState());
+		} finally {
+			Stores.setCurrent(saved);
+		}
+	}
+
 }
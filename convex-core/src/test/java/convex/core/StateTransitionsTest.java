@@ -314,4 +314,50 @@ public class StateTransitionsTest {
 
 	}
 
+	@Test
+	public void testParallelExecution() {
+		State s = TestState.STATE;
+		int NUM_USERS=40;
+		AKeyPair[] kps=new AKeyPair[NUM_USERS];
+		Address[] addrs=new Address[NUM_USERS];
+		long[] seqs=new long[NUM_USERS];
+		for (int i=0; i<NUM_USERS; i++) {
+			kps[i]=AKeyPair.createSeeded(2000+i);
+			addrs[i]=s.nextAddress();
+			s=s.putAccount(addrs[i], AccountStatus.create(1000000000L,kps[i].getAccountKey()));
+		}
+		String[] commands=new String[] {
+				"(def x *balance*)",
+				"(deploy '(def a 1))",
+				"(count (:accounts *state*))",
+				"(set-memory 1000)",
+				"(schedule (+ *timestamp* 1000) (def y 1))",
+				"(fail :foo)",
+				"(transfer #1000000 1)"};
+
+		java.util.Random r=new java.util.Random(785);
+		java.util.ArrayList<SignedData<ATransaction>> txs=new java.util.ArrayList<>();
+		for (int i=0; i<300; i++) {
+			int src=r.nextInt(NUM_USERS);
+			long seq=++seqs[src];
+			if (r.nextInt(20)==0) seq+=1; // bad sequence number
+			ATransaction t;
+			if (r.nextInt(3)>0) {
+				t=Transfer.create(addrs[src], seq, addrs[r.nextInt(NUM_USERS)], r.nextInt(1000));
+			} else {
+				t=Invoke.create(addrs[src], seq, commands[r.nextInt(commands.length)]);
+			}
+			txs.add(kps[src].signData(t));
+		}
+		Block b=Block.create(s.getTimeStamp().longValue()+1, txs, FIRST_PEER_KEY);
+
+		BlockResult seq=s.applyBlock(b,false);
+		BlockResult par=s.applyBlock(b,true);
+		for (int i=0; i<b.length(); i++) {
+			assertEquals(seq.getResult(i),par.getResult(i));
+		}
+		assertEquals(seq.getState().getHash(),par.getState().getHash());
+		assertEquals(seq.getHash(),par.getHash());
+	}
+
 }
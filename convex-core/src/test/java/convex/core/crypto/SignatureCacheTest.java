@@ -0,0 +1,47 @@
+package convex.core.crypto;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import convex.core.data.Format;
+import convex.core.data.Ref;
+import convex.core.data.SignedData;
+import convex.core.data.prim.CVMLong;
+import convex.core.exceptions.BadFormatException;
+import convex.core.lang.RT;
+
+public class SignatureCacheTest {
+	static final AKeyPair KP=AKeyPair.createSeeded(5678);
+
+	@Test
+	public void testCacheHit() throws BadFormatException {
+		SignedData<CVMLong> sd=KP.signData(RT.cvm(975493656L));
+
+		// fresh instances, as if received in two different messages
+		SignedData<CVMLong> sd1=Format.read(sd.getEncoding());
+		SignedData<CVMLong> sd2=Format.read(sd.getEncoding());
+		assertFalse(sd2.isSignatureChecked());
+
+		assertTrue(sd1.checkSignature());
+		assertTrue(SignatureCache.isVerified(sd.getHash()));
+
+		long hits=SignatureCache.getHits();
+		assertTrue(sd2.checkSignature());
+		assertTrue(sd2.isSignatureChecked());
+		assertTrue(SignatureCache.getHits()>hits);
+		assertTrue(SignatureCache.getHitRate()>0.0);
+	}
+
+	@Test
+	public void testBadSignatureNotCached() {
+		SignedData<CVMLong> good=KP.signData(RT.cvm(975493657L));
+		assertTrue(good.checkSignature());
+
+		// same value and key, but a different signature
+		SignedData<CVMLong> bad=SignedData.create(KP.getAccountKey(), Ed25519Signature.ZERO, Ref.get(RT.cvm(975493657L)));
+		assertFalse(bad.checkSignature());
+		assertFalse(SignatureCache.isVerified(bad.getHash()));
+	}
+}
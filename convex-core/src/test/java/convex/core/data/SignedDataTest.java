@@ -8,10 +8,13 @@ import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.ArrayList;
+
 import org.junit.jupiter.api.Test;
 
 import convex.core.crypto.AKeyPair;
 import convex.core.data.prim.CVMLong;
+import convex.core.exceptions.BadFormatException;
 import convex.core.exceptions.BadSignatureException;
 import convex.core.init.InitTest;
 import convex.core.lang.RT;
@@ -51,6 +54,34 @@ public class SignedDataTest {
 		ObjectsTest.doAnyValueTests(sd1);
 	}
 
+	@Test
+	public void testCheckSignatures() throws BadFormatException {
+		AKeyPair kp = InitTest.HERO_KEYPAIR;
+		ArrayList<SignedData<CVMLong>> items=new ArrayList<>();
+		for (int i=0; i<100; i++) {
+			SignedData<CVMLong> sd=kp.signData(RT.cvm(i));
+			// re-read to get an unchecked instance
+			items.add(Format.read(sd.getEncoding()));
+		}
+		items.add(null);
+		items.add(items.get(5)); // duplicate
+		SignedData<CVMLong> bad = SignedData.create(kp.getAccountKey(), Samples.BAD_SIGNATURE, Ref.get(RT.cvm(7L)));
+		items.add(bad);
+		assertFalse(items.get(0).isSignatureChecked());
+
+		assertFalse(SignedData.checkSignatures(items));
+		for (int i=0; i<100; i++) {
+			assertTrue(items.get(i).isSignatureChecked());
+			assertTrue(items.get(i).checkSignature());
+		}
+		assertTrue(bad.isSignatureChecked());
+		assertFalse(bad.checkSignature());
+
+		// all valid once bad entry removed, using cached results
+		items.remove(bad);
+		assertTrue(SignedData.checkSignatures(items));
+	}
+
 	@Test
 	public void testEmbeddedSignature() throws BadSignatureException {
 		CVMLong cl=RT.cvm(158587);
@@ -1,9 +1,13 @@
 package convex.core.data.prim;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 import org.junit.jupiter.api.Test;
 
+import convex.core.data.ACell;
+import convex.core.lang.RT;
+
 public class LongTest {
 
 	@Test
@@ -11,4 +15,29 @@ public class LongTest {
 		long v=666666;
 		assertEquals(CVMLong.create(v),CVMLong.create(v));
 	}
+
+	@Test
+	public void testCache() {
+		assertSame(CVMLong.ZERO,CVMLong.create(0));
+		assertSame(CVMLong.create(-1),CVMLong.MINUS_ONE);
+		assertSame(CVMLong.create(1000),CVMLong.create(1000));
+		assertEquals(-128L,CVMLong.create(-128).longValue());
+		assertEquals(1024L,CVMLong.create(1024).longValue());
+	}
+
+	@Test
+	public void testArithmeticFastPath() {
+		ACell[] args=new ACell[] {CVMLong.create(Long.MAX_VALUE),CVMLong.ONE};
+		assertEquals(CVMLong.MIN_VALUE,RT.plus(args));
+		assertEquals(CVMLong.create(Long.MAX_VALUE-1),RT.minus(args));
+		assertEquals(CVMLong.MAX_VALUE,RT.times(args));
+		assertEquals(false,RT.lt(args));
+		assertEquals(true,RT.gt(args));
+		assertEquals(false,RT.eq(args));
+
+		// mixed types use the general path
+		ACell[] mixed=new ACell[] {CVMLong.create(2),CVMDouble.create(0.5)};
+		assertEquals(CVMDouble.create(2.5),RT.plus(mixed));
+		assertEquals(true,RT.gt(mixed));
+	}
 }
@@ -0,0 +1,96 @@
+package convex.core.init;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import convex.core.State;
+import convex.core.crypto.AKeyPair;
+import convex.core.data.AccountKey;
+import convex.core.data.Hash;
+import convex.core.exceptions.BadFormatException;
+import convex.core.store.AStore;
+import convex.core.store.Stores;
+import etch.EtchStore;
+
+public class GenesisCacheTest {
+
+	@Test
+	public void testKey() {
+		Hash key=GenesisCache.computeKey(InitTest.PEER_KEYS);
+		assertEquals(key,GenesisCache.computeKey(InitTest.PEER_KEYS));
+		assertNotEquals(key,GenesisCache.computeKey(List.of(InitTest.FIRST_PEER_KEY)));
+	}
+
+	@Test
+	public void testMemoryCache() {
+		State s=GenesisCache.getState(InitTest.PEER_KEYS);
+		assertEquals(InitTest.STATE,s);
+		assertSame(s,GenesisCache.getState(InitTest.PEER_KEYS));
+	}
+
+	@Test
+	public void testSnapshot() throws IOException, BadFormatException {
+		State state=InitTest.STATE;
+		Hash key=GenesisCache.computeKey(InitTest.PEER_KEYS);
+		File dir=Files.createTempDirectory("genesis-test").toFile();
+		File file=new File(dir,"test.genesis");
+		GenesisCache.writeSnapshot(file, key, state);
+		assertTrue(file.exists());
+
+		AStore saved=Stores.current();
+		try {
+			Stores.setCurrent(EtchStore.createTemp());
+			State loaded=GenesisCache.readSnapshot(file, key);
+			assertEquals(state.getHash(),loaded.getHash());
+			assertEquals(state.getAccounts(),loaded.getAccounts());
+			assertEquals(state.computeTotalFunds(),loaded.computeTotalFunds());
+			GenesisCache.checkState(loaded, InitTest.PEER_KEYS);
+
+			// not a genesis state for other keys
+			assertThrows(BadFormatException.class,()->GenesisCache.checkState(loaded, List.of(AKeyPair.generate().getAccountKey())));
+
+			// wrong key
+			assertNull(GenesisCache.readSnapshot(file, Hash.NULL_HASH));
+		} finally {
+			Stores.setCurrent(saved);
+			file.delete();
+			dir.delete();
+		}
+	}
+
+	@Test
+	public void testDirectory() throws IOException {
+		File dir=Files.createTempDirectory("genesis-test").toFile();
+		List<AccountKey> keys=List.of(InitTest.KEYPAIRS[2].getAccountKey());
+		Hash key=GenesisCache.computeKey(keys);
+		File file=new File(dir,key.toHexString()+".genesis");
+		File saved=GenesisCache.getDirectory();
+		try {
+			GenesisCache.setDirectory(dir);
+			State s=GenesisCache.getState(keys);
+			assertTrue(file.exists());
+
+			// reload from snapshot rather than memory
+			GenesisCache.clear();
+			State loaded=GenesisCache.getState(keys);
+			assertEquals(s.getHash(),loaded.getHash());
+		} finally {
+			GenesisCache.setDirectory(saved);
+			file.delete();
+			dir.delete();
+			assertFalse(dir.exists());
+		}
+	}
+}
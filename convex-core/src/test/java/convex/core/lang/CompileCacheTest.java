@@ -0,0 +1,56 @@
+package convex.core.lang;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import convex.core.data.ACell;
+
+public class CompileCacheTest extends ACVMTest {
+
+	private long juiceUsed(Context<?> ctx, String source) {
+		ACell form=Reader.read(source);
+		Context<?> c=ctx.fork();
+		long juice=c.getJuice();
+		c=c.eval(form);
+		return juice-c.getJuice();
+	}
+
+	@Test
+	public void testCacheHit() {
+		Context<?> ctx=context();
+		String source="(when (> 2 1) (let [a 1] (+ a 13947)))";
+
+		long juice1=juiceUsed(ctx,source);
+		long hits=CompileCache.getHits();
+		long juice2=juiceUsed(ctx,source);
+		assertTrue(CompileCache.getHits()>hits);
+
+		// juice must be identical with or without the cache
+		assertEquals(juice1,juice2);
+		assertEquals(13948L,evalL(ctx,source));
+	}
+
+	@Test
+	public void testUserMacroNotCached() {
+		Context<?> ctx=step(context(),"(defmacro my-mac [x] `(+ ~x 1))");
+		String source="(my-mac 84713)";
+
+		assertEquals(84714L,evalL(ctx,source));
+		long hits=CompileCache.getHits();
+		assertEquals(84714L,evalL(ctx,source));
+		assertEquals(hits,CompileCache.getHits());
+	}
+
+	@Test
+	public void testEnvironmentChange() {
+		Context<?> ctx=context();
+		String source="(if (defined? foo-cc) foo-cc 17)";
+		assertEquals(17L,evalL(ctx,source));
+
+		// new definition gives a different key, so no stale result
+		ctx=step(ctx,"(def foo-cc 3)");
+		assertEquals(3L,evalL(ctx,source));
+	}
+}
@@ -586,6 +586,31 @@ public class CompilerTest extends ACVMTest {
 		assertEquals(Sets.of(1L,2L),eval("(eval `#{(if true 1 2) ~(if false 1 2)})"));
 	}
 	
+	@Test
+	public void testConstantFolding() {
+		// constant vector literals are folded
+		assertEquals(Constant.of(Vectors.of(1L,2L)),eval("(compile '[1 2])"));
+		assertEquals(Constant.of(Vectors.of(1L,Vectors.of(2L,3L))),eval("(compile '[1 [2 3]])"));
+		assertEquals(Constant.of(Lists.of(1L,2L)),eval("(compile '`(1 2))"));
+
+		// non-constant elements require a runtime invoke
+		assertEquals(Invoke.class,eval("(compile '[1 (inc 2)])").getClass());
+		assertEquals(Invoke.class,eval("(compile '[1 count])").getClass());
+
+		// calls via core symbols are not folded, since they may be redefined before running
+		assertEquals(Invoke.class,eval("(compile '(+ 1 2))").getClass());
+		assertEquals(Invoke.class,eval("(compile '(vector 1 2))").getClass());
+		assertEquals(Vectors.of(2L,3L),eval("(do (def + vector) (+ 2 3))"));
+
+		// only literal builders are folded, even if the function is a constant
+		assertEquals(Constant.of(Vectors.of(1L,2L)),eval("(compile (list (compile vector) 1 2))"));
+		assertEquals(Invoke.class,eval("(compile (list (compile +) 1 2))").getClass());
+
+		// errors are left to happen at runtime
+		assertEquals(Invoke.class,eval("(compile (list (compile hash-map) 1))").getClass());
+		assertArityError(step("(eval (list (compile hash-map) 1))"));
+	}
+
 	@Test
 	public void testStaticCompilation() {
 		if (Constants.OPT_STATIC) {
@@ -117,11 +117,13 @@ public class JuiceTest extends ACVMTest {
 		}
 
 		// Calculate cost of executing op to build a single element vector, need this
-		// later
+		// later. Constant vector literals are folded by the compiler into a constant.
 		long oneElemVectorJuice = juice("[1]");
-		// (vector 1), where vector is a constant core function.
-		assertEquals((Juice.CONSTANT + Juice.BUILD_DATA + Juice.BUILD_PER_ELEMENT + Juice.CONSTANT),
-				oneElemVectorJuice);
+		assertEquals(Juice.CONSTANT, oneElemVectorJuice);
+
+		// (vector count), where vector is a constant core function.
+		assertEquals((Juice.CONSTANT + Juice.BUILD_DATA + Juice.BUILD_PER_ELEMENT + Juice.LOOKUP_SYM),
+				juice("[count]"));
 
 		{// eval for a small vector
 			long j = juice("(eval [1])");
@@ -132,8 +134,10 @@ public class JuiceTest extends ACVMTest {
 		}
 
 		{
+			// no extra cost per element in execution of a folded constant vector
 			long jdiffSimple = juiceDiff("[1]", "[1 2]");
-			assertEquals(Juice.BUILD_PER_ELEMENT + Juice.CONSTANT, jdiffSimple); // extra cost per element in execution
+			assertEquals(0L, jdiffSimple); 
+			assertEquals(Juice.BUILD_PER_ELEMENT + Juice.LOOKUP_SYM, juiceDiff("[count]", "[count count]"));
 
 			long jdiff = juiceDiff("(eval [1])", "(eval [1 2])");
 
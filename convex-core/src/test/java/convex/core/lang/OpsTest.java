@@ -252,6 +252,51 @@ public class OpsTest extends ACVMTest {
 		doOpTest(l2);
 	}
 
+	@Test
+	public void testLookupCache() {
+		Context<?> c=context();
+		Lookup<ACell> op=Lookup.create("foo");
+		assertUndeclaredError(c.fork().execute(op));
+
+		Context<?> c1=c.fork().execute(Def.create("foo", Constant.of(1L)));
+		assertEquals(RT.cvm(1L),c1.fork().execute(op).getResult());
+		assertEquals(RT.cvm(1L),c1.fork().execute(op).getResult());
+
+		// redefinition must not use stale entry
+		Context<?> c2=c1.fork().execute(Def.create("foo", Constant.of(2L)));
+		assertEquals(RT.cvm(2L),c2.fork().execute(op).getResult());
+		assertEquals(RT.cvm(1L),c1.fork().execute(op).getResult());
+
+		// core lookup, then shadowed by a local definition
+		Lookup<ACell> countOp=Lookup.create("count");
+		assertEquals(Core.COUNT,c.fork().execute(countOp).getResult());
+		Context<?> c3=c.fork().execute(Def.create("count", Constant.of(3L)));
+		assertEquals(RT.cvm(3L),c3.fork().execute(countOp).getResult());
+		assertEquals(Core.COUNT,c.fork().execute(countOp).getResult());
+
+		// juice is the same whether or not the cache is used
+		long j1=c1.fork().execute(op).getJuice();
+		long j2=c1.fork().execute(op).getJuice();
+		assertEquals(j1,j2);
+	}
+
+	@Test
+	public void testLocalFrames() {
+		// set! is undone on leaving the scope of the enclosing let
+		assertEquals(1L,evalL("(let [a 1] (let [b 2] (set! a 3)) a)"));
+		assertEquals(5L,evalL("(let [a 1] (set! a 5) a)"));
+
+		// set! in a function body doesn't affect the caller or captured environment
+		assertEquals(Vectors.of(7L,1L),eval("(let [a 1 f (fn [] (set! a 7) a)] [(f) a])"));
+
+		// local changes made while computing the value for set! are discarded
+		assertEquals(Vectors.of(3L,2L),eval("(let [a 1 b 2] (set! a (do (set! b 5) 3)) [a b])"));
+
+		// closures capture a snapshot of the current frame
+		assertEquals(Vectors.of(10L,2L,3L,4L),eval("(let [x 10 f (fn [y] (let [z 3] (fn [w] [x y z w])))] ((f 2) 4))"));
+		assertEquals(Vectors.of(0L,1L,2L),eval("(loop [i 0 fs []] (if (< i 3) (recur (inc i) (conj fs (fn [] i))) (mapv (fn [f] (f)) fs)))"));
+	}
+
 	@Test
 	public void testLocal() throws InvalidDataException {
 		Context<?> c=Context.createFake(State.EMPTY);
@@ -0,0 +1,96 @@
+package convex.core.lang;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import convex.core.data.ACell;
+import convex.core.data.Address;
+import convex.core.data.prim.CVMLong;
+
+public class ProfilerTest extends ACVMTest {
+
+	@Test
+	public void testProfiledExecution() {
+		Context<?> ctx=context();
+		String source="(let [f (fn [x] (* x 2))] (loop [i 0 acc 0] (if (< i 10) (recur (inc i) (+ acc (f i))) acc)))";
+		ACell form=Reader.read(source);
+
+		Context<?> plain=ctx.fork().eval(form);
+
+		Profiler p=Profiler.create();
+		Context<?> pctx=ctx.fork().withProfiler(p);
+		assertSame(p,pctx.getProfiler());
+		pctx=pctx.eval(form);
+
+		// profiling must not change results or juice
+		assertEquals(plain.getResult(),pctx.getResult());
+		assertEquals(plain.getJuice(),pctx.getJuice());
+
+		assertEquals(10,p.getCount(Profiler.FN, "*"));
+		assertEquals(11,p.getCount(Profiler.FN, "<"));
+		assertTrue(p.getCount(Profiler.OP, "Invoke")>0);
+
+		List<Profiler.Stats> stats=p.getStats();
+		assertTrue(stats.size()>0);
+		long juice=ctx.getJuice()-pctx.getJuice();
+		for (Profiler.Stats s: stats) {
+			assertTrue(s.getSelfNanos()<=s.getNanos());
+			assertTrue(s.getSelfJuice()<=s.getJuice());
+			assertTrue(s.getJuice()<=juice);
+		}
+
+		String stacks=p.getCollapsedStacks(true);
+		Address addr=ctx.getAddress();
+		assertTrue(stacks.contains(addr+";"+addr+"/fn;* "));
+		for (String line: stacks.split("\n")) {
+			assertTrue(line.matches("\\S+ \\d+"),line);
+		}
+
+		p.clear();
+		assertEquals(0,p.getStats().size());
+		assertEquals("",p.getCollapsedStacks(false));
+	}
+
+	@Test
+	public void testActorCall() {
+		Context<?> ctx=step(context(),"(def act (deploy '(do (defn twice ^{:callable? true} [x] (* x 2)))))");
+		Address actor=(Address) ctx.getResult();
+
+		Profiler p=Profiler.create();
+		ctx=ctx.withProfiler(p);
+		ctx=step(ctx,"(call act (twice 21))");
+		assertEquals(CVMLong.create(42),ctx.getResult());
+
+		assertEquals(1,p.getCount(Profiler.CALL, "twice"));
+		assertTrue(p.getCollapsedStacks(false).contains(actor+"/twice;"+actor+"/fn;*"));
+	}
+
+	@Test
+	public void testActive() {
+		assertNull(context().getProfiler());
+		Profiler p=Profiler.create();
+		Profiler.setActive(p);
+		try {
+			Context<?> ctx=Context.createFake(context().getState());
+			assertSame(p,ctx.getProfiler());
+			assertSame(p,ctx.fork().getProfiler());
+		} finally {
+			Profiler.setActive(null);
+		}
+
+		Profiler started=Profiler.start();
+		try {
+			assertSame(started,Context.createFake(context().getState()).getProfiler());
+		} finally {
+			assertSame(started,Profiler.stop());
+		}
+		assertNull(Profiler.stop());
+		assertNull(Context.createFake(context().getState()).getProfiler());
+	}
+}
@@ -0,0 +1,124 @@
+package convex.core.lang.reader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.jupiter.api.Test;
+
+import convex.core.data.ACell;
+import convex.core.data.AList;
+import convex.core.data.Keywords;
+import convex.core.data.Strings;
+import convex.core.data.prim.CVMLong;
+import convex.core.exceptions.ParseException;
+import convex.core.util.Utils;
+
+public class ConvexReaderTest {
+
+	static final String[] SOURCES=new String[] {
+		"convex/core.cvx",
+		"convex/core/metadata.cvx",
+		"convex/registry.cvx",
+		"convex/trust.cvx",
+		"convex/fungible.cvx",
+		"convex/asset.cvx",
+		"convex/play.cvx",
+		"convex/trusted-oracle.cvx",
+		"convex/trusted-oracle/actor.cvx",
+		"torus/exchange.cvx",
+		"torus/currencies.cvx",
+		"asset/nft/simple.cvx",
+		"asset/nft/tokens.cvx",
+		"asset/box.cvx",
+		"asset/box/actor.cvx",
+		"lab/messenger.cvx",
+		"lab/prediction-market.cvx",
+		"lab/convex/xform.cvx",
+		"examples/adventure.cvx"
+	};
+
+	private void checkSame(String source) {
+		ACell expected;
+		try {
+			expected=AntlrReader.read(source);
+		} catch (ParseException e) {
+			assertThrows(ParseException.class,()->ConvexReader.read(source),source);
+			return;
+		}
+		assertEquals(expected,ConvexReader.read(source),source);
+	}
+
+	private void checkSameAll(String source) {
+		assertEquals(AntlrReader.readAll(source),ConvexReader.readAll(source),source);
+	}
+
+	@Test public void testBundledSources() throws IOException {
+		for (String path: SOURCES) {
+			String source=Utils.readResourceAsString(path);
+			AList<ACell> forms=ConvexReader.readAll(source);
+			assertTrue(forms.count()>0,path);
+			assertEquals(AntlrReader.readAll(source),forms,path);
+			assertEquals(forms,ConvexReader.readAll(new StringReader(source)),path);
+		}
+	}
+
+	@Test public void testSameAsAntlr() {
+		String[] cases=new String[] {
+			"nil", "true", "false", "nilly", "true?", "nil/foo",
+			"1", "-1", "0", "-0", "1.5", "-1.5", "1e10", "1.5e-3", "-2E4", "1.", "-", "-x", "-5a",
+			"0x", "0xcafebabe", "0xABcd", "12345678901234",
+			":foo", ":/", ":a:b", ":foo#bar",
+			"foo", "/", "a*+!-_?<>=!", "foo#bar", "$", "...",
+			"foo/bar", "a/b/c", "foo//", "#8/foo", "#0//", "#12/a/b",
+			"#8", "# 8", "#{}", "#{1 2 3}", "# {1}", "##NaN", "##Inf", "##-Inf", "# # Inf",
+			"\"\"", "\"abc\"", "\"a\\\"b\"", "\"a\\nb\\t\"", "\"a\\\"\"",
+			"\\a", "\\newline", "\\space", "\\u0041", "\\u", "\\\\", "\\(",
+			"()", "[]", "{}", "(1 [2 {3 4}] #{5})", "{:a 1 :b [2 3]}",
+			"'foo", "`(a ~b ~@c)", "'(quote ~@ x)",
+			"^:foo bar", "^{:doc \"x\"} [1]", "^String x", "^:a ^:b c",
+			"(1 #_ 2 3)", "[1 #_(foo bar) 2]", "(a ; comment\n b)", "(,,a,b,,)",
+		};
+		for (String s: cases) {
+			checkSame(s);
+			checkSame("  "+s+" ; end");
+			checkSameAll(s+" "+s);
+		}
+		checkSameAll("");
+		checkSameAll("#_ foo bar ; only comments");
+	}
+
+	@Test public void testStreaming() throws IOException {
+		ConvexReader r=ConvexReader.create(new StringReader("1 :foo #_ skipped \"bar\" ; done"));
+		assertTrue(r.hasNext());
+		assertEquals(CVMLong.create(1),r.next());
+		assertEquals(Keywords.FOO,r.next());
+		assertEquals(Strings.create("bar"),r.next());
+		assertFalse(r.hasNext());
+		assertThrows(ParseException.class,()->r.next());
+
+		// tokens and strings larger than the stream buffer
+		StringBuilder sb=new StringBuilder("\"");
+		for (int i=0; i<10000; i++) sb.append("ab\\\"");
+		sb.append("\"");
+		String big=sb.toString();
+		assertEquals(AntlrReader.read(big),ConvexReader.read(new StringReader(big)));
+
+		assertNull(ConvexReader.read(new StringReader(" nil ")));
+	}
+
+	@Test public void testErrors() {
+		String[] cases=new String[] {
+			"", "  ", ":", "0x1", "(", "(1 2", ")", "(42))))", "{1}", "#_ 1", "1 2",
+			"#", "##foo", "#-1/foo", "#1.5", "\"abc", "\\", "^", "'", "1 #_2", "[#_]"
+		};
+		for (String s: cases) {
+			assertThrows(ParseException.class,()->ConvexReader.read(s),s);
+		}
+	}
+}
@@ -0,0 +1,99 @@
+package convex.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import convex.core.data.ACell;
+import convex.core.data.prim.CVMLong;
+import convex.core.store.CellCache;
+
+public class CellCacheTest {
+
+	@Test
+	public void testGetPut() {
+		CellCache cache=CellCache.create(100);
+		CVMLong a=CVMLong.create(1234567);
+		assertNull(cache.get(a.getHash()));
+		cache.put(a.getHash(), a);
+		assertSame(a,cache.get(a.getHash()));
+		assertEquals(1,cache.size());
+		assertEquals(1,cache.getHits());
+		assertEquals(1,cache.getMisses());
+
+		cache.clear();
+		assertNull(cache.get(a.getHash()));
+		assertEquals(0,cache.size());
+	}
+
+	@Test
+	public void testBounded() {
+		CellCache cache=CellCache.create(5000);
+		for (int i=0; i<20000; i++) {
+			CVMLong c=CVMLong.create(i);
+			if (cache.get(c.getHash())==null) cache.put(c.getHash(), c);
+		}
+		assertEquals(5000,cache.getCapacity());
+		assertTrue(cache.size()<=5000);
+		assertTrue(cache.getEvictions()>0);
+	}
+
+	@Test
+	public void testHotCellsRetained() {
+		CellCache cache=CellCache.create(1000);
+		ArrayList<ACell> hot=new ArrayList<>();
+		for (int i=0; i<100; i++) {
+			CVMLong c=CVMLong.create(-i-1);
+			hot.add(c);
+			cache.put(c.getHash(), c);
+		}
+
+		// interleave scans of one-off cells with requests for hot cells
+		for (int i=0; i<100000; i++) {
+			CVMLong c=CVMLong.create(i);
+			if (cache.get(c.getHash())==null) cache.put(c.getHash(), c);
+			if ((i%10)==0) {
+				ACell h=hot.get((i/10)%hot.size());
+				if (cache.get(h.getHash())==null) cache.put(h.getHash(), h);
+			}
+		}
+
+		int found=0;
+		for (ACell h: hot) {
+			if (cache.get(h.getHash())!=null) found++;
+		}
+		assertTrue("Hot cells retained: "+found,found>=90);
+	}
+
+	@Test
+	public void testConcurrentAccess() throws InterruptedException {
+		CellCache cache=CellCache.create(1000);
+		AtomicBoolean failed=new AtomicBoolean(false);
+		Thread[] threads=new Thread[4];
+		for (int t=0; t<threads.length; t++) {
+			final int seed=t;
+			threads[t]=new Thread(()->{
+				for (int i=0; i<20000; i++) {
+					CVMLong c=CVMLong.create((i*31+seed)%3000);
+					ACell cached=cache.get(c.getHash());
+					if (cached==null) {
+						cache.put(c.getHash(), c);
+					} else if (!c.equals(cached)) {
+						failed.set(true);
+					}
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread t: threads) t.join();
+		assertTrue(!failed.get());
+		assertTrue(cache.size()<=1000);
+		assertEquals(80000,cache.getHits()+cache.getMisses());
+	}
+}
@@ -10,8 +10,13 @@ import static org.junit.jupiter.api.Assertions.assertSame;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
@@ -43,6 +48,7 @@ import convex.core.transactions.Invoke;
 import convex.core.transactions.Transfer;
 import convex.core.util.Utils;
 import convex.test.Samples;
+import etch.Etch;
 import etch.EtchStore;
 
 public class EtchStoreTest {
@@ -216,6 +222,41 @@ public class EtchStoreTest {
 		}
 	}
 	
+	@Test
+	public void testBatchWrite() {
+		AStore oldStore = Stores.current();
+		ArrayList<Ref<ACell>> al = new ArrayList<>();
+		try {
+			Stores.setCurrent(store);
+			Blob shared=Blob.createRandom(new Random(), Format.MAX_EMBEDDED_LENGTH+1);
+			AVector<Blob> v1 = Vectors.of(shared,Blob.createRandom(new Random(), Format.MAX_EMBEDDED_LENGTH+1));
+			AVector<Blob> v2 = Vectors.of(shared,Blob.createRandom(new Random(), Format.MAX_EMBEDDED_LENGTH+1));
+			
+			List<Ref<ACell>> refs=store.storeTopRefs(List.of(v1.getRef(),v2.getRef()), Ref.PERSISTED, r->al.add(r));
+			assertEquals(2,refs.size());
+			assertEquals(v1,refs.get(0).getValue());
+			assertEquals(v2,refs.get(1).getValue());
+			
+			// shared child written once, children before parents
+			assertEquals(5,al.size());
+			assertEquals(shared,al.get(0).getValue());
+			assertEquals(v2,al.get(4).getValue());
+			
+			for (Ref<ACell> r: al) {
+				Ref<ACell> stored=store.refForHash(r.getHash());
+				assertEquals(Ref.PERSISTED,stored.getStatus());
+				assertEquals(r.getValue(),stored.getValue());
+			}
+			
+			// no new child novelty second time round, embedded top level values are always written
+			al.clear();
+			store.storeTopRefs(List.of(v1.getRef(),v2.getRef()), Ref.PERSISTED, r->al.add(r));
+			assertEquals(v1.isEmbedded()?2:0,al.size());
+		} finally {
+			Stores.setCurrent(oldStore);
+		}
+	}
+	
 	@Test public void testDecodeCache() throws BadFormatException {
 		Address a1=Address.create(12345678);
 		ACell cell=store.decode(a1.getEncoding());
@@ -237,4 +278,165 @@ public class EtchStoreTest {
 		EtchStore es2=EtchStore.create(file);
 		assertEquals(Hash.NULL_HASH,es2.getRootHash());
 	}
+
+	@Test
+	public void testCrashRecovery() throws IOException {
+		File file=File.createTempFile("etch-wal",null);
+		file.deleteOnExit();
+		EtchStore es=EtchStore.create(file);
+		es.setDurability(Etch.Durability.GROUP, 3600000); // commit manually only
+		AStore oldStore = Stores.current();
+		AVector<Blob> committed = Vectors.of(Blob.createRandom(new Random(), Format.MAX_EMBEDDED_LENGTH+1),Blob.createRandom(new Random(), Format.MAX_EMBEDDED_LENGTH+1));
+		AVector<Blob> uncommitted = Vectors.of(Blob.createRandom(new Random(), Format.MAX_EMBEDDED_LENGTH+1),Blob.createRandom(new Random(), Format.MAX_EMBEDDED_LENGTH+1));
+		File crashed=File.createTempFile("etch-crashed",null);
+		crashed.deleteOnExit();
+		File crashedWAL=new File(crashed.getPath()+".wal");
+		crashedWAL.deleteOnExit();
+		long committedLength;
+		try {
+			Stores.setCurrent(es);
+			ACell.createPersisted(committed);
+			es.setRootHash(committed.getHash());
+			es.commit();
+			committedLength=es.getEtch().getDataLength();
+			
+			// writes after the commit, including status updates of committed data
+			ACell.createPersisted(uncommitted);
+			committed.announce();
+			assertNotNull(es.refForHash(uncommitted.getHash()));
+			
+			// simulate a crash by copying files while the store is still open
+			Files.copy(file.toPath(), crashed.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			Files.copy(new File(file.getPath()+".wal").toPath(), crashedWAL.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Stores.setCurrent(oldStore);
+		}
+		es.close();
+		
+		EtchStore es2=EtchStore.create(crashed);
+		try {
+			assertEquals(committedLength,es2.getEtch().getDataLength());
+			assertEquals(committed.getHash(),es2.getRootHash());
+			assertEquals(committed,es2.refForHash(committed.getHash()).getValue());
+			assertEquals(Ref.PERSISTED,es2.refForHash(committed.getHash()).getStatus());
+			assertNull(es2.refForHash(uncommitted.getHash()));
+			assertNull(es2.refForHash(uncommitted.get(0).getHash()));
+		} finally {
+			es2.close();
+		}
+		
+		// original file closed cleanly, so everything is retained
+		EtchStore es3=EtchStore.create(file);
+		assertEquals(Ref.ANNOUNCED,es3.refForHash(committed.getHash()).getStatus());
+		assertNotNull(es3.refForHash(uncommitted.getHash()));
+		es3.close();
+	}
+
+	@Test
+	public void testGarbageCollection() throws IOException {
+		File file=File.createTempFile("etch-gc",null);
+		file.deleteOnExit();
+		EtchStore es=EtchStore.create(file);
+		AVector<Blob> live = Vectors.of(Blob.createRandom(new Random(), Format.MAX_EMBEDDED_LENGTH+1),Blob.createRandom(new Random(), Format.MAX_EMBEDDED_LENGTH+1));
+		AStore oldStore = Stores.current();
+		try {
+			Stores.setCurrent(es);
+			AVector<Blob> dead = Vectors.of(Blob.createRandom(new Random(), Format.MAX_EMBEDDED_LENGTH+1),Blob.createRandom(new Random(), Format.MAX_EMBEDDED_LENGTH+1));
+			ACell.createPersisted(live);
+			ACell.createPersisted(dead);
+			es.setRootHash(live.getHash());
+			
+			// start GC manually so we can write during collection
+			es.startGC();
+			AVector<Blob> fresh = Vectors.of(Blob.createRandom(new Random(), Format.MAX_EMBEDDED_LENGTH+1));
+			ACell.createPersisted(fresh);
+			assertNotNull(es.refForHash(dead.getHash())); // still readable during GC
+			assertNotNull(es.refForHash(fresh.getHash()));
+			es.mark(List.of(es.refForHash(es.getRootHash()).getValue()), null);
+			long reclaimed=es.completeGC();
+			assertTrue(reclaimed>0);
+			assertEquals(reclaimed,es.getLastGCReclaimed());
+			
+			assertEquals(file.getCanonicalFile(),es.getFile().getCanonicalFile());
+			assertEquals(live.getHash(),es.getRootHash());
+			assertEquals(live,es.refForHash(live.getHash()).getValue());
+			assertEquals(live.get(0),es.refForHash(live.get(0).getHash()).getValue());
+			assertEquals(fresh,es.refForHash(fresh.getHash()).getValue());
+			assertNull(es.refForHash(dead.getHash()));
+			assertNull(es.refForHash(dead.get(1).getHash()));
+			
+			// full cycle with explicit roots, root hash retained
+			long reclaimed2=es.collectGarbage(List.of(fresh));
+			assertTrue(reclaimed2>=0);
+			assertEquals(live,es.refForHash(live.getHash()).getValue());
+			assertEquals(fresh,es.refForHash(fresh.getHash()).getValue());
+		} finally {
+			Stores.setCurrent(oldStore);
+		}
+		es.close();
+
+		// Reopen compacted file
+		EtchStore es2=EtchStore.create(file);
+		assertEquals(live.getHash(),es2.getRootHash());
+		assertNotNull(es2.refForHash(live.getHash()));
+		es2.close();
+	}
+
+	@Test
+	public void testConcurrentWritesDuringGC() throws Exception {
+		File file=File.createTempFile("etch-gc-concurrent",null);
+		file.deleteOnExit();
+		EtchStore es=EtchStore.create(file);
+		AtomicBoolean stop=new AtomicBoolean(false);
+		AtomicBoolean gcStarted=new AtomicBoolean(false);
+		AtomicLong written=new AtomicLong(0);
+		List<AVector<Blob>> retained=Collections.synchronizedList(new ArrayList<>());
+		List<Throwable> errors=Collections.synchronizedList(new ArrayList<>());
+		
+		ArrayList<Thread> writers=new ArrayList<>();
+		for (int t=0; t<4; t++) {
+			final Random r=new Random(t);
+			Thread writer=new Thread(()->{
+				try {
+					while (!stop.get()) {
+						AVector<Blob> v=Vectors.of(Blob.createRandom(r, Format.MAX_EMBEDDED_LENGTH+1),Blob.createRandom(r, Format.MAX_EMBEDDED_LENGTH+1));
+						// anything written after GC has started must survive GC, even if not a root
+						boolean afterStart=gcStarted.get();
+						es.storeTopRef(v.getRef(), Ref.PERSISTED, null);
+						written.incrementAndGet();
+						if (afterStart) retained.add(v);
+					}
+				} catch (Throwable e) {
+					errors.add(e);
+				}
+			});
+			writers.add(writer);
+			writer.start();
+		}
+		
+		try {
+			while (written.get()<100) Thread.sleep(1);
+			es.startGC();
+			gcStarted.set(true);
+			long mark=written.get();
+			while (written.get()<mark+100) Thread.sleep(1);
+			es.mark(List.of(), null);
+			es.completeGC();
+			long done=written.get();
+			while (written.get()<done+100) Thread.sleep(1);
+		} finally {
+			stop.set(true);
+			for (Thread writer: writers) writer.join();
+		}
+		
+		assertTrue(errors.toString(),errors.isEmpty());
+		assertTrue(retained.size()>=100);
+		for (AVector<Blob> v: retained) {
+			Ref<AVector<Blob>> ref=es.refForHash(v.getHash());
+			assertNotNull(ref);
+			assertEquals(v,ref.getValue());
+			assertNotNull(es.refForHash(v.get(1).getHash()));
+		}
+		es.close();
+	}
 }
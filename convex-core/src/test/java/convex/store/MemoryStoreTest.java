@@ -23,6 +23,7 @@ import convex.core.data.Keywords;
 import convex.core.data.Maps;
 import convex.core.data.Ref;
 import convex.core.data.Sets;
+import convex.core.data.Vectors;
 import convex.core.data.prim.CVMLong;
 import convex.core.exceptions.BadFormatException;
 import convex.core.store.AStore;
@@ -85,6 +86,33 @@ public class MemoryStoreTest {
 		}
 	}
 
+	@Test
+	public void testStoreTopOnly() throws BadFormatException {
+		AVector<ACell> v = Vectors.empty();
+		Random r = new Random(1234);
+		for (int i = 0; i < 20; i++) {
+			v = v.conj(Blob.createRandom(r, 100));
+		}
+
+		// decoded top cell only has Refs to its children, which are not available
+		AVector<ACell> top = Format.read(v.getEncoding());
+		MemoryStore ms = new MemoryStore();
+		ArrayList<Ref<ACell>> novelty = new ArrayList<>();
+		Ref<AVector<ACell>> ref = ms.storeTopRef(top.getRef(), Ref.STORED, novelty::add);
+		assertEquals(Ref.STORED, ref.getStatus());
+		assertEquals(1, novelty.size());
+
+		// recorded status is STORED, and no children are stored
+		assertEquals(Ref.STORED, ms.refForHash(v.getHash()).getStatus());
+		for (int i = 0; i < top.getRefCount(); i++) {
+			assertNull(ms.refForHash(top.getRef(i).getHash()));
+		}
+
+		// storing again at the same status is not novelty
+		ms.storeTopRef(top.getRef(), Ref.STORED, novelty::add);
+		assertEquals(1, novelty.size());
+	}
+
 	@Test
 	public void testNoveltyHandler() {
 		AStore oldStore = Stores.current();
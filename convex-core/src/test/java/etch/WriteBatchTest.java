@@ -0,0 +1,50 @@
+package etch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import convex.core.data.ACell;
+import convex.core.data.AVector;
+import convex.core.data.Blob;
+import convex.core.data.Format;
+import convex.core.data.Ref;
+import convex.core.data.Vectors;
+
+public class WriteBatchTest {
+
+	@Test
+	public void testStatusUpgrade() {
+		EtchStore store=EtchStore.createTemp();
+		Blob child=Blob.createRandom(new Random(), Format.MAX_EMBEDDED_LENGTH+1);
+		AVector<Blob> v=Vectors.of(child,child);
+		Ref<ACell> stored=v.getRef();
+		stored=stored.withMinimumStatus(Ref.STORED);
+		Ref<ACell> persisted=stored.withMinimumStatus(Ref.PERSISTED);
+		Ref<ACell> childRef=child.getRef();
+		childRef=childRef.withMinimumStatus(Ref.PERSISTED);
+
+		ArrayList<Ref<ACell>> novelty=new ArrayList<>();
+		EtchStore.WriteBatch batch=store.createBatch();
+		try {
+			batch.add(v.getHash(), stored);
+			batch.add(child.getHash(), childRef);
+			batch.add(v.getHash(), persisted);
+			batch.add(v.getHash(), stored); // lower status ignored
+			assertEquals(Ref.PERSISTED,batch.get(v.getHash()).getStatus());
+			batch.write(r->novelty.add(r));
+		} finally {
+			batch.release();
+		}
+
+		// upgraded Ref written once, after the child added before the upgrade
+		assertEquals(2,novelty.size());
+		assertEquals(child.getHash(),novelty.get(0).getHash());
+		assertEquals(v.getHash(),novelty.get(1).getHash());
+		assertEquals(Ref.PERSISTED,store.refForHash(v.getHash()).getStatus());
+		store.close();
+	}
+}
@@ -6,6 +6,7 @@ import static org.junit.jupiter.api.Assertions.assertNull;
 
 import java.io.IOException;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.jupiter.api.Test;
 
@@ -97,4 +98,51 @@ public class TestEtch {
 		assertEquals(key,r2.getHash());
 		// System.out.println(i + " " +  COUNT);
 	}
+
+	@Test
+	public void testConcurrentReads() throws Exception {
+		EtchStore store=EtchStore.createTemp();
+		Etch etch = store.getEtch();
+
+		int COUNT = 10000;
+		AtomicInteger written=new AtomicInteger(0);
+		AtomicInteger failures=new AtomicInteger(0);
+
+		Thread writer=new Thread(()->{
+			try {
+				for (int i = 0; i < COUNT; i++) {
+					AVector<CVMLong> v=Vectors.of((long)i);
+					etch.write(v.getHash(), v.getRef());
+					written.set(i+1);
+				}
+			} catch (IOException e) {
+				failures.incrementAndGet();
+			}
+		});
+
+		Thread[] readers=new Thread[4];
+		for (int t=0; t<readers.length; t++) {
+			readers[t]=new Thread(()->{
+				Random r=new Random();
+				try {
+					while (written.get()<COUNT) {
+						int n=written.get();
+						if (n==0) continue;
+						// anything already written must always be found
+						AVector<CVMLong> v=Vectors.of((long)r.nextInt(n));
+						Ref<ACell> ref=etch.read(v.getHash());
+						if ((ref==null)||!v.equals(ref.getValue())) failures.incrementAndGet();
+					}
+				} catch (IOException e) {
+					failures.incrementAndGet();
+				}
+			});
+		}
+
+		for (Thread t: readers) t.start();
+		writer.start();
+		writer.join();
+		for (Thread t: readers) t.join();
+		assertEquals(0,failures.get());
+	}
 }
@@ -32,6 +32,7 @@ import convex.core.data.ACell;
 import convex.core.data.AccountKey;
 import convex.core.data.AccountStatus;
 import convex.core.data.Address;
+import convex.core.init.GenesisCache;
 import convex.core.init.Init;
 import convex.core.transactions.ATransaction;
 import convex.core.transactions.Invoke;
@@ -67,7 +68,7 @@ public class PeerGUI extends JPanel {
 	
 	public static List<AccountKey> PEERKEYS=KEYPAIRS.stream().map(kp->kp.getAccountKey()).collect(Collectors.toList());
 	
-	public static State genesisState=Init.createState(PEERKEYS);
+	public static State genesisState=GenesisCache.getState(PEERKEYS);
 	private static StateModel<State> latestState = StateModel.create(genesisState);
 	public static StateModel<Long> tickState = StateModel.create(0L);
 
@@ -0,0 +1,413 @@
+package convex.api;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import convex.core.data.ACell;
+import convex.core.data.Hash;
+import convex.core.data.Ref;
+import convex.core.exceptions.MissingDataException;
+import convex.core.store.AStore;
+import convex.core.store.Stores;
+import convex.core.util.Utils;
+import convex.net.Connection;
+
+/**
+ * Engine for acquiring complete persistent data structures from one or more remote Peers.
+ *
+ * Missing cells are requested with MISSING_DATA messages carrying many hashes each. Up to
+ * a window of hashes may be outstanding on each source, so many requests are in flight at
+ * once and requests are spread over all sources. Progress is driven by incoming DATA and
+ * DATA_BATCH messages: as each requested cell arrives, its missing children are queued and
+ * further requests are sent immediately.
+ *
+ * Requests that get no response within a retry interval (e.g. because the remote send
+ * buffer was full) are sent again, possibly to a different source. Acquisitions fail with a
+ * TimeoutException if no requested data arrives for an extended period.
+ */
+public class Acquirer {
+
+	private static final Logger log = LoggerFactory.getLogger(Acquirer.class.getName());
+
+	/**
+	 * Maximum number of hashes outstanding on each source
+	 */
+	static final int WINDOW = 2 * Connection.MAX_MISSING_DATA_HASHES;
+
+	/**
+	 * Time after which an unanswered request is sent again
+	 */
+	static final long RETRY_MILLIS = 500;
+
+	/**
+	 * Time without any requested data arriving after which acquisitions fail
+	 */
+	static final long TIMEOUT_MILLIS = 60000;
+
+	private static class Source {
+		final ConvexRemote convex;
+		int outstanding = 0;
+
+		Source(ConvexRemote convex) {
+			this.convex = convex;
+		}
+
+		boolean send(List<Hash> hashes) {
+			Connection c = convex.getConnection();
+			if ((c == null) || c.isClosed()) return false;
+			try {
+				return c.sendMissingData(hashes);
+			} catch (IOException e) {
+				return false;
+			}
+		}
+	}
+
+	private static class Request {
+		final Source source;
+		final long time;
+
+		Request(Source source, long time) {
+			this.source = source;
+			this.time = time;
+		}
+	}
+
+	private static class Acquisition {
+		final Hash hash;
+		final CompletableFuture<ACell> future;
+
+		Acquisition(Hash hash, CompletableFuture<ACell> future) {
+			this.hash = hash;
+			this.future = future;
+		}
+	}
+
+	private final AStore store;
+
+	// All state below is guarded by this Acquirer's lock
+	private final ArrayList<Source> sources = new ArrayList<>();
+	private final ArrayList<Acquisition> acquisitions = new ArrayList<>();
+
+	/**
+	 * Hashes of all cells still needed, whether requested or not
+	 */
+	private final HashSet<Hash> wanted = new HashSet<>();
+
+	/**
+	 * Hashes waiting to be requested, in order. May contain hashes no longer wanted.
+	 */
+	private final ArrayDeque<Hash> pending = new ArrayDeque<>();
+
+	/**
+	 * Requests awaiting a response, by hash
+	 */
+	private final HashMap<Hash, Request> requested = new HashMap<>();
+
+	private Thread retryThread = null;
+	private long lastProgress = 0;
+	private long cellCount = 0;
+	private long byteCount = 0;
+
+	private Acquirer(AStore store) {
+		this.store = store;
+	}
+
+	/**
+	 * Creates an Acquirer that acquires data into the given store. Sources must be added
+	 * before any data can be requested.
+	 *
+	 * @param store Store to acquire data to
+	 * @return New Acquirer instance
+	 */
+	public static Acquirer create(AStore store) {
+		return new Acquirer(store);
+	}
+
+	/**
+	 * Gets the store this Acquirer acquires data to
+	 * @return Store instance
+	 */
+	public AStore getStore() {
+		return store;
+	}
+
+	/**
+	 * Adds a source of data. The source is notified of data it receives, so requests may be
+	 * sent to it immediately.
+	 *
+	 * @param convex Connected client for a remote Peer
+	 */
+	public void addSource(ConvexRemote convex) {
+		synchronized (this) {
+			for (Source s : sources) {
+				if (s.convex == convex) return;
+			}
+			sources.add(new Source(convex));
+		}
+		convex.addAcquirer(this);
+		synchronized (this) {
+			fill();
+		}
+	}
+
+	/**
+	 * Removes a source of data. Outstanding requests to the source are queued again
+	 * immediately, and sent to other sources if any are available.
+	 *
+	 * @param convex Client previously added as a source
+	 */
+	public void removeSource(ConvexRemote convex) {
+		convex.removeAcquirer(this);
+		synchronized (this) {
+			Source source = null;
+			for (Source s : sources) {
+				if (s.convex == convex) source = s;
+			}
+			if (source == null) return;
+			sources.remove(source);
+
+			Iterator<HashMap.Entry<Hash, Request>> it = requested.entrySet().iterator();
+			while (it.hasNext()) {
+				HashMap.Entry<Hash, Request> e = it.next();
+				if (e.getValue().source != source) continue;
+				it.remove();
+				pending.addFirst(e.getKey());
+			}
+			source.outstanding = 0;
+			fill();
+		}
+	}
+
+	/**
+	 * Acquires a complete persistent data structure for the given hash.
+	 *
+	 * @param <T> Type of value
+	 * @param hash Hash of value to acquire
+	 * @return Future for the value, completed when the value is persisted in the store
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends ACell> CompletableFuture<T> acquire(Hash hash) {
+		CompletableFuture<T> f = new CompletableFuture<T>();
+		synchronized (this) {
+			Ref<ACell> ref = store.refForHash(hash);
+			if ((ref != null) && (ref.getStatus() >= Ref.PERSISTED)) {
+				f.complete((T) ref.getValue());
+				return f;
+			}
+			if (acquisitions.isEmpty()) lastProgress = Utils.getCurrentTimestamp();
+			acquisitions.add(new Acquisition(hash, (CompletableFuture<ACell>) f));
+			if (ref == null) {
+				want(hash);
+			} else {
+				expand(ref.getValue());
+			}
+			update();
+		}
+		return f;
+	}
+
+	/**
+	 * Handles data received from a source. Called after the cells have been stored in the
+	 * current store.
+	 *
+	 * @param refs Refs for received cells
+	 */
+	void receiveData(List<Ref<ACell>> refs) {
+		synchronized (this) {
+			if (acquisitions.isEmpty()) return;
+			boolean stored = (store == Stores.current());
+			for (Ref<ACell> r : refs) {
+				Hash h = r.getHash();
+				if (!wanted.remove(h)) continue;
+				Request req = requested.remove(h);
+				if (req != null) req.source.outstanding--;
+
+				if (!stored) r = store.storeTopRef(r, Ref.STORED, null);
+				ACell cell = r.getValue();
+				cellCount++;
+				byteCount += cell.getEncodingLength();
+				expand(cell);
+			}
+			lastProgress = Utils.getCurrentTimestamp();
+			update();
+		}
+	}
+
+	/**
+	 * Gets the number of requested cells received by this Acquirer
+	 * @return Count of cells
+	 */
+	public synchronized long getCellCount() {
+		return cellCount;
+	}
+
+	/**
+	 * Gets the total encoding length of requested cells received by this Acquirer
+	 * @return Count of bytes
+	 */
+	public synchronized long getByteCount() {
+		return byteCount;
+	}
+
+	/**
+	 * Marks a hash as wanted, queuing it for request
+	 */
+	private void want(Hash h) {
+		if (wanted.add(h)) pending.add(h);
+	}
+
+	/**
+	 * Finds missing children of a cell and marks them as wanted. Recurses into children
+	 * that are present but not yet known to be complete.
+	 */
+	private void expand(ACell cell) {
+		int n = cell.getRefCount();
+		for (int i = 0; i < n; i++) {
+			Ref<ACell> child = cell.getRef(i);
+			if (child.isEmbedded()) {
+				ACell v = child.getValue();
+				if (v != null) expand(v);
+				continue;
+			}
+			Hash h = child.getHash();
+			if (wanted.contains(h)) continue;
+			Ref<ACell> sr = store.refForHash(h);
+			if (sr == null) {
+				want(h);
+			} else if (sr.getStatus() < Ref.PERSISTED) {
+				expand(sr.getValue());
+			}
+		}
+	}
+
+	private void update() {
+		if (wanted.isEmpty()) completeAcquisitions();
+		fill();
+		if ((retryThread == null) && !acquisitions.isEmpty()) {
+			retryThread = new Thread(this::retryLoop, "Acquirer retry thread");
+			retryThread.setDaemon(true);
+			retryThread.start();
+		}
+	}
+
+	/**
+	 * Completes acquisitions once no more data is wanted
+	 */
+	private void completeAcquisitions() {
+		Iterator<Acquisition> it = acquisitions.iterator();
+		while (it.hasNext()) {
+			Acquisition a = it.next();
+			if (a.future.isDone()) {
+				it.remove();
+				continue;
+			}
+			try {
+				Ref<ACell> ref = store.refForHash(a.hash);
+				if (ref == null) {
+					want(a.hash);
+					continue;
+				}
+				ref = store.storeRef(ref, Ref.PERSISTED, null);
+				a.future.complete(ref.getValue());
+				it.remove();
+			} catch (MissingDataException e) {
+				// shouldn't normally happen, but we can fetch the missing data
+				want(e.getMissingHash());
+			}
+		}
+	}
+
+	/**
+	 * Sends requests for pending hashes until all sources have a full window
+	 */
+	private void fill() {
+		while (!pending.isEmpty()) {
+			Source source = null;
+			for (Source s : sources) {
+				if (s.outstanding >= WINDOW) continue;
+				if ((source == null) || (s.outstanding < source.outstanding)) source = s;
+			}
+			if (source == null) return;
+
+			int n = Math.min(Connection.MAX_MISSING_DATA_HASHES, WINDOW - source.outstanding);
+			ArrayList<Hash> hashes = new ArrayList<>(n);
+			while ((hashes.size() < n) && !pending.isEmpty()) {
+				Hash h = pending.poll();
+				if (wanted.contains(h) && !requested.containsKey(h)) hashes.add(h);
+			}
+			if (hashes.isEmpty()) return;
+
+			if (!source.send(hashes)) {
+				// put hashes back in original order, retry later
+				for (int i = hashes.size() - 1; i >= 0; i--) {
+					pending.addFirst(hashes.get(i));
+				}
+				log.debug("Unable to send missing data request to {}", source.convex);
+				return;
+			}
+			long now = Utils.getCurrentTimestamp();
+			Request req = new Request(source, now);
+			for (Hash h : hashes) {
+				requested.put(h, req);
+			}
+			source.outstanding += hashes.size();
+		}
+	}
+
+	private synchronized void retryLoop() {
+		try {
+			while (!acquisitions.isEmpty()) {
+				wait(RETRY_MILLIS);
+				retry();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			retryThread = null;
+		}
+	}
+
+	/**
+	 * Re-queues requests that have not been answered in time, and fails all acquisitions
+	 * if nothing has arrived for too long.
+	 */
+	private void retry() {
+		acquisitions.removeIf(a -> a.future.isDone());
+		long now = Utils.getCurrentTimestamp();
+		if (acquisitions.isEmpty() || (now - lastProgress > TIMEOUT_MILLIS)) {
+			for (Acquisition a : acquisitions) {
+				a.future.completeExceptionally(new TimeoutException("No data received for " + a.hash));
+			}
+			acquisitions.clear();
+			wanted.clear();
+			pending.clear();
+			requested.clear();
+			for (Source s : sources) {
+				s.outstanding = 0;
+			}
+			return;
+		}
+
+		Iterator<HashMap.Entry<Hash, Request>> it = requested.entrySet().iterator();
+		while (it.hasNext()) {
+			HashMap.Entry<Hash, Request> e = it.next();
+			Request req = e.getValue();
+			if (now - req.time < RETRY_MILLIS) continue;
+			it.remove();
+			req.source.outstanding--;
+			pending.addFirst(e.getKey());
+		}
+		update();
+	}
+}
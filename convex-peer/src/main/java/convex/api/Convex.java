@@ -2,8 +2,10 @@ package convex.api;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
@@ -115,6 +117,18 @@ public abstract class Convex {
 			}
 		}
 
+		@Override
+		protected void handleData(List<Ref<ACell>> refs) {
+			Acquirer[] targets;
+			synchronized (acquirers) {
+				if (acquirers.isEmpty()) return;
+				targets = acquirers.toArray(new Acquirer[acquirers.size()]);
+			}
+			for (Acquirer a : targets) {
+				a.receiveData(refs);
+			}
+		}
+
 		@Override
 		public void accept(Message m) {
 			super.accept(m);
@@ -131,6 +145,23 @@ public abstract class Convex {
 
 	private Consumer<Message> delegatedHandler = null;
 
+	/**
+	 * Acquirers to be notified of data received by this client
+	 */
+	private final ArrayList<Acquirer> acquirers = new ArrayList<>();
+
+	void addAcquirer(Acquirer a) {
+		synchronized (acquirers) {
+			if (!acquirers.contains(a)) acquirers.add(a);
+		}
+	}
+
+	void removeAcquirer(Acquirer a) {
+		synchronized (acquirers) {
+			acquirers.remove(a);
+		}
+	}
+
 	protected Convex(Address address, AKeyPair keyPair) {
 		this.keyPair = keyPair;
 		this.address = address;
@@ -2,7 +2,6 @@ package convex.api;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.util.HashSet;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
@@ -21,7 +20,6 @@ import convex.core.data.Address;
 import convex.core.data.Hash;
 import convex.core.data.Ref;
 import convex.core.data.SignedData;
-import convex.core.exceptions.MissingDataException;
 import convex.core.lang.RT;
 import convex.core.store.AStore;
 import convex.core.store.Stores;
@@ -37,6 +35,11 @@ public class ConvexRemote extends Convex {
 	
 	private static final Logger log = LoggerFactory.getLogger(ConvexRemote.class.getName());
 
+	/**
+	 * Acquirer for data requested through this client, using this client as the only source
+	 */
+	private Acquirer acquirer;
+
 	
 	/**
 	 * Gets the Internet address of the currently connected remote
@@ -194,65 +197,17 @@ public class ConvexRemote extends Convex {
 	
 	@Override
 	public <T extends ACell> CompletableFuture<T> acquire(Hash hash, AStore store) {
-		CompletableFuture<T> f = new CompletableFuture<T>();
-		new Thread(new Runnable() {
-			@Override
-			public void run() {
-				Stores.setCurrent(store); // use store for calling thread
-				try {
-					Ref<T> ref = store.refForHash(hash);
-					HashSet<Hash> missingSet = new HashSet<>();
-
-					// Loop until future is complete or cancelled
-					while (!f.isDone()) {
-						missingSet.clear();
-
-						if (ref == null) {
-							missingSet.add(hash);
-						} else {
-							if (ref.getStatus() >= Ref.PERSISTED) {
-								// we have everything!
-								f.complete(ref.getValue());
-								return;
-							}
-							ref.findMissing(missingSet);
-						}
-						for (Hash h : missingSet) {
-							// send missing data requests until we fill pipeline
-							log.debug("Request missing data: {}", h);
-							boolean sent = connection.sendMissingData(h);
-							if (!sent) {
-								log.debug("Send Queue full!");
-								break;
-							}
-						}
-						// if too low, can send multiple requests, and then block the peer
-						Thread.sleep(100);
-						ref = store.refForHash(hash);
-						if (ref != null) {
-							if (ref.getStatus() >= Ref.PERSISTED) {
-								// we have everything!
-								f.complete(ref.getValue());
-								return;
-							}
-							// maybe complete, but not sure
-							try {
-								ref = ref.persist();
-								f.complete(ref.getValue());
-							} catch (MissingDataException e) {
-								Hash missing = e.getMissingHash();
-								log.debug("Still missing: {}", missing);
-								connection.sendMissingData(missing);
-							}
-						}
-					}
-				} catch (Throwable t) {
-					// catch any errors, probably IO?
-					f.completeExceptionally(t);
-				}
+		Acquirer a;
+		synchronized (awaiting) {
+			a = acquirer;
+			if ((a == null) || (a.getStore() != store)) {
+				if (a != null) a.removeSource(this);
+				a = Acquirer.create(store);
+				a.addSource(this);
+				acquirer = a;
 			}
-		}).start();
-		return f;
+		}
+		return a.acquire(hash);
 	}
 	
 	/**
@@ -3,6 +3,7 @@ package convex.net;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.net.SocketException;
 import java.net.StandardSocketOptions;
 import java.nio.ByteBuffer;
 import java.nio.channels.ByteChannel;
@@ -10,12 +11,13 @@ import java.nio.channels.CancelledKeyException;
 import java.nio.channels.Channel;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.SelectionKey;
-import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
-import java.util.Set;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -23,12 +25,17 @@ import org.slf4j.LoggerFactory;
 import convex.core.Constants;
 import convex.core.Result;
 import convex.core.data.ACell;
+import convex.core.data.ASet;
 import convex.core.data.AccountKey;
 import convex.core.data.AVector;
 import convex.core.data.Address;
+import convex.core.data.Blob;
 import convex.core.data.Format;
 import convex.core.data.Hash;
 import convex.core.data.IRefFunction;
+import convex.core.data.Keyword;
+import convex.core.data.Keywords;
+import convex.core.data.Sets;
 import convex.core.data.SignedData;
 import convex.core.data.Vectors;
 import convex.core.data.prim.CVMLong;
@@ -46,12 +53,14 @@ import convex.net.message.Message;
  * </p>
  *
  * <p>
- * Sent messages are sent asynchronously via the shared client selector.
+ * Sent messages are encoded into frames and queued without locking, then sent
+ * asynchronously by the selector thread that owns the Connection.
  * </p>
  *
  * <p>
- * Received messages are read by the shared client selector, converted into
- * Message instances, and passed to a Consumer for handling.
+ * Received messages are read by the owning selector thread, converted into
+ * Message instances, and passed to a Consumer for handling. Client connections
+ * are shared round-robin between the threads of the client SelectorGroup.
  * </p>
  *
  * <p>
@@ -82,19 +91,57 @@ public class Connection {
 	private static final Logger log = LoggerFactory.getLogger(Connection.class.getName());
 
 	/**
-	 * Pre-allocated direct buffer for message sending TODO: is one per connection
-	 * OK? Users should synchronise on this briefly while building message.
+	 * Maximum length of the body of a DATA_BATCH message, excluding the message type
 	 */
-	private final ByteBuffer frameBuf = ByteBuffer.allocateDirect(Format.LIMIT_ENCODING_LENGTH + 20);
+	private static final int MAX_BATCH_LENGTH = Format.LIMIT_ENCODING_LENGTH - 1;
+
+	/**
+	 * Maximum number of hashes in a single MISSING_DATA request, so that the payload
+	 * fits in a single Blob chunk
+	 */
+	public static final int MAX_MISSING_DATA_HASHES = Blob.CHUNK_LENGTH / Hash.LENGTH;
+
+	/**
+	 * Capabilities supported by this end of a Connection, announced to the remote end
+	 * in a COMMAND message of the form [:capabilities #{...}]
+	 */
+	public static final ASet<Keyword> CAPABILITIES = Sets.of(Keywords.DATA_BATCH, Keywords.MISSING_DATA_BATCH);
+
+	/**
+	 * Capabilities announced by the remote end. Empty until the remote end announces
+	 * them, since older peers do not, and reject message types they do not know.
+	 */
+	private volatile ASet<? extends ACell> remoteCapabilities = Sets.empty();
+
+	/**
+	 * True once our capabilities have been sent on this Connection
+	 */
+	private final AtomicBoolean capabilitiesSent = new AtomicBoolean(false);
 
 	private final MessageReceiver receiver;
 	private final MessageSender sender;
 
+	/**
+	 * Lock for changes to the interest set of this Connection's selection key
+	 */
+	private final Object interestLock = new Object();
+
+	/**
+	 * Selector thread handling IO for this Connection, or null if not yet listening
+	 */
+	private volatile SelectorGroup.Loop loop = null;
+
+	/**
+	 * Number of message frames and bytes buffered for sending
+	 */
+	private final AtomicLong sentFrameCount = new AtomicLong(0);
+	private final AtomicLong sentByteCount = new AtomicLong(0);
+
 	private Connection(ByteChannel clientChannel, Consumer<Message> receiveAction, AStore store,
 			AccountKey trustedPeerKey) {
 		this.channel = clientChannel;
 		receiver = new MessageReceiver(receiveAction, this);
-		sender = new MessageSender(clientChannel);
+		sender = new MessageSender(clientChannel, this::wakeWrite);
 		this.store = store;
 		this.trustedPeerKey = trustedPeerKey;
 	}
@@ -203,7 +250,8 @@ public class Connection {
 		}
 
 		Connection pc = create(clientChannel, receiveAction, store, trustedPeerKey);
-		pc.startClientListening();
+		pc.startListening(getClientSelectorGroup());
+		pc.sendCapabilities();
 		log.debug("Connect succeeded for host: {}", hostAddress);
 		return pc;
 	}
@@ -270,6 +318,113 @@ public class Connection {
 		return sendBuffer(MessageType.DATA, buf);
 	}
 
+	/**
+	 * Sends a batch of cells on this connection, packing as many cell encodings as
+	 * possible into each DATA_BATCH message frame. A cell that is alone in its
+	 * frame is sent as a DATA message instead. If the remote end is not known to
+	 * support DATA_BATCH, all cells are sent as DATA messages.
+	 *
+	 * Sends every non-null cell given, including embedded cells, since these may have
+	 * been requested by hash.
+	 *
+	 * @param cells Cells to send, in the order they should be received
+	 * @return true if all cells were buffered successfully, false otherwise
+	 * @throws IOException If IO error occurs
+	 */
+	public boolean sendDataBatch(Iterable<? extends ACell> cells) throws IOException {
+		if (!isDataBatchSupported()) {
+			boolean sent = true;
+			for (ACell cell : cells) {
+				if (cell != null) sent &= sendData(cell);
+			}
+			return sent;
+		}
+
+		ByteBuffer batch = null;
+		ACell last = null;
+		int batchCount = 0;
+		boolean sent = true;
+		for (ACell cell : cells) {
+			if (cell == null) continue;
+			Blob enc = cell.getEncoding();
+			int len = (int) enc.count();
+			int entryLength = Format.getVLCLength(len) + len;
+			if (entryLength > MAX_BATCH_LENGTH) {
+				// too big to share a frame
+				sent &= sendData(cell);
+				continue;
+			}
+			if (batch == null) {
+				batch = ByteBuffer.allocate(MAX_BATCH_LENGTH);
+			} else if (batch.remaining() < entryLength) {
+				sent &= sendBatch(batch, batchCount, last);
+				batch.clear();
+				batchCount = 0;
+			}
+			Format.writeVLCLong(batch, len);
+			enc.writeToBuffer(batch);
+			last = cell;
+			batchCount++;
+		}
+		if (batchCount > 0) sent &= sendBatch(batch, batchCount, last);
+		return sent;
+	}
+
+	/**
+	 * Checks if the remote end of this Connection is known to accept DATA_BATCH messages
+	 * @return True if DATA_BATCH messages are sent
+	 */
+	public boolean isDataBatchSupported() {
+		return hasRemoteCapability(Keywords.DATA_BATCH);
+	}
+
+	/**
+	 * Checks if the remote end of this Connection has announced the given capability
+	 * @param capability Capability keyword, e.g. :data-batch
+	 * @return True if the capability is supported by the remote end
+	 */
+	public boolean hasRemoteCapability(Keyword capability) {
+		return remoteCapabilities.contains(capability);
+	}
+
+	/**
+	 * Sets the capabilities of the remote end of this Connection. Called when the remote
+	 * end announces its capabilities.
+	 * @param capabilities Set of capability keywords
+	 */
+	public void setRemoteCapabilities(ASet<? extends ACell> capabilities) {
+		remoteCapabilities = capabilities;
+	}
+
+	/**
+	 * Sends our capabilities to the remote end, unless already sent on this Connection.
+	 * @return true if buffered successfully or already sent, false otherwise
+	 * @throws IOException If IO error occurs
+	 */
+	public boolean sendCapabilities() throws IOException {
+		if (!capabilitiesSent.compareAndSet(false, true)) return true;
+		boolean sent = sendObject(MessageType.COMMAND, Vectors.of(Keywords.CAPABILITIES, CAPABILITIES));
+		if (!sent) capabilitiesSent.set(false);
+		return sent;
+	}
+
+	/**
+	 * Handles capabilities announced by the remote end, replying with our own if not
+	 * already sent.
+	 * @param capabilities Set of capability keywords
+	 * @throws IOException If IO error occurs
+	 */
+	void receiveCapabilities(ASet<? extends ACell> capabilities) throws IOException {
+		setRemoteCapabilities(capabilities);
+		sendCapabilities();
+	}
+
+	private boolean sendBatch(ByteBuffer batch, int batchCount, ACell last) throws IOException {
+		if (batchCount == 1) return sendData(last);
+		batch.flip();
+		return sendBuffer(MessageType.DATA_BATCH, batch);
+	}
+
 	/**
 	 * Sends a DATA Message on this connection.
 	 *
@@ -282,6 +437,35 @@ public class Connection {
 		return sendObject(MessageType.MISSING_DATA, value);
 	}
 
+	/**
+	 * Sends a MISSING_DATA Message requesting multiple cells on this connection.
+	 * The payload is a Blob containing the requested hashes. If the remote end is not
+	 * known to support multiple hashes, sends a MISSING_DATA message for each hash.
+	 *
+	 * @param hashes Hashes of missing data, up to MAX_MISSING_DATA_HASHES
+	 * @return true if buffered successfully, false otherwise (not sent)
+	 * @throws IOException If IO error occurs
+	 */
+	public boolean sendMissingData(List<Hash> hashes) throws IOException {
+		int n = hashes.size();
+		if ((n == 0) || (n > MAX_MISSING_DATA_HASHES)) {
+			throw new IllegalArgumentException("Invalid number of missing data hashes: " + n);
+		}
+		if ((n == 1) || !hasRemoteCapability(Keywords.MISSING_DATA_BATCH)) {
+			boolean sent = true;
+			for (Hash h : hashes) {
+				sent &= sendMissingData(h);
+			}
+			return sent;
+		}
+		byte[] bs = new byte[n * Hash.LENGTH];
+		for (int i = 0; i < n; i++) {
+			hashes.get(i).getBytes(bs, i * Hash.LENGTH);
+		}
+		log.trace("Requested missing data for {} hashes", n);
+		return sendBuffer(MessageType.MISSING_DATA, Format.encodedBuffer(Blob.wrap(bs)));
+	}
+
 	/**
 	 * Sends a QUERY Message on this connection with a null Address
 	 *
@@ -469,7 +653,12 @@ public class Connection {
 	 * @throws IOException If IO error occurs
 	 */
 	public boolean sendMessage(Message msg) throws IOException {
-		return sendObject(msg.getType(), msg.getPayload());
+		MessageType type = msg.getType();
+		if (type == MessageType.DATA_BATCH) {
+			AVector<ACell> cells = msg.getPayload();
+			return sendDataBatch(cells);
+		}
+		return sendObject(type, msg.getPayload());
 	}
 
 	/**
@@ -486,17 +675,15 @@ public class Connection {
 
 		// Need to ensure message is persisted at least, so we can respond to missing
 		// data messages using the current thread store
-		// We pre-send any novelty to the destination
+		// We pre-send any novelty to the destination, batched into as few frames as possible
 		ACell sendVal = payload;
+		ArrayList<ACell> novelty = new ArrayList<>();
 		ACell.createPersisted(sendVal, r -> {
-			try {
-				ACell data = r.getValue();
-				if (data==sendVal) return; // skip sending top payload
-				if (!Format.isEmbedded(data)) sendData(data);
-			} catch (IOException e) {
-				throw Utils.sneakyThrow(e);
-			}
+			ACell data = r.getValue();
+			if (data==sendVal) return; // skip sending top payload
+			if (!Format.isEmbedded(data)) novelty.add(data);
 		});
+		if (!novelty.isEmpty()) sendDataBatch(novelty);
 
 		ByteBuffer buf = Format.encodedBuffer(sendVal);
 		if (log.isTraceEnabled()) {
@@ -516,44 +703,25 @@ public class Connection {
 	 * @throws IOException
 	 */
 	private boolean sendBuffer(MessageType type, ByteBuffer buf) throws IOException {
+		if (!channel.isOpen()) throw new ClosedChannelException();
 		int dataLength = buf.remaining();
 
 		// Total length field is message code + encoded object length
 		int messageLength = dataLength + 1;
-		boolean sent;
-		int headerLength;
-
-		// synchronize in case we are sending messages from different threads
-		// This is OK but need to avoid corrupted messages.
-		synchronized (frameBuf) {
-			// ensure frameBuf is clear and ready for writing
-			frameBuf.clear();
 
-			// write message header
-			Format.writeMessageLength(frameBuf, messageLength);
-			frameBuf.put(type.getMessageCode());
-			headerLength = frameBuf.position();
-
-			// now write message
-			frameBuf.put(buf);
-			frameBuf.flip(); // ensure frameBuf is ready to write to channel
-
-			sent = sender.bufferMessage(frameBuf);
-		}
+		// build a complete frame, which is queued as is. No locking required since
+		// each frame is queued atomically.
+		ByteBuffer frame = ByteBuffer.allocate(Format.getVLCLength(messageLength) + messageLength);
+		Format.writeMessageLength(frame, messageLength);
+		frame.put(type.getMessageCode());
+		frame.put(buf);
+		frame.flip();
 
+		int frameLength = frame.remaining();
+		boolean sent = sender.bufferMessage(frame);
 		if (sent) {
-			if (channel instanceof SocketChannel) {
-				SocketChannel chan = (SocketChannel) channel;
-				// register interest in both reads and writes
-				try {
-					chan.register(selector, SelectionKey.OP_WRITE | SelectionKey.OP_READ, this);
-				} catch (CancelledKeyException e) {
-					// ignore. Must have got cancelled elsewhere?
-				}
-				// wake up selector
-				selector.wakeup();
-			}
-
+			sentFrameCount.incrementAndGet();
+			sentByteCount.addAndGet(frameLength);
 			if (log.isTraceEnabled()) {
 				log.trace("Sent message " + type + " of length: " + dataLength + " Connection ID: "
 						+ System.identityHashCode(this));
@@ -565,6 +733,66 @@ public class Connection {
 		return sent;
 	}
 
+	/**
+	 * Registers interest in writes with the selector and wakes it up. Called by the
+	 * MessageSender only when frames are queued on an idle sender, so the selector is not
+	 * woken for every message. Also registers interest in reads, unless reading is paused.
+	 */
+	private void wakeWrite() {
+		SelectorGroup.Loop l = loop;
+		if (l == null) return;
+		SocketChannel chan = (SocketChannel) channel;
+		synchronized (interestLock) {
+			int ops = SelectionKey.OP_WRITE;
+			if (!receiver.isPaused()) ops |= SelectionKey.OP_READ;
+			try {
+				l.register(chan, ops, this);
+			} catch (CancelledKeyException | ClosedChannelException e) {
+				// ignore. Must have got cancelled or closed elsewhere?
+			}
+		}
+	}
+
+	/**
+	 * Stops reading from this Connection, e.g. because received messages cannot be queued.
+	 * Intended to be called by the receive action, which is passed no further messages
+	 * until resumeReading() is called. Bytes are left unread on the channel, so a remote
+	 * end that keeps sending is held back by TCP flow control.
+	 */
+	public void pauseReading() {
+		receiver.pause();
+		wakeWrite();
+	}
+
+	/**
+	 * Resumes reading from this Connection after pauseReading(). Messages already received
+	 * are passed to the receive action on the calling thread, which may pause reading again.
+	 */
+	public void resumeReading() {
+		if (isClosed()) return;
+		AStore tempStore = Stores.current();
+		try {
+			Stores.setCurrent(store);
+			receiver.resume();
+		} catch (BadFormatException e) {
+			log.warn("Closed connection to Peer: Bad data format from: " + getRemoteAddress() + " "
+					+ e.getMessage());
+			close();
+			return;
+		} finally {
+			Stores.setCurrent(tempStore);
+		}
+		wakeWrite();
+	}
+
+	/**
+	 * Checks if reading from this Connection is paused
+	 * @return True if paused
+	 */
+	public boolean isReadingPaused() {
+		return receiver.isPaused();
+	}
+
 	public synchronized void close() {
 		if (channel != null) {
 			try {
@@ -586,97 +814,53 @@ public class Connection {
 
 	/**
 	 * Starts listening for received events with this given peer connection.
-	 * PeerConnection must have a selectable SocketChannel associated
+	 * PeerConnection must have a selectable SocketChannel associated.
+	 *
+	 * The Connection is assigned to the next selector thread in the given group,
+	 * which handles all further reads and writes.
 	 *
+	 * @param group Selector group to handle this Connection
 	 * @throws IOException If IO error occurs
 	 */
-	private void startClientListening() throws IOException {
+	void startListening(SelectorGroup group) throws IOException {
 		SocketChannel chan = (SocketChannel) channel;
-		chan.register(selector, SelectionKey.OP_READ | SelectionKey.OP_WRITE, this);
+		SelectorGroup.Loop l = group.next();
+		loop = l;
 
-		// start running selector loop after we register for reading!
-		ensureSelectorLoop();
-
-		// seems to be needed to ensure selector sees new connection?
-		selector.wakeup();
-	}
-
-	private static final Selector selector;
-
-	static {
-		try {
-			selector = Selector.open();
-		} catch (IOException e) {
-			throw new Error(e);
-		}
+		// register for writes as well, in case messages were queued before listening
+		l.register(chan, SelectionKey.OP_READ | SelectionKey.OP_WRITE, this);
 	}
 
+	/**
+	 * Wakes up the selector thread for this Connection, if any
+	 */
 	public void wakeUp() {
-		selector.wakeup();
+		SelectorGroup.Loop l = loop;
+		if (l != null) l.wakeup();
 	}
 
-	private static Thread loopThread;
+	private static SelectorGroup clientGroup;
 
-	private static void ensureSelectorLoop() {
-		// double checked initialisation
-		if (loopThread == null) {
-			synchronized (Connection.class) {
-				if (loopThread == null) {
-					loopThread = new Thread(selectorLoop, "PeerConnection NIO client selector loop");
-					// make this a daemon thread so it shuts down if everything else exits
-					loopThread.setDaemon(true);
-					loopThread.start();
-				}
-			}
+	/**
+	 * Gets the SelectorGroup shared by all client connections in this JVM, creating it
+	 * if necessary. The number of threads is given by the system property
+	 * "convex.client.selectors", defaulting to Constants.DEFAULT_SELECTOR_THREADS.
+	 *
+	 * @return Client SelectorGroup
+	 * @throws IOException If the selectors cannot be opened
+	 */
+	public static synchronized SelectorGroup getClientSelectorGroup() throws IOException {
+		if (clientGroup == null) {
+			int n = Constants.DEFAULT_SELECTOR_THREADS;
+			String prop = System.getProperty("convex.client.selectors");
+			if ((prop != null) && !prop.isBlank()) n = Integer.parseInt(prop.trim());
+			clientGroup = SelectorGroup.create("PeerConnection NIO client selector loop", n);
 		}
+		return clientGroup;
 	}
 
-	private static Runnable selectorLoop = new Runnable() {
-		@Override
-		public void run() {
-
-			log.debug("Client selector loop started");
-			while (true) {
-				try {
-					selector.select(1000);
-					Set<SelectionKey> keys = selector.selectedKeys();
-					Iterator<SelectionKey> it = keys.iterator();
-					while (it.hasNext()) {
-						final SelectionKey key = it.next();
-						it.remove(); // always remove key from selection set
-
-						// log.finest("PeerConnection key received: "+key);
-						if (!key.isValid()) {
-							continue;
-						}
-
-						try {
-							if (key.isReadable()) {
-								selectRead(key);
-							} else if (key.isWritable()) {
-								selectWrite(key);
-							}
-						} catch (ClosedChannelException e) {
-							// channel was closed, just lose the key?
-							log.debug("Unexpected ChannelClosedException, cancelling key: {}", e);
-							key.cancel();
-						} catch (IOException e) {
-							log.debug("Unexpected IOException, cancelling key: {}", e);
-							key.cancel();
-						} catch (CancelledKeyException e) {
-							log.debug("Cancelled key");
-						}
-					}
-				} catch (Throwable t) {
-					log.error("Uncaught error in PeerConnection client selector loop: {}", t);
-					t.printStackTrace();
-				}
-			}
-		}
-	};
-
 	/**
-	 * Handles channel reads from a SelectionKey for the client listener
+	 * Handles channel reads from a SelectionKey
 	 *
 	 * SECURITY: Called on Connection Selector Thread
 	 *
@@ -691,7 +875,7 @@ public class Connection {
 		try {
 			int n = conn.handleChannelRecieve();
 			// log.finest("Received bytes: " + n);
-		} catch (ClosedChannelException e) {
+		} catch (ClosedChannelException | SocketException e) {
 			log.debug("Channel closed from: {}", conn.getRemoteAddress());
 			key.cancel();
 		} catch (BadFormatException e) {
@@ -736,13 +920,35 @@ public class Connection {
 		boolean allSent = pc.sender.maybeSendBytes();
 
 		if (allSent) {
-			// deregister interest in writing
-			key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+			// deregister interest in writing, without losing a concurrent change to reads
+			synchronized (pc.interestLock) {
+				key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+			}
+
+			// frames queued since the last write will register interest again
+			pc.sender.idle();
 		} else {
 			// we want to continue writing
 		}
 	}
 
+	/**
+	 * Gets the number of message frames buffered for sending on this Connection
+	 * @return Count of frames sent
+	 */
+	public long getSentFrameCount() {
+		return sentFrameCount.get();
+	}
+
+	/**
+	 * Gets the number of bytes buffered for sending on this Connection, including
+	 * message headers
+	 * @return Count of bytes sent
+	 */
+	public long getSentByteCount() {
+		return sentByteCount.get();
+	}
+
 	/**
 	 * Sends bytes buffered into the underlying channel.
 	 * @return True if all bytes are sent, false otherwise
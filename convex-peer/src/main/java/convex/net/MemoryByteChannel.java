@@ -4,13 +4,14 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ByteChannel;
 import java.nio.channels.ClosedChannelException;
+import java.nio.channels.GatheringByteChannel;
 
 /**
  * ByteChannel implementation wrapping a fixed size in-memory buffer
  * 
  *
  */
-public class MemoryByteChannel implements ByteChannel {
+public class MemoryByteChannel implements ByteChannel, GatheringByteChannel {
 	/**
 	 * ByteBuffer for channel contents. 
 	 * Maintained ready for writing
@@ -67,4 +68,19 @@ public class MemoryByteChannel implements ByteChannel {
 		}
 	}
 
+	@Override
+	public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+		long total=0;
+		for (int i=offset; i<offset+length; i++) {
+			total+=write(srcs[i]);
+			if (srcs[i].hasRemaining()) break;
+		}
+		return total;
+	}
+
+	@Override
+	public long write(ByteBuffer[] srcs) throws IOException {
+		return write(srcs, 0, srcs.length);
+	}
+
 }
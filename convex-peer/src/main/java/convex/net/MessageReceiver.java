@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
 import java.util.function.Consumer;
 
 import org.slf4j.Logger;
@@ -12,9 +13,14 @@ import org.slf4j.LoggerFactory;
 import convex.core.Constants;
 import convex.core.data.ABlob;
 import convex.core.data.ACell;
+import convex.core.data.ASet;
+import convex.core.data.AVector;
 import convex.core.data.Blob;
 import convex.core.data.Format;
+import convex.core.data.Keywords;
+import convex.core.data.Vectors;
 import convex.core.exceptions.BadFormatException;
+import convex.core.store.AStore;
 import convex.net.message.Message;
 
 /**
@@ -39,17 +45,40 @@ public class MessageReceiver {
 	public static final int RECEIVE_BUFFER_SIZE = Constants.RECEIVE_BUFFER_SIZE;
 
 	/**
-	 * Buffer for receiving partial messages. Maintained ready for writing.
+	 * Space that must remain in the receive buffer after the start of the first incomplete
+	 * frame: a maximum sized message plus a 2 byte length.
+	 */
+	private static final int MAX_FRAME_SIZE = Format.LIMIT_ENCODING_LENGTH + 2;
+
+	/**
+	 * Buffer for receiving messages. Maintained ready for writing.
+	 * 
+	 * Frames are parsed directly from the backing array. New bytes are appended after frames
+	 * already parsed, and a new buffer is allocated when there is no longer room for a complete
+	 * frame. Only an incomplete trailing frame is copied into the new buffer.
 	 * 
-	 * Maybe use a direct buffer since we are copying from the socket channel? But probably doesn't make any difference.
+	 * Decoded cells never refer to this buffer: each cell encoding is copied out before
+	 * decoding, since cells are retained with their encodings (e.g. in the cell cache) and
+	 * would otherwise pin the whole buffer in memory.
 	 */
 	private ByteBuffer buffer = ByteBuffer.allocate(RECEIVE_BUFFER_SIZE);
 
+	/**
+	 * Index in buffer of the first frame not yet parsed
+	 */
+	private int frameStart = 0;
+
 	private final Consumer<Message> action;
 	private final Connection connection;
 
 	private long receivedMessageCount = 0;
 
+	/**
+	 * True if handling of received messages is paused. Set under the lock of this
+	 * MessageReceiver, but may be read without it.
+	 */
+	private volatile boolean paused = false;
+
 	private static final Logger log = LoggerFactory.getLogger(MessageReceiver.class.getName());
 
 	public MessageReceiver(Consumer<Message> receiveAction, Connection pc) {
@@ -73,14 +102,15 @@ public class MessageReceiver {
 	 * Handles receipt of bytes from a channel. Should be called with a
 	 * ReadableByteChannel containing bytes received.
 	 *
-	 * May be called multiple times during receipt of a single message, i.e. can
-	 * handle partial message receipt.
+	 * Reads as many bytes as are available from the channel, up to the free space in the
+	 * receive buffer, and handles every complete message received. Any bytes of an incomplete
+	 * message are kept until further bytes are received, i.e. can handle partial message
+	 * receipt.
 	 *
-	 * Will consume enough bytes from channel to handle exactly one message. Bytes
-	 * will be left unconsumed on the channel if more are available.
+	 * Bytes will be left unconsumed on the channel if the receive buffer is full. This
+	 * hopefully creates sufficient backpressure on clients sending a lot of messages.
 	 *
-	 * This hopefully
-	 * creates sufficient backpressure on clients sending a lot of messages.
+	 * Nothing is read while paused.
 	 *
 	 * @param chan Byte channel
 	 * @throws IOException If IO error occurs
@@ -88,66 +118,92 @@ public class MessageReceiver {
 	 * @throws BadFormatException If a bad encoding is received
 	 */
 	public synchronized int receiveFromChannel(ReadableByteChannel chan) throws IOException, BadFormatException {
-		int numRead=0;
-
-		// first read a message length
-		if (buffer.position()<2) {
-			buffer.limit(2);
-			numRead = chan.read(buffer);
+		if (paused) return 0;
+		int numRead = chan.read(buffer);
+		if (numRead < 0) {
+			chan.close();
+			throw new ClosedChannelException();
+		}
 
-			if (numRead < 0) {
-				chan.close();
-			    throw new ClosedChannelException();
-			}
+		receiveFrames();
+		compact();
+		return numRead;
+	}
 
-			// exit if we don't have at least 2 bytes for message length (may also be a message code)
-			if (buffer.position()<2) return numRead;
-		}
+	/**
+	 * Pauses handling of received messages. Frames still in the receive buffer are kept
+	 * until resumed. May be called by the receive action, in which case no further
+	 * messages are passed to it.
+	 */
+	public synchronized void pause() {
+		paused = true;
+	}
 
-		// peek message length at start of buffer. May throw BFE.
-		int len = Format.peekMessageLength(buffer);
-		int lengthLength = (len < 64) ? 1 : 2;
+	/**
+	 * Resumes handling of received messages, handling any complete frames already in the
+	 * receive buffer. Should be called with the correct store for this Connection.
+	 *
+	 * @throws BadFormatException If a bad encoding is received
+	 */
+	public synchronized void resume() throws BadFormatException {
+		paused = false;
+		receiveFrames();
+		compact();
+	}
 
-		// limit buffer to total message frame size including length
-		int totalFrameSize=lengthLength + len;
-		buffer.limit(totalFrameSize);
+	/**
+	 * Checks if handling of received messages is paused
+	 * @return True if paused
+	 */
+	public boolean isPaused() {
+		return paused;
+	}
 
-		// try to read more bytes up to limit of total message size
-		{
-			int n=chan.read(buffer);
-			if (n < 0) throw new ClosedChannelException();
-			numRead+=n;
+	/**
+	 * Ensures there is room in the receive buffer for the rest of an incomplete frame
+	 */
+	private void compact() {
+		if (buffer.capacity() - frameStart < MAX_FRAME_SIZE) {
+			ByteBuffer newBuffer = ByteBuffer.allocate(RECEIVE_BUFFER_SIZE);
+			newBuffer.put(buffer.array(), frameStart, buffer.position() - frameStart);
+			buffer = newBuffer;
+			frameStart = 0;
 		}
+	}
 
-		// exit if we are still waiting for more bytes
-		if (buffer.hasRemaining()) return numRead;
+	/**
+	 * Handles all complete message frames in the receive buffer, advancing frameStart
+	 * past each frame handled. Stops early if paused.
+	 * 
+	 * @throws BadFormatException If a bad encoding is received
+	 */
+	private void receiveFrames() throws BadFormatException {
+		byte[] array = buffer.array();
+		int end = buffer.position();
+		while ((frameStart < end) && !paused) {
+			// need a second byte if the message length has 2 bytes
+			if ((array[frameStart] & 0x80) != 0 && (frameStart + 1 >= end)) return;
 
-		// Log.debug("Message received with length: "+len);
-		buffer.flip(); // prepare for read
+			// peek message length at start of frame. May throw BFE.
+			int len = Format.peekMessageLength(buffer, frameStart);
+			int lengthLength = (len < 64) ? 1 : 2;
 
-		// position buffer ready to receive message content (i.e. skip length
-		// field). We still want to include the message code.
-		buffer.position(lengthLength);
-		byte mType=buffer.get();
-		MessageType type=MessageType.decode(mType);
-		
-		byte[] bs=new byte[len-1]; // message length after type byte
-		buffer.get(bs);
-		assert(!buffer.hasRemaining()); // should consume entire buffer!
-		Blob encoding=Blob.wrap(bs);
+			// exit if we are still waiting for more bytes
+			int frameEnd = frameStart + lengthLength + len;
+			if (frameEnd > end) return;
 
-		receiveMessage(type, encoding);
+			// message content starts with the message code
+			int pos = frameStart + lengthLength;
+			MessageType type = MessageType.decode(array[pos]);
+			Blob encoding = Blob.wrap(array, pos + 1, len - 1);
+			frameStart = frameEnd;
 
-		// clear buffer
-		buffer.clear();
-		return numRead;
+			receiveMessage(type, encoding);
+		}
 	}
 
 	/**
-	 * Reads exactly one message from the ByteBuffer, checking that the position is
-	 * advanced as expected. Buffer must contain sufficient bytes for given message length.
-	 *
-	 * Expects a message code at the buffer's current position.
+	 * Handles exactly one message with the given type and encoded payload.
 	 *
 	 * Calls the receive action with the message if successfully received. Should be called with
 	 * the correct store for this Connection.
@@ -156,12 +212,21 @@ public class MessageReceiver {
 	 *
 	 * @throws BadFormatException if the message is incorrectly formatted`
 	 */
-	private void receiveMessage(MessageType type, ABlob encoding) throws BadFormatException {
+	private void receiveMessage(MessageType type, Blob encoding) throws BadFormatException {
 		
-		ACell payload = connection.getStore().decode(encoding);
+		ACell payload;
+		if (type==MessageType.DATA_BATCH) {
+			payload = decodeBatch(encoding);
+		} else {
+			payload = decode(connection.getStore(), encoding);
+		}
 
-		Message message = Message.create(connection, type, payload);
 		receivedMessageCount++;
+
+		// capabilities are handled by the Connection itself
+		if ((type==MessageType.COMMAND)&&receiveCapabilities(payload)) return;
+
+		Message message = Message.create(connection, type, payload);
 		if (action != null) {
 			try {
 				log.trace("Message received: {}", message.getType());
@@ -175,4 +240,61 @@ public class MessageReceiver {
 		}
 	}
 
+	/**
+	 * Handles a COMMAND payload announcing the capabilities of the remote end, of the
+	 * form [:capabilities #{...}]
+	 *
+	 * @param payload COMMAND message payload
+	 * @return true if the payload was a capabilities announcement, false otherwise
+	 */
+	private boolean receiveCapabilities(ACell payload) {
+		if (!(payload instanceof AVector)) return false;
+		AVector<?> v = (AVector<?>) payload;
+		if ((v.count() != 2) || !Keywords.CAPABILITIES.equals(v.get(0))) return false;
+		ACell caps = v.get(1);
+		if (!(caps instanceof ASet)) return false;
+		try {
+			connection.receiveCapabilities((ASet<?>) caps);
+		} catch (IOException e) {
+			log.debug("Failed to send capabilities to: {}", connection.getRemoteAddress());
+		}
+		return true;
+	}
+
+	/**
+	 * Decodes the body of a DATA_BATCH message, which is a sequence of cell encodings each
+	 * preceded by a VLC encoded length.
+	 *
+	 * @param encoding Message body
+	 * @return Vector of decoded cells, in the order sent
+	 * @throws BadFormatException if the batch is incorrectly formatted
+	 */
+	private AVector<ACell> decodeBatch(Blob encoding) throws BadFormatException {
+		AStore store=connection.getStore();
+		ByteBuffer bb=encoding.getByteBuffer();
+		int base=bb.position();
+		ArrayList<ACell> cells=new ArrayList<>();
+		while (bb.hasRemaining()) {
+			long len=Format.readVLCLong(bb);
+			if ((len<=0)||(len>bb.remaining())) throw new BadFormatException("Invalid cell length in DATA_BATCH: "+len);
+			int pos=bb.position();
+			cells.add(decode(store, encoding.slice(pos-base, len)));
+			bb.position(pos+(int)len);
+		}
+		return Vectors.create(cells);
+	}
+
+	/**
+	 * Decodes a cell from an encoding in the receive buffer. The encoding is copied to an
+	 * exactly sized array first, since the decoded cell retains it.
+	 *
+	 * @param store Store to decode with
+	 * @param encoding Cell encoding, which may refer to the receive buffer
+	 * @return Decoded cell
+	 * @throws BadFormatException if the encoding is invalid
+	 */
+	private static ACell decode(AStore store, ABlob encoding) throws BadFormatException {
+		return store.decode(Blob.wrap(encoding.getBytes()));
+	}
+
 }
@@ -3,6 +3,10 @@ package convex.net;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ByteChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -10,72 +14,166 @@ import org.slf4j.LoggerFactory;
 import convex.core.Constants;
 
 /**
- * Message sender responsible for moving bytes from a ByteBuffer to a ByteChannel
- * 
- * Must call maybeSendBytes to attempt to flush buffer to channel.
+ * Message sender responsible for moving message frames from an outbound queue to a ByteChannel
+ *
+ * Any number of threads may queue frames concurrently without locking. A single thread at a time
+ * (normally the selector thread) drains the queue with maybeSendBytes, writing as many frames as
+ * possible in each call to the channel.
+ *
+ * The wake action is run whenever the queue goes from idle to having frames to send, so the
+ * owner can arrange for maybeSendBytes to be called. Further frames queued before the queue is
+ * drained do not trigger the wake action again.
  */
 public class MessageSender {
 	public static final int SEND_BUFFER_SIZE = Constants.SEND_BUFFER_SIZE;
 
+	/**
+	 * Maximum number of frames passed to a single gathering write
+	 */
+	private static final int MAX_GATHER = 64;
+
 	private final ByteChannel channel;
 
+	private final Runnable wakeAction;
+
+	/**
+	 * Queue of complete frames waiting to be sent. Each frame is ready for reading.
+	 */
+	private final ConcurrentLinkedQueue<ByteBuffer> queue = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * Total bytes in frames queued or being written, limited to SEND_BUFFER_SIZE
+	 */
+	private final AtomicLong queuedBytes = new AtomicLong(0);
+
 	/**
-	 * Buffer for send bytes. Retained in a state ready for reading, so we flip on
-	 * initialisation. Must be accessed holding lock on buffer.
+	 * True if frames have been queued since the sender was last idle
 	 */
-	private final ByteBuffer buffer = ByteBuffer.allocate(SEND_BUFFER_SIZE).flip();
+	private final AtomicBoolean active = new AtomicBoolean(false);
+
+	/**
+	 * Frames taken from the queue and not yet completely written. Guarded by lock on this
+	 * MessageSender.
+	 */
+	private final ByteBuffer[] writing = new ByteBuffer[MAX_GATHER];
+	private int writeStart = 0;
+	private int writeEnd = 0;
 
 	protected static final Logger log = LoggerFactory.getLogger(MessageSender.class.getName());
 
 	public MessageSender(ByteChannel channel) {
+		this(channel, null);
+	}
+
+	/**
+	 * Creates a MessageSender for the given channel
+	 *
+	 * @param channel Channel to send bytes to
+	 * @param wakeAction Action to run when frames are queued on an idle sender, or null if none
+	 */
+	public MessageSender(ByteChannel channel, Runnable wakeAction) {
 		this.channel = channel;
+		this.wakeAction = wakeAction;
 	}
 
 	/**
-	 * Buffers a message for sending.
-	 * 
+	 * Buffers a message for sending. The frame is queued without copying, so must not be
+	 * modified afterwards.
+	 *
 	 * @param messageFrame Source ByteBuffer containing complete message bytes (including length)
 	 * @return True if successfully buffered, false otherwise (insufficient send buffer
 	 *         size)
 	 */
 	public boolean bufferMessage(ByteBuffer messageFrame) {
-		synchronized (buffer) {
-			// compact buffer, ready for writing			
-			buffer.compact();
-			
+		int length = messageFrame.remaining();
+		long queued;
+		do {
+			queued = queuedBytes.get();
 			// return false if insufficient space to send
-			if (buffer.remaining() < messageFrame.remaining()) {
-				// flip to maintain readiness for writing
-				buffer.flip();
-				return false;
-			}
-			buffer.put(messageFrame);
-			// flip so ready for reading once again
-			buffer.flip();
-		}
+			if (queued + length > SEND_BUFFER_SIZE) return false;
+		} while (!queuedBytes.compareAndSet(queued, queued + length));
+
+		queue.add(messageFrame);
+		if (active.compareAndSet(false, true)) wake();
 		return true;
 	}
 
+	private void wake() {
+		if (wakeAction != null) wakeAction.run();
+	}
+
 	/**
 	 * Try to send bytes on the outbound channel.
-	 * 
+	 *
 	 * @return True if all bytes have been sent, false otherwise.
 	 * @throws IOException If IO error occurs
 	 */
-	public boolean maybeSendBytes() throws IOException {
-		synchronized (buffer) {
-			if (!buffer.hasRemaining()) return true;
+	public synchronized boolean maybeSendBytes() throws IOException {
+		while (true) {
+			// move unfinished frames to start of array, then top up from the queue
+			if (writeStart > 0) {
+				int n = writeEnd - writeStart;
+				System.arraycopy(writing, writeStart, writing, 0, n);
+				for (int i = n; i < writeEnd; i++) {
+					writing[i] = null;
+				}
+				writeStart = 0;
+				writeEnd = n;
+			}
+			while (writeEnd < MAX_GATHER) {
+				ByteBuffer frame = queue.poll();
+				if (frame == null) break;
+				writing[writeEnd++] = frame;
+			}
+			if (writeEnd == 0) return true;
 
 			// write to channel if possible. May write zero or more bytes
-			channel.write(buffer);
+			write();
 
-			if (buffer.hasRemaining()) {
+			// release completely written frames
+			long released = 0;
+			while ((writeStart < writeEnd) && !writing[writeStart].hasRemaining()) {
+				released += writing[writeStart].limit();
+				writing[writeStart++] = null;
+			}
+			queuedBytes.addAndGet(-released);
+
+			if (writeStart < writeEnd) {
 				log.debug("Send buffer full!");
 				return false;
-			} else {
-				return true;
 			}
 		}
 	}
 
+	private void write() throws IOException {
+		if (channel instanceof GatheringByteChannel) {
+			((GatheringByteChannel) channel).write(writing, writeStart, writeEnd - writeStart);
+		} else {
+			for (int i = writeStart; i < writeEnd; i++) {
+				channel.write(writing[i]);
+				if (writing[i].hasRemaining()) return;
+			}
+		}
+	}
+
+	/**
+	 * Marks this sender as idle after all bytes have been sent. Runs the wake action if
+	 * further frames were queued concurrently, since these would otherwise not be sent.
+	 *
+	 * Should be called after the owner has stopped waiting to send, e.g. after
+	 * deregistering interest in writes.
+	 */
+	public void idle() {
+		active.set(false);
+		if (!queue.isEmpty() && active.compareAndSet(false, true)) wake();
+	}
+
+	/**
+	 * Gets the number of bytes currently queued for sending
+	 * @return Number of bytes queued or partially written
+	 */
+	public long getQueuedBytes() {
+		return queuedBytes.get();
+	}
+
 }
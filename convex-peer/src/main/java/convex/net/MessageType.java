@@ -33,6 +33,10 @@ public enum MessageType {
 	 *
 	 * Should only be accepted and acted upon when originating from trusted,
 	 * authenticated senders.
+	 *
+	 * The exception is [:capabilities #{...}], which announces the capabilities of
+	 * the sender and is handled by the receiving Connection. Sent when a Connection is
+	 * opened and answered once by the remote end. Older peers ignore it.
 	 */
 	COMMAND(4),
 
@@ -44,10 +48,13 @@ public enum MessageType {
 	 * Excessive invalid missing data requests may be considered a DoS attack by
 	 * peers. Peers under load may need to ignore missing data requests.
 	 *
-	 * Payload is the missing data hash.
+	 * Payload is the missing data hash, or a Blob containing the concatenated
+	 * hashes of multiple missing cells. Older peers only accept a single hash, so
+	 * multiple hashes are only sent to peers that have announced the
+	 * :missing-data-batch capability.
 	 *
-	 * Receiver should respond with a DATA message if the specified data is
-	 * available in their store.
+	 * Receiver should respond with DATA or DATA_BATCH messages containing the
+	 * requested cells that are available in their store.
 	 */
 	MISSING_DATA(5),
 
@@ -101,7 +108,21 @@ public enum MessageType {
 	 *
 	 * Expected Result is a Vector: [signed-belief-hash states-hash initial-state-hash peer-key consensus-state-hash]
 	 */
-	STATUS(11);
+	STATUS(11),
+
+	/**
+	 * A message relaying a batch of data cells in a single frame.
+	 *
+	 * Used in place of multiple DATA messages, e.g. to send the novelty ahead of
+	 * a Belief. The message body is a sequence of cell encodings, each preceded by
+	 * its length as a VLC encoded long. Receivers get the payload as a Vector of
+	 * the decoded cells.
+	 *
+	 * Older peers reject this message type, so it is only sent on Connections where the
+	 * remote end has announced the :data-batch capability. See
+	 * Connection.isDataBatchSupported().
+	 */
+	DATA_BATCH(12);
 
 	private final byte messageCode;
 
@@ -133,6 +154,8 @@ public enum MessageType {
 			return GOODBYE;
 		case 11:
 			return STATUS;
+		case 12:
+			return DATA_BATCH;
 		}
 		throw new BadFormatException("Invalid message code: " + i);
 	}
@@ -4,7 +4,6 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
-import java.net.SocketException;
 import java.net.StandardSocketOptions;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.SelectionKey;
@@ -19,7 +18,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import convex.core.Constants;
-import convex.core.exceptions.BadFormatException;
 import convex.core.store.Stores;
 import convex.net.message.Message;
 import convex.peer.Server;
@@ -27,7 +25,9 @@ import convex.peer.Server;
 /**
  * NIO Server implementation that handles incoming messages on a given port.
  *
- * Allocates a single thread for the selector.
+ * Allocates a single thread for accepting connections. Accepted connections are assigned
+ * round-robin to the threads of a SelectorGroup, which read and decode incoming messages
+ * and write outgoing messages for their connections.
  *
  * Incoming messages are associated with a Connection (which is created if required), then placed
  * on the receive message queue. This will block if the receive queue is full (thereby applying
@@ -49,9 +49,14 @@ public class NIOServer implements Closeable {
 
 	private final Server server;
 
-	private NIOServer(Server server, BlockingQueue<Message> receiveQueue) {
+	private final int selectorThreads;
+
+	private SelectorGroup group=null;
+
+	private NIOServer(Server server, BlockingQueue<Message> receiveQueue, int selectorThreads) {
 		this.server=server;
 		this.receiveQueue=receiveQueue;
+		this.selectorThreads=selectorThreads;
 	}
 
 	/**
@@ -61,7 +66,18 @@ public class NIOServer implements Closeable {
 	 * @return New NIOServer instance
 	 */
 	public static NIOServer create(Server server, BlockingQueue<Message> receiveQueue) {
-		return new NIOServer(server,receiveQueue);
+		return create(server,receiveQueue,Constants.DEFAULT_SELECTOR_THREADS);
+	}
+
+	/**
+	 * Creates a new unlaunched NIO server
+	 * @param server Peer Server instance for this NIOServer
+	 * @param receiveQueue Queue for received messages
+	 * @param selectorThreads Number of selector threads for handling connections
+	 * @return New NIOServer instance
+	 */
+	public static NIOServer create(Server server, BlockingQueue<Message> receiveQueue, int selectorThreads) {
+		return new NIOServer(server,receiveQueue,selectorThreads);
 	}
 
 	public void launch(Integer port) {
@@ -84,6 +100,9 @@ public class NIOServer implements Closeable {
 			ssc.configureBlocking(false);
 			port=ssc.socket().getLocalPort();
 
+			// Threads for handling accepted connections
+			group=SelectorGroup.create("NIO Server selector loop on port: "+port, selectorThreads);
+
 			// Register for accept. Do this before selection loop starts and
 			// before we return from launch!
 			selector = Selector.open();
@@ -92,10 +111,10 @@ public class NIOServer implements Closeable {
 			// set running status now, so that loops don't terminate
 			running=true;
 
-			Thread selectorThread=new Thread(selectorLoop,"NIO Server selector loop on port: "+port);
+			Thread selectorThread=new Thread(selectorLoop,"NIO Server accept loop on port: "+port);
 			selectorThread.setDaemon(true);
 			selectorThread.start();
-			log.info("NIO server started on port {}",port);
+			log.info("NIO server started on port {} with {} selector threads",port,selectorThreads);
 		} catch (Exception e) {
 			throw new Error("Can't bind NIOServer to port: "+port,e);
 		}
@@ -103,8 +122,8 @@ public class NIOServer implements Closeable {
 
 
 	/**
-	 * Runnable class for accepting socket connections and incoming data, one per peer
-	 * If this gets maxed out, rely on backpressure to throttle clients.
+	 * Runnable class for accepting socket connections. Incoming data is handled by the
+	 * selector group. If this gets maxed out, rely on backpressure to throttle clients.
 	 */
 	private Runnable selectorLoop= new Runnable() {
 		@Override
@@ -123,13 +142,8 @@ public class NIOServer implements Closeable {
 						it.remove();
 
 						try {
-							// Just do one op on each key
 			                if (key.isAcceptable()) {
-			                	accept(selector);
-			                } else if (key.isReadable()) {
-			                	selectRead(key);
-			                } else if (key.isWritable()) {
-			                	selectWrite(key);
+			                	accept();
 			                }
 						} catch (ClosedChannelException e) {
 							// channel was closed, just lose the key?
@@ -148,8 +162,12 @@ public class NIOServer implements Closeable {
 				// print error and terminate
 				e.printStackTrace();
 			} finally {
+				// stop connection threads, closing all client channels
+				if (group!=null) {
+					group.close();
+					group=null;
+				}
 				try {
-					// close all client channels
 					for (SelectionKey key: selector.keys()) {
 						key.channel().close();
 					}
@@ -190,49 +208,6 @@ public class NIOServer implements Closeable {
 		return socket.getLocalPort();
 	}
 
-	protected void selectWrite(SelectionKey key) throws IOException {
-		// attach a PeerConnection if needed for this client
-		ensurePeerConnection(key);
-
-		Connection.selectWrite(key);
-	}
-
-	private Connection ensurePeerConnection(SelectionKey key) throws IOException {
-		Connection pc=(Connection) key.attachment();
-		if (pc!=null) return pc;
-		SocketChannel sc=(SocketChannel) key.channel();
-		assert(!sc.isBlocking());
-		pc=createPC(sc,receiveQueue);
-    	key.attach(pc);
-    	return pc;
-	}
-
-	private Connection createPC(SocketChannel sc, BlockingQueue<Message> queue) throws IOException {
-		return Connection.create(sc,server.getReceiveAction(),server.getStore(),null);
-	}
-
-	protected void selectRead(SelectionKey key) throws IOException {
-
-		// log.info("Connection read from: "+sc.getRemoteAddress()+" with key:"+key);
-		Connection conn=ensurePeerConnection(key);
-		if (conn==null) throw new Error("No PeerConnection specified");
-		try {
-			int n=conn.handleChannelRecieve();
-			if (n==0) {
-				log.debug("No bytes received for key: {}",key);
-			}
-		}
-		catch (ClosedChannelException|SocketException e) {
-			log.debug("Channel closed from: {}",conn.getRemoteAddress());
-			key.cancel();
-		}
-		catch (BadFormatException e) {
-			log.warn("Cancelled connection: Bad data format from: {} message: {}",conn.getRemoteAddress(),e.getMessage());
-			// TODO: blacklist peer?
-			key.cancel();
-		}
-	}
-
 	@Override public void finalize() {
 		close();
 	}
@@ -246,7 +221,7 @@ public class NIOServer implements Closeable {
 
 	}
 
-	private void accept(Selector selector) throws IOException, ClosedChannelException {
+	private void accept() throws IOException, ClosedChannelException {
 		SocketChannel socketChannel=ssc.accept();
 		if (socketChannel==null) return; // false alarm? Nobody there?
 		log.debug("New connection accepted: {}", socketChannel);
@@ -254,7 +229,10 @@ public class NIOServer implements Closeable {
 
 		// TODO: Confirm we don't want  Nagle?
 		socketChannel.setOption(StandardSocketOptions.TCP_NODELAY, true);
-		socketChannel.register(selector, SelectionKey.OP_READ);
+
+		// hand off to a selector thread, which will receive messages for the Server
+		Connection pc=Connection.create(socketChannel,server.getReceiveAction(),server.getStore(),null);
+		pc.startListening(group);
 	}
 
 	/**
@@ -2,6 +2,7 @@ package convex.net;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.function.Consumer;
 
 import org.slf4j.Logger;
@@ -9,6 +10,7 @@ import org.slf4j.LoggerFactory;
 
 import convex.core.Result;
 import convex.core.data.ACell;
+import convex.core.data.AVector;
 import convex.core.data.Hash;
 import convex.core.data.Ref;
 import convex.core.exceptions.MissingDataException;
@@ -36,6 +38,10 @@ public abstract class ResultConsumer implements Consumer<Message> {
 					handleDataProvided(m);
 					break;
 				}
+				case DATA_BATCH: {
+					handleDataBatchProvided(m);
+					break;
+				}
 				case MISSING_DATA: {
 					handleMissingDataRequest(m);
 					break;
@@ -58,29 +64,60 @@ public abstract class ResultConsumer implements Consumer<Message> {
 		// Just store the data, can't guarantee full persistence yet
 		try {
 			ACell o = m.getPayload();
-			Ref<?> r = Ref.get(o);
+			Ref<ACell> r = Ref.get(o);
 			r.persistShallow();
 			Hash h=r.getHash();
 			log.trace("Recieved DATA for hash {}",h);
+			handleData(List.of(r));
 			unbuffer(h);
 		} catch (MissingDataException e) {
 			// ignore?
 		}
 	}
 
+	private void handleDataBatchProvided(Message m) {
+		// Store all the data in one pass, then check for any awaited results
+		AVector<ACell> cells = m.getPayload();
+		ArrayList<Ref<ACell>> refs = new ArrayList<>((int)cells.count());
+		for (ACell cell : cells) {
+			refs.add(Ref.get(cell));
+		}
+		Stores.current().storeTopRefs(refs, Ref.STORED, null);
+		log.trace("Recieved DATA_BATCH with {} cells",refs.size());
+		handleData(refs);
+		for (Ref<ACell> r : refs) {
+			unbuffer(r.getHash());
+		}
+	}
+
 	private void handleMissingDataRequest(Message m) {
 		// try to be helpful by returning sent data
-		Hash h = RT.ensureHash(m.getPayload());
-		if (h==null) return; // not a valid payload so ignore
+		List<Hash> hashes = m.getMissingHashes();
+		if (hashes==null) return; // not a valid payload so ignore
 		
-		Ref<?> r = Stores.current().refForHash(h);
-		if (r != null) try {
-			m.sendData(r.getValue());
+		ArrayList<ACell> cells = new ArrayList<>(hashes.size());
+		for (Hash h : hashes) {
+			Ref<?> r = Stores.current().refForHash(h);
+			if (r != null) cells.add(r.getValue());
+		}
+		if (cells.isEmpty()) return;
+		try {
+			m.sendDataBatch(cells);
 		} catch (Exception e) {
 			log.debug("Error replying to MISSING DATA request",e);
 		}
 	}
 
+	/**
+	 * Method called when cells of data are received, after they have been stored in the
+	 * current store. Does nothing by default, may be overridden.
+	 *
+	 * @param refs Refs for the cells received
+	 */
+	protected void handleData(List<Ref<ACell>> refs) {
+		// nothing to do
+	}
+
 	/**
 	 * Map for messages delayed due to missing data
 	 */
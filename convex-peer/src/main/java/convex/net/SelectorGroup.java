@@ -0,0 +1,195 @@
+package convex.net;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Group of selector threads handling IO for many Connections, in the manner of an event
+ * loop group.
+ *
+ * Each Connection is assigned to one thread of the group, round-robin, when it starts
+ * listening. All reads, message decoding and writes for the Connection then happen on that
+ * thread, so a busy Connection or slow decode only delays other Connections on the same
+ * thread.
+ *
+ * Received messages are passed to the receive action of each Connection on its owning
+ * thread. Receive actions should hand messages off to a thread safe queue (as the Server
+ * does) if further processing is required, and must not block for long since this stalls
+ * all other Connections on the same thread.
+ */
+public class SelectorGroup implements Closeable {
+
+	private static final Logger log = LoggerFactory.getLogger(SelectorGroup.class.getName());
+
+	private final Loop[] loops;
+
+	private int nextLoop = 0;
+
+	private SelectorGroup(Loop[] loops) {
+		this.loops = loops;
+	}
+
+	/**
+	 * Creates a group of selector threads. Threads are daemon threads and start
+	 * immediately.
+	 *
+	 * @param name Name for the group, used to name threads
+	 * @param numThreads Number of selector threads, at least 1
+	 * @return New SelectorGroup instance
+	 * @throws IOException If a selector cannot be opened
+	 */
+	public static SelectorGroup create(String name, int numThreads) throws IOException {
+		if (numThreads < 1) throw new IllegalArgumentException("Selector group needs at least one thread");
+		Loop[] loops = new Loop[numThreads];
+		try {
+			for (int i = 0; i < numThreads; i++) {
+				loops[i] = new Loop(name + " #" + i);
+			}
+		} catch (IOException e) {
+			for (Loop loop : loops) {
+				if (loop != null) loop.close();
+			}
+			throw e;
+		}
+		return new SelectorGroup(loops);
+	}
+
+	/**
+	 * Gets the next selector thread to assign a Connection to, in round-robin order
+	 * @return Selector loop
+	 */
+	synchronized Loop next() {
+		Loop loop = loops[nextLoop];
+		nextLoop = (nextLoop + 1) % loops.length;
+		return loop;
+	}
+
+	/**
+	 * Gets the number of selector threads in this group
+	 * @return Number of threads
+	 */
+	public int getThreadCount() {
+		return loops.length;
+	}
+
+	/**
+	 * Stops all selector threads in this group. Channels registered with the group are
+	 * closed.
+	 */
+	@Override
+	public void close() {
+		for (Loop loop : loops) {
+			loop.close();
+		}
+	}
+
+	/**
+	 * A single selector and the thread that runs it
+	 */
+	static class Loop implements Runnable {
+		private final Selector selector;
+		private volatile boolean running = true;
+
+		private Loop(String name) throws IOException {
+			selector = Selector.open();
+			Thread thread = new Thread(this, name);
+			// make this a daemon thread so it shuts down if everything else exits
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		/**
+		 * Registers a channel with this loop, or updates the interest set if already
+		 * registered, and wakes up the selector so the change takes effect.
+		 *
+		 * @param chan Channel to register
+		 * @param ops Interest set
+		 * @param conn Connection handling the channel
+		 * @throws ClosedChannelException If the channel is closed
+		 */
+		void register(SelectableChannel chan, int ops, Connection conn) throws ClosedChannelException {
+			chan.register(selector, ops, conn);
+			selector.wakeup();
+		}
+
+		void wakeup() {
+			selector.wakeup();
+		}
+
+		private void close() {
+			running = false;
+			selector.wakeup();
+		}
+
+		@Override
+		public void run() {
+			log.debug("Selector loop started: {}", Thread.currentThread().getName());
+			try {
+				while (running) {
+					try {
+						selector.select(1000);
+						Set<SelectionKey> keys = selector.selectedKeys();
+						Iterator<SelectionKey> it = keys.iterator();
+						while (it.hasNext()) {
+							final SelectionKey key = it.next();
+							it.remove(); // always remove key from selection set
+							handle(key);
+						}
+					} catch (IOException e) {
+						log.error("Unexpected IOException, terminating selector loop: {}", e);
+						return;
+					} catch (Throwable t) {
+						log.error("Uncaught error in selector loop: {}", t);
+						t.printStackTrace();
+					}
+				}
+			} finally {
+				// close all channels handled by this loop
+				for (SelectionKey key : selector.keys()) {
+					try {
+						key.channel().close();
+					} catch (IOException e) {
+						log.debug("IOException while closing channel: {}", e);
+					}
+				}
+				try {
+					selector.close();
+				} catch (IOException e) {
+					log.error("IOException while closing selector");
+				}
+				log.debug("Selector loop ended: {}", Thread.currentThread().getName());
+			}
+		}
+
+		private void handle(SelectionKey key) {
+			if (!key.isValid()) return;
+			try {
+				if (key.isReadable()) {
+					Connection.selectRead(key);
+				}
+				if (key.isValid() && key.isWritable()) {
+					Connection.selectWrite(key);
+				}
+			} catch (ClosedChannelException e) {
+				// channel was closed, just lose the key?
+				log.debug("Unexpected ChannelClosedException, cancelling key: {}", e);
+				key.cancel();
+			} catch (IOException e) {
+				log.debug("Unexpected IOException, cancelling key: {}", e);
+				key.cancel();
+			} catch (CancelledKeyException e) {
+				log.debug("Cancelled key");
+			}
+		}
+	}
+}
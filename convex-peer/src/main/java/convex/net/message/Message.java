@@ -1,15 +1,20 @@
 package convex.net.message;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import convex.core.Belief;
 import convex.core.Result;
+import convex.core.data.ABlob;
 import convex.core.data.ACell;
 import convex.core.data.AVector;
 import convex.core.data.Hash;
 import convex.core.data.SignedData;
 import convex.core.data.prim.CVMLong;
+import convex.core.lang.RT;
 import convex.core.util.Utils;
 import convex.net.Connection;
 import convex.net.MessageType;
@@ -48,6 +53,10 @@ public abstract class Message {
 		return create(null,MessageType.DATA,o);
 	}
 
+	public static Message createDataBatch(AVector<ACell> cells) {
+		return create(null,MessageType.DATA_BATCH,cells);
+	}
+
 	public static Message createBelief(SignedData<Belief> sb) {
 		return create(null,MessageType.BELIEF,sb);
 	}
@@ -80,6 +89,26 @@ public abstract class Message {
 		return et;
 	}
 
+	/**
+	 * Gets the hashes requested by a MISSING_DATA message. The payload is a Blob
+	 * containing one or more hashes.
+	 *
+	 * @return List of requested hashes, or null if the payload is not valid
+	 */
+	public List<Hash> getMissingHashes() {
+		ABlob b = RT.ensureBlob(payload);
+		if (b == null) return null;
+		long n = b.count();
+		if ((n == 0) || (n % Hash.LENGTH != 0)) return null;
+		if (n == Hash.LENGTH) return List.of(RT.ensureHash(b));
+		byte[] bs = b.getBytes();
+		ArrayList<Hash> hashes = new ArrayList<>((int)(n / Hash.LENGTH));
+		for (int i = 0; i < n; i += Hash.LENGTH) {
+			hashes.add(Hash.wrap(bs, i));
+		}
+		return hashes;
+	}
+
 	@Override
 	public String toString() {
 		// TODO. Are tags really needed in `.toString`?
@@ -138,6 +167,13 @@ public abstract class Message {
 	 */
 	public abstract boolean sendData(ACell data);
 
+	/**
+	 * Sends cells of data to the connected Peer, batched where possible
+	 * @param cells Cells to send
+	 * @return true if data sent, false otherwise
+	 */
+	public abstract boolean sendDataBatch(List<ACell> cells);
+
 	/**
 	 * Sends a missing data request to the connected Peer
 	 * @param hash HAsh of missing data
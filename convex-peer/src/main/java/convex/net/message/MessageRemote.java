@@ -1,5 +1,7 @@
 package convex.net.message;
 
+import java.util.List;
+
 import convex.core.Result;
 import convex.core.data.ACell;
 import convex.core.data.Hash;
@@ -88,6 +90,17 @@ public class MessageRemote extends Message {
 		return true;
 	}
 
+	@Override
+	public boolean sendDataBatch(List<ACell> cells) {
+		Connection pc=getConnection();
+		if (pc==null) return false;
+		try {
+			return pc.sendDataBatch(cells);
+		} catch (Exception e) {
+			return false;
+		}
+	}
+
 	@Override
 	public boolean sendMissingData(Hash hash) {
 		Connection pc=getConnection();
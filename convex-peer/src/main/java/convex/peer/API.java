@@ -42,6 +42,11 @@ public class API {
 	 * <li>:keypair (required, AKeyPair) - AKeyPair instance.
 	 * <li>:port (optional, Integer) - Integer port number to use for incoming connections. Defaults to random allocation.
 	 * <li>:store (optional, AStore) - AStore instance. Defaults to the configured global store
+	 * <li>:cache-size (optional, Integer) - Maximum number of decoded cells cached by the store. Defaults to Constants.DEFAULT_CELL_CACHE_SIZE
+	 * <li>:selector-threads (optional, Integer) - Number of threads handling IO for incoming connections. Defaults to Constants.DEFAULT_SELECTOR_THREADS
+	 * <li>:durability (optional, Keyword) - Durability mode for an Etch store, one of :none, :group or :sync. Defaults to :none
+	 * <li>:commit-interval (optional, Long) - Interval in milliseconds between group commits with :durability :group. Defaults to Constants.DEFAULT_COMMIT_INTERVAL
+	 * <li>:gc-interval (optional, Long) - Interval in milliseconds between garbage collection cycles on an Etch store. Defaults to 0 (no periodic GC)
 	 * <li>:source (optional, String) - URL for Peer to replicate initial State/Belief from.
 	 * <li>:state (optional, State) - Genesis state. Defaults to a fresh genesis state for the Peer if neither :source nor :state is specified
 	 * <li>:restore (optional, Boolean) - Boolean Flag to restore from existing store. Default to true
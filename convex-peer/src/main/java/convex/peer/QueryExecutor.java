@@ -0,0 +1,296 @@
+package convex.peer;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import convex.core.Constants;
+import convex.core.ErrorCodes;
+import convex.core.Peer;
+import convex.core.Result;
+import convex.core.data.ACell;
+import convex.core.data.Address;
+import convex.core.data.Strings;
+import convex.core.data.prim.CVMLong;
+import convex.core.lang.Context;
+import convex.core.store.AStore;
+import convex.core.store.Stores;
+import convex.net.message.Message;
+import convex.net.message.MessageRemote;
+
+/**
+ * Executes read-only queries on a dedicated pool of worker threads, so that expensive queries
+ * do not hold up processing of Beliefs and transactions by the Server.
+ *
+ * Each query runs against the Peer captured when the query arrived, so it sees a consistent
+ * consensus State regardless of later updates. Waiting queries are held in a queue for each
+ * Connection, and workers take queries from Connections in turn so that a single busy client
+ * cannot starve others. Queries are rejected if the queues are full, and fail if they wait
+ * longer than the query timeout. Execution is limited by the query juice limit.
+ */
+public class QueryExecutor {
+
+	private static final Logger log = LoggerFactory.getLogger(QueryExecutor.class.getName());
+
+	/**
+	 * Maximum number of waiting queries for each Connection
+	 */
+	private static final int CONNECTION_QUEUE_SIZE = 1000;
+
+	/**
+	 * Maximum number of waiting queries in total
+	 */
+	private static final int MAX_QUEUED = 10000;
+
+	/**
+	 * Key used for Messages that do not have a remote Connection
+	 */
+	private static final Object LOCAL = new Object();
+
+	private static final class Query {
+		private final Message message;
+		private final CVMLong id;
+		private final ACell form;
+		private final Address address;
+		private final Peer peer;
+		private final long arrivalTime;
+
+		private Query(Message message, CVMLong id, ACell form, Address address, Peer peer) {
+			this.message=message;
+			this.id=id;
+			this.form=form;
+			this.address=address;
+			this.peer=peer;
+			this.arrivalTime=System.nanoTime();
+		}
+	}
+
+	private final AStore store;
+	private final Thread[] workers;
+	private final long juiceLimit;
+	private final long timeoutNanos;
+
+	/**
+	 * Waiting queries for each Connection. Guarded by this.
+	 */
+	private final HashMap<Object,ArrayDeque<Query>> waiting=new HashMap<>();
+
+	/**
+	 * Connections with waiting queries, in the order they will be served. Guarded by this.
+	 */
+	private final ArrayDeque<Object> ready=new ArrayDeque<>();
+
+	private int queued=0;
+
+	private volatile boolean running=false;
+
+	private final LongAdder executed=new LongAdder();
+	private final LongAdder rejected=new LongAdder();
+	private final LongAdder waitTime=new LongAdder();
+	private final LongAdder executionTime=new LongAdder();
+
+	private QueryExecutor(AStore store, int threads, long juiceLimit, long timeout) {
+		this.store=store;
+		this.workers=new Thread[threads];
+		this.juiceLimit=juiceLimit;
+		this.timeoutNanos=TimeUnit.MILLISECONDS.toNanos(timeout);
+	}
+
+	/**
+	 * Creates a QueryExecutor with one worker for each available processor and default limits
+	 * @param store Store to use for worker threads
+	 * @return New QueryExecutor, not yet started
+	 */
+	public static QueryExecutor create(AStore store) {
+		return create(store,Runtime.getRuntime().availableProcessors(),Constants.MAX_QUERY_JUICE,Constants.QUERY_TIMEOUT);
+	}
+
+	/**
+	 * Creates a QueryExecutor
+	 * @param store Store to use for worker threads
+	 * @param threads Number of worker threads
+	 * @param juiceLimit Maximum juice for each query
+	 * @param timeout Maximum time in milliseconds a query may wait before execution
+	 * @return New QueryExecutor, not yet started
+	 */
+	public static QueryExecutor create(AStore store, int threads, long juiceLimit, long timeout) {
+		if (threads<1) throw new IllegalArgumentException("Need at least one query thread");
+		return new QueryExecutor(store,threads,juiceLimit,timeout);
+	}
+
+	/**
+	 * Starts the worker threads
+	 * @param name Name used for worker threads
+	 */
+	public synchronized void start(String name) {
+		if (running) return;
+		running=true;
+		for (int i=0; i<workers.length; i++) {
+			Thread t=new Thread(this::workerLoop, name+" query "+i);
+			t.setDaemon(true);
+			t.start();
+			workers[i]=t;
+		}
+	}
+
+	/**
+	 * Submits a query for execution. The Result is reported to the Message sender when
+	 * complete. If the executor is not running, the query is executed immediately in the
+	 * calling thread.
+	 *
+	 * @param m Query Message
+	 * @param id ID of query
+	 * @param form Form to execute
+	 * @param address Address for query, may be null
+	 * @param peer Peer whose consensus State should be used
+	 * @return true if the query was accepted, false if rejected due to load
+	 */
+	public boolean submit(Message m, CVMLong id, ACell form, Address address, Peer peer) {
+		Query q=new Query(m,id,form,address,peer);
+		if (!running) {
+			execute(q);
+			return true;
+		}
+
+		Object key=connectionKey(m);
+		synchronized (this) {
+			ArrayDeque<Query> queue=waiting.get(key);
+			int queueSize=(queue==null)?0:queue.size();
+			if ((queued<MAX_QUEUED)&&(queueSize<CONNECTION_QUEUE_SIZE)) {
+				if (queue==null) {
+					queue=new ArrayDeque<>();
+					waiting.put(key, queue);
+					ready.add(key);
+				}
+				queue.add(q);
+				queued++;
+				notify();
+				return true;
+			}
+		}
+
+		rejected.increment();
+		report(q,Result.create(id, Strings.create("Too many queries waiting"), ErrorCodes.LOAD));
+		return false;
+	}
+
+	private static Object connectionKey(Message m) {
+		if (!(m instanceof MessageRemote)) return LOCAL;
+		Object conn=((MessageRemote)m).getConnection();
+		return (conn==null)?LOCAL:conn;
+	}
+
+	/**
+	 * Takes the next query, rotating between Connections
+	 */
+	private synchronized Query take() throws InterruptedException {
+		while (ready.isEmpty()) {
+			wait();
+		}
+		Object key=ready.poll();
+		ArrayDeque<Query> queue=waiting.get(key);
+		Query q=queue.poll();
+		queued--;
+		if (queue.isEmpty()) {
+			waiting.remove(key);
+		} else {
+			ready.add(key);
+		}
+		return q;
+	}
+
+	private void workerLoop() {
+		Stores.setCurrent(store);
+		try {
+			while (running) {
+				Query q=take();
+				execute(q);
+			}
+		} catch (InterruptedException e) {
+			log.debug("Query thread interrupted");
+		}
+	}
+
+	private void execute(Query q) {
+		long start=System.nanoTime();
+		long wait=start-q.arrivalTime;
+		waitTime.add(wait);
+		Result r;
+		if (wait>timeoutNanos) {
+			r=Result.create(q.id, Strings.create("Query timed out before execution"), ErrorCodes.TIMEOUT);
+		} else {
+			try {
+				log.debug( "Processing query: {} with address: {}" , q.form, q.address);
+				Context<ACell> ctx=q.peer.executeQuery(q.form, q.address, juiceLimit);
+				r=Result.fromContext(q.id, ctx);
+			} catch (Throwable t) {
+				log.warn("Query Error: {}", t);
+				r=Result.create(q.id, Strings.create("Query failed: "+t.getMessage()), ErrorCodes.UNEXPECTED);
+			}
+		}
+		executionTime.add(System.nanoTime()-start);
+		executed.increment();
+		report(q,r);
+	}
+
+	private void report(Query q, Result r) {
+		boolean resultReturned=q.message.reportResult(r);
+		if (!resultReturned) {
+			log.warn("Failed to send query result back to client with ID: {}", q.id);
+		}
+	}
+
+	/**
+	 * Gets the number of queries waiting for execution
+	 * @return Queue depth
+	 */
+	public synchronized int getQueueDepth() {
+		return queued;
+	}
+
+	/**
+	 * Gets the number of queries executed, including any that timed out
+	 * @return Count of executed queries
+	 */
+	public long getExecutedCount() {
+		return executed.sum();
+	}
+
+	/**
+	 * Gets the number of queries rejected because too many were waiting
+	 * @return Count of rejected queries
+	 */
+	public long getRejectedCount() {
+		return rejected.sum();
+	}
+
+	/**
+	 * Gets the total time queries have spent waiting for execution
+	 * @return Total wait time in nanoseconds
+	 */
+	public long getTotalWaitTime() {
+		return waitTime.sum();
+	}
+
+	/**
+	 * Gets the total time spent executing queries
+	 * @return Total execution time in nanoseconds
+	 */
+	public long getTotalExecutionTime() {
+		return executionTime.sum();
+	}
+
+	/**
+	 * Stops the worker threads. Any waiting queries are discarded.
+	 */
+	public synchronized void close() {
+		running=false;
+		for (Thread t: workers) {
+			if (t!=null) t.interrupt();
+		}
+	}
+}
@@ -8,7 +8,9 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.function.Consumer;
@@ -21,6 +23,7 @@ import convex.core.Belief;
 import convex.core.Block;
 import convex.core.BlockResult;
 import convex.core.Constants;
+import convex.core.Order;
 import convex.core.ErrorCodes;
 import convex.core.Peer;
 import convex.core.Result;
@@ -46,7 +49,7 @@ import convex.core.exceptions.BadFormatException;
 import convex.core.exceptions.BadSignatureException;
 import convex.core.exceptions.InvalidDataException;
 import convex.core.exceptions.MissingDataException;
-import convex.core.init.Init;
+import convex.core.init.GenesisCache;
 import convex.core.lang.Context;
 import convex.core.lang.RT;
 import convex.core.lang.Reader;
@@ -56,9 +59,13 @@ import convex.core.transactions.ATransaction;
 import convex.core.transactions.Invoke;
 import convex.core.util.Shutdown;
 import convex.core.util.Utils;
+import convex.net.Connection;
 import convex.net.MessageType;
 import convex.net.NIOServer;
 import convex.net.message.Message;
+import convex.net.message.MessageRemote;
+import etch.Etch;
+import etch.EtchStore;
 
 
 /**
@@ -90,6 +97,9 @@ public class Server implements Closeable {
 	// Maximum Pause for each iteration of Server update loop.
 	private static final long SERVER_UPDATE_PAUSE = 5L;
 
+	// Maximum number of agreed Blocks awaiting execution before the Server stops proposing new Blocks
+	private static final long MAX_EXECUTION_LAG = 100L;
+
 	static final Logger log = LoggerFactory.getLogger(Server.class.getName());
 
 	// private static final Level LEVEL_MESSAGE = Level.FINER;
@@ -106,19 +116,70 @@ public class Server implements Closeable {
 
 
 	/**
-	 * Message consumer that simply enqueues received messages received by this Server
+	 * Verification stage for received messages, which feeds the receive queue
+	 */
+	private final SignatureVerifier verifier;
+
+	/**
+	 * Executor for client queries, so they do not hold up the receiver thread
+	 */
+	private final QueryExecutor queryExecutor;
+
+	/**
+	 * Message consumer that enqueues messages received by this Server, via the signature verifier.
+	 * Runs on selector threads, so never waits for queue space. If the Server is overloaded,
+	 * queries and transactions are rejected, and reading from the Connection is paused for any
+	 * other message until the message has been queued by the backlog thread.
 	 */
 	Consumer<Message> peerReceiveAction = new Consumer<Message>() {
 		@Override
 		public void accept(Message msg) {
-			try {
-				queueMessage(msg);
-			} catch (InterruptedException e) {
-				log.warn("Interrupt on peer receive queue!");
+			if (verifier.offer(msg)) return;
+
+			MessageType type=msg.getType();
+			if ((type==MessageType.QUERY)||(type==MessageType.TRANSACT)) {
+				rejectMessage(msg);
+				return;
+			}
+
+			Connection conn=(msg instanceof MessageRemote)?((MessageRemote)msg).getConnection():null;
+			if (conn==null) {
+				// not on a selector thread, so OK to wait
+				try {
+					verifier.submit(msg);
+				} catch (InterruptedException e) {
+					log.warn("Interrupt on peer receive queue!");
+					Thread.currentThread().interrupt();
+				}
+				return;
 			}
+			conn.pauseReading();
+			backlog.add(msg);
 		}
 	};
 
+	/**
+	 * Rejects a query or transaction that could not be queued. Clients are sent a LOAD error,
+	 * so they can retry rather than wait for a timeout.
+	 *
+	 * @param m Message rejected
+	 */
+	private void rejectMessage(Message m) {
+		log.warn("Receive queue full, rejected {} message", m.getType());
+		try {
+			Result r=Result.create(m.getID(), Strings.create("Peer overloaded"), ErrorCodes.LOAD);
+			m.reportResult(r);
+		} catch (Exception e) {
+			// Ignore, connection probably gone or message badly formatted
+		}
+	}
+
+	/**
+	 * Received messages waiting for space in the verifier queues. Holds at most one message
+	 * for each Connection, since reading from the Connection is paused until it is queued.
+	 */
+	private final LinkedBlockingQueue<Message> backlog = new LinkedBlockingQueue<>();
+
 	/**
 	 * Connection manager instance.
 	 */
@@ -139,11 +200,33 @@ public class Server implements Closeable {
 	private NIOServer nio;
 	private Thread receiverThread = null;
 	private Thread updateThread = null;
+	private Thread executionThread = null;
+	private Thread backlogThread = null;
+	private Thread gcThread = null;
+
+	/**
+	 * Monitor used to wake the GC thread when the Server is closed. The GC thread is never
+	 * interrupted, since an interrupt during store IO would close the store's file channel.
+	 */
+	private final Object gcLock = new Object();
+	private volatile boolean isCollecting = false;
 
 	/**
 	 * The Peer instance current state for this server. Will be updated based on peer events.
+	 * Only modified by the update loop. States may lag behind the consensus point while
+	 * the execution loop applies agreed Blocks.
+	 */
+	private volatile Peer peer;
+
+	/**
+	 * Lock for execution loop, guarding the executed States and BlockResults
+	 */
+	private final Object executionLock = new Object();
+
+	/**
+	 * Peer with the States produced by the execution loop. Null until execution loop has started.
 	 */
-	private Peer peer;
+	private Peer executedPeer = null;
 
 	/**
 	 * The Peer Controller Address
@@ -182,6 +265,12 @@ public class Server implements Closeable {
 
 		AStore configStore = (AStore) config.get(Keywords.STORE);
 		this.store = (configStore == null) ? Stores.current() : configStore;
+		this.verifier = SignatureVerifier.create(receiveQueue, store);
+		this.queryExecutor = QueryExecutor.create(store);
+		if (config.containsKey(Keywords.CACHE_SIZE)) {
+			store.setCellCacheSize(Utils.toInt(config.get(Keywords.CACHE_SIZE)));
+		}
+		establishDurability(config);
 
 		// assign the event hook if set
 		if (config.containsKey(Keywords.EVENT_HOOK)) {
@@ -198,11 +287,11 @@ public class Server implements Closeable {
 			// now setup the connection manager
 			this.manager = new ConnectionManager(this);
 
-			this.peer = establishPeer();
+			this.peer = establishPeer().withRetention(establishRetention());
 
 			establishController();
 
-			nio = NIOServer.create(this, receiveQueue);
+			nio = NIOServer.create(this, receiveQueue, establishSelectorThreads());
 
 		} finally {
 			Stores.setCurrent(savedStore);
@@ -296,7 +385,7 @@ public class Server implements Closeable {
 				log.info("Defaulting to standard Peer startup with genesis state: "+genesisState.getHash());
 			} else {
 				AccountKey peerKey=keyPair.getAccountKey();
-				genesisState=Init.createState(List.of(peerKey));
+				genesisState=GenesisCache.getState(List.of(peerKey));
 				log.info("Created new genesis state: "+genesisState.getHash()+ " with initial peer: "+peerKey);
 			}
 			return Peer.createGenesisPeer(keyPair,genesisState);
@@ -305,6 +394,50 @@ public class Server implements Closeable {
 		}
 	}
 
+	private int establishRetention() {
+		Object maybeRetention=getConfig().get(Keywords.STATE_RETENTION);
+		if (maybeRetention==null) return Constants.STATE_RETENTION;
+		return Utils.toInt(maybeRetention);
+	}
+
+	/**
+	 * Sets the durability mode of the store from the Server config, if specified
+	 */
+	private void establishDurability(HashMap<Keyword, Object> config) throws IOException {
+		Object maybeMode=config.get(Keywords.DURABILITY);
+		if (maybeMode==null) return;
+		if (!(store instanceof EtchStore)) {
+			log.warn("Ignoring :durability, store is not an Etch store: {}",store);
+			return;
+		}
+		Etch.Durability mode;
+		if (maybeMode instanceof Etch.Durability) {
+			mode=(Etch.Durability)maybeMode;
+		} else {
+			String name=(maybeMode instanceof Keyword)?((Keyword)maybeMode).getName().toString():maybeMode.toString();
+			try {
+				mode=Etch.Durability.valueOf(name.toUpperCase());
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException("Invalid :durability, expected :none, :group or :sync but was: "+maybeMode);
+			}
+		}
+		Object maybeInterval=config.get(Keywords.COMMIT_INTERVAL);
+		long interval=(maybeInterval==null)?Constants.DEFAULT_COMMIT_INTERVAL:Utils.toInt(maybeInterval);
+		((EtchStore)store).setDurability(mode, interval);
+	}
+
+	private int establishSelectorThreads() {
+		Object maybeThreads=getConfig().get(Keywords.SELECTOR_THREADS);
+		if (maybeThreads==null) return Constants.DEFAULT_SELECTOR_THREADS;
+		return Utils.toInt(maybeThreads);
+	}
+
+	private long establishGCInterval() {
+		Object maybeInterval=getConfig().get(Keywords.GC_INTERVAL);
+		if (maybeInterval==null) return 0;
+		return Utils.toInt(maybeInterval);
+	}
+
 	private long establishTimeout() {
 		Object maybeTimeout=getConfig().get(Keywords.TIMEOUT);
 		if (maybeTimeout==null) return Constants.PEER_SYNC_TIMEOUT;
@@ -341,7 +474,11 @@ public class Server implements Closeable {
 	 * @return Current Peer
 	 */
 	public Peer getPeer() {
-		return peer;
+		Peer p=peer;
+		synchronized (executionLock) {
+			if (executedPeer==null) return p;
+			return p.withStates(executedPeer);
+		}
 	}
 
 	/**
@@ -383,15 +520,35 @@ public class Server implements Closeable {
 			// Start connection manager loop
 			manager.start();
 
+			verifier.start("Peer on port: " + port);
+			queryExecutor.start("Peer on port: " + port);
+
 			receiverThread = new Thread(receiverLoop, "Receive Loop on port: " + port);
 			receiverThread.setDaemon(true);
 			receiverThread.start();
 
+			backlogThread = new Thread(backlogLoop, "Receive Backlog on port: " + port);
+			backlogThread.setDaemon(true);
+			backlogThread.start();
+
 			// Start Peer update thread
 			updateThread = new Thread(beliefMergeLoop, "Update Loop on port: " + port);
 			updateThread.setDaemon(true);
 			updateThread.start();
 
+			// Start Block execution thread
+			executionThread = new Thread(executionLoop, "Execution Loop on port: " + port);
+			executionThread.setDaemon(true);
+			executionThread.start();
+
+			// Start periodic GC thread, if configured
+			long gcInterval=establishGCInterval();
+			if (gcInterval>0) {
+				isCollecting=true;
+				gcThread = new Thread(()->gcLoop(gcInterval), "GC Loop on port: " + port);
+				gcThread.setDaemon(true);
+				gcThread.start();
+			}
 
 			// Close server on shutdown, should be before Etch stores in priority
 			Shutdown.addHook(Shutdown.SERVER, new Runnable() {
@@ -456,6 +613,9 @@ public class Server implements Closeable {
 			case DATA:
 				processData(m);
 				break;
+			case DATA_BATCH:
+				processDataBatch(m);
+				break;
 			case MISSING_DATA:
 				processMissingData(m);
 				break;
@@ -502,24 +662,28 @@ public class Server implements Closeable {
 	 * @throws BadFormatException
 	 */
 	private void processMissingData(Message m) throws BadFormatException {
-		// payload for a missing data request should be a valid Hash
-		Hash h = RT.ensureHash(m.getPayload());
-		if (h == null) throw new BadFormatException("Hash required for missing data message");
+		// payload for a missing data request should be one or more valid Hashes
+		List<Hash> hashes = m.getMissingHashes();
+		if (hashes == null) throw new BadFormatException("Hash required for missing data message");
+
+		ArrayList<ACell> cells = new ArrayList<>(hashes.size());
+		for (Hash h : hashes) {
+			Ref<?> r = store.refForHash(h);
+			if (r != null) {
+				cells.add(r.getValue());
+			} else {
+				log.debug("Unable to provide missing data for {} from store: {}", h,Stores.current());
+			}
+		}
+		if (cells.isEmpty()) return;
 
-		Ref<?> r = store.refForHash(h);
-		if (r != null) {
-			try {
-				ACell data = r.getValue();
-				boolean sent = m.sendData(data);
-				// log.trace( "Sent missing data for hash: {} with type {}",Utils.getClassName(data));
-				if (!sent) {
-					log.debug("Can't send missing data for hash {} due to full buffer",h);
-				}
-			} catch (Exception e) {
-				log.warn("Unable to deliver missing data for {} due to exception: {}", h, e);
+		try {
+			boolean sent = m.sendDataBatch(cells);
+			if (!sent) {
+				log.debug("Can't send missing data for {} hashes due to full buffer",cells.size());
 			}
-		} else {
-			log.debug("Unable to provide missing data for {} from store: {}", h,Stores.current());
+		} catch (Exception e) {
+			log.warn("Unable to deliver missing data due to exception: {}", e);
 		}
 	}
 
@@ -615,7 +779,7 @@ public class Server implements Closeable {
 	/**
 	 * Register of client interests in receiving transaction responses
 	 */
-	private HashMap<Hash, Message> interests = new HashMap<>();
+	private final ConcurrentHashMap<Hash, Message> interests = new ConcurrentHashMap<>();
 
 	/**
 	 * Register interest in receiving a result for a transaction
@@ -633,6 +797,8 @@ public class Server implements Closeable {
 	 * @throws InterruptedException
 	 */
 	protected boolean maybeUpdateBelief() throws InterruptedException {
+		// pick up any States produced by the execution loop
+		peer = getPeer();
 		long oldConsensusPoint = peer.getConsensusPoint();
 
 		// possibly have own transactions to publish
@@ -657,20 +823,60 @@ public class Server implements Closeable {
 
 		broadcastBelief(belief);
 
-		// Report transaction results
+		// Hand over newly agreed Blocks to the execution loop
 		long newConsensusPoint = peer.getConsensusPoint();
 		if (newConsensusPoint > oldConsensusPoint) {
 			log.debug("Consensus point update from {} to {}" ,oldConsensusPoint , newConsensusPoint);
-			for (long i = oldConsensusPoint; i < newConsensusPoint; i++) {
-				Block block = peer.getPeerOrder().getBlock(i);
-				BlockResult br = peer.getBlockResult(i);
-				reportTransactions(block, br);
+			synchronized (executionLock) {
+				executionLock.notifyAll();
 			}
 		}
 
 		return true;
 	}
 
+	/**
+	 * Applies any agreed Blocks not yet executed, then reports the results of their transactions.
+	 * Called only by the execution loop.
+	 *
+	 * @return true if any Blocks were executed, false otherwise
+	 */
+	private boolean maybeExecuteBlocks() {
+		Peer p=getPeer();
+		long executed=p.getStates().count()-1;
+		long consensusPoint=p.getConsensusPoint();
+		if (executed>=consensusPoint) return false;
+
+		// apply Blocks and persist resulting States and BlockResults
+		p=p.updateState().persistStates();
+
+		// ensure new consensus is durable before making it visible or reporting
+		commitStore();
+
+		synchronized (executionLock) {
+			executedPeer=p;
+		}
+
+		long newExecuted=p.getStates().count()-1;
+		Order order=p.getPeerOrder();
+		for (long i = executed; i < newExecuted; i++) {
+			Block block = order.getBlock(i);
+			BlockResult br = p.getBlockResult(i);
+			reportTransactions(block, br);
+		}
+		raiseServerChange("consensus");
+		return true;
+	}
+
+	/**
+	 * Gets the number of agreed Blocks that have not yet been executed by this Server,
+	 * i.e. how far the execution of consensus lags behind the consensus point.
+	 * @return Number of Blocks awaiting execution
+	 */
+	public long getExecutionLag() {
+		return getPeer().getExecutionLag();
+	}
+
 	/**
 	 * Time of last belief broadcast
 	 */
@@ -680,18 +886,23 @@ public class Server implements Closeable {
 	private void broadcastBelief(Belief belief) {
 		// At this point we know something updated our belief, so we want to rebroadcast
 		// belief to network
+		ArrayList<ACell> novelty = new ArrayList<>();
 		Consumer<Ref<ACell>> noveltyHandler = r -> {
 			ACell o = r.getValue();
 			if (o == belief) return; // skip sending data for belief cell itself, will be BELIEF payload
-			Message msg = Message.createData(o);
-            // broadcast to all peers trusted or not
-			manager.broadcast(msg, false);
+			novelty.add(o);
 		};
 
 		// persist the state of the Peer, announcing the new Belief
 		// (ensure we can handle missing data requests etc.)
 		peer=peer.persistState(noveltyHandler);
 
+		// Broadcast novelty to all peers trusted or not, packed into as few frames as possible
+		if (!novelty.isEmpty()) {
+			Message dataMsg = Message.createDataBatch(Vectors.create(novelty));
+			manager.broadcast(dataMsg, false);
+		}
+
 		// Broadcast latest Belief to connected Peers
 		SignedData<Belief> sb = peer.getSignedBelief();
 
@@ -723,6 +934,9 @@ public class Server implements Closeable {
 		// skip if recently published a block
 		if ((lastBlockPublishedTime+Constants.MIN_BLOCK_TIME)>timestamp) return false;
 
+		// back-pressure: wait for execution to catch up before proposing more Blocks
+		if (getExecutionLag()>MAX_EXECUTION_LAG) return false;
+
 		Block block=null;
 		int n = newTransactions.size();
 		if (n == 0) return false;
@@ -840,7 +1054,8 @@ public class Server implements Closeable {
 				}
 				newBeliefs.clear();
 			}
-			Peer newPeer = peer.mergeBeliefs(beliefs);
+			// Blocks are applied later by the execution loop
+			Peer newPeer = peer.mergeBeliefsDeferred(beliefs);
 
 			// Check for substantive change (i.e. Orders updated, can ignore timestamp)
 			if (newPeer.getBelief().getOrders().equals(peer.getBelief().getOrders())) return false;
@@ -905,18 +1120,8 @@ public class Server implements Closeable {
 			// extract the Address, might be null
 			Address address = RT.ensureAddress(v.get(2));
 
-			log.debug( "Processing query: {} with address: {}" , form, address);
-			// log.log(LEVEL_MESSAGE, "Processing query: " + form + " with address: " +
-			// address);
-			Context<ACell> resultContext = peer.executeQuery(form, address);
-			
-			// Report result back to message sender
-			boolean resultReturned= m.reportResult(Result.fromContext(id, resultContext));
-
-			if (!resultReturned) {
-				log.warn("Failed to send query result back to client with ID: {}", id);
-			}
-
+			// execute against the current consensus, result is reported to message sender
+			queryExecutor.submit(m, id, form, address, getPeer());
 		} catch (Throwable t) {
 			log.warn("Query Error: {}", t);
 		}
@@ -938,6 +1143,23 @@ public class Server implements Closeable {
 		maybeProcessPartial(r.getHash());
 	}
 
+	private void processDataBatch(Message m) {
+		AVector<ACell> cells = m.getPayload();
+
+		// store all cells in a single pass
+		ArrayList<Ref<ACell>> refs = new ArrayList<>((int)cells.count());
+		for (ACell cell : cells) {
+			refs.add(Ref.get(cell));
+		}
+		Stores.current().storeTopRefs(refs, Ref.STORED, null);
+		log.trace( "Processing DATA_BATCH with {} cells", refs.size());
+
+		// if any of our data satisfies a missing data object, need to process it
+		for (Ref<ACell> r : refs) {
+			maybeProcessPartial(r.getHash());
+		}
+	}
+
 	/**
 	 * Process an incoming message that represents a Belief
 	 *
@@ -1007,6 +1229,69 @@ public class Server implements Closeable {
 		}
 	};
 
+	/*
+	 * Loop to queue messages from paused Connections, resuming each Connection once its
+	 * message is queued
+	 */
+	private Runnable backlogLoop = new Runnable() {
+		@Override
+		public void run() {
+			Stores.setCurrent(getStore()); // ensure the loop uses this Server's store
+
+			try {
+				while (isRunning) {
+					Message m = backlog.take();
+					verifier.submit(m);
+					((MessageRemote)m).getConnection().resumeReading();
+				}
+			} catch (InterruptedException e) {
+				log.debug("Backlog thread interrupted");
+			}
+		}
+	};
+
+	/*
+	 * Loop to run store garbage collection every interval until GC is stopped
+	 */
+	private void gcLoop(long interval) {
+		Stores.setCurrent(getStore()); // ensure the loop uses this Server's store
+
+		try {
+			while (true) {
+				synchronized (gcLock) {
+					if (!isCollecting) break;
+					gcLock.wait(interval);
+					if (!isCollecting) break;
+				}
+				try {
+					collectGarbage();
+				} catch (IOException e) {
+					log.warn("Periodic GC failed: {}", e.getMessage());
+				}
+			}
+		} catch (InterruptedException e) {
+			log.debug("GC thread interrupted");
+		}
+	}
+
+	/**
+	 * Stops the periodic GC thread, waiting for any GC cycle in progress to complete
+	 */
+	private void stopGC() {
+		Thread t=gcThread;
+		if (t==null) return;
+		synchronized (gcLock) {
+			isCollecting=false;
+			gcLock.notifyAll();
+		}
+		try {
+			t.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		gcThread=null;
+	}
+
 	/*
 	 * Runnable loop for managing Server belief merges
 	 */
@@ -1046,6 +1331,33 @@ public class Server implements Closeable {
 		}
 	};
 
+	/*
+	 * Runnable loop for applying agreed Blocks, separate from belief merges so that
+	 * Belief propagation is not delayed by Block execution
+	 */
+	private final Runnable executionLoop = new Runnable() {
+		@Override
+		public void run() {
+			Stores.setCurrent(getStore()); // ensure the loop uses this Server's store
+			try {
+				while (isRunning) {
+					if (!maybeExecuteBlocks()) {
+						// nothing to do, wait for consensus point to advance
+						synchronized (executionLock) {
+							executionLock.wait(SERVER_UPDATE_PAUSE*10);
+						}
+					}
+				}
+			} catch (InterruptedException e) {
+				log.debug("Terminating Server execution due to interrupt");
+			} catch (Throwable e) {
+				log.error("Unexpected exception in server execution loop: {}", e);
+				log.error("Terminating Server execution");
+				e.printStackTrace();
+			}
+		}
+	};
+
 	@SuppressWarnings("unchecked")
 	private void awaitEvents() throws InterruptedException {
 		SignedData<?> firstEvent=eventQueue.poll(SERVER_UPDATE_PAUSE, TimeUnit.MILLISECONDS);
@@ -1124,7 +1436,7 @@ public class Server implements Closeable {
 		AStore tempStore = Stores.current();
 		try {
 			Stores.setCurrent(store);
-			ACell peerData = peer.toData();
+			ACell peerData = getPeer().toData();
 			Ref<?> peerRef = ACell.createPersisted(peerData);
 			Hash peerHash = peerRef.getHash();
 			store.setRootHash(peerHash);
@@ -1137,8 +1449,46 @@ public class Server implements Closeable {
 		}
 	}
 
+	/**
+	 * Commits the store for this Server, if it is an Etch store with a durable mode set.
+	 */
+	private void commitStore() {
+		if (!(store instanceof EtchStore)) return;
+		try {
+			((EtchStore)store).commit();
+		} catch (IOException e) {
+			log.warn("Failed to commit store: {}",e.getMessage());
+		}
+	}
+
+	/**
+	 * Runs a garbage collection cycle on the store for this Server, if it is an Etch store.
+	 * 
+	 * Peer data is persisted first and used as the GC root, along with any pending
+	 * transactions and beliefs. Safe to call from a background thread while the Server
+	 * is running.
+	 *
+	 * @return Number of bytes reclaimed, or 0 if the store does not support GC
+	 * @throws IOException If a store IO error occurs
+	 */
+	public long collectGarbage() throws IOException {
+		if (!(store instanceof EtchStore)) return 0L;
+		persistPeerData();
+
+		ArrayList<ACell> roots=new ArrayList<>();
+		roots.add(getPeer().toData());
+		roots.addAll(eventQueue);
+		synchronized (newBeliefs) {
+			roots.addAll(newBeliefs.values());
+		}
+		return ((EtchStore)store).collectGarbage(roots);
+	}
+
 	@Override
 	public void close() {
+		// stop GC first so it doesn't run concurrently with the final persist
+		stopGC();
+
 		// persist peer state if necessary
 		if ((peer != null) && Utils.bool(getConfig().get(Keywords.PERSIST))) {
 			try {
@@ -1164,6 +1514,14 @@ public class Server implements Closeable {
 				// Ignore
 			}
 		}
+		if (executionThread != null) {
+			executionThread.interrupt();
+			try {
+				executionThread.join(100);
+			} catch (InterruptedException e) {
+				// Ignore
+			}
+		}
 		if (receiverThread != null) {
 			receiverThread.interrupt();
 			try {
@@ -1172,7 +1530,17 @@ public class Server implements Closeable {
 				// Ignore
 			}
 		}
+		if (backlogThread != null) {
+			backlogThread.interrupt();
+			try {
+				backlogThread.join(100);
+			} catch (InterruptedException e) {
+				// Ignore
+			}
+		}
 		manager.close();
+		verifier.close();
+		queryExecutor.close();
 		nio.close();
 		// Note we don't do store.close(); because we don't own the store.
 	}
@@ -1240,6 +1608,38 @@ public class Server implements Closeable {
 		return peerReceiveAction;
 	}
 
+	/**
+	 * Gets the number of received messages waiting for signature verification
+	 * @return Verify queue depth
+	 */
+	public int getVerifyQueueDepth() {
+		return verifier.getQueueDepth();
+	}
+
+	/**
+	 * Gets the number of client queries waiting for execution
+	 * @return Query queue depth
+	 */
+	public int getQueryQueueDepth() {
+		return queryExecutor.getQueueDepth();
+	}
+
+	/**
+	 * Gets the query executor for this Server, e.g. for access to query metrics
+	 * @return QueryExecutor instance
+	 */
+	public QueryExecutor getQueryExecutor() {
+		return queryExecutor;
+	}
+
+	/**
+	 * Gets the number of received messages waiting to be processed by the Server
+	 * @return Receive queue depth
+	 */
+	public int getReceiveQueueDepth() {
+		return receiveQueue.size();
+	}
+
 	/**
 	 * Sets the desired host name for this Server
 	 * @param string Desired host name String, e.g. "my-domain.com:12345"
@@ -0,0 +1,208 @@
+package convex.peer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import convex.core.Belief;
+import convex.core.Order;
+import convex.core.data.ACell;
+import convex.core.data.AVector;
+import convex.core.data.BlobMap;
+import convex.core.data.AccountKey;
+import convex.core.data.SignedData;
+import convex.core.exceptions.MissingDataException;
+import convex.core.store.AStore;
+import convex.core.store.Stores;
+import convex.net.MessageType;
+import convex.net.message.Message;
+import convex.net.message.MessageRemote;
+
+/**
+ * Receive pipeline stage that verifies signatures in incoming Messages using a pool of worker
+ * threads, before passing Messages on to the Server receive queue.
+ *
+ * Verification results are cached in the Refs of the SignedData instances, so the Server loops
+ * pick them up without repeating the expensive work. Messages from the same Connection are always
+ * handled by the same worker, so that message order is preserved for each Connection.
+ */
+public class SignatureVerifier {
+
+	private static final Logger log = LoggerFactory.getLogger(SignatureVerifier.class.getName());
+
+	/**
+	 * Size of the queue for each worker thread
+	 */
+	private static final int WORKER_QUEUE_SIZE = 1000;
+
+	private final BlockingQueue<Message> output;
+	private final AStore store;
+	private final List<BlockingQueue<Message>> queues;
+	private final Thread[] workers;
+
+	private volatile boolean running=false;
+
+	private SignatureVerifier(BlockingQueue<Message> output, AStore store, int threads) {
+		this.output=output;
+		this.store=store;
+		this.queues=new ArrayList<>(threads);
+		this.workers=new Thread[threads];
+		for (int i=0; i<threads; i++) {
+			queues.add(new ArrayBlockingQueue<>(WORKER_QUEUE_SIZE));
+		}
+	}
+
+	/**
+	 * Creates a SignatureVerifier with one worker for each available processor
+	 * @param output Queue to receive verified Messages
+	 * @param store Store to use for worker threads
+	 * @return New SignatureVerifier, not yet started
+	 */
+	public static SignatureVerifier create(BlockingQueue<Message> output, AStore store) {
+		return create(output,store,Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a SignatureVerifier
+	 * @param output Queue to receive verified Messages
+	 * @param store Store to use for worker threads
+	 * @param threads Number of worker threads
+	 * @return New SignatureVerifier, not yet started
+	 */
+	public static SignatureVerifier create(BlockingQueue<Message> output, AStore store, int threads) {
+		if (threads<1) throw new IllegalArgumentException("Need at least one verifier thread");
+		return new SignatureVerifier(output,store,threads);
+	}
+
+	/**
+	 * Starts the worker threads
+	 * @param name Name used for worker threads
+	 */
+	public synchronized void start(String name) {
+		if (running) return;
+		running=true;
+		for (int i=0; i<workers.length; i++) {
+			final BlockingQueue<Message> queue=queues.get(i);
+			Thread t=new Thread(()->workerLoop(queue), name+" verifier "+i);
+			t.setDaemon(true);
+			t.start();
+			workers[i]=t;
+		}
+	}
+
+	/**
+	 * Submits a Message for verification. Blocks if the queue for the relevant worker is
+	 * full, applying back-pressure to the caller. Messages are passed straight to the output
+	 * queue if the verifier is not running.
+	 *
+	 * @param m Message to verify
+	 * @throws InterruptedException If interrupted while waiting for queue space
+	 */
+	public void submit(Message m) throws InterruptedException {
+		if (!running) {
+			output.put(m);
+			return;
+		}
+		queues.get(workerIndex(m)).put(m);
+	}
+
+	/**
+	 * Submits a Message for verification if there is space in the queue for the relevant
+	 * worker. Never blocks, so should be used instead of submit on threads that must not
+	 * block, e.g. selector threads.
+	 *
+	 * @param m Message to verify
+	 * @return True if the Message was queued, false if the queue is full
+	 */
+	public boolean offer(Message m) {
+		BlockingQueue<Message> queue=running?queues.get(workerIndex(m)):output;
+		return queue.offer(m);
+	}
+
+	private int workerIndex(Message m) {
+		if (!(m instanceof MessageRemote)) return 0;
+		Object conn=((MessageRemote)m).getConnection();
+		if (conn==null) return 0;
+		return Math.floorMod(conn.hashCode(), queues.size());
+	}
+
+	private void workerLoop(BlockingQueue<Message> queue) {
+		Stores.setCurrent(store);
+		try {
+			while (running) {
+				Message m=queue.poll(100, TimeUnit.MILLISECONDS);
+				if (m==null) continue;
+				try {
+					verify(m);
+				} catch (Exception e) {
+					// leave to Server to handle any problem with the message
+					log.debug("Unable to verify message: {}",e.getMessage());
+				}
+				output.put(m);
+			}
+		} catch (InterruptedException e) {
+			log.debug("Verifier thread interrupted");
+		}
+	}
+
+	/**
+	 * Verifies signatures in a Message, caching the results. Covers the signed transaction in
+	 * a TRANSACT message, and the signed Belief and all Orders in a BELIEF message.
+	 *
+	 * @param m Message to verify
+	 */
+	@SuppressWarnings("unchecked")
+	public static void verify(Message m) {
+		MessageType type=m.getType();
+		ACell payload=m.getPayload();
+		try {
+			if (type==MessageType.TRANSACT) {
+				ACell sd=((AVector<ACell>)payload).get(1);
+				if (sd instanceof SignedData) ((SignedData<?>)sd).checkSignature();
+			} else if (type==MessageType.BELIEF) {
+				if (!(payload instanceof SignedData)) return;
+				SignedData<?> sb=(SignedData<?>)payload;
+				sb.checkSignature();
+				ACell belief=sb.getValue();
+				if (!(belief instanceof Belief)) return;
+				BlobMap<AccountKey,SignedData<Order>> orders=((Belief)belief).getOrders();
+				long n=orders.count();
+				for (long i=0; i<n; i++) {
+					SignedData<Order> so=orders.entryAt(i).getValue();
+					if (so!=null) so.checkSignature();
+				}
+			}
+		} catch (MissingDataException e) {
+			// partial message, Server will handle missing data
+		} catch (ClassCastException|IndexOutOfBoundsException e) {
+			// bad message format, Server will handle
+		}
+	}
+
+	/**
+	 * Gets the total number of Messages waiting for verification
+	 * @return Queue depth
+	 */
+	public int getQueueDepth() {
+		int result=0;
+		for (BlockingQueue<Message> q: queues) {
+			result+=q.size();
+		}
+		return result;
+	}
+
+	/**
+	 * Stops the worker threads. Any queued Messages are discarded.
+	 */
+	public synchronized void close() {
+		running=false;
+		for (Thread t: workers) {
+			if (t!=null) t.interrupt();
+		}
+	}
+}
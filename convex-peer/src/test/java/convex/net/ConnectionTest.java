@@ -1,12 +1,18 @@
 package convex.net;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.HashSet;
 
 import org.junit.Test;
 
+import convex.core.data.AVector;
+import convex.core.data.Vectors;
 import convex.core.data.prim.CVMLong;
 import convex.core.exceptions.BadFormatException;
 import convex.core.store.Stores;
@@ -86,4 +92,92 @@ public class ConnectionTest {
 		receiveThread.join();
 	}
 
+	@Test
+	public void testConcurrentSenders() throws IOException, BadFormatException, InterruptedException {
+		final ArrayList<Message> received = new ArrayList<>();
+		MemoryByteChannel chan = MemoryByteChannel.create(10000);
+		Connection conn=Connection.create(chan, null, Stores.current(), null);
+		MessageReceiver mr = new MessageReceiver(a -> received.add(a), conn);
+
+		int THREADS=4;
+		int NUM=1000;
+		ArrayList<Thread> senders=new ArrayList<>();
+		for (int t=0; t<THREADS; t++) {
+			final long id=t;
+			Thread sender=new Thread(()-> {
+				try {
+					for (long i=0; i<NUM; i++) {
+						while (!conn.sendData(Vectors.of(id,i))) {
+							Thread.yield();
+						}
+					}
+				} catch (IOException e) {
+					throw Utils.sneakyThrow(e);
+				}
+			});
+			senders.add(sender);
+			sender.start();
+		}
+
+		// drain on this thread, as a selector would
+		while (received.size()<THREADS*NUM) {
+			conn.flushBytes();
+			mr.receiveFromChannel(chan);
+		}
+		for (Thread sender: senders) {
+			sender.join();
+		}
+
+		// messages from each thread arrive complete and in order
+		long[] next=new long[THREADS];
+		for (Message m: received) {
+			AVector<CVMLong> v=m.getPayload();
+			int id=(int)v.get(0).longValue();
+			assertEquals(next[id]++,v.get(1).longValue());
+		}
+		assertEquals(THREADS*NUM,conn.getSentFrameCount());
+	}
+
+	@Test
+	public void testSenderWakeup() throws IOException {
+		MemoryByteChannel chan = MemoryByteChannel.create(10000);
+		int[] wakes=new int[1];
+		MessageSender sender=new MessageSender(chan,()->wakes[0]++);
+
+		// only the first frame queued on an idle sender wakes
+		for (int i=0; i<3; i++) {
+			assertTrue(sender.bufferMessage(ByteBuffer.wrap(new byte[] {1,2,3})));
+		}
+		assertEquals(1,wakes[0]);
+		assertEquals(9,sender.getQueuedBytes());
+
+		assertTrue(sender.maybeSendBytes());
+		assertEquals(0,sender.getQueuedBytes());
+		sender.idle();
+		assertEquals(1,wakes[0]);
+
+		assertTrue(sender.bufferMessage(ByteBuffer.wrap(new byte[] {4})));
+		assertEquals(2,wakes[0]);
+
+		// frames beyond the send buffer size are refused
+		assertFalse(sender.bufferMessage(ByteBuffer.allocate(MessageSender.SEND_BUFFER_SIZE)));
+	}
+
+	@Test
+	public void testSelectorGroup() throws IOException {
+		SelectorGroup group=SelectorGroup.create("Test selector", 3);
+		try {
+			assertEquals(3,group.getThreadCount());
+
+			// loops are assigned round-robin
+			HashSet<SelectorGroup.Loop> loops=new HashSet<>();
+			for (int i=0; i<3; i++) {
+				loops.add(group.next());
+			}
+			assertEquals(3,loops.size());
+			assertTrue(loops.contains(group.next()));
+		} finally {
+			group.close();
+		}
+	}
 }
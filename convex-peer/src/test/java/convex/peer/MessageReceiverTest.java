@@ -1,14 +1,24 @@
 package convex.peer;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 
 import org.junit.Test;
 
 import convex.core.data.ACell;
+import convex.core.data.AVector;
+import convex.core.data.Blob;
+import convex.core.data.Hash;
+import convex.core.data.Keywords;
+import convex.core.data.Vectors;
 import convex.core.exceptions.BadFormatException;
 import convex.core.lang.RT;
 import convex.core.store.Stores;
@@ -40,17 +50,219 @@ public class MessageReceiverTest {
 		// since we aren't using a Selector / SocketChannel here
 		assertTrue(pc.flushBytes());
 
-		// receive first message
-		mr.receiveFromChannel(chan);
-		assertEquals(1, received.size());
-		assertEquals(msg1, received.get(0).getPayload());
-
-		// receive second message
+		// both messages handled in a single receive
 		mr.receiveFromChannel(chan);
 		assertEquals(2, received.size());
+		assertEquals(msg1, received.get(0).getPayload());
 		assertEquals(msg2, received.get(1).getPayload());
 
 		Message m1 = received.get(0);
 		assertEquals(MessageType.DATA, m1.getType());
 	}
+
+	@Test
+	public void testDataBatch() throws IOException, BadFormatException {
+		final ArrayList<Message> received = new ArrayList<>();
+
+		MemoryByteChannel chan = MemoryByteChannel.create(100000);
+		Connection pc = Connection.create(chan, null, Stores.current(), null);
+		MessageReceiver mr = new MessageReceiver(a -> received.add(a), pc);
+
+		// 100 non-embedded cells of about 200 bytes each need 3 frames
+		Random r = new Random(1234);
+		ArrayList<ACell> cells = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			cells.add(Blob.createRandom(r, 200));
+		}
+
+		// only DATA messages until the remote end is known to support DATA_BATCH
+		assertFalse(pc.isDataBatchSupported());
+		assertTrue(pc.sendDataBatch(cells.subList(0, 2)));
+		assertEquals(2, pc.getSentFrameCount());
+		assertTrue(pc.flushBytes());
+		mr.receiveFromChannel(chan);
+		assertEquals(MessageType.DATA, received.get(0).getType());
+		assertEquals(MessageType.DATA, received.get(1).getType());
+		received.clear();
+
+		pc.setRemoteCapabilities(Connection.CAPABILITIES);
+		assertTrue(pc.sendDataBatch(cells));
+		assertEquals(5, pc.getSentFrameCount());
+		assertTrue(pc.flushBytes());
+
+		mr.receiveFromChannel(chan);
+		assertEquals(3, received.size());
+		ArrayList<ACell> batched = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			Message m = received.get(i);
+			assertEquals(MessageType.DATA_BATCH, m.getType());
+			AVector<ACell> v = m.getPayload();
+			batched.addAll(v);
+		}
+		assertEquals(cells, batched);
+
+		// decoded cells must not refer to the receive buffer, since they may be retained
+		for (ACell cell : batched) {
+			Blob encoding = cell.getEncoding();
+			assertEquals(encoding.count(), encoding.getInternalArray().length);
+		}
+
+		// a single cell is sent as plain DATA, null cells are skipped
+		assertTrue(pc.sendDataBatch(Arrays.asList(cells.get(0), null)));
+		assertEquals(6, pc.getSentFrameCount());
+		assertTrue(pc.flushBytes());
+		mr.receiveFromChannel(chan);
+		assertEquals(MessageType.DATA, received.get(3).getType());
+		assertEquals(cells.get(0), received.get(3).getPayload());
+	}
+
+	@Test
+	public void testCapabilities() throws IOException, BadFormatException {
+		final ArrayList<Message> received = new ArrayList<>();
+
+		// one channel in each direction
+		MemoryByteChannel chanAB = MemoryByteChannel.create(100000);
+		MemoryByteChannel chanBA = MemoryByteChannel.create(100000);
+		Connection a = Connection.create(chanAB, null, Stores.current(), null);
+		Connection b = Connection.create(chanBA, null, Stores.current(), null);
+		MessageReceiver mra = new MessageReceiver(m -> received.add(m), a);
+		MessageReceiver mrb = new MessageReceiver(m -> received.add(m), b);
+
+		// incidental traffic does not imply DATA_BATCH support
+		Random r = new Random(5678);
+		ACell c1 = Blob.createRandom(r, 200);
+		ACell c2 = Blob.createRandom(r, 200);
+		assertTrue(a.sendObject(MessageType.MISSING_DATA, c1.getHash().append(c2.getHash())));
+		assertTrue(a.flushBytes());
+		mrb.receiveFromChannel(chanAB);
+		assertEquals(1, received.size());
+		assertFalse(b.isDataBatchSupported());
+
+		// a announces capabilities, b records them and replies
+		assertTrue(a.sendCapabilities());
+		assertTrue(a.flushBytes());
+		mrb.receiveFromChannel(chanAB);
+		assertTrue(b.isDataBatchSupported());
+		assertTrue(b.flushBytes());
+		mra.receiveFromChannel(chanBA);
+		assertTrue(a.isDataBatchSupported());
+
+		// capabilities are handled by the Connection, and only sent once each way
+		assertEquals(1, received.size());
+		assertEquals(2, a.getSentFrameCount());
+		assertEquals(1, b.getSentFrameCount());
+		assertTrue(b.sendCapabilities());
+		assertEquals(1, b.getSentFrameCount());
+
+		// other COMMAND messages are passed on
+		assertTrue(a.sendObject(MessageType.COMMAND, Vectors.of(Keywords.CAPABILITIES)));
+		assertTrue(a.flushBytes());
+		mrb.receiveFromChannel(chanAB);
+		assertEquals(2, received.size());
+		assertEquals(MessageType.COMMAND, received.get(1).getType());
+	}
+
+	@Test
+	public void testMissingDataBatch() throws IOException, BadFormatException {
+		final ArrayList<Message> received = new ArrayList<>();
+
+		MemoryByteChannel chan = MemoryByteChannel.create(100000);
+		Connection pc = Connection.create(chan, null, Stores.current(), null);
+		MessageReceiver mr = new MessageReceiver(a -> received.add(a), pc);
+
+		Random r = new Random(1357);
+		List<Hash> hashes = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			hashes.add(Blob.createRandom(r, 200).getHash());
+		}
+
+		// one hash per request until the remote end is known to accept more
+		assertTrue(pc.sendMissingData(hashes));
+		assertEquals(3, pc.getSentFrameCount());
+		assertTrue(pc.flushBytes());
+		mr.receiveFromChannel(chan);
+		assertEquals(3, received.size());
+		for (int i = 0; i < 3; i++) {
+			assertEquals(List.of(hashes.get(i)), received.get(i).getMissingHashes());
+		}
+		received.clear();
+
+		pc.setRemoteCapabilities(Connection.CAPABILITIES);
+		assertTrue(pc.sendMissingData(hashes));
+		assertEquals(4, pc.getSentFrameCount());
+		assertTrue(pc.flushBytes());
+		mr.receiveFromChannel(chan);
+		assertEquals(1, received.size());
+		assertEquals(hashes, received.get(0).getMissingHashes());
+	}
+
+	@Test
+	public void testPauseReading() throws IOException, BadFormatException {
+		final ArrayList<Message> received = new ArrayList<>();
+
+		MemoryByteChannel chan = MemoryByteChannel.create(10000);
+		Connection sender = Connection.create(chan, null, Stores.current(), null);
+		Connection[] pc = new Connection[1];
+		pc[0] = Connection.create(chan, m -> {
+			received.add(m);
+			// receiver can only take two messages for now
+			if (received.size() == 2) pc[0].pauseReading();
+		}, Stores.current(), null);
+
+		for (int i = 0; i < 5; i++) {
+			assertTrue(sender.sendData(RT.cvm((long) i)));
+		}
+		assertTrue(sender.flushBytes());
+
+		// remaining messages are held until reading is resumed
+		pc[0].handleChannelRecieve();
+		assertEquals(2, received.size());
+		assertTrue(pc[0].isReadingPaused());
+		assertEquals(0, pc[0].handleChannelRecieve());
+		assertEquals(2, received.size());
+
+		pc[0].resumeReading();
+		assertFalse(pc[0].isReadingPaused());
+		assertEquals(5, received.size());
+		for (int i = 0; i < 5; i++) {
+			assertEquals(RT.cvm((long) i), received.get(i).getPayload());
+		}
+	}
+
+	@Test
+	public void testPartialFrames() throws IOException, BadFormatException {
+		final ArrayList<Message> received = new ArrayList<>();
+
+		MemoryByteChannel source = MemoryByteChannel.create(1000000);
+		Connection pc = Connection.create(source, null, Stores.current(), null);
+
+		// enough messages of varying size to fill several receive buffers
+		Random r = new Random(5678);
+		ArrayList<ACell> cells = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			ACell cell = Blob.createRandom(r, r.nextInt(4000));
+			cells.add(cell);
+			assertTrue(pc.sendData(cell));
+			assertTrue(pc.flushBytes());
+		}
+		ByteBuffer bytes = ByteBuffer.allocate(1000000);
+		source.read(bytes);
+		bytes.flip();
+
+		// deliver bytes in small chunks that split frames and length headers
+		MemoryByteChannel chan = MemoryByteChannel.create(1000);
+		MessageReceiver mr = new MessageReceiver(a -> received.add(a), pc);
+		while (bytes.hasRemaining()) {
+			ByteBuffer chunk = bytes.slice();
+			chunk.limit(Math.min(chunk.remaining(), 1 + r.nextInt(999)));
+			bytes.position(bytes.position() + chunk.limit());
+			chan.write(chunk);
+			mr.receiveFromChannel(chan);
+		}
+
+		assertEquals(cells.size(), received.size());
+		for (int i = 0; i < cells.size(); i++) {
+			assertEquals(cells.get(i), received.get(i).getPayload());
+		}
+	}
 }
@@ -0,0 +1,71 @@
+package convex.peer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import convex.core.ErrorCodes;
+import convex.core.Peer;
+import convex.core.Result;
+import convex.core.crypto.AKeyPair;
+import convex.core.data.Vectors;
+import convex.core.data.prim.CVMLong;
+import convex.core.init.Init;
+import convex.core.lang.RT;
+import convex.core.lang.Reader;
+import convex.core.store.Stores;
+import convex.net.MessageType;
+import convex.net.message.Message;
+import convex.net.message.MessageLocal;
+
+public class QueryExecutorTest {
+	static final AKeyPair KP=AKeyPair.createSeeded(4321);
+	static final Peer PEER=Peer.create(KP, Init.createState(List.of(KP.getAccountKey())));
+
+	private Message query(long id, String form, ArrayBlockingQueue<Result> results) {
+		return MessageLocal.create(MessageType.QUERY, Vectors.of(id, Reader.read(form), null), null, r->results.add(r));
+	}
+
+	@Test
+	public void testQueries() throws InterruptedException {
+		ArrayBlockingQueue<Result> results=new ArrayBlockingQueue<>(100);
+		QueryExecutor qe=QueryExecutor.create(Stores.current(), 2, 100000, 5000);
+		qe.start("Test");
+		try {
+			for (int i=0; i<10; i++) {
+				assertTrue(qe.submit(query(i,"(+ 1 2)",results), CVMLong.create(i), Reader.read("(+ 1 2)"), null, PEER));
+			}
+			for (int i=0; i<10; i++) {
+				Result r=results.poll(5, TimeUnit.SECONDS);
+				assertNotNull(r);
+				assertNull(r.getErrorCode());
+				assertEquals(RT.cvm(3L),r.getValue());
+			}
+			assertEquals(10,qe.getExecutedCount());
+			assertEquals(0,qe.getQueueDepth());
+			assertTrue(qe.getTotalExecutionTime()>0);
+		} finally {
+			qe.close();
+		}
+	}
+
+	@Test
+	public void testJuiceLimit() throws InterruptedException {
+		ArrayBlockingQueue<Result> results=new ArrayBlockingQueue<>(100);
+		// not started, so executes immediately
+		QueryExecutor qe=QueryExecutor.create(Stores.current(), 1, 1000, 5000);
+		String form="(loop [i 0] (recur (inc i)))";
+		assertTrue(qe.submit(query(1,form,results), CVMLong.create(1), Reader.read(form), null, PEER));
+		Result r=results.poll();
+		assertNotNull(r);
+		assertEquals(ErrorCodes.JUICE,r.getErrorCode());
+		assertNull(results.poll());
+	}
+}
@@ -3,15 +3,22 @@ package convex.peer;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 
 import org.junit.jupiter.api.BeforeAll;
@@ -19,7 +26,9 @@ import org.junit.jupiter.api.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import convex.api.Acquirer;
 import convex.api.Convex;
+import convex.api.ConvexRemote;
 import convex.core.Belief;
 import convex.core.Coin;
 import convex.core.ErrorCodes;
@@ -30,20 +39,24 @@ import convex.core.data.ACell;
 import convex.core.data.AVector;
 import convex.core.data.AccountKey;
 import convex.core.data.Address;
+import convex.core.data.Blob;
 import convex.core.data.Hash;
 import convex.core.data.Keyword;
 import convex.core.data.Keywords;
 import convex.core.data.Maps;
 import convex.core.data.Ref;
+import convex.core.data.Sets;
 import convex.core.data.SignedData;
 import convex.core.data.Vectors;
 import convex.core.data.prim.CVMLong;
 import convex.core.exceptions.BadSignatureException;
 import convex.core.init.Init;
+import convex.core.lang.Profiler;
 import convex.core.lang.RT;
 import convex.core.lang.Reader;
 import convex.core.lang.Symbols;
 import convex.core.store.AStore;
+import convex.core.store.MemoryStore;
 import convex.core.store.Stores;
 import convex.core.transactions.ATransaction;
 import convex.core.transactions.Call;
@@ -51,8 +64,10 @@ import convex.core.transactions.Invoke;
 import convex.core.transactions.Transfer;
 import convex.core.util.Utils;
 import convex.net.Connection;
+import convex.net.MessageType;
 import convex.net.ResultConsumer;
 import convex.net.message.Message;
+import etch.Etch;
 import etch.EtchStore;
 
 /**
@@ -118,6 +133,29 @@ public class ServerTest {
 //		});
 //	}
 
+	@Test
+	public void testManyClients() throws IOException, InterruptedException, ExecutionException, TimeoutException {
+		// clients are spread over the selector threads of both client and server
+		int NUM=8;
+		ArrayList<Convex> clients=new ArrayList<>();
+		ArrayList<Future<Result>> futures=new ArrayList<>();
+		try {
+			for (int i=0; i<NUM; i++) {
+				Convex convex=Convex.connect(network.SERVER.getHostAddress(),network.VILLAIN,network.VILLAIN_KEYPAIR);
+				clients.add(convex);
+				futures.add(convex.query(Reader.read("(+ 1 "+i+")")));
+			}
+			for (int i=0; i<NUM; i++) {
+				Result r=futures.get(i).get(5000,TimeUnit.MILLISECONDS);
+				assertEquals(CVMLong.create(1+i),r.getValue());
+			}
+		} finally {
+			for (Convex c: clients) {
+				c.close();
+			}
+		}
+	}
+
 	@Test
 	public void testBalanceQuery() throws IOException, TimeoutException {
 		Convex convex=Convex.connect(network.SERVER.getHostAddress(),network.VILLAIN,network.VILLAIN_KEYPAIR);
@@ -144,6 +182,225 @@ public class ServerTest {
 		assertNotNull(r3.getTrace());
 	}
 
+	@Test
+	public void testDurability() throws IOException, TimeoutException {
+		AKeyPair kp=AKeyPair.generate();
+		EtchStore store=EtchStore.createTemp("server-durability");
+		HashMap<Keyword,Object> config=new HashMap<>();
+		config.put(Keywords.KEYPAIR,kp);
+		config.put(Keywords.STATE,Init.createState(List.of(kp.getAccountKey())));
+		config.put(Keywords.STORE,store);
+		config.put(Keywords.DURABILITY,Keyword.create("group"));
+		config.put(Keywords.COMMIT_INTERVAL,50);
+		Server server=API.launchPeer(config);
+		try {
+			assertEquals(Etch.Durability.GROUP,store.getEtch().getDurability());
+			assertEquals(50,store.getEtch().getCommitInterval());
+			
+			Convex convex=Convex.connect(server.getHostAddress(),Init.GENESIS_ADDRESS,kp);
+			assertEquals(CVMLong.create(3),convex.querySync(Reader.read("(+ 1 2)")).getValue());
+			convex.close();
+		} finally {
+			server.close();
+		}
+	}
+
+	@Test
+	public void testPeriodicGC() throws IOException, TimeoutException, InterruptedException {
+		AKeyPair kp=AKeyPair.generate();
+		EtchStore store=EtchStore.createTemp("server-gc");
+		HashMap<Keyword,Object> config=new HashMap<>();
+		config.put(Keywords.KEYPAIR,kp);
+		config.put(Keywords.STATE,Init.createState(List.of(kp.getAccountKey())));
+		config.put(Keywords.STORE,store);
+		config.put(Keywords.GC_INTERVAL,100);
+		Server server=API.launchPeer(config);
+		try {
+			// unreachable cell, should be discarded by the next GC cycle
+			byte[] bs=new byte[100];
+			new Random(1234).nextBytes(bs);
+			Blob garbage=Blob.wrap(bs);
+			Hash hash=garbage.getHash();
+			store.storeTopRef(garbage.getRef(),Ref.STORED,null);
+			assertNotNull(store.refForHash(hash));
+
+			long start=Utils.getCurrentTimestamp();
+			while (store.refForHash(hash)!=null) {
+				assertTrue(Utils.getCurrentTimestamp()<start+5000,"Garbage not collected");
+				Thread.sleep(10);
+			}
+
+			// peer is still usable after GC
+			Convex convex=Convex.connect(server.getHostAddress(),Init.GENESIS_ADDRESS,kp);
+			assertEquals(CVMLong.create(3),convex.querySync(Reader.read("(+ 1 2)")).getValue());
+			convex.close();
+		} finally {
+			server.close();
+		}
+	}
+
+	@Test
+	public void testDataBatchBetweenPeers() throws IOException, InterruptedException {
+		Server a=launchDefaultPeer();
+		Server b=launchDefaultPeer();
+		try {
+			// record DATA_BATCH messages received by b
+			ArrayList<Message> batches=new ArrayList<>();
+			Consumer<Message> action=b.peerReceiveAction;
+			b.peerReceiveAction=m->{
+				if (m.getType()==MessageType.DATA_BATCH) {
+					synchronized(batches) {batches.add(m);}
+				}
+				action.accept(m);
+			};
+
+			// capabilities are exchanged when the connection opens
+			Connection pc=a.getConnectionManager().connectToPeer(b.getHostAddress());
+			assertNotNull(pc);
+			long start=Utils.getCurrentTimestamp();
+			while (!pc.isDataBatchSupported()) {
+				assertTrue(Utils.getCurrentTimestamp()-start<5000,"Capabilities not received");
+				Thread.sleep(10);
+			}
+
+			Random r=new Random(4321);
+			ArrayList<ACell> cells=new ArrayList<>();
+			for (int i=0; i<10; i++) {
+				cells.add(Blob.createRandom(r, 200));
+			}
+			assertTrue(pc.sendMessage(Message.createDataBatch(Vectors.create(cells))));
+
+			start=Utils.getCurrentTimestamp();
+			while (batches.isEmpty()) {
+				assertTrue(Utils.getCurrentTimestamp()-start<5000,"DATA_BATCH not received");
+				Thread.sleep(10);
+			}
+			synchronized(batches) {
+				assertEquals(1,batches.size());
+				assertEquals(Vectors.create(cells),batches.get(0).getPayload());
+			}
+			for (ACell cell: cells) {
+				while (b.getStore().refForHash(cell.getHash())==null) {
+					assertTrue(Utils.getCurrentTimestamp()-start<5000,"Cell not stored");
+					Thread.sleep(10);
+				}
+			}
+		} finally {
+			a.close();
+			b.close();
+		}
+	}
+
+	@Test
+	public void testBackPressure() throws IOException, InterruptedException, TimeoutException {
+		// store that can hold up the Server receive loop
+		AtomicBoolean hold=new AtomicBoolean(false);
+		CountDownLatch release=new CountDownLatch(1);
+		MemoryStore store=new MemoryStore() {
+			@Override
+			public <T extends ACell> Ref<T> storeTopRef(Ref<T> ref, int status, Consumer<Ref<ACell>> noveltyHandler) {
+				if (hold.get()) {
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				return super.storeTopRef(ref, status, noveltyHandler);
+			}
+		};
+		AKeyPair kp=AKeyPair.generate();
+		HashMap<Keyword,Object> config=new HashMap<>();
+		config.put(Keywords.KEYPAIR,kp);
+		config.put(Keywords.STATE,Init.createState(List.of(kp.getAccountKey())));
+		config.put(Keywords.STORE,store);
+		Server server=API.launchPeer(config);
+		Connection pc=Connection.connect(server.getHostAddress(), null, Stores.current());
+		try {
+			// hold up the Server once capabilities are exchanged
+			long begin=Utils.getCurrentTimestamp();
+			while (!pc.isDataBatchSupported()) {
+				assertTrue(Utils.getCurrentTimestamp()-begin<5000,"Capabilities not received");
+				Thread.sleep(10);
+			}
+			hold.set(true);
+
+			// more DATA messages than the Server can queue
+			Random r=new Random(9753);
+			ArrayList<ACell> cells=new ArrayList<>();
+			for (int i=0; i<15000; i++) {
+				cells.add(Blob.createRandom(r, 100));
+			}
+			int sent=0;
+			int depth=-1;
+			begin=Utils.getCurrentTimestamp();
+			long stable=begin;
+			while (release.getCount()>0) {
+				if ((sent<cells.size())&&pc.sendData(cells.get(sent))) {
+					sent++;
+					continue;
+				}
+				// Server queues are full once the verifier queue stops changing, so give it
+				// time to drop anything before letting the Server catch up
+				long now=Utils.getCurrentTimestamp();
+				assertTrue(now-begin<10000,"Server queues not filled");
+				int d=server.getVerifyQueueDepth();
+				if (d!=depth) {
+					depth=d;
+					stable=now;
+				} else if ((d>0)&&(now-stable>500)) {
+					release.countDown();
+				}
+				Thread.sleep(1);
+			}
+			while (sent<cells.size()) {
+				if (pc.sendData(cells.get(sent))) {
+					sent++;
+				} else {
+					Thread.sleep(1);
+				}
+			}
+
+			// nothing was dropped
+			long start=Utils.getCurrentTimestamp();
+			for (ACell cell: cells) {
+				while (store.refForHash(cell.getHash())==null) {
+					assertTrue(Utils.getCurrentTimestamp()-start<10000,"Message dropped");
+					Thread.sleep(10);
+				}
+			}
+		} finally {
+			release.countDown();
+			pc.close();
+			server.close();
+		}
+	}
+
+	private static Server launchDefaultPeer() {
+		AKeyPair kp=AKeyPair.generate();
+		HashMap<Keyword,Object> config=new HashMap<>();
+		config.put(Keywords.KEYPAIR,kp);
+		config.put(Keywords.STATE,Init.createState(List.of(kp.getAccountKey())));
+		config.put(Keywords.STORE,new MemoryStore());
+		return API.launchPeer(config);
+	}
+
+	@Test
+	public void testProfiling() throws IOException, TimeoutException {
+		Convex convex=Convex.connect(network.SERVER.getHostAddress(),network.VILLAIN,network.VILLAIN_KEYPAIR);
+		Profiler p=Profiler.start();
+		try {
+			assertSame(p,Profiler.getActive());
+			Result r=convex.querySync(Reader.read("(+ 1 2)"));
+			assertEquals(CVMLong.create(3),r.getValue());
+			assertTrue(p.getCount(Profiler.FN, "+")>0);
+			assertTrue(p.getCollapsedStacks(false).contains("+ "));
+		} finally {
+			assertSame(p,Profiler.stop());
+		}
+		assertNull(Profiler.getActive());
+	}
+
 	@Test
 	public void testMissingData() throws IOException, InterruptedException, TimeoutException {
 
@@ -247,6 +504,125 @@ public class ServerTest {
 		}
 	}
 
+	@Test
+	public void testAcquireFromMultipleSources() throws IOException, InterruptedException, ExecutionException, TimeoutException {
+		// a data structure of about 1100 cells that only the server has
+		AVector<ACell> v=Vectors.empty();
+		Random r=new Random(5678);
+		for (int i=0; i<1000; i++) {
+			v=v.conj(Blob.createRandom(r, 200));
+		}
+		network.SERVER.getStore().storeRef(v.getRef(), Ref.PERSISTED, null);
+
+		InetSocketAddress hostAddress=network.SERVER.getHostAddress();
+		MemoryStore store=new MemoryStore();
+		ConvexRemote c1=Convex.connect(hostAddress, null, null, store);
+		ConvexRemote c2=Convex.connect(hostAddress, null, null, store);
+		try {
+			Acquirer acquirer=Acquirer.create(store);
+			acquirer.addSource(c1);
+			acquirer.addSource(c2);
+			AVector<ACell> av=acquirer.<AVector<ACell>>acquire(v.getHash()).get(10000,TimeUnit.MILLISECONDS);
+			assertEquals(v,av);
+			assertTrue(store.refForHash(v.getHash()).getStatus()>=Ref.PERSISTED);
+			assertTrue(acquirer.getCellCount()>1000);
+
+			// already persisted, so completes immediately
+			assertTrue(acquirer.acquire(v.getHash()).isDone());
+		} finally {
+			c1.close();
+			c2.close();
+		}
+	}
+
+	@Test
+	public void testAcquireAfterRemoveSource() throws IOException, InterruptedException, ExecutionException, TimeoutException {
+		ACell value=Blob.createRandom(new Random(1357), 200);
+		network.SERVER.getStore().storeRef(value.getRef(), Ref.PERSISTED, null);
+
+		// a peer that never answers missing data requests
+		Server silent=launchDefaultPeer();
+		Consumer<Message> action=silent.peerReceiveAction;
+		silent.peerReceiveAction=m->{
+			if (m.getType()==MessageType.MISSING_DATA) return;
+			action.accept(m);
+		};
+
+		MemoryStore store=new MemoryStore();
+		ConvexRemote c1=Convex.connect(silent.getHostAddress(), null, null, store);
+		ConvexRemote c2=Convex.connect(network.SERVER.getHostAddress(), null, null, store);
+		try {
+			Acquirer acquirer=Acquirer.create(store);
+			acquirer.addSource(c1);
+			long start=Utils.getCurrentTimestamp();
+			Future<ACell> f=acquirer.acquire(value.getHash());
+
+			// requests to the removed source go straight to the remaining source,
+			// well within the 500ms retry interval
+			acquirer.addSource(c2);
+			acquirer.removeSource(c1);
+			assertEquals(value,f.get(10000,TimeUnit.MILLISECONDS));
+			assertTrue(Utils.getCurrentTimestamp()-start<400);
+		} finally {
+			c1.close();
+			c2.close();
+			silent.close();
+		}
+	}
+
+	@Test
+	public void testAcquireFromSingleHashPeer() throws IOException, InterruptedException, ExecutionException, TimeoutException {
+		Server server=launchDefaultPeer();
+		AVector<ACell> v=Vectors.empty();
+		Random r=new Random(2468);
+		for (int i=0; i<200; i++) {
+			v=v.conj(Blob.createRandom(r, 200));
+		}
+		AStore temp=Stores.current();
+		try {
+			// children are persisted to the current store
+			Stores.setCurrent(server.getStore());
+			ACell.createPersisted(v);
+		} finally {
+			Stores.setCurrent(temp);
+		}
+
+		// like an older peer, only accept MISSING_DATA with a single hash
+		ArrayList<ACell> rejected=new ArrayList<>();
+		Consumer<Message> action=server.peerReceiveAction;
+		server.peerReceiveAction=m->{
+			if ((m.getType()==MessageType.MISSING_DATA)&&(RT.ensureHash(m.getPayload())==null)) {
+				synchronized(rejected) {rejected.add(m.getPayload());}
+				return;
+			}
+			action.accept(m);
+		};
+
+		MemoryStore store=new MemoryStore();
+		ConvexRemote convex=Convex.connect(server.getHostAddress(), null, null, store);
+		try {
+			// wait for capabilities, then treat the peer as one that has not announced :missing-data-batch
+			Connection pc=convex.getConnection();
+			long start=Utils.getCurrentTimestamp();
+			while (!pc.isDataBatchSupported()) {
+				assertTrue(Utils.getCurrentTimestamp()-start<5000,"Capabilities not received");
+				Thread.sleep(10);
+			}
+			pc.setRemoteCapabilities(Sets.of(Keywords.DATA_BATCH));
+
+			Acquirer acquirer=Acquirer.create(store);
+			acquirer.addSource(convex);
+			AVector<ACell> av=acquirer.<AVector<ACell>>acquire(v.getHash()).get(10000,TimeUnit.MILLISECONDS);
+			assertEquals(v,av);
+			synchronized(rejected) {
+				assertTrue(rejected.isEmpty());
+			}
+		} finally {
+			convex.close();
+			server.close();
+		}
+	}
+
 	public long checkSent(Connection pc,SignedData<ATransaction> st) throws IOException {
 		long x=pc.sendTransaction(st);
 		assertTrue(x>=0);
@@ -0,0 +1,96 @@
+package convex.peer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import convex.core.crypto.AKeyPair;
+import convex.core.crypto.ASignature;
+import convex.core.data.ACell;
+import convex.core.data.AVector;
+import convex.core.data.Address;
+import convex.core.data.Format;
+import convex.core.data.SignedData;
+import convex.core.data.Vectors;
+import convex.core.exceptions.BadFormatException;
+import convex.core.lang.Symbols;
+import convex.core.store.Stores;
+import convex.core.transactions.ATransaction;
+import convex.core.transactions.Invoke;
+import convex.net.MessageType;
+import convex.net.message.Message;
+
+public class SignatureVerifierTest {
+	static final AKeyPair KP=AKeyPair.createSeeded(1234);
+	static final Address ADDRESS=Address.create(12);
+
+	/**
+	 * Creates a signed transaction that has not been verified, as if received from the network
+	 */
+	private SignedData<ATransaction> receivedTransaction(long seq) throws BadFormatException {
+		ATransaction tx=Invoke.create(ADDRESS, seq, Symbols.FOO);
+		SignedData<ATransaction> sd=KP.signData(tx);
+		return Format.read(sd.getEncoding());
+	}
+
+	@Test
+	public void testVerifyTransact() throws BadFormatException {
+		SignedData<ATransaction> sd=receivedTransaction(1);
+		assertFalse(sd.isSignatureChecked());
+		Message m=Message.create(null, MessageType.TRANSACT, Vectors.of(1L,sd));
+		SignatureVerifier.verify(m);
+		assertTrue(sd.isSignatureChecked());
+		assertTrue(sd.checkSignature());
+
+		// bad signature is checked and cached as bad
+		SignedData<ATransaction> bad=SignedData.create(KP.getAccountKey(), ASignature.fromHex("00".repeat(64)), sd.getValue().getRef());
+		SignatureVerifier.verify(Message.create(null, MessageType.TRANSACT, Vectors.of(2L,bad)));
+		assertTrue(bad.isSignatureChecked());
+		assertFalse(bad.checkSignature());
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testPipelineOrder() throws BadFormatException, InterruptedException {
+		ArrayBlockingQueue<Message> output=new ArrayBlockingQueue<>(1000);
+		SignatureVerifier verifier=SignatureVerifier.create(output, Stores.current(), 4);
+		verifier.start("Test");
+		try {
+			ArrayList<Message> sent=new ArrayList<>();
+			for (int i=0; i<100; i++) {
+				Message m=Message.create(null, MessageType.TRANSACT, Vectors.of(i,receivedTransaction(i)));
+				sent.add(m);
+				verifier.submit(m);
+			}
+			for (int i=0; i<100; i++) {
+				Message m=output.poll(5, TimeUnit.SECONDS);
+				assertSame(sent.get(i),m); // same connection, so order is preserved
+				SignedData<?> sd=(SignedData<?>)((AVector<ACell>)m.getPayload()).get(1);
+				assertTrue(sd.isSignatureChecked());
+			}
+			assertEquals(0,verifier.getQueueDepth());
+		} finally {
+			verifier.close();
+		}
+	}
+
+	@Test
+	public void testOfferFull() throws BadFormatException, InterruptedException {
+		// verifier not started, so messages go straight to the output queue
+		ArrayBlockingQueue<Message> output=new ArrayBlockingQueue<>(1);
+		SignatureVerifier verifier=SignatureVerifier.create(output, Stores.current(), 1);
+		Message m1=Message.create(null, MessageType.TRANSACT, Vectors.of(1L,receivedTransaction(1)));
+		Message m2=Message.create(null, MessageType.TRANSACT, Vectors.of(2L,receivedTransaction(2)));
+		assertTrue(verifier.offer(m1));
+		assertFalse(verifier.offer(m2));
+		assertSame(m1,output.poll());
+		assertTrue(verifier.offer(m2));
+	}
+}